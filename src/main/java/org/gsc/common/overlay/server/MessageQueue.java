@@ -3,13 +3,9 @@ package org.gsc.common.overlay.server;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
@@ -18,6 +14,13 @@ import org.gsc.common.overlay.message.Message;
 import org.gsc.common.overlay.message.PingMessage;
 import org.gsc.protos.Protocol.ReasonCode;
 
+/**
+ * Writes the messages of a peer on the event loop of its channel. Messages waiting to be written
+ * are kept in lanes, blocks and everything else before inventories before transactions; every
+ * write run empties the lanes in that order while the channel is writable and flushes once.
+ * Messages expecting an answer are sent one at a time, the next once the answer of the last one
+ * came in, and the channel is closed if an answer doesn't come in time.
+ */
 @Component
 @Scope("prototype")
 public class MessageQueue {
@@ -28,21 +31,19 @@ public class MessageQueue {
 
   private volatile long sendTime;
 
-  private Thread sendMsgThread;
-
   private Channel channel;
 
   private ChannelHandlerContext ctx = null;
 
   private Queue<MessageRoundtrip> requestQueue = new ConcurrentLinkedQueue<>();
 
-  private BlockingQueue<Message> msgQueue = new LinkedBlockingQueue<>();
+  private final Queue<Message> blockQueue = new ConcurrentLinkedQueue<>();
 
-  private static ScheduledExecutorService sendTimer =
-          Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "sendTimer"));
+  private final Queue<Message> inventoryQueue = new ConcurrentLinkedQueue<>();
 
-  private ScheduledFuture<?> sendTask;
+  private final Queue<Message> trxQueue = new ConcurrentLinkedQueue<>();
 
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
 
   public void activate(ChannelHandlerContext ctx) {
 
@@ -50,36 +51,8 @@ public class MessageQueue {
 
     sendMsgFlag = true;
 
-    sendTask = sendTimer.scheduleAtFixedRate(() -> {
-      try {
-        if (sendMsgFlag){
-          send();
-        }
-      } catch (Exception e) {
-        logger.error("Unhandled exception", e);
-      }
-    }, 10, 10, TimeUnit.MILLISECONDS);
-
-    sendMsgThread = new Thread(()->{
-     while (sendMsgFlag) {
-       try {
-         if (msgQueue.isEmpty()){
-           Thread.sleep(10);
-           continue;
-         }
-         Message msg = msgQueue.take();
-         ctx.writeAndFlush(msg.getSendData()).addListener((ChannelFutureListener) future -> {
-           if (!future.isSuccess()) {
-             logger.error("Fail send to {}, {}", ctx.channel().remoteAddress(),  msg);
-           }
-         });
-       }catch (Exception e) {
-         logger.error("Fail send to {}, error info: {}", ctx.channel().remoteAddress(), e.getMessage());
-       }
-     }
-    });
-    sendMsgThread.setName("sendMsgThread-" + ctx.channel().remoteAddress());
-    sendMsgThread.start();
+    scheduleWrite();
+    ctx.executor().execute(this::sendRequest);
   }
 
   public void setChannel(Channel channel) {
@@ -95,8 +68,12 @@ public class MessageQueue {
     sendTime = System.currentTimeMillis();
     if (msg.getAnswerMessage() != null){
       requestQueue.add(new MessageRoundtrip(msg));
+      if (sendMsgFlag) {
+        ctx.executor().execute(this::sendRequest);
+      }
     }else {
-      msgQueue.offer(msg);
+      laneOf(msg).offer(msg);
+      scheduleWrite();
     }
     return true;
   }
@@ -107,50 +84,96 @@ public class MessageQueue {
     MessageRoundtrip messageRoundtrip = requestQueue.peek();
     if (messageRoundtrip != null && messageRoundtrip.getMsg().getAnswerMessage() == msg.getClass()){
       requestQueue.remove();
+      ctx.executor().execute(this::sendRequest);
     }
   }
 
+  /**
+   * The channel can take more data again, write what waited for it.
+   */
+  public void channelWritable() {
+    scheduleWrite();
+  }
+
   public void close() {
     sendMsgFlag = false;
-    if(sendTask != null && !sendTask.isCancelled()){
-      sendTask.cancel(false);
-      sendTask = null;
+  }
+
+  private Queue<Message> laneOf(Message msg) {
+    switch (msg.getType()) {
+      case TRX:
+      case TRXS:
+        return trxQueue;
+      case INVENTORY:
+      case TRX_INVENTORY:
+      case BLOCK_INVENTORY:
+        return inventoryQueue;
+      default:
+        return blockQueue;
     }
-    if (sendMsgThread != null){
-      try{
-        sendMsgThread.join(20);
-        sendMsgThread = null;
-      }catch (Exception e){
-        logger.warn("Join send thread failed, peer {}", ctx.channel().remoteAddress());
-      }
+  }
+
+  private void scheduleWrite() {
+    if (sendMsgFlag && writeScheduled.compareAndSet(false, true)) {
+      ctx.executor().execute(this::write);
     }
   }
 
-  private void send() {
-    MessageRoundtrip messageRoundtrip = requestQueue.peek();
-    if (!sendMsgFlag || messageRoundtrip == null){
-      return;
+  private void write() {
+    // messages queued from now on schedule another run
+    writeScheduled.set(false);
+    boolean written = false;
+    Message msg;
+    while (sendMsgFlag && ctx.channel().isWritable() && (msg = nextMessage()) != null) {
+      write(msg);
+      written = true;
     }
-    if (messageRoundtrip.getRetryTimes() > 0 && !messageRoundtrip.hasToRetry()){
-      return;
-    }
-    if (messageRoundtrip.getRetryTimes() > 0){
-      channel.getNodeStatistics().nodeDisconnectedLocal(ReasonCode.PING_TIMEOUT);
-      logger.warn("Wait {} timeout. close channel {}.", messageRoundtrip.getMsg().getAnswerMessage(), ctx.channel().remoteAddress());
-      channel.close();
-      return;
+    if (written) {
+      ctx.flush();
     }
+  }
 
-    Message msg = messageRoundtrip.getMsg();
+  private Message nextMessage() {
+    Message msg = blockQueue.poll();
+    if (msg == null) {
+      msg = inventoryQueue.poll();
+    }
+    if (msg == null) {
+      msg = trxQueue.poll();
+    }
+    return msg;
+  }
 
-    ctx.writeAndFlush(msg.getSendData()).addListener((ChannelFutureListener) future -> {
+  private void write(Message msg) {
+    ctx.write(msg.getSendData()).addListener((ChannelFutureListener) future -> {
       if (!future.isSuccess()) {
         logger.error("Fail send to {}, {}", ctx.channel().remoteAddress(), msg);
       }
     });
+  }
+
+  private void sendRequest() {
+    MessageRoundtrip messageRoundtrip = requestQueue.peek();
+    if (!sendMsgFlag || messageRoundtrip == null || messageRoundtrip.getRetryTimes() > 0){
+      return;
+    }
 
+    // marked sent first, writing may run the tasks queued meanwhile
     messageRoundtrip.incRetryTimes();
     messageRoundtrip.saveTime();
+    write(messageRoundtrip.getMsg());
+    ctx.flush();
+    ctx.executor().schedule(() -> checkAnswered(messageRoundtrip),
+        MessageRoundtrip.ANSWER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private void checkAnswered(MessageRoundtrip messageRoundtrip) {
+    if (!sendMsgFlag || requestQueue.peek() != messageRoundtrip){
+      return;
+    }
+    channel.getNodeStatistics().nodeDisconnectedLocal(ReasonCode.PING_TIMEOUT);
+    logger.warn("Wait {} timeout. close channel {}.", messageRoundtrip.getMsg().getAnswerMessage(), ctx.channel().remoteAddress());
+    channel.close();
   }
 
 }
@@ -29,6 +29,11 @@ import org.gsc.common.overlay.message.Message;
  */
 public class MessageRoundtrip {
 
+    /**
+     * How long the answer may take after the message was sent.
+     */
+    public static final long ANSWER_TIMEOUT_MS = 20000;
+
     private final Message msg;
     long lastTimestamp = 0;
     long retryTimes = 0;
@@ -64,7 +69,7 @@ public class MessageRoundtrip {
     }
 
     public boolean hasToRetry() {
-        return 20000 < System.currentTimeMillis() - lastTimestamp;
+        return ANSWER_TIMEOUT_MS < System.currentTimeMillis() - lastTimestamp;
     }
 
     public Message getMsg() {
@@ -105,6 +105,14 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
     }
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    if (ctx.channel().isWritable()) {
+      msgQueue.channelWritable();
+    }
+    ctx.fireChannelWritabilityChanged();
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
     channel.processException(cause);
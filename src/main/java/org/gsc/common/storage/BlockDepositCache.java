@@ -0,0 +1,104 @@
+package org.gsc.common.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.gsc.db.common.WrappedByteArray;
+
+/**
+ * Code, contracts and storage rows as the transactions of one block left them, so the next
+ * transactions of the block calling the same contracts don't read them from the stores again.
+ *
+ * <p>A root deposit reads through it, and hands it what it read and wrote once its transaction
+ * is done. A transaction that fails hands nothing over, so what its revoked session undoes never
+ * reaches the cache, and the cache is dropped with the block. Accounts aren't kept, the actuators
+ * and the resource processors write them without going through a deposit.
+ */
+public class BlockDepositCache {
+
+  // a row the stores don't have, ConcurrentHashMap can't hold null
+  private static final byte[] ABSENT = new byte[0];
+
+  private final Map<WrappedByteArray, byte[]> codes = new ConcurrentHashMap<>();
+  private final Map<WrappedByteArray, byte[]> contracts = new ConcurrentHashMap<>();
+  private final Map<WrappedByteArray, byte[]> storageRows = new ConcurrentHashMap<>();
+
+  private final LongAdder codeHits = new LongAdder();
+  private final LongAdder contractHits = new LongAdder();
+  private final LongAdder storageHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @return the code of address, null when it isn't cached.
+   */
+  public byte[] getCode(byte[] address) {
+    return lookup(codes, address, codeHits);
+  }
+
+  public byte[] getContract(byte[] address) {
+    return lookup(contracts, address, contractHits);
+  }
+
+  /**
+   * @return a copy of the row, an empty array for a row the store doesn't have, and null when the
+   *     row isn't cached.
+   */
+  public byte[] getStorageRow(byte[] rowKey) {
+    byte[] value = lookup(storageRows, rowKey, storageHits);
+    return value == null ? null : value.clone();
+  }
+
+  void putCode(byte[] address, byte[] code) {
+    put(codes, address, code);
+  }
+
+  void putContract(byte[] address, byte[] contract) {
+    put(contracts, address, contract);
+  }
+
+  /**
+   * @param value the row after the transaction, null or a zero word once it's deleted.
+   */
+  public void putStorageRow(byte[] rowKey, byte[] value) {
+    storageRows.put(WrappedByteArray.of(rowKey.clone()),
+        value == null ? ABSENT : value.clone());
+  }
+
+  /**
+   * drop what a writer going around the deposits changed.
+   */
+  public void invalidateContract(byte[] address) {
+    codes.remove(WrappedByteArray.of(address));
+    contracts.remove(WrappedByteArray.of(address));
+  }
+
+  private byte[] lookup(Map<WrappedByteArray, byte[]> cache, byte[] key, LongAdder hits) {
+    byte[] value = cache.get(WrappedByteArray.of(key));
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  private static void put(Map<WrappedByteArray, byte[]> cache, byte[] key, byte[] value) {
+    cache.put(WrappedByteArray.of(key.clone()), value);
+  }
+
+  public long getCodeHits() {
+    return codeHits.sum();
+  }
+
+  public long getContractHits() {
+    return contractHits.sum();
+  }
+
+  public long getStorageHits() {
+    return storageHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+}
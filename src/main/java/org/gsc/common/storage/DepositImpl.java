@@ -5,6 +5,7 @@ import static org.gsc.runtime.utils.MUtil.convertTogscAddress;
 import com.google.protobuf.ByteString;
 import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.ArrayUtils;
 import org.gsc.runtime.vm.DataWord;
 import org.gsc.runtime.vm.program.Storage;
 import org.gsc.common.utils.StringUtil;
@@ -43,10 +44,29 @@ public class DepositImpl implements Deposit {
   private HashMap<Key, Value> accountContractIndexCache = new HashMap<>();
   private HashMap<Key, Storage> storageCache = new HashMap<>();
 
+  // only for the root deposit of a transaction applied as part of a block
+  private BlockDepositCache blockDepositCache;
+  private boolean committed;
+
+  // a deposit belongs to the thread of the transaction or call it runs, it takes no locks
+  private final Thread owner = Thread.currentThread();
+
   private DepositImpl(Manager dbManager, DepositImpl parent) {
     init(dbManager, parent);
   }
 
+  /**
+   * every entry point checks this but getDbManager(), which only hands out the manager the
+   * deposit was made with, publish(), which runs after the owner is done, and flush(), which is
+   * not supported.
+   */
+  private void checkOwner() {
+    if (Thread.currentThread() != owner) {
+      throw new IllegalStateException("deposit of thread " + owner.getName()
+          + " used by thread " + Thread.currentThread().getName());
+    }
+  }
+
   protected void init(Manager dbManager, DepositImpl parent) {
     this.dbManager = dbManager;
     this.parent = parent;
@@ -95,11 +115,13 @@ public class DepositImpl implements Deposit {
 
   @Override
   public Deposit newDepositChild() {
+    checkOwner();
     return new DepositImpl(dbManager, this);
   }
 
   @Override
-  public synchronized AccountWrapper createAccount(byte[] address, Protocol.AccountType type) {
+  public AccountWrapper createAccount(byte[] address, Protocol.AccountType type) {
+    checkOwner();
     Key key = new Key(address);
     AccountWrapper account = new AccountWrapper(ByteString.copyFrom(address), type);
     accountCache.put(key, new Value(account.getData(), Type.VALUE_TYPE_CREATE));
@@ -108,6 +130,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public AccountWrapper createAccount(byte[] address, String accountName, AccountType type) {
+    checkOwner();
     Key key = new Key(address);
     AccountWrapper account = new AccountWrapper(ByteString.copyFrom(address),
         ByteString.copyFromUtf8(accountName),
@@ -118,7 +141,8 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized AccountWrapper getAccount(byte[] address) {
+  public AccountWrapper getAccount(byte[] address) {
+    checkOwner();
     Key key = new Key(address);
     if (accountCache.containsKey(key)) {
       return accountCache.get(key).getAccount();
@@ -139,20 +163,28 @@ public class DepositImpl implements Deposit {
   // just for depositRoot
   @Override
   public void deleteContract(byte[] address) {
+    checkOwner();
     getCodeStore().delete(address);
     getAccountStore().delete(address);
     getContractStore().delete(address);
+    codeCache.remove(Key.create(address));
+    contractCache.remove(Key.create(address));
+    if (blockDepositCache != null) {
+      blockDepositCache.invalidateContract(address);
+    }
   }
 
   @Override
-  public synchronized void createContract(byte[] address, ContractWrapper contractWrapper) {
+  public void createContract(byte[] address, ContractWrapper contractWrapper) {
+    checkOwner();
     Key key = Key.create(address);
     Value value = Value.create(contractWrapper.getData(), Type.VALUE_TYPE_CREATE);
     contractCache.put(key, value);
   }
 
   @Override
-  public synchronized ContractWrapper getContract(byte[] address) {
+  public ContractWrapper getContract(byte[] address) {
+    checkOwner();
     Key key = Key.create(address);
     if (contractCache.containsKey(key)) {
       return contractCache.get(key).getContract();
@@ -162,7 +194,9 @@ public class DepositImpl implements Deposit {
     if (parent != null) {
       contractWrapper = parent.getContract(address);
     } else {
-      contractWrapper = getContractStore().get(address);
+      byte[] cached = blockDepositCache == null ? null : blockDepositCache.getContract(address);
+      contractWrapper = cached == null
+          ? getContractStore().get(address) : new ContractWrapper(cached);
     }
 
     if (contractWrapper != null) {
@@ -172,14 +206,16 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized void saveCode(byte[] codeHash, byte[] code) {
+  public void saveCode(byte[] codeHash, byte[] code) {
+    checkOwner();
     Key key = Key.create(codeHash);
     Value value = Value.create(code, Type.VALUE_TYPE_CREATE);
     codeCache.put(key, value);
   }
 
   @Override
-  public synchronized byte[] getCode(byte[] addr) {
+  public byte[] getCode(byte[] addr) {
+    checkOwner();
     Key key = Key.create(addr);
     if (codeCache.containsKey(key)) {
       return codeCache.get(key).getCode().getData();
@@ -189,9 +225,8 @@ public class DepositImpl implements Deposit {
     if (parent != null) {
       code = parent.getCode(addr);
     } else {
-      if (null == getCodeStore().get(addr)) {
-        code = null;
-      } else {
+      code = blockDepositCache == null ? null : blockDepositCache.getCode(addr);
+      if (code == null && null != getCodeStore().get(addr)) {
         code = getCodeStore().get(addr).getData();
       }
     }
@@ -202,7 +237,8 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized Storage getStorage(byte[] address) {
+  public Storage getStorage(byte[] address) {
+    checkOwner();
     Key key = Key.create(address);
     if (storageCache.containsKey(key)) {
       return storageCache.get(key);
@@ -212,13 +248,14 @@ public class DepositImpl implements Deposit {
     if (this.parent != null) {
       storage = parent.getStorage(address);
     } else {
-      storage = new Storage(address, dbManager.getStorageRowStore());
+      storage = new Storage(address, dbManager.getStorageRowStore(), blockDepositCache);
     }
     return storage;
   }
 
   @Override
-  public synchronized void putStorageValue(byte[] address, DataWord key, DataWord value) {
+  public void putStorageValue(byte[] address, DataWord key, DataWord value) {
+    checkOwner();
     address = convertTogscAddress(address);
     if (getAccount(address) == null) {
       return;
@@ -235,7 +272,8 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized DataWord getStorageValue(byte[] address, DataWord key) {
+  public DataWord getStorageValue(byte[] address, DataWord key) {
+    checkOwner();
     address = convertTogscAddress(address);
     if (getAccount(address) == null) {
       return null;
@@ -252,13 +290,15 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized long getBalance(byte[] address) {
+  public long getBalance(byte[] address) {
+    checkOwner();
     AccountWrapper accountWrapper = getAccount(address);
     return accountWrapper == null ? 0L : accountWrapper.getBalance();
   }
 
   @Override
-  public synchronized long addBalance(byte[] address, long value) {
+  public long addBalance(byte[] address, long value) {
+    checkOwner();
     AccountWrapper accountWrapper = getAccount(address);
     if (accountWrapper == null) {
       accountWrapper = createAccount(address, Protocol.AccountType.Normal);
@@ -284,6 +324,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public TransactionWrapper getTransaction(byte[] trxHash) {
+    checkOwner();
     Key key = Key.create(trxHash);
     if (transactionCache.containsKey(key)) {
       return transactionCache.get(key).getTransaction();
@@ -308,6 +349,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public BlockWrapper getBlock(byte[] blockHash) {
+    checkOwner();
     Key key = Key.create(blockHash);
     if (blockCache.containsKey(key)) {
       return blockCache.get(key).getBlock();
@@ -332,6 +374,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public long computeAfterRunStorageSize() {
+    checkOwner();
     AtomicLong afterRunStorageSize = new AtomicLong();
     storageCache.forEach((key, value) -> {
       afterRunStorageSize.getAndAdd(value.computeSize());
@@ -341,6 +384,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public long getBeforeRunStorageSize() {
+    checkOwner();
     AtomicLong beforeRunStorageSize = new AtomicLong();
     storageCache.forEach((key, value) -> {
       beforeRunStorageSize.getAndAdd(value.getBeforeUseSize());
@@ -350,41 +394,49 @@ public class DepositImpl implements Deposit {
 
   @Override
   public void putAccount(Key key, Value value) {
+    checkOwner();
     accountCache.put(key, value);
   }
 
   @Override
   public void putTransaction(Key key, Value value) {
+    checkOwner();
     transactionCache.put(key, value);
   }
 
   @Override
   public void putBlock(Key key, Value value) {
+    checkOwner();
     blockCache.put(key, value);
   }
 
   @Override
   public void putWitness(Key key, Value value) {
+    checkOwner();
     witnessCache.put(key, value);
   }
 
   @Override
   public void putCode(Key key, Value value) {
+    checkOwner();
     codeCache.put(key, value);
   }
 
   @Override
   public void putContract(Key key, Value value) {
+    checkOwner();
     contractCache.put(key, value);
   }
 
   @Override
   public void putStorage(Key key, Storage cache) {
+    checkOwner();
     storageCache.put(key, cache);
   }
 
   @Override
   public void putVotes(Key key, Value value) {
+    checkOwner();
     votesCache.put(key, value);
   }
 
@@ -487,6 +539,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public void syncCacheFromAccountStore(byte[] address) {
+    checkOwner();
     Key key = Key.create(address);
     int type;
     if (null == accountCache.get(key)) {
@@ -500,6 +553,7 @@ public class DepositImpl implements Deposit {
 
   @Override
   public void syncCacheFromVotesStore(byte[] address) {
+    checkOwner();
     Key key = Key.create(address);
     int type;
     if (null == votesCache.get(key)) {
@@ -512,7 +566,8 @@ public class DepositImpl implements Deposit {
   }
 
   @Override
-  public synchronized void commit() {
+  public void commit() {
+    checkOwner();
     Deposit deposit = null;
     if (parent != null) {
       deposit = parent;
@@ -527,6 +582,31 @@ public class DepositImpl implements Deposit {
     commitStorageCache(deposit);
     commitVoteCache(deposit);
     // commitAccountContractIndex(deposit);
+    committed = deposit == null;
+  }
+
+  /**
+   * hand the code, contracts and storage rows this root deposit read and committed to the block
+   * cache, once its transaction is done. A deposit that wasn't committed may hold writes the
+   * stores never got, it hands nothing over. It may run on the thread committing the block rather
+   * than the owner, which is done with the deposit by then.
+   */
+  public void publish() {
+    if (blockDepositCache == null || !committed) {
+      return;
+    }
+
+    codeCache.forEach((key, value) -> {
+      if (!ArrayUtils.isEmpty(value.getAny())) {
+        blockDepositCache.putCode(key.getData(), value.getAny());
+      }
+    });
+    contractCache.forEach((key, value) -> {
+      if (!ArrayUtils.isEmpty(value.getAny())) {
+        blockDepositCache.putContract(key.getData(), value.getAny());
+      }
+    });
+    storageCache.values().forEach(storage -> storage.publish(blockDepositCache));
   }
 
   @Override
@@ -536,10 +616,21 @@ public class DepositImpl implements Deposit {
 
   @Override
   public void setParent(Deposit deposit) {
+    checkOwner();
     parent = deposit;
   }
 
   public static DepositImpl createRoot(Manager dbManager) {
     return new DepositImpl(dbManager, null);
   }
+
+  /**
+   * a root deposit reading through, and once published writing to, the cache of the block its
+   * transaction is part of.
+   */
+  public static DepositImpl createRoot(Manager dbManager, BlockDepositCache blockDepositCache) {
+    DepositImpl deposit = new DepositImpl(dbManager, null);
+    deposit.blockDepositCache = blockDepositCache;
+    return deposit;
+  }
 }
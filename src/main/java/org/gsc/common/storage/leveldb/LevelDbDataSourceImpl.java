@@ -17,18 +17,31 @@ package org.gsc.common.storage.leveldb;
 
 import static org.fusesource.leveldbjni.JniDBFactory.factory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Stream;
@@ -40,11 +53,14 @@ import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 import org.gsc.common.storage.DbSourceInter;
 import org.gsc.common.utils.FileUtil;
 import org.gsc.config.args.Args;
+import org.gsc.db.common.WrappedByteArray;
 import org.gsc.db.common.iterator.StoreIterator;
 
 @Slf4j
@@ -52,11 +68,21 @@ import org.gsc.db.common.iterator.StoreIterator;
 public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     Iterable<Map.Entry<byte[], byte[]>> {
 
+  private static final int VALUE_CACHE_ENTRY_OVERHEAD = 64;
+  private static final byte[] ABSENT = new byte[0];
+  private static final int VALUE_CACHE_STRIPES = 64;
+  // every open database with a value cache, by name, for the stats
+  private static final Map<String, LevelDbDataSourceImpl> cachedDbs = new ConcurrentHashMap<>();
+
   String dataBaseName;
   DB database;
   boolean alive;
   private String parentName;
   private ReadWriteLock resetDbLock = new ReentrantReadWriteLock();
+  // decoded values in front of levelDB, null when storage.properties sets no valueCacheSize
+  private Cache<WrappedByteArray, byte[]> valueCache;
+  // bumped by every write to a key of the stripe, a read that raced with one drops what it cached
+  private final AtomicLongArray valueCacheVersions = new AtomicLongArray(VALUE_CACHE_STRIPES);
 
   /**
    * constructor.
@@ -84,10 +110,22 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
       }
 
       Options dbOptions = Args.getInstance().getStorage().getOptionsByDbName(dataBaseName);
+      long valueCacheSize = Args.getInstance().getStorage().getValueCacheSizeByDbName(dataBaseName);
+      if (valueCacheSize > 0 && valueCache == null) {
+        valueCache = CacheBuilder.newBuilder()
+            .maximumWeight(valueCacheSize)
+            .weigher((WrappedByteArray k, byte[] v) -> VALUE_CACHE_ENTRY_OVERHEAD
+                + k.getBytes().length + v.length)
+            .recordStats()
+            .build();
+      }
 
       try {
         openDatabase(dbOptions);
         alive = true;
+        if (valueCache != null) {
+          cachedDbs.put(dataBaseName, this);
+        }
       } catch (IOException ioe) {
         throw new RuntimeException("Can't initialize database", ioe);
       }
@@ -177,21 +215,85 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   public byte[] getData(byte[] key) {
     resetDbLock.readLock().lock();
     try {
-      return database.get(key);
+      if (valueCache == null) {
+        return database.get(key);
+      }
+
+      // concurrent misses on a key wait for one load, other keys load in parallel
+      WrappedByteArray k = WrappedByteArray.of(key.clone());
+      int stripe = stripeOf(key);
+      long version = valueCacheVersions.get(stripe);
+      byte[] value = valueCache.get(k, () -> {
+        byte[] loaded = database.get(key);
+        return loaded == null ? ABSENT : loaded.clone();
+      });
+      dropIfRaced(k, stripe, version);
+      return value == ABSENT ? null : value.clone();
     } catch (DBException e) {
       logger.debug(e.getMessage(), e);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      logger.debug(e.getMessage(), e.getCause());
     } finally {
       resetDbLock.readLock().unlock();
     }
     return null;
   }
 
+  /**
+   * the values of keys in the order of keys, null for a key that isn't stored. What the value
+   * cache doesn't have is looked up in key order, so neighbouring keys find the blocks of levelDB
+   * the previous lookup loaded.
+   */
+  public List<byte[]> getData(List<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+    resetDbLock.readLock().lock();
+    try {
+      List<Integer> misses = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        byte[] cached = valueCache == null ? null
+            : valueCache.getIfPresent(WrappedByteArray.of(keys.get(i)));
+        if (cached == null) {
+          misses.add(i);
+        } else if (cached != ABSENT) {
+          values.set(i, cached.clone());
+        }
+      }
+      if (misses.isEmpty()) {
+        return values;
+      }
+
+      misses.sort((a, b) -> UnsignedBytes.lexicographicalComparator()
+          .compare(keys.get(a), keys.get(b)));
+      for (int i : misses) {
+        byte[] key = keys.get(i);
+        if (valueCache == null) {
+          values.set(i, database.get(key));
+          continue;
+        }
+
+        int stripe = stripeOf(key);
+        long version = valueCacheVersions.get(stripe);
+        byte[] value = database.get(key);
+        values.set(i, value);
+        WrappedByteArray k = WrappedByteArray.of(key.clone());
+        valueCache.put(k, value == null ? ABSENT : value.clone());
+        dropIfRaced(k, stripe, version);
+      }
+    } catch (DBException e) {
+      logger.debug(e.getMessage(), e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+    return values;
+  }
+
   @Override
   public void putData(byte[] key, byte[] value) {
     resetDbLock.readLock().lock();
     try {
       database.put(key, value);
     } finally {
+      invalidateValueCache(Collections.singleton(key));
       resetDbLock.readLock().unlock();
     }
   }
@@ -202,6 +304,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     try {
       database.put(key, value, options);
     } finally {
+      invalidateValueCache(Collections.singleton(key));
       resetDbLock.readLock().unlock();
     }
   }
@@ -212,6 +315,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     try {
       database.delete(key);
     } finally {
+      invalidateValueCache(Collections.singleton(key));
       resetDbLock.readLock().unlock();
     }
   }
@@ -222,6 +326,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     try {
       database.delete(key, options);
     } finally {
+      invalidateValueCache(Collections.singleton(key));
       resetDbLock.readLock().unlock();
     }
   }
@@ -284,6 +389,32 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     }
   }
 
+  public Map<byte[], byte[]> getLatest(long limit) {
+    if (limit <= 0) {
+      return Collections.emptyMap();
+    }
+    resetDbLock.readLock().lock();
+    try (DBIterator iterator = database.iterator()) {
+      Map<byte[], byte[]> result = new HashMap<>();
+      long i = 0;
+      iterator.seekToLast();
+      if (iterator.hasNext()) {
+        Entry<byte[], byte[]> entry = iterator.peekNext();
+        result.put(entry.getKey(), entry.getValue());
+        i++;
+      }
+      for (; iterator.hasPrev() && i++ < limit; iterator.prev()) {
+        Entry<byte[], byte[]> entry = iterator.peekPrev();
+        result.put(entry.getKey(), entry.getValue());
+      }
+      return result;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
   public Set<byte[]> getValuesNext(byte[] key, long limit) {
     if (limit <= 0) {
       return Sets.newHashSet();
@@ -401,6 +532,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
         throw new RuntimeException(e);
       }
     } finally {
+      invalidateValueCache(rows.keySet());
       resetDbLock.readLock().unlock();
     }
   }
@@ -417,10 +549,56 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
         throw new RuntimeException(e);
       }
     } finally {
+      invalidateValueCache(rows.keySet());
       resetDbLock.readLock().unlock();
     }
   }
 
+  /**
+   * drop written keys from the value cache. The version goes up before the key is dropped, so a
+   * read that cached an older value either sees the new version and drops it itself, or cached it
+   * before the key is dropped here.
+   */
+  private void invalidateValueCache(Collection<byte[]> keys) {
+    if (valueCache == null) {
+      return;
+    }
+
+    keys.forEach(key -> {
+      valueCacheVersions.incrementAndGet(stripeOf(key));
+      valueCache.invalidate(WrappedByteArray.of(key));
+    });
+  }
+
+  private void dropIfRaced(WrappedByteArray key, int stripe, long version) {
+    if (valueCacheVersions.get(stripe) != version) {
+      valueCache.invalidate(key);
+    }
+  }
+
+  private static int stripeOf(byte[] key) {
+    return Arrays.hashCode(key) & (VALUE_CACHE_STRIPES - 1);
+  }
+
+  /**
+   * the value cache stats of every open database that has one, by name.
+   */
+  public static Map<String, CacheStats> getAllValueCacheStats() {
+    Map<String, CacheStats> stats = new TreeMap<>();
+    cachedDbs.forEach((name, db) -> stats.put(name, db.getValueCacheStats()));
+    return stats;
+  }
+
+  /**
+   * hit ratio and evictions of the value cache, all zero if this database has none.
+   */
+  public CacheStats getValueCacheStats() {
+    if (valueCache == null) {
+      return new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+    return valueCache.stats();
+  }
+
   @Override
   public boolean flush() {
     return false;
@@ -433,6 +611,16 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
       if (!isAlive()) {
         return;
       }
+      if (valueCache != null) {
+        CacheStats stats = valueCache.stats();
+        logger.info("value cache of {}: hitRate {}, evictions {}", dataBaseName,
+            stats.hitRate(), stats.evictionCount());
+        cachedDbs.remove(dataBaseName, this);
+        for (int i = 0; i < VALUE_CACHE_STRIPES; i++) {
+          valueCacheVersions.incrementAndGet(i);
+        }
+        valueCache.invalidateAll();
+      }
       database.close();
       alive = false;
     } catch (IOException e) {
@@ -447,6 +635,30 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     return new StoreIterator(database.iterator());
   }
 
+  /**
+   * pin the database as it is now, the snapshot keeps its rows readable until it is closed.
+   */
+  public Snapshot getSnapshot() {
+    resetDbLock.readLock().lock();
+    try {
+      return database.getSnapshot();
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * iterate the rows pinned by snapshot without filling the block cache, the caller closes it.
+   */
+  public DBIterator iterator(Snapshot snapshot) {
+    resetDbLock.readLock().lock();
+    try {
+      return database.iterator(new ReadOptions().snapshot(snapshot).fillCache(false));
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
   public Stream<Entry<byte[], byte[]>> stream() {
     return StreamSupport.stream(spliterator(), false);
   }
@@ -0,0 +1,33 @@
+package org.gsc.common.utils;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class DirectBufferUtil {
+
+  /**
+   * free the memory or the mapping of a direct buffer now instead of whenever the GC finds it
+   * unreachable. The buffer and every view of it must not be used afterwards.
+   */
+  public static void release(ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect()) {
+      return;
+    }
+
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      // views of another buffer have no cleaner of their own
+      if (cleaner != null) {
+        Method clean = cleaner.getClass().getMethod("clean");
+        clean.setAccessible(true);
+        clean.invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.debug("can't release direct buffer, left to the GC: {}", e.getMessage());
+    }
+  }
+}
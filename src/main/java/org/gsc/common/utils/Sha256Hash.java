@@ -148,6 +148,10 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
     return wrap(hashTwice(contents));
   }
 
+  // reset before every use, a hash that threw halfway may have left input in it
+  private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(
+      Sha256Hash::newDigest);
+
   /**
    * Returns a new SHA-256 MessageDigest instance. This is a convenience method which wraps the
    * checked exception that can never occur with a RuntimeException.
@@ -181,7 +185,8 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    * @return the hash (in big-endian order)
    */
   public static byte[] hash(byte[] input, int offset, int length) {
-    MessageDigest digest = newDigest();
+    MessageDigest digest = DIGEST.get();
+    digest.reset();
     digest.update(input, offset, length);
     return digest.digest();
   }
@@ -88,6 +88,26 @@ public class Args {
   @Parameter(names = {"--max-time-ratio"})
   private double maxTimeRatio = calcMaxTimeRatio();
 
+  @Getter
+  @Setter
+  private int storagePrefetchSlots = 256;
+
+  @Getter
+  @Setter
+  private int constantCallThreadNum = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  @Getter
+  @Setter
+  private long constantCallCpuTimeMs;
+
+  @Getter
+  @Setter
+  private int vmProfileSampleRate;
+
+  @Getter
+  @Setter
+  private int vmProfileWindowSec = 60;
+
   @Getter
   @Parameter(description = "--seed-nodes")
   private List<String> seedNodes = new ArrayList<>();
@@ -246,6 +266,26 @@ public class Args {
   @Parameter(names = {"--validate-sign-thread"}, description = "Num of validate thread")
   private int validateSignThreadNum;
 
+  @Getter
+  @Setter
+  private int executeTransactionThreadNum;
+
+  @Getter
+  @Setter
+  private long stateCheckpointInterval;
+
+  @Getter
+  @Setter
+  private long stateSyncBlockNum;
+
+  @Getter
+  @Setter
+  private String stateSyncRoot = "";
+
+  @Getter
+  @Setter
+  private boolean compactBlock;
+
   @Getter
   @Setter
   private long maintenanceTimeInterval; // (ms)
@@ -371,6 +411,15 @@ public class Args {
     INSTANCE.debug = false;
     INSTANCE.minTimeRatio = 0.6;
     INSTANCE.maxTimeRatio = 5.0;
+    INSTANCE.storagePrefetchSlots = 256;
+    INSTANCE.constantCallThreadNum = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    INSTANCE.constantCallCpuTimeMs = 0;
+    INSTANCE.vmProfileSampleRate = 0;
+    INSTANCE.vmProfileWindowSec = 60;
+    INSTANCE.stateCheckpointInterval = 0;
+    INSTANCE.stateSyncBlockNum = 0;
+    INSTANCE.stateSyncRoot = "";
+    INSTANCE.compactBlock = true;
   }
 
   /**
@@ -444,12 +493,36 @@ public class Args {
       INSTANCE.minTimeRatio = config.getDouble("vm.minTimeRatio");
     }
 
+    if (config.hasPath("vm.storagePrefetchSlots")) {
+      INSTANCE.storagePrefetchSlots = config.getInt("vm.storagePrefetchSlots");
+    }
+
+    if (config.hasPath("vm.constantCallThreadNum")) {
+      INSTANCE.constantCallThreadNum = config.getInt("vm.constantCallThreadNum");
+    }
+
+    if (config.hasPath("vm.constantCallCpuTimeMs")) {
+      INSTANCE.constantCallCpuTimeMs = config.getLong("vm.constantCallCpuTimeMs");
+    }
+
+    if (config.hasPath("vm.profileSampleRate")) {
+      INSTANCE.vmProfileSampleRate = config.getInt("vm.profileSampleRate");
+    }
+
+    if (config.hasPath("vm.profileWindowSec")) {
+      INSTANCE.vmProfileWindowSec = config.getInt("vm.profileWindowSec");
+    }
+
     INSTANCE.storage = new Storage();
     INSTANCE.storage.setDbVersion(Optional.ofNullable(INSTANCE.storageDbVersion)
         .filter(StringUtils::isNotEmpty)
         .map(Integer::valueOf)
         .orElse(Storage.getDbVersionFromConfig(config)));
 
+    INSTANCE.storage.setAsyncFlush(Storage.getAsyncFlushFromConfig(config));
+    INSTANCE.storage.setOffHeapSnapshot(Storage.getOffHeapSnapshotFromConfig(config));
+    INSTANCE.storage.setDecodedCacheSize(Storage.getDecodedCacheSizeFromConfig(config));
+
     INSTANCE.storage.setDbDirectory(Optional.ofNullable(INSTANCE.storageDbDirectory)
         .filter(StringUtils::isNotEmpty)
         .orElse(Storage.getDbDirectoryFromConfig(config)));
@@ -603,6 +676,21 @@ public class Args {
     INSTANCE.validateSignThreadNum = config.hasPath("node.validateSignThreadNum") ? config
         .getInt("node.validateSignThreadNum") : Runtime.getRuntime().availableProcessors() / 2;
 
+    INSTANCE.executeTransactionThreadNum = config.hasPath("node.executeTransactionThreadNum")
+        ? config.getInt("node.executeTransactionThreadNum") : 1;
+
+    INSTANCE.stateCheckpointInterval = config.hasPath("node.stateSync.checkpointInterval")
+        ? config.getLong("node.stateSync.checkpointInterval") : 0;
+
+    INSTANCE.stateSyncBlockNum = config.hasPath("node.stateSync.blockNum")
+        ? config.getLong("node.stateSync.blockNum") : 0;
+
+    INSTANCE.stateSyncRoot = config.hasPath("node.stateSync.root")
+        ? config.getString("node.stateSync.root") : "";
+
+    INSTANCE.compactBlock = !config.hasPath("node.compactBlock")
+        || config.getBoolean("node.compactBlock");
+
     INSTANCE.walletExtensionApi =
         config.hasPath("node.walletExtensionApi") && config.getBoolean("node.walletExtensionApi");
 
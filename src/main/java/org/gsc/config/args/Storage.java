@@ -37,6 +37,9 @@ public class Storage {
    */
   private static final String DB_DIRECTORY_CONFIG_KEY = "storage.db.directory";
   private static final String DB_VERSION_CONFIG_KEY = "storage.db.version";
+  private static final String DB_ASYNC_FLUSH_CONFIG_KEY = "storage.db.asyncFlush";
+  private static final String DB_OFF_HEAP_SNAPSHOT_CONFIG_KEY = "storage.db.offHeapSnapshot";
+  private static final String DB_DECODED_CACHE_SIZE_CONFIG_KEY = "storage.db.decodedCacheSize";
   private static final String INDEX_DIRECTORY_CONFIG_KEY = "storage.index.directory";
   private static final String PROPERTIES_CONFIG_KEY = "storage.properties";
 
@@ -50,11 +53,15 @@ public class Storage {
   private static final String WRITE_BUFFER_SIZE_CONFIG_KEY = "writeBufferSize";
   private static final String CACHE_SIZE_CONFIG_KEY = "cacheSize";
   private static final String MAX_OPEN_FILES_CONFIG_KEY = "maxOpenFiles";
+  private static final String VALUE_CACHE_SIZE_CONFIG_KEY = "valueCacheSize";
 
   /**
    * Default values of directory
    */
   private static final int DEFAULT_DB_VERSION = 1;
+  private static final boolean DEFAULT_DB_ASYNC_FLUSH = false;
+  private static final boolean DEFAULT_DB_OFF_HEAP_SNAPSHOT = false;
+  private static final int DEFAULT_DB_DECODED_CACHE_SIZE = 0;
   private static final String DEFAULT_DB_DIRECTORY = "database";
   private static final String DEFAULT_INDEX_DIRECTORY = "index";
 
@@ -83,6 +90,28 @@ public class Storage {
   @Setter
   private int dbVersion;
 
+  /**
+   * Write solidified snapshots on a background thread (db version 2 only)
+   */
+  @Getter
+  @Setter
+  private boolean asyncFlush;
+
+  /**
+   * Keep the rows of revoking snapshots in direct memory (db version 2 only). Not a db version of
+   * its own, the snapshots are never written as they are
+   */
+  @Getter
+  @Setter
+  private boolean offHeapSnapshot;
+
+  /**
+   * Number of decoded rows kept by each store caching them (account, witness), 0 disables it
+   */
+  @Getter
+  @Setter
+  private int decodedCacheSize;
+
   /**
    * Index storage directory: /path/to/{indexDirectory}
    */
@@ -99,6 +128,7 @@ public class Storage {
     private String name;
     private String path;
     private Options dbOptions;
+    private long valueCacheSize;
   }
 
   /**
@@ -111,6 +141,21 @@ public class Storage {
         config.getInt(DB_VERSION_CONFIG_KEY) : DEFAULT_DB_VERSION;
   }
 
+  public static boolean getAsyncFlushFromConfig(final Config config) {
+    return config.hasPath(DB_ASYNC_FLUSH_CONFIG_KEY) ?
+        config.getBoolean(DB_ASYNC_FLUSH_CONFIG_KEY) : DEFAULT_DB_ASYNC_FLUSH;
+  }
+
+  public static boolean getOffHeapSnapshotFromConfig(final Config config) {
+    return config.hasPath(DB_OFF_HEAP_SNAPSHOT_CONFIG_KEY) ?
+        config.getBoolean(DB_OFF_HEAP_SNAPSHOT_CONFIG_KEY) : DEFAULT_DB_OFF_HEAP_SNAPSHOT;
+  }
+
+  public static int getDecodedCacheSizeFromConfig(final Config config) {
+    return config.hasPath(DB_DECODED_CACHE_SIZE_CONFIG_KEY) ?
+        config.getInt(DB_DECODED_CACHE_SIZE_CONFIG_KEY) : DEFAULT_DB_DECODED_CACHE_SIZE;
+  }
+
   public static String getDbDirectoryFromConfig(final Config config) {
     return config.hasPath(DB_DIRECTORY_CONFIG_KEY) ?
         config.getString(DB_DIRECTORY_CONFIG_KEY) : DEFAULT_DB_DIRECTORY;
@@ -160,6 +205,19 @@ public class Storage {
     return createDefaultDbOptions();
   }
 
+  /**
+   * Get the size in bytes of the decoded value cache in front of a database
+   *
+   * @param dbName name of database
+   * @return cache size of that database, 0 if it has no cache
+   */
+  public long getValueCacheSizeByDbName(String dbName) {
+    if (hasProperty(dbName)) {
+      return getProperty(dbName).getValueCacheSize();
+    }
+    return 0;
+  }
+
   /**
    * Only for unit test on db
    */
@@ -302,6 +360,18 @@ public class Storage {
       }
     }
 
+    if (conf.containsKey(VALUE_CACHE_SIZE_CONFIG_KEY)) {
+      try {
+        property.setValueCacheSize(
+            Long.parseLong(
+                conf.get(VALUE_CACHE_SIZE_CONFIG_KEY).unwrapped().toString()
+            )
+        );
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("[storage.properties] valueCacheSize must be Long type.");
+      }
+    }
+
     property.setDbOptions(dbOptions);
     return property;
   }
@@ -62,6 +62,7 @@ import org.gsc.protos.Protocol.SmartContract.ABI;
 import org.gsc.protos.Protocol.SmartContract.ABI.Entry.StateMutabilityType;
 import org.gsc.protos.Protocol.Transaction.Contract.ContractType;
 import org.gsc.protos.Protocol.Transaction.Result.code;
+import org.gsc.runtime.ConstantCallExecutor;
 import org.gsc.runtime.Runtime;
 import org.gsc.runtime.vm.program.ProgramResult;
 import org.gsc.runtime.vm.program.invoke.ProgramInvokeFactoryImpl;
@@ -83,6 +84,8 @@ public class Wallet {
   private Manager dbManager;
   @Autowired
   private NodeManager nodeManager;
+  @Autowired
+  private ConstantCallExecutor constantCallExecutor;
   private static String addressPreFixString = Constant.ADD_PRE_FIX_STRING_MAINNET;  //default testnet
   private static byte addressPreFixByte = Constant.ADD_PRE_FIX_BYTE_MAINNET;
 
@@ -935,21 +938,7 @@ public class Wallet {
       if (!Args.getInstance().isSupportConstant()) {
         throw new ContractValidateException("this node don't support constant");
       }
-      DepositImpl deposit = DepositImpl.createRoot(dbManager);
-
-      Block headBlock;
-      List<BlockWrapper> blockWrapperList = dbManager.getBlockStore().getBlockByLatestNum(1);
-      if (CollectionUtils.isEmpty(blockWrapperList)) {
-        throw new HeaderNotFound("latest block not found");
-      } else {
-        headBlock = blockWrapperList.get(0).getInstance();
-      }
-
-      Runtime runtime = new Runtime(trxCap.getInstance(), new BlockWrapper(headBlock), deposit,
-          new ProgramInvokeFactoryImpl());
-      runtime.execute();
-      runtime.go();
-      runtime.finalization();
+      Runtime runtime = constantCallExecutor.execute(trxCap.getInstance());
       // TODO exception
       if (runtime.getResult().getException() != null) {
 //          runtime.getResult().getException().printStackTrace();
@@ -0,0 +1,119 @@
+package org.gsc.core.db2.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Small bloom filter over keys that takes a precomputed 64 bit hash, so a lookup walking many
+ * snapshots hashes the key only once. It doesn't count keys, adding a key twice sets the same
+ * bits; the owner knows how many distinct keys it holds.
+ *
+ * <p>One thread adds keys, others may look them up meanwhile: the bits are written and read as
+ * volatiles, so a key added before its row is put is seen by whoever finds the row.
+ */
+public final class BloomFilter {
+
+  private static final int DEFAULT_EXPECTED_KEYS = 64;
+  private static final int BITS_PER_KEY = 10;
+  private static final int HASHES = 4;
+
+  private final int expectedKeys;
+  private final int mask;
+  private volatile AtomicLongArray bits;
+
+  public BloomFilter() {
+    this(DEFAULT_EXPECTED_KEYS);
+  }
+
+  public BloomFilter(int expectedKeys) {
+    this.expectedKeys = Math.max(1, expectedKeys);
+    int size = Integer.highestOneBit(Math.max(64, this.expectedKeys * BITS_PER_KEY - 1)) << 1;
+    this.mask = size - 1;
+  }
+
+  public static long hash(byte[] key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key) {
+      h = (h ^ b) * 0x100000001b3L;
+    }
+    h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+    h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+    return h ^ (h >>> 31);
+  }
+
+  public void add(long hash) {
+    AtomicLongArray words = bits;
+    if (words == null) {
+      words = new AtomicLongArray((mask + 1) >>> 6);
+      bits = words;
+    }
+
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & mask;
+      long word = words.get(bit >>> 6);
+      if ((word & (1L << bit)) == 0) {
+        // only the owner adds, no other write can get in between
+        words.set(bit >>> 6, word | 1L << bit);
+      }
+    }
+  }
+
+  public boolean mightContain(long hash) {
+    AtomicLongArray words = bits;
+    if (words == null) {
+      return false;
+    }
+
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & mask;
+      if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * or the bits of a filter of the same size into this one.
+   *
+   * @return false if the sizes differ and nothing was merged
+   */
+  public boolean merge(BloomFilter other) {
+    if (other.mask != mask) {
+      return false;
+    }
+
+    AtomicLongArray others = other.bits;
+    if (others == null) {
+      return true;
+    }
+
+    AtomicLongArray words = bits;
+    if (words == null) {
+      words = new AtomicLongArray(others.length());
+      bits = words;
+    }
+    for (int i = 0; i < words.length(); i++) {
+      long word = words.get(i);
+      long merged = word | others.get(i);
+      if (merged != word) {
+        words.set(i, merged);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * holding more distinct keys than the filter was sized for, the false positive rate climbs.
+   */
+  public boolean isSaturated(long keys) {
+    return keys > expectedKeys;
+  }
+
+  public int getExpectedKeys() {
+    return expectedKeys;
+  }
+}
@@ -1,5 +1,6 @@
 package org.gsc.core.db2.common;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.gsc.core.exception.ItemNotFoundException;
@@ -15,6 +16,9 @@ public interface IRevokingDB extends Iterable<Map.Entry<byte[], byte[]>> {
 
   byte[] getUnchecked(byte[] key);
 
+  // what getUnchecked returns for each of keys, in the order of keys
+  List<byte[]> getAll(List<byte[]> keys);
+
   void close();
 
   void reset();
@@ -2,6 +2,7 @@ package org.gsc.core.db2.common;
 
 import com.google.common.collect.Maps;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.Getter;
 import org.iq80.leveldb.WriteOptions;
@@ -24,6 +25,10 @@ public class LevelDB implements DB<byte[], byte[]> {
     return db.getData(key);
   }
 
+  public List<byte[]> getAll(List<byte[]> keys) {
+    return db.getData(keys);
+  }
+
   @Override
   public void put(byte[] key, byte[] value) {
     db.putData(key, value);
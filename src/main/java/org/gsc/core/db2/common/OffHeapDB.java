@@ -0,0 +1,341 @@
+package org.gsc.core.db2.common;
+
+import com.google.common.collect.Maps;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.gsc.common.utils.DirectBufferUtil;
+
+/**
+ * Snapshot layer keeping its rows in direct memory: records are appended to a few growing
+ * off-heap chunks and found through an open-addressing index of primitive arrays, so a snapshot
+ * costs a handful of objects instead of a map entry, a key, a value and their arrays per row.
+ *
+ * <p>Record layout: {@code [int keyLength][int valueLength][byte operator][key][value]}, a value
+ * length of -1 stands for a null value. An address is {@code (chunk + 1) << 32 | offset}.
+ *
+ * <p>Lookups from other threads, like API and constant calls, may run while the block thread
+ * writes, so every access holds the lock: a rehash swaps the index and may free the chunks it
+ * compacted away. {@link #close()} frees the chunks once the snapshot is merged or dropped, a
+ * closed db reads as empty. An iterator copies the rows out when it is created, so a flush or
+ * merge that rehashes or closes the db under an API thread walking it doesn't disturb it.
+ */
+public class OffHeapDB implements DB<Key, Value>, AutoCloseable {
+
+  private static final int INITIAL_CHUNK_SIZE = 4 * 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int RECORD_HEADER_SIZE = 9;
+  private static final long EMPTY = 0;
+  private static final long DELETED = -1;
+
+  private List<ByteBuffer> chunks = new ArrayList<>();
+  private ByteBuffer current;
+  private long[] slots;
+  private int[] hashes;
+  // live rows, and live rows plus tombstones
+  private int size;
+  private int used;
+  private long liveBytes;
+  private long totalBytes;
+  private boolean closed;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  @Override
+  public Value get(Key key) {
+    lock.readLock().lock();
+    try {
+      if (size == 0 || closed) {
+        return null;
+      }
+
+      byte[] k = key.getBytes();
+      int index = indexOf(k, hash(k));
+      if (index < 0) {
+        return null;
+      }
+
+      return readValue(slots[index]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void put(Key key, Value value) {
+    lock.writeLock().lock();
+    try {
+      doPut(key, value);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void doPut(Key key, Value value) {
+    if (closed) {
+      throw new IllegalStateException("off heap snapshot is closed.");
+    }
+    if (slots == null) {
+      slots = new long[INITIAL_CAPACITY];
+      hashes = new int[INITIAL_CAPACITY];
+    }
+
+    byte[] k = key.getBytes();
+    int hash = hash(k);
+    long address = append(k, value.getOperator(), value.getBytes());
+    int index = indexOf(k, hash);
+    if (index >= 0) {
+      liveBytes -= recordSize(slots[index]);
+      slots[index] = address;
+      if (totalBytes > 4 * liveBytes + MAX_CHUNK_SIZE) {
+        rehash();
+      }
+      return;
+    }
+
+    int mask = slots.length - 1;
+    int i = hash & mask;
+    while (slots[i] != EMPTY && slots[i] != DELETED) {
+      i = (i + 1) & mask;
+    }
+    if (slots[i] == EMPTY) {
+      ++used;
+    }
+    slots[i] = address;
+    hashes[i] = hash;
+    ++size;
+
+    if (used * 2 > slots.length) {
+      rehash();
+    }
+  }
+
+  @Override
+  public void remove(Key key) {
+    lock.writeLock().lock();
+    try {
+      if (size == 0 || closed) {
+        return;
+      }
+
+      byte[] k = key.getBytes();
+      int index = indexOf(k, hash(k));
+      if (index >= 0) {
+        liveBytes -= recordSize(slots[index]);
+        slots[index] = DELETED;
+        --size;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return closed ? 0 : size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * free the chunks now instead of whenever the GC finds them.
+   */
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      chunks.forEach(DirectBufferUtil::release);
+      chunks = new ArrayList<>();
+      current = null;
+      slots = null;
+      hashes = null;
+      size = 0;
+      used = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterator<Map.Entry<Key, Value>> iterator() {
+    lock.readLock().lock();
+    try {
+      if (size == 0 || closed) {
+        return Collections.emptyIterator();
+      }
+
+      List<Map.Entry<Key, Value>> rows = new ArrayList<>(size);
+      for (long address : slots) {
+        if (address != EMPTY && address != DELETED) {
+          rows.add(Maps.immutableEntry(Key.of(readKey(address)), readValue(address)));
+        }
+      }
+      return rows.iterator();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int indexOf(byte[] key, int hash) {
+    int mask = slots.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      long address = slots[i];
+      if (address == EMPTY) {
+        return -1;
+      }
+      if (address != DELETED && hashes[i] == hash && keyEquals(address, key)) {
+        return i;
+      }
+    }
+  }
+
+  private void rehash() {
+    int capacity = slots.length;
+    if (size * 4 > capacity) {
+      capacity <<= 1;
+    }
+
+    long[] oldSlots = slots;
+    int[] oldHashes = hashes;
+    // drop the arena garbage left by overwritten and removed rows while we are at it
+    boolean compact = totalBytes > 2 * liveBytes;
+    List<ByteBuffer> oldChunks = chunks;
+    if (compact) {
+      chunks = new ArrayList<>();
+      current = null;
+      liveBytes = 0;
+      totalBytes = 0;
+    }
+
+    slots = new long[capacity];
+    hashes = new int[capacity];
+    used = size;
+    int mask = capacity - 1;
+    for (int j = 0; j < oldSlots.length; j++) {
+      long address = oldSlots[j];
+      if (address == EMPTY || address == DELETED) {
+        continue;
+      }
+      if (compact) {
+        address = copy(oldChunks, address);
+      }
+      int i = oldHashes[j] & mask;
+      while (slots[i] != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      slots[i] = address;
+      hashes[i] = oldHashes[j];
+    }
+    if (compact) {
+      oldChunks.forEach(DirectBufferUtil::release);
+    }
+  }
+
+  private long append(byte[] key, Value.Operator operator, byte[] value) {
+    int recordSize = RECORD_HEADER_SIZE + key.length + (value == null ? 0 : value.length);
+    ByteBuffer chunk = chunkFor(recordSize);
+    long address = ((long) chunks.size() << 32) | chunk.position();
+    chunk.putInt(key.length);
+    chunk.putInt(value == null ? -1 : value.length);
+    chunk.put(operator.getValue());
+    chunk.put(key);
+    if (value != null) {
+      chunk.put(value);
+    }
+    liveBytes += recordSize;
+    totalBytes += recordSize;
+    return address;
+  }
+
+  private long copy(List<ByteBuffer> from, long address) {
+    ByteBuffer source = from.get((int) (address >>> 32) - 1).duplicate();
+    int offset = (int) address;
+    int valueLength = source.getInt(offset + 4);
+    int recordSize = RECORD_HEADER_SIZE + source.getInt(offset)
+        + (valueLength < 0 ? 0 : valueLength);
+    source.limit(offset + recordSize).position(offset);
+    ByteBuffer chunk = chunkFor(recordSize);
+    long copied = ((long) chunks.size() << 32) | chunk.position();
+    chunk.put(source);
+    liveBytes += recordSize;
+    totalBytes += recordSize;
+    return copied;
+  }
+
+  private ByteBuffer chunkFor(int recordSize) {
+    if (current == null || current.remaining() < recordSize) {
+      int chunkSize = current == null ? INITIAL_CHUNK_SIZE
+          : Math.min(MAX_CHUNK_SIZE, current.capacity() * 2);
+      current = ByteBuffer.allocateDirect(Math.max(chunkSize, recordSize));
+      chunks.add(current);
+    }
+    return current;
+  }
+
+  private ByteBuffer chunkOf(long address) {
+    return chunks.get((int) (address >>> 32) - 1);
+  }
+
+  private boolean keyEquals(long address, byte[] key) {
+    ByteBuffer chunk = chunkOf(address);
+    int offset = (int) address;
+    if (chunk.getInt(offset) != key.length) {
+      return false;
+    }
+    offset += RECORD_HEADER_SIZE;
+    for (int i = 0; i < key.length; i++) {
+      if (chunk.get(offset + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int recordSize(long address) {
+    ByteBuffer chunk = chunkOf(address);
+    int offset = (int) address;
+    int valueLength = chunk.getInt(offset + 4);
+    return RECORD_HEADER_SIZE + chunk.getInt(offset) + (valueLength < 0 ? 0 : valueLength);
+  }
+
+  private byte[] readKey(long address) {
+    ByteBuffer chunk = chunkOf(address).duplicate();
+    int offset = (int) address;
+    byte[] key = new byte[chunk.getInt(offset)];
+    chunk.position(offset + RECORD_HEADER_SIZE);
+    chunk.get(key);
+    return key;
+  }
+
+  private Value readValue(long address) {
+    ByteBuffer chunk = chunkOf(address).duplicate();
+    int offset = (int) address;
+    int keyLength = chunk.getInt(offset);
+    int valueLength = chunk.getInt(offset + 4);
+    Value.Operator operator = Value.Operator.valueOf(chunk.get(offset + 8));
+    if (valueLength < 0) {
+      return Value.of(operator, null);
+    }
+    byte[] value = new byte[valueLength];
+    chunk.position(offset + RECORD_HEADER_SIZE + keyLength);
+    chunk.get(value);
+    return Value.of(operator, value);
+  }
+
+  private static int hash(byte[] key) {
+    int h = Arrays.hashCode(key);
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,227 @@
+package org.gsc.core.db2.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.utils.DirectBufferUtil;
+import org.gsc.db.common.WrappedByteArray;
+
+/**
+ * Memory-mapped, append-only log of flushed batches, used as the crash checkpoint of the
+ * snapshot manager.
+ *
+ * <p>Layout: a 16 byte header (magic, epoch) followed by frames. Each frame is
+ * {@code [int length][int crc32][long epoch][payload]}, the payload being
+ * {@code [int dbs]{[int nameLength][name][int rows]{[int keyLength][key][int valueLength][value]}}}
+ * where a value length of -1 marks a delete. {@link #truncate()} bumps the epoch instead of
+ * clearing the file, so frames of an older epoch left behind are never replayed.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+  private static final int MAGIC = 0x67736377;
+  private static final int HEADER_SIZE = 16;
+  private static final int FRAME_HEADER_SIZE = 16;
+  private static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+  private long epoch;
+  private int position;
+
+  public WriteAheadLog(Path path) {
+    this(path, DEFAULT_CAPACITY);
+  }
+
+  public WriteAheadLog(Path path, int capacity) {
+    try {
+      Files.createDirectories(path.getParent());
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      map((int) Math.max(capacity, channel.size()));
+    } catch (IOException e) {
+      throw new RuntimeException("Can't open write ahead log " + path, e);
+    }
+
+    if (buffer.getInt(0) == MAGIC) {
+      epoch = buffer.getLong(4);
+      position = scan(null);
+    } else {
+      epoch = 0;
+      writeHeader();
+      position = HEADER_SIZE;
+    }
+  }
+
+  /**
+   * append one frame and force it to disk.
+   *
+   * @param batches dbName -> (key -> value), a value wrapping null is a delete
+   */
+  public synchronized void append(Map<String, Map<WrappedByteArray, WrappedByteArray>> batches) {
+    int size = 4;
+    for (Map.Entry<String, Map<WrappedByteArray, WrappedByteArray>> e : batches.entrySet()) {
+      size += 8 + e.getKey().getBytes(StandardCharsets.UTF_8).length;
+      for (Map.Entry<WrappedByteArray, WrappedByteArray> row : e.getValue().entrySet()) {
+        byte[] value = row.getValue().getBytes();
+        size += 8 + row.getKey().getBytes().length + (value == null ? 0 : value.length);
+      }
+    }
+
+    ensureCapacity((long) position + FRAME_HEADER_SIZE + size);
+
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(position + FRAME_HEADER_SIZE);
+    payload.putInt(batches.size());
+    batches.forEach((dbName, rows) -> {
+      byte[] name = dbName.getBytes(StandardCharsets.UTF_8);
+      payload.putInt(name.length).put(name).putInt(rows.size());
+      rows.forEach((k, v) -> {
+        payload.putInt(k.getBytes().length).put(k.getBytes());
+        if (v.getBytes() == null) {
+          payload.putInt(-1);
+        } else {
+          payload.putInt(v.getBytes().length).put(v.getBytes());
+        }
+      });
+    });
+
+    buffer.putInt(position, size);
+    buffer.putInt(position + 4, checksum(position + FRAME_HEADER_SIZE, size));
+    buffer.putLong(position + 8, epoch);
+    buffer.force();
+    position += FRAME_HEADER_SIZE + size;
+  }
+
+  /**
+   * all frames of the current epoch, merged in write order.
+   */
+  public synchronized Map<String, Map<WrappedByteArray, WrappedByteArray>> recover() {
+    Map<String, Map<WrappedByteArray, WrappedByteArray>> result = new LinkedHashMap<>();
+    scan(result);
+    return result;
+  }
+
+  /**
+   * forget every frame written so far.
+   */
+  public synchronized void truncate() {
+    ++epoch;
+    writeHeader();
+    position = HEADER_SIZE;
+  }
+
+  public synchronized int size() {
+    return position - HEADER_SIZE;
+  }
+
+  @Override
+  public synchronized void close() {
+    DirectBufferUtil.release(buffer);
+    buffer = null;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.error("close write ahead log error.", e);
+    }
+  }
+
+  private int scan(Map<String, Map<WrappedByteArray, WrappedByteArray>> result) {
+    int offset = HEADER_SIZE;
+    while (offset + FRAME_HEADER_SIZE <= buffer.capacity()) {
+      int size = buffer.getInt(offset);
+      if (size <= 0 || offset + FRAME_HEADER_SIZE + size > buffer.capacity()
+          || buffer.getLong(offset + 8) != epoch) {
+        break;
+      }
+
+      if (buffer.getInt(offset + 4) != checksum(offset + FRAME_HEADER_SIZE, size)) {
+        logger.warn("write ahead log frame at {} is torn, ignore the rest.", offset);
+        break;
+      }
+
+      if (result != null) {
+        decode(offset + FRAME_HEADER_SIZE, result);
+      }
+      offset += FRAME_HEADER_SIZE + size;
+    }
+    return offset;
+  }
+
+  private void decode(int offset, Map<String, Map<WrappedByteArray, WrappedByteArray>> result) {
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(offset);
+    int dbs = payload.getInt();
+    for (int i = 0; i < dbs; i++) {
+      byte[] name = new byte[payload.getInt()];
+      payload.get(name);
+      Map<WrappedByteArray, WrappedByteArray> rows = result
+          .computeIfAbsent(new String(name, StandardCharsets.UTF_8), k -> new HashMap<>());
+      int count = payload.getInt();
+      for (int j = 0; j < count; j++) {
+        byte[] key = new byte[payload.getInt()];
+        payload.get(key);
+        int length = payload.getInt();
+        byte[] value = null;
+        if (length >= 0) {
+          value = new byte[length];
+          payload.get(value);
+        }
+        rows.put(WrappedByteArray.of(key), WrappedByteArray.of(value));
+      }
+    }
+  }
+
+  private int checksum(int offset, int size) {
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(offset);
+    payload.limit(offset + size);
+    CRC32 crc32 = new CRC32();
+    crc32.update(payload);
+    return (int) crc32.getValue();
+  }
+
+  private void writeHeader() {
+    buffer.putInt(0, MAGIC);
+    buffer.putLong(4, epoch);
+    buffer.force();
+  }
+
+  private void ensureCapacity(long required) {
+    if (required <= buffer.capacity()) {
+      return;
+    }
+
+    long capacity = buffer.capacity();
+    while (capacity < required) {
+      capacity <<= 1;
+    }
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalStateException("write ahead log frame is too large: " + required);
+    }
+
+    try {
+      map((int) capacity);
+    } catch (IOException e) {
+      throw new RuntimeException("Can't grow write ahead log", e);
+    }
+  }
+
+  // the old mapping is unmapped right away, the file can grow many times over a long run
+  private void map(int capacity) throws IOException {
+    MappedByteBuffer old = buffer;
+    buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+    DirectBufferUtil.release(old);
+  }
+}
@@ -0,0 +1,178 @@
+package org.gsc.core.db2.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.core.exception.RevokingStoreIllegalStateException;
+import org.gsc.db.common.WrappedByteArray;
+
+/**
+ * Writes the flushed snapshots of all stores on a dedicated thread. Every queued flush that is
+ * waiting when the writer wakes up is folded into one group commit, so a burst of solidified
+ * blocks costs one synced write per store instead of one per block and store.
+ */
+@Slf4j
+public class FlushPipeline {
+
+  private static final int DEFAULT_MAX_PENDING = 16;
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final BlockingQueue<Task> queue;
+  private final Consumer<Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>>> committer;
+  private final Thread writer;
+  private volatile boolean running = true;
+  private volatile Throwable failure;
+
+  public FlushPipeline(
+      Consumer<Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>>> committer) {
+    this(committer, DEFAULT_MAX_PENDING);
+  }
+
+  public FlushPipeline(
+      Consumer<Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>>> committer,
+      int maxPending) {
+    this.committer = committer;
+    this.queue = new ArrayBlockingQueue<>(maxPending);
+    this.writer = new Thread(this::loop, "db-flush");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * queue the batches of one flush, blocks when too many flushes are in flight.
+   */
+  public CompletableFuture<Void> submit(
+      Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches) {
+    return enqueue(new Task(batches, null));
+  }
+
+  /**
+   * run action on the writer once every flush queued so far is written and before any flush
+   * queued later is, none of those is folded into the same write. The future fails with what the
+   * action or the write throws.
+   */
+  public CompletableFuture<Void> barrier(Runnable action) {
+    return enqueue(new Task(new HashMap<>(), action));
+  }
+
+  private CompletableFuture<Void> enqueue(Task task) {
+    if (failure != null) {
+      throw new RevokingStoreIllegalStateException("flush pipeline is broken.", failure);
+    }
+
+    if (!running) {
+      throw new RevokingStoreIllegalStateException("flush pipeline is closed.");
+    }
+
+    try {
+      queue.put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RevokingStoreIllegalStateException(e);
+    }
+    return task.future;
+  }
+
+  public int pending() {
+    return queue.size();
+  }
+
+  /**
+   * a commit failed, nothing queued is written any more.
+   */
+  public boolean isBroken() {
+    return failure != null;
+  }
+
+  /**
+   * stop accepting flushes and wait until everything queued is written.
+   */
+  public void close() {
+    running = false;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.warn("interrupted while waiting for flush pipeline to drain.");
+    }
+  }
+
+  private void loop() {
+    while (running || !queue.isEmpty()) {
+      Task first;
+      try {
+        first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      if (first == null) {
+        continue;
+      }
+
+      // a barrier ends the group, what is queued behind it is written after its action ran
+      List<Task> group = new ArrayList<>();
+      group.add(first);
+      Task next;
+      while (group.get(group.size() - 1).barrier == null && (next = queue.poll()) != null) {
+        group.add(next);
+      }
+
+      // later flushes override earlier ones on the same key
+      Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> merged = new LinkedHashMap<>();
+      group.forEach(task -> task.batches.forEach(
+          (root, rows) -> merged.computeIfAbsent(root, k -> new HashMap<>()).putAll(rows)));
+
+      try {
+        if (!merged.isEmpty()) {
+          committer.accept(merged);
+        }
+      } catch (Throwable t) {
+        logger.error("flush pipeline commit failed, stop writing.", t);
+        failure = t;
+        group.forEach(task -> task.future.completeExceptionally(t));
+        break;
+      }
+
+      group.forEach(Task::finish);
+    }
+
+    // everything left behind a failed commit must not be written out of order
+    List<Task> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    rest.forEach(task -> task.future.completeExceptionally(
+        new RevokingStoreIllegalStateException("flush pipeline is broken.", failure)));
+  }
+
+  private static class Task {
+
+    private final Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches;
+    private final Runnable barrier;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private Task(Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches,
+        Runnable barrier) {
+      this.batches = batches;
+      this.barrier = barrier;
+    }
+
+    private void finish() {
+      try {
+        if (barrier != null) {
+          barrier.run();
+        }
+        future.complete(null);
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    }
+  }
+}
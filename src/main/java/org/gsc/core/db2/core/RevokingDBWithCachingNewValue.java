@@ -1,6 +1,5 @@
 package org.gsc.core.db2.core;
 
-import com.google.common.collect.Maps;
 import com.google.common.collect.Streams;
 import lombok.Getter;
 import lombok.Setter;
@@ -8,7 +7,6 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.gsc.common.utils.ByteUtil;
 import org.gsc.config.args.Args;
 import org.gsc.core.db2.common.IRevokingDB;
-import org.gsc.core.db2.common.LevelDB;
 import org.gsc.core.db2.common.Value;
 import org.gsc.core.exception.ItemNotFoundException;
 import org.gsc.db.common.WrappedByteArray;
@@ -71,6 +69,39 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
     }
   }
 
+  /**
+   * looks every key up in the snapshots first, and reads the ones none of them wrote from the
+   * root in one batch.
+   */
+  @Override
+  public List<byte[]> getAll(List<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+    List<Integer> unwritten = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      Value value = head instanceof SnapshotImpl
+          ? ((SnapshotImpl) head).getAboveRoot(keys.get(i)) : null;
+      if (value == null) {
+        unwritten.add(i);
+      } else {
+        values.set(i, emptyToNull(value.getBytes()));
+      }
+    }
+    if (unwritten.isEmpty()) {
+      return values;
+    }
+
+    List<byte[]> stored = ((SnapshotRoot) head.getRoot()).getAll(
+        unwritten.stream().map(keys::get).collect(Collectors.toList()));
+    for (int i = 0; i < unwritten.size(); i++) {
+      values.set(unwritten.get(i), emptyToNull(stored.get(i)));
+    }
+    return values;
+  }
+
+  private static byte[] emptyToNull(byte[] value) {
+    return ArrayUtils.isEmpty(value) ? null : value;
+  }
+
   @Override
   public boolean has(byte[] key) {
     return head.get(key) != null;
@@ -99,7 +130,7 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
     }
 
     if (snapshot.getPrevious() == null && tmp != 0) {
-      result.addAll(((LevelDB) ((SnapshotRoot) snapshot).db).getDb().getlatestValues(tmp));
+      result.addAll(((SnapshotRoot) snapshot).getlatestValues(tmp));
     }
 
     return result;
@@ -117,10 +148,8 @@ public class RevokingDBWithCachingNewValue implements IRevokingDB {
       ((SnapshotImpl) head).collect(collection);
     }
 
-    Map<WrappedByteArray, WrappedByteArray> levelDBMap = new HashMap<>();
-    ((LevelDB) ((SnapshotRoot) head.getRoot()).db).getDb().getNext(key, limit).entrySet().stream()
-        .map(e -> Maps.immutableEntry(WrappedByteArray.of(e.getKey()), WrappedByteArray.of(e.getValue())))
-        .forEach(e -> levelDBMap.put(e.getKey(), e.getValue()));
+    Map<WrappedByteArray, WrappedByteArray> levelDBMap =
+        ((SnapshotRoot) head.getRoot()).getNext(key, limit);
 
     levelDBMap.putAll(collection);
 
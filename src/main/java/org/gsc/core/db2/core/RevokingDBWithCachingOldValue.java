@@ -1,9 +1,11 @@
 package org.gsc.core.db2.core;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import org.apache.commons.lang3.ArrayUtils;
 import org.gsc.common.storage.leveldb.LevelDbDataSourceImpl;
@@ -76,6 +78,13 @@ public class RevokingDBWithCachingOldValue implements IRevokingDB {
     }
   }
 
+  @Override
+  public List<byte[]> getAll(List<byte[]> keys) {
+    return dbSource.getData(keys).stream()
+        .map(value -> ArrayUtils.isEmpty(value) ? null : value)
+        .collect(Collectors.toList());
+  }
+
   @Override
   public void close() {
     dbSource.closeDB();
@@ -7,26 +7,73 @@ import com.google.common.collect.Streams;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.gsc.config.args.Args;
 import org.gsc.db.common.WrappedByteArray;
+import org.gsc.core.db2.common.BloomFilter;
 import org.gsc.core.db2.common.HashDB;
 import org.gsc.core.db2.common.Key;
+import org.gsc.core.db2.common.OffHeapDB;
 import org.gsc.core.db2.common.Value;
 
 public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
 
+  private static final int MAX_FILTER_KEYS = 1 << 24;
+
+  // lookups answered by a snapshot, skipped by its filter, and let through by mistake, served
+  // by the /getstoragestats endpoint
+  private static final LongAdder filterHits = new LongAdder();
+  private static final LongAdder filterSkips = new LongAdder();
+  private static final LongAdder filterFalsePositives = new LongAdder();
+
+  // replaced by the block thread while others read through it, a key goes into the filter
+  // before its row goes into db
+  private volatile BloomFilter filter = new BloomFilter();
+  // distinct keys in db, what the filter is sized by
+  private int keys;
+  private int maxFilterKeys = MAX_FILTER_KEYS;
+
   SnapshotImpl(Snapshot snapshot) {
     previous = snapshot;
-    db = new HashDB();
+    if (Args.getInstance().getStorage().isOffHeapSnapshot()) {
+      db = new OffHeapDB();
+    } else {
+      db = new HashDB();
+    }
   }
 
   @Override
   public byte[] get(byte[] key) {
-    Value value = db.get(Key.of(key));
-    if (value != null) {
-      return value.getBytes();
-    } else {
-      return previous.get(key);
+    Value value = getAboveRoot(key);
+    return value == null ? getRoot().get(key) : value.getBytes();
+  }
+
+  /**
+   * @return what this snapshot or the ones below it wrote under key, null when none of them wrote
+   *     it and it has to be read from the root.
+   */
+  Value getAboveRoot(byte[] key) {
+    long hash = BloomFilter.hash(key);
+    Key k = null;
+    Snapshot snapshot = this;
+    while (snapshot.getClass() == SnapshotImpl.class) {
+      SnapshotImpl impl = (SnapshotImpl) snapshot;
+      if (!impl.filter.mightContain(hash)) {
+        filterSkips.increment();
+      } else {
+        if (k == null) {
+          k = Key.of(key);
+        }
+        Value value = impl.db.get(k);
+        if (value != null) {
+          filterHits.increment();
+          return value;
+        }
+        filterFalsePositives.increment();
+      }
+      snapshot = impl.previous;
     }
+    return null;
   }
 
   @Override
@@ -41,7 +88,7 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
       operator = Value.Operator.MODIFY;
     }
 
-    db.put(Key.of(key), Value.of(operator, value));
+    write(key, Value.of(operator, value));
   }
 
   @Override
@@ -49,7 +96,20 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
     Preconditions.checkNotNull(key, "key in db is not null.");
 
     if (get(key) != null) {
-      db.put(Key.of(key), Value.of(Value.Operator.DELETE, null));
+      write(key, Value.of(Value.Operator.DELETE, null));
+    }
+  }
+
+  private void write(byte[] key, Value value) {
+    long hash = BloomFilter.hash(key);
+    Key k = Key.of(key);
+    if (!filter.mightContain(hash) || db.get(k) == null) {
+      ++keys;
+    }
+    filter.add(hash);
+    db.put(k, value);
+    if (filter.isSaturated(keys)) {
+      rebuildFilter();
     }
   }
 
@@ -71,6 +131,12 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
   public void merge(Snapshot from) {
     SnapshotImpl fromImpl = (SnapshotImpl) from;
 
+    // the keys of from are in the filter before any of them is in db, whether or not it can be
+    // rebuilt bigger afterwards
+    if (!filter.merge(fromImpl.filter)) {
+      Streams.stream(fromImpl.db).forEach(e -> filter.add(BloomFilter.hash(e.getKey().getBytes())));
+    }
+
     Streams.stream(fromImpl.db)
         .filter(e -> e.getValue().getOperator() == Value.Operator.CREATE)
         .forEach(e -> {
@@ -79,6 +145,7 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
           Value value = db.get(k);
           if (value == null) {
             db.put(k, v);
+            ++keys;
           } else if (value.getOperator() == Value.Operator.DELETE) {
             db.put(k, Value.of(Value.Operator.MODIFY, v.getBytes()));
           }
@@ -90,6 +157,9 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
           Key k = e.getKey();
           Value v = e.getValue();
           Value value = db.get(k);
+          if (value == null) {
+            ++keys;
+          }
           if (value == null || value.getOperator() == Value.Operator.MODIFY) {
             db.put(k, v);
           } else if (value.getOperator() == Value.Operator.CREATE) {
@@ -102,12 +172,59 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
         .map(Map.Entry::getKey)
         .forEach(k -> {
           Value value = db.get(k);
+          if (value == null) {
+            ++keys;
+          }
           if (value == null || value.getOperator() == Value.Operator.MODIFY) {
             db.put(k, Value.of(Value.Operator.DELETE, null));
           } else if (value.getOperator() == Value.Operator.CREATE) {
             db.remove(k);
+            --keys;
           }
         });
+
+    // a key removed again may stay in the filter, it only costs a false positive
+    if (filter.isSaturated(keys)) {
+      rebuildFilter();
+    }
+  }
+
+  // size the filter for at least four times the keys it was built for, and refill it from the db.
+  // At the largest size it stays as it is and only gets more false positives
+  private void rebuildFilter() {
+    if (filter.getExpectedKeys() >= maxFilterKeys) {
+      return;
+    }
+
+    BloomFilter rebuilt = new BloomFilter(
+        Math.min(maxFilterKeys, Math.max(filter.getExpectedKeys(), keys) * 4));
+    Streams.stream(db).forEach(e -> rebuilt.add(BloomFilter.hash(e.getKey().getBytes())));
+    filter = rebuilt;
+  }
+
+  int getKeyCount() {
+    return keys;
+  }
+
+  int getFilterExpectedKeys() {
+    return filter.getExpectedKeys();
+  }
+
+  // for tests, to reach the largest filter with a few keys
+  void setMaxFilterKeys(int maxFilterKeys) {
+    this.maxFilterKeys = maxFilterKeys;
+  }
+
+  public static long getFilterHits() {
+    return filterHits.sum();
+  }
+
+  public static long getFilterSkips() {
+    return filterSkips.sum();
+  }
+
+  public static long getFilterFalsePositives() {
+    return filterFalsePositives.sum();
   }
 
   @Override
@@ -138,6 +255,15 @@ public class SnapshotImpl extends AbstractSnapshot<Key, Value> {
     Streams.stream(db).forEach(e -> all.put(WrappedByteArray.of(e.getKey().getBytes()), WrappedByteArray.of(e.getValue().getBytes())));
   }
 
+  /**
+   * free what the db keeps outside the heap, once this snapshot is merged or dropped.
+   */
+  void release() {
+    if (db instanceof OffHeapDB) {
+      ((OffHeapDB) db).close();
+    }
+  }
+
   @Override
   public void close() {
     previous.close();
@@ -1,32 +1,42 @@
 package org.gsc.core.db2.core;
 
 import com.google.common.collect.Maps;
-import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.iq80.leveldb.WriteOptions;
 import org.gsc.common.storage.leveldb.LevelDbDataSourceImpl;
 import org.gsc.common.utils.FileUtil;
+import org.gsc.common.utils.Sha256Hash;
 import org.gsc.config.args.Args;
 import org.gsc.db.RevokingDatabase;
 import org.gsc.db.common.WrappedByteArray;
-import org.gsc.core.db2.common.DB;
 import org.gsc.core.db2.common.IRevokingDB;
-import org.gsc.core.db2.common.Key;
-import org.gsc.core.db2.common.Value;
+import org.gsc.core.db2.common.LevelDB;
+import org.gsc.core.db2.common.WriteAheadLog;
 import org.gsc.core.exception.RevokingStoreIllegalStateException;
 
 @Slf4j
 public class SnapshotManager implements RevokingDatabase {
   private static final int DEFAULT_STACK_MAX_SIZE = 256;
+  private static final String CHECK_POINT_LOG_NAME = "checkpoint.wal";
+  private static final int CHECK_POINT_LOG_TRUNCATE_SIZE = 16 * 1024 * 1024;
+  private static final String RESTORE_MARK_NAME = "state-restore.pending";
 
   private List<RevokingDBWithCachingNewValue> dbs = new ArrayList<>();
   @Getter
@@ -36,7 +46,13 @@ public class SnapshotManager implements RevokingDatabase {
   private boolean disabled = true;
   private int activeSession = 0;
   private boolean unChecked = true;
-  private WriteOptions writeOptions = new WriteOptions().sync(true);
+  private WriteAheadLog checkPointLog;
+  private FlushPipeline flushPipeline;
+  private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+  // flushes handed to the pipeline and not yet written, oldest first
+  private Deque<Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>>> pendingFlushes =
+      new ConcurrentLinkedDeque<>();
+  private List<Runnable> flushListeners = new CopyOnWriteArrayList<>();
 
   public ISession buildSession() {
     return buildSession(false);
@@ -72,10 +88,20 @@ public class SnapshotManager implements RevokingDatabase {
   }
 
   private void retreat() {
-    dbs.forEach(db -> db.setHead(db.getHead().retreat()));
+    dbs.forEach(db -> {
+      Snapshot head = db.getHead();
+      db.setHead(head.retreat());
+      release(head);
+    });
     --size;
   }
 
+  private static void release(Snapshot snapshot) {
+    if (snapshot.getClass() == SnapshotImpl.class) {
+      ((SnapshotImpl) snapshot).release();
+    }
+  }
+
   public void merge() {
     if (activeSession <= 0) {
       throw new RevokingStoreIllegalStateException("activeDialog has to be greater than 0");
@@ -157,15 +183,85 @@ public class SnapshotManager implements RevokingDatabase {
   public void shutdown() {
     System.err.println("******** begin to pop revokingDb ********");
     System.err.println("******** before revokingDb size:" + size);
+    if (flushPipeline != null) {
+      flushPipeline.close();
+      if (flushPipeline.isBroken()) {
+        try {
+          writePendingFlushes();
+        } catch (RevokingStoreIllegalStateException e) {
+          logger.error(e.getMessage(), e);
+        }
+      }
+    }
+    if (checkPointLog != null) {
+      checkPointLog.close();
+    }
     System.err.println("******** end to pop revokingDb ********");
   }
 
-  public void flush() {
+  /**
+   * write the oldest snapshot of every store into levelDB. With async flush enabled the write
+   * happens on the flush pipeline and the returned future completes once it is durable; until
+   * then the data stays readable through the roots. Should the pipeline fail, the next flush
+   * writes what it left behind on the calling thread before going on, and throws if that fails
+   * too.
+   */
+  public CompletableFuture<Void> flush() {
     if (unChecked) {
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
-    createCheckPoint();
+    Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches = new LinkedHashMap<>();
+    List<Snapshot> flushed = new ArrayList<>();
+    dbs.forEach(db -> {
+      Snapshot head = db.getHead();
+      if (head.getPrevious() == null) {
+        return;
+      }
+
+      Snapshot oldest = head;
+      while (oldest.getPrevious().getClass() == SnapshotImpl.class) {
+        oldest = oldest.getPrevious();
+      }
+
+      batches.put((SnapshotRoot) oldest.getPrevious(), SnapshotRoot.toBatch(oldest));
+      flushed.add(oldest);
+    });
+
+    CompletableFuture<Void> future;
+    if (flushPipeline == null) {
+      commit(batches);
+      future = CompletableFuture.completedFuture(null);
+    } else {
+      batches.forEach(SnapshotRoot::stage);
+      pendingFlushes.addLast(batches);
+      try {
+        future = flushPipeline.submit(batches).thenRun(() -> {
+          pendingFlushes.removeFirstOccurrence(batches);
+          batches.forEach(SnapshotRoot::unstage);
+        });
+        // the batches stay staged and pending, the next flush writes them
+        future.whenComplete((v, t) -> {
+          if (t != null) {
+            logger.error("flush of the oldest snapshots failed, the next flush retries it.", t);
+          }
+        });
+      } catch (RevokingStoreIllegalStateException e) {
+        try {
+          if (!flushPipeline.isBroken()) {
+            throw e;
+          }
+          recoverFlushes();
+        } catch (RevokingStoreIllegalStateException failed) {
+          // the oldest snapshots stay where they are, the next flush takes them again
+          if (pendingFlushes.removeLastOccurrence(batches)) {
+            batches.forEach(SnapshotRoot::unstage);
+          }
+          throw failed;
+        }
+        future = CompletableFuture.completedFuture(null);
+      }
+    }
 
     dbs.forEach(db -> {
       Snapshot head = db.getHead();
@@ -174,7 +270,6 @@ public class SnapshotManager implements RevokingDatabase {
       }
 
       if (head.getPrevious().getClass() == SnapshotRoot.class) {
-        head.getPrevious().merge(head);
         db.setHead(head.getPrevious());
         return;
       }
@@ -183,98 +278,220 @@ public class SnapshotManager implements RevokingDatabase {
         head = head.getPrevious();
       }
 
-      head.getPrevious().getPrevious().merge(head.getPrevious());
       head.setPrevious(head.getPrevious().getPrevious());
     });
+    // the batches hold copies of the rows
+    flushed.forEach(SnapshotManager::release);
 
     --size;
-    deleteCheckPoint();
+    lastFlush = future;
+    flushListeners.forEach(Runnable::run);
+    return future;
   }
 
-  private void createCheckPoint() {
-    LevelDbDataSourceImpl levelDbDataSource =
-        new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectoryByDbName("tmp"), "tmp");
-    levelDbDataSource.initDB();
-    Map<WrappedByteArray, WrappedByteArray> batch = new HashMap<>();
-    for (RevokingDBWithCachingNewValue db : dbs) {
-      Snapshot head = db.getHead();
-      while (head.getPrevious().getPrevious() != null) {
-        head = head.getPrevious();
-      }
+  /**
+   * run listener after every flush, while no other session can start.
+   */
+  public void addFlushListener(Runnable listener) {
+    flushListeners.add(listener);
+  }
+
+  /**
+   * pin the rows every store has in levelDB once the flushes so far are written, they are the
+   * state after the given block. Doesn't wait for the writes, the rows are pinned on the writer
+   * before it writes any later flush.
+   */
+  public synchronized CompletableFuture<StateCheckpoint> checkpoint(long blockNum,
+      Sha256Hash blockHash) {
+    Map<String, LevelDbDataSourceImpl> roots = new LinkedHashMap<>();
+    dbs.forEach(db -> {
+      SnapshotRoot root = (SnapshotRoot) db.getHead().getRoot();
+      roots.put(root.getDbName(), ((LevelDB) root.getDb()).getDb());
+    });
+    if (flushPipeline == null) {
+      return CompletableFuture.completedFuture(new StateCheckpoint(blockNum, blockHash, roots));
+    }
+
+    CompletableFuture<StateCheckpoint> checkpoint = new CompletableFuture<>();
+    try {
+      flushPipeline.barrier(
+          () -> checkpoint.complete(new StateCheckpoint(blockNum, blockHash, roots)))
+          .whenComplete((v, t) -> {
+            if (t != null) {
+              checkpoint.completeExceptionally(t);
+            }
+          });
+    } catch (RevokingStoreIllegalStateException e) {
+      checkpoint.completeExceptionally(e);
+    }
+    return checkpoint;
+  }
+
+  /**
+   * drop the rows of every store to restore them from a state checkpoint, only possible while no
+   * snapshot sits on top of the stores. Until finishRestore a mark in the database directory
+   * stops a restarted node from running on half restored stores.
+   */
+  public synchronized void beginRestore() {
+    if (size != 0 || activeSession != 0) {
+      throw new RevokingStoreIllegalStateException("state can't be restored over snapshots.");
+    }
 
-      SnapshotImpl snapshot = (SnapshotImpl) head;
-      DB<Key, Value> keyValueDB = snapshot.getDb();
-      String dbName = db.getDbName();
-      for (Map.Entry<Key, Value> e : keyValueDB) {
-        Key k = e.getKey();
-        Value v = e.getValue();
-        batch.put(WrappedByteArray.of(Bytes.concat(simpleEncode(dbName), k.getBytes())), WrappedByteArray.of(v.encode()));
+    if (flushPipeline != null && flushPipeline.isBroken()) {
+      recoverFlushes();
+    } else {
+      lastFlush.join();
+    }
+    try {
+      Files.createDirectories(getRestoreMark().getParent());
+      if (!Files.exists(getRestoreMark())) {
+        Files.createFile(getRestoreMark());
       }
+    } catch (IOException e) {
+      throw new RevokingStoreIllegalStateException(e);
     }
+    dbs.forEach(db -> db.getHead().getRoot().reset());
+  }
 
-    levelDbDataSource.updateByBatch(batch.entrySet().stream()
-        .map(e -> Maps.immutableEntry(e.getKey().getBytes(), e.getValue().getBytes()))
-        .collect(HashMap::new, (m, k) -> m.put(k.getKey(), k.getValue()), HashMap::putAll), writeOptions);
-    levelDbDataSource.closeDB();
+  /**
+   * write restored rows of a store straight into levelDB.
+   */
+  public synchronized void restore(String dbName,
+      Map<WrappedByteArray, WrappedByteArray> rows) {
+    SnapshotRoot root = dbs.stream()
+        .map(db -> (SnapshotRoot) db.getHead().getRoot())
+        .filter(r -> r.getDbName().equals(dbName))
+        .findFirst()
+        .orElseThrow(() -> new RevokingStoreIllegalStateException("no store " + dbName));
+    root.flush(rows);
   }
 
-  private void deleteCheckPoint() {
-    LevelDbDataSourceImpl levelDbDataSource =
-        new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectoryByDbName("tmp"), "tmp");
+  public synchronized void finishRestore() {
+    try {
+      Files.deleteIfExists(getRestoreMark());
+    } catch (IOException e) {
+      throw new RevokingStoreIllegalStateException(e);
+    }
+  }
 
-    FileUtil.recursiveDelete(levelDbDataSource.getDbPath().toString());
+  private Path getRestoreMark() {
+    return Paths.get(Args.getInstance().getOutputDirectory(),
+        Args.getInstance().getStorage().getDbDirectory(), RESTORE_MARK_NAME);
+  }
+
+  /**
+   * the writer of the pipeline stopped at a failed commit, write every flush it left behind in
+   * order here and start a new one.
+   */
+  private void recoverFlushes() {
+    logger.warn("flush pipeline is broken, writing {} pending flushes synchronously.",
+        pendingFlushes.size());
+    flushPipeline.close();
+    writePendingFlushes();
+    flushPipeline = new FlushPipeline(this::commit);
+  }
+
+  private void writePendingFlushes() {
+    Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches;
+    while ((batches = pendingFlushes.peekFirst()) != null) {
+      try {
+        commit(batches);
+      } catch (RuntimeException e) {
+        throw new RevokingStoreIllegalStateException(
+            "flush of the oldest snapshots failed again, the stores can't be written.", e);
+      }
+      pendingFlushes.removeFirst();
+      batches.forEach(SnapshotRoot::unstage);
+    }
+  }
+
+  // package-private for tests to fail writes
+  void commit(Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches) {
+    Map<String, Map<WrappedByteArray, WrappedByteArray>> checkPoint = new LinkedHashMap<>();
+    batches.forEach((root, batch) -> checkPoint.put(root.getDbName(), batch));
+    checkPointLog.append(checkPoint);
+
+    batches.forEach(SnapshotRoot::flush);
+
+    // every frame is applied now, replaying them again is harmless until the log grows too big
+    if (checkPointLog.size() > CHECK_POINT_LOG_TRUNCATE_SIZE) {
+      checkPointLog.truncate();
+    }
   }
 
   // ensure run this method first after process start.
   @Override
   public void check() {
+    if (Files.exists(getRestoreMark())) {
+      throw new RevokingStoreIllegalStateException(
+          "state restore was interrupted, delete the database directory and restart.");
+    }
+
     for (RevokingDBWithCachingNewValue db : dbs) {
       if (db.getHead().getClass() != SnapshotRoot.class) {
         throw new IllegalStateException("first check.");
       }
     }
 
-    LevelDbDataSourceImpl levelDbDataSource =
-        new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectoryByDbName("tmp"), "tmp");
-    levelDbDataSource.initDB();
-    if (!levelDbDataSource.allKeys().isEmpty()) {
+    Map<String, Map<WrappedByteArray, WrappedByteArray>> checkPoint = readLegacyCheckPoint();
+    checkPointLog = new WriteAheadLog(Paths.get(Args.getInstance().getOutputDirectory(),
+        Args.getInstance().getStorage().getDbDirectory(), CHECK_POINT_LOG_NAME));
+    checkPointLog.recover().forEach(
+        (dbName, rows) -> checkPoint.computeIfAbsent(dbName, k -> new HashMap<>()).putAll(rows));
+
+    if (!checkPoint.isEmpty()) {
       Map<String, RevokingDBWithCachingNewValue> dbMap = dbs.stream()
           .map(db -> Maps.immutableEntry(db.getDbName(), db))
           .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
       advance();
-      for (Map.Entry<byte[], byte[]> e : levelDbDataSource) {
-        byte[] key = e.getKey();
-        byte[] value = e.getValue();
-        String db = simpleDecode(key);
-        byte[] realKey = Arrays.copyOfRange(key, db.getBytes().length + 4, key.length);
-
-        byte[] realValue = value.length == 1 ? null : Arrays.copyOfRange(value, 1, value.length);
-        if (realValue != null) {
-          dbMap.get(db).getHead().put(realKey, realValue);
+      checkPoint.forEach((dbName, rows) -> rows.forEach((k, v) -> {
+        if (v.getBytes() != null) {
+          dbMap.get(dbName).getHead().put(k.getBytes(), v.getBytes());
         } else {
-          dbMap.get(db).getHead().remove(realKey);
+          dbMap.get(dbName).getHead().remove(k.getBytes());
         }
-      }
+      }));
 
       dbs.forEach(db -> {
         db.getHead().getRoot().merge(db.getHead());
+        release(db.getHead());
         db.setHead(db.getHead().getPrevious());
       });
       retreat();
     }
 
-    levelDbDataSource.closeDB();
-    FileUtil.recursiveDelete(levelDbDataSource.getDbPath().toString());
+    checkPointLog.truncate();
     unChecked = false;
+
+    if (Args.getInstance().getStorage().isAsyncFlush()) {
+      flushPipeline = new FlushPipeline(this::commit);
+    }
   }
 
-  private byte[] simpleEncode(String s) {
-    byte[] bytes = s.getBytes();
-    byte[] length = Ints.toByteArray(bytes.length);
-    byte[] r = new byte[4 + bytes.length];
-    System.arraycopy(length, 0, r, 0, 4);
-    System.arraycopy(bytes, 0, r, 4, bytes.length);
-    return r;
+  // checkpoint left behind by versions that kept it in a temporary levelDB
+  private Map<String, Map<WrappedByteArray, WrappedByteArray>> readLegacyCheckPoint() {
+    Map<String, Map<WrappedByteArray, WrappedByteArray>> checkPoint = new LinkedHashMap<>();
+    LevelDbDataSourceImpl levelDbDataSource =
+        new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectoryByDbName("tmp"), "tmp");
+    if (!Files.exists(levelDbDataSource.getDbPath())) {
+      return checkPoint;
+    }
+
+    levelDbDataSource.initDB();
+    for (Map.Entry<byte[], byte[]> e : levelDbDataSource) {
+      byte[] key = e.getKey();
+      byte[] value = e.getValue();
+      String db = simpleDecode(key);
+      byte[] realKey = Arrays.copyOfRange(key, db.getBytes().length + 4, key.length);
+
+      byte[] realValue = value.length == 1 ? null : Arrays.copyOfRange(value, 1, value.length);
+      checkPoint.computeIfAbsent(db, k -> new HashMap<>())
+          .put(WrappedByteArray.of(realKey), WrappedByteArray.of(realValue));
+    }
+
+    levelDbDataSource.closeDB();
+    FileUtil.recursiveDelete(levelDbDataSource.getDbPath().toString());
+    return checkPoint;
   }
 
   public static String simpleDecode(byte[] bytes) {
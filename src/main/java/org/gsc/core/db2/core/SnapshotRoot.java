@@ -1,22 +1,78 @@
 package org.gsc.core.db2.core;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Streams;
+import com.google.common.primitives.UnsignedBytes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.gsc.db.common.WrappedByteArray;
 import org.gsc.core.db2.common.LevelDB;
 
 public class SnapshotRoot extends AbstractSnapshot<byte[], byte[]> {
 
+  // batches handed to the flush pipeline but not yet written into levelDB, oldest first
+  private Deque<Map<WrappedByteArray, WrappedByteArray>> staged = new ConcurrentLinkedDeque<>();
+
   public SnapshotRoot(String parentName, String name) {
     db = new LevelDB(parentName, name);
   }
 
   @Override
   public byte[] get(byte[] key) {
-    return db.get(key);
+    WrappedByteArray value = getStaged(key);
+    return value == null ? db.get(key) : value.getBytes();
+  }
+
+  private WrappedByteArray getStaged(byte[] key) {
+    if (!staged.isEmpty()) {
+      WrappedByteArray k = WrappedByteArray.of(key);
+      Iterator<Map<WrappedByteArray, WrappedByteArray>> iterator = staged.descendingIterator();
+      while (iterator.hasNext()) {
+        WrappedByteArray value = iterator.next().get(k);
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * the values of keys in the order of keys, what isn't staged is read from levelDB in one batch.
+   */
+  public List<byte[]> getAll(List<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+    List<Integer> unstaged = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      WrappedByteArray value = getStaged(keys.get(i));
+      if (value == null) {
+        unstaged.add(i);
+      } else {
+        values.set(i, value.getBytes());
+      }
+    }
+    if (unstaged.isEmpty()) {
+      return values;
+    }
+
+    List<byte[]> stored = ((LevelDB) db).getAll(
+        unstaged.stream().map(keys::get).collect(Collectors.toList()));
+    for (int i = 0; i < unstaged.size(); i++) {
+      values.set(unstaged.get(i), stored.get(i));
+    }
+    return values;
   }
 
   @Override
@@ -29,15 +85,97 @@ public class SnapshotRoot extends AbstractSnapshot<byte[], byte[]> {
     db.remove(key);
   }
 
-  // todo write batch into levelDB
   @Override
   public void merge(Snapshot from) {
-    LevelDB levelDB = (LevelDB) db;
+    flush(toBatch(from));
+  }
+
+  static Map<WrappedByteArray, WrappedByteArray> toBatch(Snapshot from) {
     SnapshotImpl snapshot = (SnapshotImpl) from;
-    Map<WrappedByteArray, WrappedByteArray> batch = Streams.stream(snapshot.db)
+    return Streams.stream(snapshot.db)
         .map(e -> Maps.immutableEntry(WrappedByteArray.of(e.getKey().getBytes()), WrappedByteArray.of(e.getValue().getBytes())))
         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    levelDB.flush(batch);
+  }
+
+  void flush(Map<WrappedByteArray, WrappedByteArray> batch) {
+    ((LevelDB) db).flush(batch);
+  }
+
+  /**
+   * keep a batch readable through this root until the flush pipeline has written it.
+   */
+  void stage(Map<WrappedByteArray, WrappedByteArray> batch) {
+    staged.addLast(batch);
+  }
+
+  void unstage(Map<WrappedByteArray, WrappedByteArray> batch) {
+    staged.removeFirstOccurrence(batch);
+  }
+
+  String getDbName() {
+    return ((LevelDB) db).getDb().getDBName();
+  }
+
+  // every staged row, the latest batch winning, a null value for a removed key
+  private Map<WrappedByteArray, WrappedByteArray> collectStaged() {
+    Map<WrappedByteArray, WrappedByteArray> all = new HashMap<>();
+    staged.forEach(all::putAll);
+    return all;
+  }
+
+  /**
+   * rows read from levelDB overlaid with the staged rows in range, in key order. Every staged row
+   * hides at most one row of levelDB, so callers read that many rows more from levelDB.
+   */
+  private static TreeMap<byte[], byte[]> overlay(Map<byte[], byte[]> stored,
+      Map<WrappedByteArray, WrappedByteArray> stagedRows, Predicate<byte[]> inRange) {
+    TreeMap<byte[], byte[]> result = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+    stored.forEach((k, v) -> {
+      if (!stagedRows.containsKey(WrappedByteArray.of(k))) {
+        result.put(k, v);
+      }
+    });
+    stagedRows.forEach((k, v) -> {
+      if (v.getBytes() != null && inRange.test(k.getBytes())) {
+        result.put(k.getBytes(), v.getBytes());
+      }
+    });
+    return result;
+  }
+
+  // for blockstore
+  Set<byte[]> getlatestValues(long limit) {
+    if (limit <= 0) {
+      return Collections.emptySet();
+    }
+    if (staged.isEmpty()) {
+      return ((LevelDB) db).getDb().getlatestValues(limit);
+    }
+
+    Map<WrappedByteArray, WrappedByteArray> stagedRows = collectStaged();
+    TreeMap<byte[], byte[]> rows = overlay(
+        ((LevelDB) db).getDb().getLatest(limit + stagedRows.size()), stagedRows, k -> true);
+    return rows.descendingMap().values().stream()
+        .limit(limit)
+        .collect(Collectors.toSet());
+  }
+
+  // for blockstore
+  Map<WrappedByteArray, WrappedByteArray> getNext(byte[] key, long limit) {
+    if (limit <= 0) {
+      return Collections.emptyMap();
+    }
+    Map<WrappedByteArray, WrappedByteArray> stagedRows = collectStaged();
+    TreeMap<byte[], byte[]> rows = overlay(
+        ((LevelDB) db).getDb().getNext(key, limit + stagedRows.size()), stagedRows,
+        k -> UnsignedBytes.lexicographicalComparator().compare(k, key) >= 0);
+
+    Map<WrappedByteArray, WrappedByteArray> result = new LinkedHashMap<>();
+    rows.entrySet().stream()
+        .limit(limit)
+        .forEach(e -> result.put(WrappedByteArray.of(e.getKey()),
+            WrappedByteArray.of(e.getValue())));
+    return result;
   }
 
   @Override
@@ -52,7 +190,16 @@ public class SnapshotRoot extends AbstractSnapshot<byte[], byte[]> {
 
   @Override
   public Iterator<Map.Entry<byte[],byte[]>> iterator() {
-    return db.iterator();
+    if (staged.isEmpty()) {
+      return db.iterator();
+    }
+
+    Map<WrappedByteArray, WrappedByteArray> all = collectStaged();
+    return Iterators.concat(
+        Iterators.transform(
+            Iterators.filter(all.entrySet().iterator(), e -> e.getValue().getBytes() != null),
+            e -> Maps.immutableEntry(e.getKey().getBytes(), e.getValue().getBytes())),
+        Iterators.filter(db.iterator(), e -> !all.containsKey(WrappedByteArray.of(e.getKey()))));
   }
 
   @Override
@@ -62,6 +209,7 @@ public class SnapshotRoot extends AbstractSnapshot<byte[], byte[]> {
 
   @Override
   public void reset() {
+    staged.clear();
     ((LevelDB) db).reset();
   }
 }
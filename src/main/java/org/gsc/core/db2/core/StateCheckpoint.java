@@ -0,0 +1,226 @@
+package org.gsc.core.db2.core;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.gsc.common.utils.Sha256Hash;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Snapshot;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
+
+/**
+ * The rows every store had in levelDB at one flushed block, served in chunks of sorted rows. The
+ * chunks are cut and hashed the same way on every node, so nodes at the same block agree on the
+ * hashes and on the root over them, and a node restoring the stores checks every chunk against a
+ * root it trusts before writing it.
+ */
+@Slf4j
+public class StateCheckpoint implements AutoCloseable {
+
+  // a chunk ends before the row that would take it over this size, well below the message limit
+  public static final int CHUNK_MAX_BYTES = 2 * 1024 * 1024;
+
+  @Getter
+  private final long blockNum;
+  @Getter
+  private final Sha256Hash blockHash;
+  // by store name, in the order of the manifest
+  private final Map<String, Pinned> stores = new LinkedHashMap<>();
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private boolean closed;
+  private volatile StateManifest manifest;
+
+  private static class Pinned {
+
+    private final LevelDbDataSourceImpl db;
+    private final Snapshot snapshot;
+    // first key of every chunk, known once the manifest is built
+    private final List<byte[]> chunkStarts = new ArrayList<>();
+
+    private Pinned(LevelDbDataSourceImpl db) {
+      this.db = db;
+      this.snapshot = db.getSnapshot();
+    }
+  }
+
+  /**
+   * pin dbs as they are now, they must hold the rows of the given block and nothing else.
+   */
+  StateCheckpoint(long blockNum, Sha256Hash blockHash, Map<String, LevelDbDataSourceImpl> dbs) {
+    this.blockNum = blockNum;
+    this.blockHash = blockHash;
+    dbs.entrySet().stream()
+        .sorted(Entry.comparingByKey())
+        .forEach(e -> stores.put(e.getKey(), new Pinned(e.getValue())));
+  }
+
+  public boolean isManifestReady() {
+    return manifest != null;
+  }
+
+  /**
+   * the hash of every chunk of every store, reading all pinned rows the first time.
+   */
+  public synchronized StateManifest getManifest() {
+    if (manifest != null) {
+      return manifest;
+    }
+
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("state checkpoint is closed.");
+      }
+
+      StateManifest.Builder builder = StateManifest.newBuilder()
+          .setBlockNum(blockNum)
+          .setBlockHash(ByteString.copyFrom(blockHash.getBytes()));
+      for (Entry<String, Pinned> store : stores.entrySet()) {
+        builder.addStores(hashChunks(store.getKey(), store.getValue()));
+      }
+      manifest = builder.build();
+      logger.info("state checkpoint at block {} has root {}", blockNum, rootOf(manifest));
+      return manifest;
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  private StateManifest.Store hashChunks(String name, Pinned store) {
+    StateManifest.Store.Builder builder = StateManifest.Store.newBuilder().setName(name);
+    MessageDigest digest = Sha256Hash.newDigest();
+    int chunkBytes = 0;
+    try (DBIterator iterator = store.db.iterator(store.snapshot)) {
+      for (iterator.seekToFirst(); iterator.hasNext(); ) {
+        Entry<byte[], byte[]> row = iterator.next();
+        int rowBytes = row.getKey().length + row.getValue().length;
+        if (store.chunkStarts.isEmpty() || chunkBytes > 0
+            && chunkBytes + rowBytes > CHUNK_MAX_BYTES) {
+          if (!store.chunkStarts.isEmpty()) {
+            builder.addChunkHashes(ByteString.copyFrom(digest.digest()));
+          }
+          store.chunkStarts.add(row.getKey());
+          chunkBytes = 0;
+        }
+        update(digest, row.getKey(), row.getValue());
+        chunkBytes += rowBytes;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    if (!store.chunkStarts.isEmpty()) {
+      builder.addChunkHashes(ByteString.copyFrom(digest.digest()));
+    }
+    return builder.build();
+  }
+
+  /**
+   * the rows of one chunk, null until the manifest is built or if there is no such chunk.
+   */
+  public StateChunk getChunk(String name, int index) {
+    Pinned store = stores.get(name);
+    if (manifest == null || store == null || index < 0 || index >= store.chunkStarts.size()) {
+      return null;
+    }
+
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        return null;
+      }
+
+      byte[] end = index + 1 < store.chunkStarts.size() ? store.chunkStarts.get(index + 1) : null;
+      StateChunk.Builder builder = StateChunk.newBuilder()
+          .setBlockNum(blockNum)
+          .setStore(name)
+          .setIndex(index);
+      try (DBIterator iterator = store.db.iterator(store.snapshot)) {
+        for (iterator.seek(store.chunkStarts.get(index)); iterator.hasNext(); ) {
+          Entry<byte[], byte[]> row = iterator.next();
+          if (end != null && Arrays.equals(row.getKey(), end)) {
+            break;
+          }
+          builder.addRows(StateChunk.Row.newBuilder()
+              .setKey(ByteString.copyFrom(row.getKey()))
+              .setValue(ByteString.copyFrom(row.getValue())));
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return builder.build();
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * the hash a manifest lists for the rows of a chunk.
+   */
+  public static Sha256Hash hashChunk(List<StateChunk.Row> rows) {
+    MessageDigest digest = Sha256Hash.newDigest();
+    rows.forEach(row -> update(digest, row.getKey().toByteArray(), row.getValue().toByteArray()));
+    return Sha256Hash.wrap(digest.digest());
+  }
+
+  /**
+   * the root over the block and every chunk hash of a manifest, what a restoring node trusts.
+   */
+  public static Sha256Hash rootOf(StateManifest manifest) {
+    MessageDigest digest = Sha256Hash.newDigest();
+    digest.update(Longs.toByteArray(manifest.getBlockNum()));
+    digest.update(manifest.getBlockHash().toByteArray());
+    manifest.getStoresList().forEach(store -> {
+      byte[] name = store.getName().getBytes(StandardCharsets.UTF_8);
+      digest.update(Ints.toByteArray(name.length));
+      digest.update(name);
+      digest.update(Ints.toByteArray(store.getChunkHashesCount()));
+      store.getChunkHashesList().forEach(hash -> digest.update(hash.toByteArray()));
+    });
+    return Sha256Hash.wrap(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, byte[] key, byte[] value) {
+    digest.update(Ints.toByteArray(key.length));
+    digest.update(key);
+    digest.update(Ints.toByteArray(value.length));
+    digest.update(value);
+  }
+
+  /**
+   * release the pinned rows, levelDB can compact them away afterwards.
+   */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      stores.values().forEach(store -> {
+        try {
+          store.snapshot.close();
+        } catch (IOException e) {
+          logger.warn("failed to release state checkpoint of {}.", store.db.getDBName());
+        }
+      });
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+  }
+}
@@ -37,6 +37,9 @@ public class UpdateSettingContractOperator extends AbstractOperator {
       dbManager.getContractStore().put(contractAddress, new ContractWrapper(
           deployedContract.getInstance().toBuilder().setConsumeUserResourcePercent(newPercent)
               .build()));
+      if (dbManager.getBlockDepositCache() != null) {
+        dbManager.getBlockDepositCache().invalidateContract(contractAddress);
+      }
 
       ret.setStatus(fee, code.SUCESS);
     } catch (InvalidProtocolBufferException e) {
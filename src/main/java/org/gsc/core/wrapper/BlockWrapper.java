@@ -22,7 +22,6 @@ import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +31,7 @@ import org.gsc.crypto.ECKey.ECDSASignature;
 import org.gsc.common.utils.ByteUtil;
 import org.gsc.common.utils.Sha256Hash;
 import org.gsc.common.utils.Time;
-import org.gsc.core.wrapper.utils.MerkleTree;
+import org.gsc.core.wrapper.utils.ParallelMerkleTree;
 import org.gsc.config.Parameter.ChainConstant;
 import org.gsc.core.exception.BadItemException;
 import org.gsc.core.exception.ValidateSignatureException;
@@ -120,6 +119,10 @@ public class BlockWrapper implements ProtoWrapper<Block> {
 
   private Block block;
   public boolean generatedByMyself = false;
+  // the content of the block its witness signature or merkle root was found valid for, a block
+  // pre-validated while others are applied isn't checked again when it's pushed
+  private volatile Block signatureValidFor;
+  private volatile Block merkleRootValidFor;
   private List<TransactionWrapper> transactions = new ArrayList<>();
 
   public BlockWrapper(long number, Sha256Hash hash, long when, ByteString witnessAddress) {
@@ -211,17 +214,38 @@ public class BlockWrapper implements ProtoWrapper<Block> {
   }
 
   public boolean validateSignature() throws ValidateSignatureException {
+    Block checked = this.block;
+    if (signatureValidFor == checked) {
+      return true;
+    }
     try {
-      return Arrays
-          .equals(ECKey.signatureToAddress(getRawHash().getBytes(),
+      boolean valid = Arrays
+          .equals(ECKey.signatureToAddress(
+              Sha256Hash.of(checked.getBlockHeader().getRawData().toByteArray()).getBytes(),
               TransactionWrapper
-                  .getBase64FromByteString(block.getBlockHeader().getWitnessSignature())),
-              block.getBlockHeader().getRawData().getWitnessAddress().toByteArray());
+                  .getBase64FromByteString(checked.getBlockHeader().getWitnessSignature())),
+              checked.getBlockHeader().getRawData().getWitnessAddress().toByteArray());
+      if (valid) {
+        signatureValidFor = checked;
+      }
+      return valid;
     } catch (SignatureException e) {
       throw new ValidateSignatureException(e.getMessage());
     }
   }
 
+  public boolean validateMerkleRoot() {
+    Block checked = this.block;
+    if (merkleRootValidFor == checked) {
+      return true;
+    }
+    boolean valid = calcMerkleRoot().equals(getMerkleRoot());
+    if (valid && checked == this.block) {
+      merkleRootValidFor = checked;
+    }
+    return valid;
+  }
+
   public BlockId getBlockId() {
     if (blockId.equals(Sha256Hash.ZERO_HASH)) {
       blockId = new BlockId(Sha256Hash.of(this.block.getBlockHeader().getRawData().toByteArray()), getNum());
@@ -236,12 +260,14 @@ public class BlockWrapper implements ProtoWrapper<Block> {
       return Sha256Hash.ZERO_HASH;
     }
 
-    Vector<Sha256Hash> ids = transactionsList.stream()
-        .map(TransactionWrapper::new)
-        .map(TransactionWrapper::getMerkleHash)
-        .collect(Collectors.toCollection(Vector::new));
-
-    return MerkleTree.getInstance().createTree(ids).getRoot().getHash();
+    // reuse the hashes already memoized by the wrappers of this very block
+    return ParallelMerkleTree.getRoot(transactionsList.size(), i -> {
+      Transaction transaction = transactionsList.get(i);
+      if (i < transactions.size() && transactions.get(i).getInstance() == transaction) {
+        return transactions.get(i).getMerkleHash();
+      }
+      return Sha256Hash.of(transaction.toByteArray());
+    });
   }
 
   public void setMerkleRoot() {
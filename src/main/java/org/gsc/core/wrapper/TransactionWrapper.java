@@ -25,6 +25,7 @@ import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -85,6 +86,9 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
   private Transaction transaction;
   @Setter
   private boolean isVerified = false;
+  // hashes of the current transaction, computed on first use and dropped by the mutators
+  private Sha256Hash rawHash;
+  private Sha256Hash merkleHash;
 
   /**
    * constructor TransactionWrapper.
@@ -169,12 +173,14 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
   public void resetResult() {
     if (this.getInstance().getRetCount() > 0) {
       this.transaction = this.getInstance().toBuilder().clearRet().build();
+      this.merkleHash = null;
     }
   }
 
   public void setResult(TransactionResultWrapper transactionResultCapsule) {
     this.transaction = this.getInstance().toBuilder().addRet(transactionResultCapsule.getInstance())
         .build();
+    this.merkleHash = null;
   }
 
   public void setReference(long blockNum, byte[] blockHash) {
@@ -184,6 +190,7 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
         .setRefBlockBytes(ByteString.copyFrom(ByteArray.subArray(refBlockNum, 6, 8)))
         .build();
     this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+    invalidateHash();
   }
 
   /**
@@ -193,6 +200,7 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
     Transaction.raw rawData = this.transaction.getRawData().toBuilder().setExpiration(expiration)
         .build();
     this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+    invalidateHash();
   }
 
   public long getExpiration() {
@@ -204,6 +212,7 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
         .setTimestamp(System.currentTimeMillis())
         .build();
     this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+    invalidateHash();
   }
 
   public long getTimestamp() {
@@ -236,15 +245,33 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
         Transaction.Contract.newBuilder().setType(contractType).setParameter(
             Any.pack(message)).build());
     transaction = Transaction.newBuilder().setRawData(transactionBuilder.build()).build();
+    invalidateHash();
   }
 
   public Sha256Hash getMerkleHash() {
-    byte[] transBytes = this.transaction.toByteArray();
-    return Sha256Hash.of(transBytes);
+    Sha256Hash hash = merkleHash;
+    if (hash == null) {
+      hash = Sha256Hash.of(this.transaction.toByteArray());
+      merkleHash = hash;
+    }
+    return hash;
   }
 
   private Sha256Hash getRawHash() {
-    return Sha256Hash.of(this.transaction.getRawData().toByteArray());
+    Sha256Hash hash = rawHash;
+    if (hash == null) {
+      hash = Sha256Hash.of(this.transaction.getRawData().toByteArray());
+      rawHash = hash;
+    }
+    return hash;
+  }
+
+  /**
+   * the raw data changed, both the id and the merkle hash are stale.
+   */
+  private void invalidateHash() {
+    rawHash = null;
+    merkleHash = null;
   }
 
   /**
@@ -279,6 +306,7 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
     ECDSASignature signature = ecKey.sign(getRawHash().getBytes());
     ByteString sig = ByteString.copyFrom(signature.toByteArray());
     this.transaction = this.transaction.toBuilder().addSignature(sig).build();
+    this.merkleHash = null;
   }
 
   // todo mv this static function to capsule util
@@ -467,7 +495,8 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
         byte[] owner = getOwner(contract);
         byte[] address = ECKey.signatureToAddress(getRawHash().getBytes(),
             getBase64FromByteString(this.transaction.getSignature(i)));
-        logger.info("check sig owner={} address={}",Hex.toHexString(owner),Hex.toHexString(address));
+        logger.debug("check sig owner={} address={}", Hex.toHexString(owner),
+            Hex.toHexString(address));
         if (!Arrays.equals(owner, address)) {
           isVerified = false;
           throw new ValidateSignatureException("sig error");
@@ -482,6 +511,66 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
     return true;
   }
 
+  /**
+   * Validate the signatures of the transactions at once, see {@link ECKey#signaturesToAddresses}.
+   * Transactions verified before are skipped. Throws for a transaction not signed by the owners of
+   * its contracts, as {@link #validateSignature()} of it would.
+   */
+  public static void validateSignatures(List<TransactionWrapper> trxs)
+      throws ValidateSignatureException {
+    List<TransactionWrapper> pending = new ArrayList<>(trxs.size());
+    int count = 0;
+    for (TransactionWrapper trx : trxs) {
+      Transaction transaction = trx.getInstance();
+      if (!trx.isVerified
+          && transaction.getSignatureCount() == transaction.getRawData().getContractCount()) {
+        pending.add(trx);
+        count += transaction.getSignatureCount();
+      } else {
+        trx.validateSignature();
+      }
+    }
+
+    byte[][] hashes = new byte[count][];
+    ECDSASignature[] signatures = new ECDSASignature[count];
+    int next = 0;
+    for (TransactionWrapper trx : pending) {
+      byte[] hash = trx.getRawHash().getBytes();
+      for (ByteString sign : trx.getInstance().getSignatureList()) {
+        hashes[next] = hash;
+        signatures[next++] = toSignature(sign);
+      }
+    }
+
+    byte[][] addresses = ECKey.signaturesToAddresses(hashes, signatures);
+    next = 0;
+    for (TransactionWrapper trx : pending) {
+      boolean signed = true;
+      for (Transaction.Contract contract : trx.getInstance().getRawData().getContractList()) {
+        byte[] address = addresses[next++];
+        signed &= address != null && Arrays.equals(getOwner(contract), address);
+      }
+      if (signed) {
+        trx.isVerified = true;
+      } else {
+        trx.validateSignature();
+      }
+    }
+  }
+
+  private static ECDSASignature toSignature(ByteString sign) {
+    if (sign.size() < 65) {
+      // recovers no key, validateSignature says what's wrong
+      return ECDSASignature.fromComponents(new byte[32], new byte[32], (byte) 0);
+    }
+    byte v = sign.byteAt(64);
+    if (v < 27) {
+      v += 27; //revId -> v
+    }
+    return ECDSASignature.fromComponents(sign.substring(0, 32).toByteArray(),
+        sign.substring(32, 64).toByteArray(), v);
+  }
+
   public Sha256Hash getTransactionId() {
     return getRawHash();
   }
@@ -614,6 +703,7 @@ public class TransactionWrapper implements ProtoWrapper<Transaction> {
   }
 
   private void setResultCode(contractResult code) {
+    this.merkleHash = null;
     Result ret = Result.newBuilder().setContractRet(code).build();
     if (this.transaction.getRetCount() > 0) {
       ret = this.transaction.getRet(0).toBuilder().setContractRet(code).build();
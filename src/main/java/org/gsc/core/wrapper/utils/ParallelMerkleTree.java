@@ -0,0 +1,101 @@
+package org.gsc.core.wrapper.utils;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import org.gsc.common.utils.Sha256Hash;
+
+/**
+ * Computes the same root as {@link MerkleTree} without building the leaf objects: leaves are
+ * hashed on the common fork join pool and each level is paired up in parallel once it is wide
+ * enough to pay for the forking. A lone last node is carried up to the next level unchanged.
+ */
+public class ParallelMerkleTree {
+
+  // below this many hashes per task the work is done on the calling thread
+  private static final int THRESHOLD = 64;
+
+  private ParallelMerkleTree() {
+  }
+
+  /**
+   * @param size number of leaves, must be positive
+   * @param leaf hash of the i-th leaf, called once per leaf and possibly from several threads
+   */
+  public static Sha256Hash getRoot(int size, IntFunction<Sha256Hash> leaf) {
+    Sha256Hash[] level = new Sha256Hash[size];
+    new LeafTask(level, leaf, 0, size).invoke();
+
+    while (level.length > 1) {
+      Sha256Hash[] parents = new Sha256Hash[(level.length + 1) >>> 1];
+      new LevelTask(level, parents, 0, parents.length).invoke();
+      level = parents;
+    }
+    return level[0];
+  }
+
+  private static Sha256Hash computeHash(Sha256Hash left, Sha256Hash right) {
+    byte[] data = new byte[Sha256Hash.LENGTH * 2];
+    System.arraycopy(left.getBytes(), 0, data, 0, Sha256Hash.LENGTH);
+    System.arraycopy(right.getBytes(), 0, data, Sha256Hash.LENGTH, Sha256Hash.LENGTH);
+    return Sha256Hash.of(data);
+  }
+
+  private static class LeafTask extends RecursiveAction {
+
+    private final Sha256Hash[] level;
+    private final IntFunction<Sha256Hash> leaf;
+    private final int from;
+    private final int to;
+
+    private LeafTask(Sha256Hash[] level, IntFunction<Sha256Hash> leaf, int from, int to) {
+      this.level = level;
+      this.leaf = leaf;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          level[i] = leaf.apply(i);
+        }
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new LeafTask(level, leaf, from, middle), new LeafTask(level, leaf, middle, to));
+    }
+  }
+
+  private static class LevelTask extends RecursiveAction {
+
+    private final Sha256Hash[] children;
+    private final Sha256Hash[] parents;
+    private final int from;
+    private final int to;
+
+    private LevelTask(Sha256Hash[] children, Sha256Hash[] parents, int from, int to) {
+      this.children = children;
+      this.parents = parents;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          int left = i << 1;
+          parents[i] = left + 1 < children.length
+              ? computeHash(children[left], children[left + 1]) : children[left];
+        }
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new LevelTask(children, parents, from, middle),
+          new LevelTask(children, parents, middle, to));
+    }
+  }
+}
@@ -47,6 +47,7 @@ import org.spongycastle.asn1.DLSequence;
 import org.spongycastle.asn1.sec.SECNamedCurves;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.asn1.x9.X9IntegerConverter;
+import org.spongycastle.crypto.ec.CustomNamedCurves;
 import org.spongycastle.crypto.agreement.ECDHBasicAgreement;
 import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.engines.AESEngine;
@@ -95,6 +96,11 @@ public class ECKey implements Serializable {
    */
 
   public static final BigInteger HALF_CURVE_ORDER;
+  /**
+   * The same curve with the int based field arithmetic of Bouncy Castle's secp256k1, keys are only
+   * recovered on it. Points are encoded the same as on CURVE.
+   */
+  private static final ECDomainParameters RECOVERY_CURVE;
   private static final BigInteger SECP256K1N =
       new BigInteger("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141", 16);
   private static final SecureRandom secureRandom;
@@ -108,6 +114,9 @@ public class ECKey implements Serializable {
     CURVE_SPEC = new ECParameterSpec(params.getCurve(), params.getG(),
         params.getN(), params.getH());
     HALF_CURVE_ORDER = params.getN().shiftRight(1);
+    X9ECParameters recoveryParams = CustomNamedCurves.getByName("secp256k1");
+    RECOVERY_CURVE = new ECDomainParameters(recoveryParams.getCurve(), recoveryParams.getG(),
+        recoveryParams.getN(), recoveryParams.getH());
     secureRandom = new SecureRandom();
   }
 
@@ -631,9 +640,8 @@ public class ECKey implements Serializable {
     ECPoint R = decompressKey(x, (recId & 1) == 1);
     //   1.4. If nR != point at infinity, then do another iteration of
     // Step 1 (callers responsibility).
-    if (!R.multiply(n).isInfinity()) {
-      return null;
-    }
+    // secp256k1 has cofactor 1, n is the order of every point on it, so
+    // there's no need to multiply R by n to know.
     //   1.5. Compute e from M using Steps 2 and 3 of ECDSA signature
     // verification.
     BigInteger e = new BigInteger(1, messageHash);
@@ -658,11 +666,92 @@ public class ECKey implements Serializable {
     BigInteger rInv = sig.r.modInverse(n);
     BigInteger srInv = rInv.multiply(sig.s).mod(n);
     BigInteger eInvrInv = rInv.multiply(eInv).mod(n);
-    ECPoint.Fp q = (ECPoint.Fp) ECAlgorithms.sumOfTwoMultiplies(CURVE
-        .getG(), eInvrInv, R, srInv);
+    ECPoint q = ECAlgorithms.sumOfTwoMultiplies(RECOVERY_CURVE.getG(),
+        eInvrInv, R, srInv);
     return q.getEncoded(/* compressed */ false);
   }
 
+  /**
+   * Compute the addresses of the keys that signed the given signatures. All signatures share one
+   * inverse of their r values mod n and one inverse of the z coordinates of their keys, recovering
+   * them one by one takes both for every signature.
+   *
+   * @param messageHashes 32-byte hashes of the messages
+   * @param sigs the signatures of the messages, in the same order
+   * @return 20-byte addresses, null for a signature no key can be recovered from, {@link
+   * #signatureToAddress(byte[], ECDSASignature)} tells why
+   */
+  public static byte[][] signaturesToAddresses(byte[][] messageHashes,
+      ECDSASignature[] sigs) {
+    check(messageHashes.length == sigs.length, "got " + messageHashes.length
+        + " hashes for " + sigs.length + " signatures");
+    int count = sigs.length;
+    BigInteger n = CURVE.getN();
+    ECPoint[] rPoints = new ECPoint[count];
+    // products[i] is the product of the r values of the recoverable
+    // signatures up to i, so the inverse of their product gives every
+    // single inverse
+    BigInteger[] products = new BigInteger[count];
+    BigInteger product = BigInteger.ONE;
+    for (int i = 0; i < count; i++) {
+      rPoints[i] = recoveryPoint(messageHashes[i], sigs[i]);
+      if (rPoints[i] != null) {
+        product = product.multiply(sigs[i].r).mod(n);
+      }
+      products[i] = product;
+    }
+
+    BigInteger inverse = product.modInverse(n);
+    ECPoint[] keys = new ECPoint[count];
+    for (int i = count - 1; i >= 0; i--) {
+      if (rPoints[i] == null) {
+        continue;
+      }
+      BigInteger rInv = i == 0 ? inverse : inverse.multiply(products[i - 1]).mod(n);
+      inverse = inverse.multiply(sigs[i].r).mod(n);
+      BigInteger eInv = new BigInteger(1, messageHashes[i]).negate().mod(n);
+      keys[i] = ECAlgorithms.sumOfTwoMultiplies(RECOVERY_CURVE.getG(),
+          rInv.multiply(eInv).mod(n), rPoints[i], rInv.multiply(sigs[i].s).mod(n));
+    }
+    RECOVERY_CURVE.getCurve().normalizeAll(keys);
+
+    byte[][] addresses = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      if (keys[i] != null) {
+        addresses[i] = computeAddress(keys[i].getEncoded(/* compressed */ false));
+      }
+    }
+    return addresses;
+  }
+
+  /**
+   * @return the point R of the signature, null if the signature is malformed.
+   */
+  @Nullable
+  private static ECPoint recoveryPoint(byte[] messageHash, ECDSASignature sig) {
+    int header = sig.v;
+    if (messageHash.length != 32 || header < 27 || header > 34
+        || sig.r.signum() <= 0 || sig.s.signum() < 0) {
+      return null;
+    }
+    if (header >= 31) {
+      header -= 4;
+    }
+    int recId = header - 27;
+    BigInteger n = CURVE.getN();
+    BigInteger x = sig.r.add(BigInteger.valueOf(recId / 2).multiply(n));
+    if (x.compareTo(((ECCurve.Fp) CURVE.getCurve()).getQ()) >= 0
+        || sig.r.mod(n).signum() == 0) {
+      return null;
+    }
+    try {
+      return decompressKey(x, (recId & 1) == 1);
+    } catch (IllegalArgumentException e) {
+      // x isn't on the curve
+      return null;
+    }
+  }
+
   /**
    * @param recId Which possible key to recover.
    * @param sig the R and S components of the signature, wrapped.
@@ -713,7 +802,7 @@ public class ECKey implements Serializable {
     byte[] compEnc = x9.integerToBytes(xBN, 1 + x9.getByteLength(CURVE
         .getCurve()));
     compEnc[0] = (byte) (yBit ? 0x03 : 0x02);
-    return CURVE.getCurve().decodePoint(compEnc);
+    return RECOVERY_CURVE.getCurve().decodePoint(compEnc);
   }
 
   private static void check(boolean test, String message) {
@@ -43,32 +43,30 @@ public class Hash {
     HASH_512_ALGORITHM_NAME = "GSC-KECCAK-512";
   }
 
-  public static byte[] sha3(byte[] input) {
-    MessageDigest digest;
+  // looking the digest up in the provider costs more than hashing a word. It is reset before
+  // every use, a hash that threw halfway may have left input in it
+  private static final ThreadLocal<MessageDigest> KECCAK_256 = ThreadLocal.withInitial(() -> {
     try {
-      digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME,
-          CRYPTO_PROVIDER);
-      digest.update(input);
-      return digest.digest();
+      return MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
     } catch (NoSuchAlgorithmException e) {
       logger.error("Can't find such algorithm", e);
       throw new RuntimeException(e);
     }
+  });
 
+  public static byte[] sha3(byte[] input) {
+    MessageDigest digest = KECCAK_256.get();
+    digest.reset();
+    digest.update(input);
+    return digest.digest();
   }
 
   public static byte[] sha3(byte[] input1, byte[] input2) {
-    MessageDigest digest;
-    try {
-      digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME,
-          CRYPTO_PROVIDER);
-      digest.update(input1, 0, input1.length);
-      digest.update(input2, 0, input2.length);
-      return digest.digest();
-    } catch (NoSuchAlgorithmException e) {
-      logger.error("Can't find such algorithm", e);
-      throw new RuntimeException(e);
-    }
+    MessageDigest digest = KECCAK_256.get();
+    digest.reset();
+    digest.update(input1, 0, input1.length);
+    digest.update(input2, 0, input2.length);
+    return digest.digest();
   }
 
   /**
@@ -80,16 +78,10 @@ public class Hash {
    * @return - keccak hash of the chunk
    */
   public static byte[] sha3(byte[] input, int start, int length) {
-    MessageDigest digest;
-    try {
-      digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME,
-          CRYPTO_PROVIDER);
-      digest.update(input, start, length);
-      return digest.digest();
-    } catch (NoSuchAlgorithmException e) {
-      logger.error("Can't find such algorithm", e);
-      throw new RuntimeException(e);
-    }
+    MessageDigest digest = KECCAK_256.get();
+    digest.reset();
+    digest.update(input, start, length);
+    return digest.digest();
   }
 
   public static byte[] sha512(byte[] input) {
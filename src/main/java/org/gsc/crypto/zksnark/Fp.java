@@ -18,42 +18,73 @@
 package org.gsc.crypto.zksnark;
 
 import java.math.BigInteger;
-
-import static org.gsc.crypto.zksnark.Params.P;
+import java.util.Arrays;
 
 /**
  * Arithmetic in F_p, p = 21888242871839275222246405745257275088696311157297823662689037894645226208583
  *
+ * <p>Elements are kept in Montgomery form, v * 2^256 mod p in eight 32 bit limbs, so a product is
+ * reduced without a division and nothing but the limbs is allocated.
+ *
  * @author Mikhail Kalinin
  * @since 01.09.2017
  */
 public class Fp implements Field<Fp> {
 
+    private static final int LIMBS = 8;
+    private static final long MASK = 0xffffffffL;
+
+    // Params initializes its constants with Fp, so p can't be taken from there
+    private static final BigInteger P = new BigInteger("21888242871839275222246405745257275088696311157297823662689037894645226208583");
+    private static final int[] P_LIMBS = toLimbs(P);
+    // -p^-1 mod 2^32
+    private static final long P_INV = P.negate().modInverse(BigInteger.ONE.shiftLeft(32)).longValue();
+    private static final int[] ONE_LIMBS = toLimbs(BigInteger.ONE);
+
     static final Fp ZERO = new Fp(BigInteger.ZERO);
     static final Fp _1 = new Fp(BigInteger.ONE);
     static final Fp NON_RESIDUE = new Fp(new BigInteger("21888242871839275222246405745257275088696311157297823662689037894645226208582"));
 
     static final Fp _2_INV = new Fp(BigInteger.valueOf(2).modInverse(P));
 
-    BigInteger v;
+    private final int[] m;
+    // whether the value it was created from was below p, the value is kept reduced
+    private final boolean valid;
 
-    Fp(BigInteger v) { this.v = v; }
+    Fp(BigInteger v) {
+        this.valid = v.signum() >= 0 && v.compareTo(P) < 0;
+        this.m = toLimbs(v.shiftLeft(32 * LIMBS).mod(P));
+    }
+
+    private Fp(int[] m) {
+        this.m = m;
+        this.valid = true;
+    }
 
-    @Override public Fp add(Fp o) { return new Fp(this.v.add(o.v).mod(P)); }
-    @Override public Fp mul(Fp o) { return new Fp(this.v.multiply(o.v).mod(P)); }
-    @Override public Fp sub(Fp o) { return new Fp(this.v.subtract(o.v).mod(P)); }
-    @Override public Fp squared() { return new Fp(v.multiply(v).mod(P)); }
-    @Override public Fp dbl() { return new Fp(v.add(v).mod(P)); }
-    @Override public Fp inverse() { return new Fp(v.modInverse(P)); }
-    @Override public Fp negate() { return new Fp(v.negate().mod(P)); }
-    @Override public boolean isZero() { return v.compareTo(BigInteger.ZERO) == 0; }
+    @Override public Fp add(Fp o) { return new Fp(add(m, o.m)); }
+    @Override public Fp mul(Fp o) { return new Fp(mul(m, o.m)); }
+    @Override public Fp sub(Fp o) { return new Fp(sub(m, o.m)); }
+    @Override public Fp squared() { return new Fp(mul(m, m)); }
+    @Override public Fp dbl() { return new Fp(add(m, m)); }
+    @Override public Fp inverse() { return new Fp(value().modInverse(P)); }
+    @Override public Fp negate() { return isZero() ? this : new Fp(sub(P_LIMBS, m)); }
+
+    @Override
+    public boolean isZero() {
+        for (int limb : m) {
+            if (limb != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Checks if provided value is a valid Fp member
      */
     @Override
     public boolean isValid() {
-        return v.compareTo(P) < 0;
+        return valid;
     }
 
     org.gsc.crypto.zksnark.Fp2 mul(org.gsc.crypto.zksnark.Fp2 o) { return new org.gsc.crypto.zksnark.Fp2(o.a.mul(this), o.b.mul(this)); }
@@ -67,7 +98,122 @@ public class Fp implements Field<Fp> {
     }
 
     public byte[] bytes() {
-        return v.toByteArray();
+        return value().toByteArray();
+    }
+
+    // the value out of Montgomery form
+    private BigInteger value() {
+        int[] v = mul(m, ONE_LIMBS);
+        byte[] bytes = new byte[4 * LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            int limb = v[LIMBS - 1 - i];
+            bytes[4 * i] = (byte) (limb >>> 24);
+            bytes[4 * i + 1] = (byte) (limb >>> 16);
+            bytes[4 * i + 2] = (byte) (limb >>> 8);
+            bytes[4 * i + 3] = (byte) limb;
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    private static int[] toLimbs(BigInteger v) {
+        int[] limbs = new int[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = v.shiftRight(32 * i).intValue();
+        }
+        return limbs;
+    }
+
+    private static int[] add(int[] a, int[] b) {
+        int[] r = new int[LIMBS];
+        long carry = 0;
+        for (int i = 0; i < LIMBS; i++) {
+            long s = (a[i] & MASK) + (b[i] & MASK) + carry;
+            r[i] = (int) s;
+            carry = s >>> 32;
+        }
+        // p is below 2^254, the sum of two reduced values doesn't carry out of the top limb
+        if (!lessThanP(r)) {
+            subtractP(r);
+        }
+        return r;
+    }
+
+    private static int[] sub(int[] a, int[] b) {
+        int[] r = new int[LIMBS];
+        long borrow = 0;
+        for (int i = 0; i < LIMBS; i++) {
+            long d = (a[i] & MASK) - (b[i] & MASK) - borrow;
+            r[i] = (int) d;
+            borrow = d >>> 63;
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int i = 0; i < LIMBS; i++) {
+                long s = (r[i] & MASK) + (P_LIMBS[i] & MASK) + carry;
+                r[i] = (int) s;
+                carry = s >>> 32;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Montgomery product a * b / 2^256 mod p, coarsely integrated operand scanning.
+     */
+    private static int[] mul(int[] a, int[] b) {
+        long[] t = new long[LIMBS + 2];
+        for (int i = 0; i < LIMBS; i++) {
+            long ai = a[i] & MASK;
+            long c = 0;
+            for (int j = 0; j < LIMBS; j++) {
+                long s = t[j] + ai * (b[j] & MASK) + c;
+                t[j] = s & MASK;
+                c = s >>> 32;
+            }
+            long s = t[LIMBS] + c;
+            t[LIMBS] = s & MASK;
+            t[LIMBS + 1] = s >>> 32;
+
+            long q = (t[0] * P_INV) & MASK;
+            s = t[0] + q * (P_LIMBS[0] & MASK);
+            c = s >>> 32;
+            for (int j = 1; j < LIMBS; j++) {
+                s = t[j] + q * (P_LIMBS[j] & MASK) + c;
+                t[j - 1] = s & MASK;
+                c = s >>> 32;
+            }
+            s = t[LIMBS] + c;
+            t[LIMBS - 1] = s & MASK;
+            t[LIMBS] = t[LIMBS + 1] + (s >>> 32);
+        }
+
+        int[] r = new int[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            r[i] = (int) t[i];
+        }
+        if (t[LIMBS] != 0 || !lessThanP(r)) {
+            subtractP(r);
+        }
+        return r;
+    }
+
+    private static boolean lessThanP(int[] r) {
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            int cmp = Integer.compareUnsigned(r[i], P_LIMBS[i]);
+            if (cmp != 0) {
+                return cmp < 0;
+            }
+        }
+        return false;
+    }
+
+    private static void subtractP(int[] r) {
+        long borrow = 0;
+        for (int i = 0; i < LIMBS; i++) {
+            long d = (r[i] & MASK) - (P_LIMBS[i] & MASK) - borrow;
+            r[i] = (int) d;
+            borrow = d >>> 63;
+        }
     }
 
     @Override
@@ -77,16 +223,16 @@ public class Fp implements Field<Fp> {
 
         Fp fp = (Fp) o;
 
-        return !(v != null ? v.compareTo(fp.v) != 0 : fp.v != null);
+        return Arrays.equals(m, fp.m);
     }
 
     @Override
     public int hashCode() {
-        return v.hashCode();
+        return Arrays.hashCode(m);
     }
 
     @Override
     public String toString() {
-        return v.toString();
+        return value().toString();
     }
 }
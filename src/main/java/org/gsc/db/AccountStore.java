@@ -21,12 +21,13 @@ public class AccountStore extends GSCStoreWithRevoking<AccountWrapper> {
   @Autowired
   private AccountStore(@Value("account") String dbName) {
     super(dbName);
+    cacheDecoded();
   }
 
   @Override
   public AccountWrapper get(byte[] key) {
     byte[] value = revokingDB.getUnchecked(key);
-    return ArrayUtils.isEmpty(value) ? null : new AccountWrapper(value);
+    return ArrayUtils.isEmpty(value) ? null : ofUnchecked(key, value);
   }
 
   /**
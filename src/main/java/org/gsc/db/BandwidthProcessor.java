@@ -343,32 +343,57 @@ public class BandwidthProcessor extends ResourceProcessor {
       return false;
     }
 
-    long publicNetLimit = dbManager.getDynamicPropertiesStore().getPublicNetLimit();
-    long publicNetUsage = dbManager.getDynamicPropertiesStore().getPublicNetUsage();
-    long publicNetTime = dbManager.getDynamicPropertiesStore().getPublicNetTime();
-
-    long newPublicNetUsage = increase(publicNetUsage, 0, publicNetTime, now);
-
-    if (bytes > (publicNetLimit - newPublicNetUsage)) {
+    if (!ExecutionLayer.update(new PublicNetUsage(bytes, now))) {
       logger.debug("free public net usage is running out");
       return false;
     }
 
     latestConsumeFreeTime = now;
     long latestOperationTime = dbManager.getHeadBlockTimeStamp();
-    publicNetTime = now;
     newFreeNetUsage = increase(newFreeNetUsage, bytes, latestConsumeFreeTime, now);
-    newPublicNetUsage = increase(newPublicNetUsage, bytes, publicNetTime, now);
     accountWrapper.setFreeNetUsage(newFreeNetUsage);
     accountWrapper.setLatestConsumeFreeTime(latestConsumeFreeTime);
     accountWrapper.setLatestOperationTime(latestOperationTime);
 
-    dbManager.getDynamicPropertiesStore().savePublicNetUsage(newPublicNetUsage);
-    dbManager.getDynamicPropertiesStore().savePublicNetTime(publicNetTime);
     dbManager.getAccountStore().put(accountWrapper.createDbKey(), accountWrapper);
     return true;
   }
 
+  /**
+   * the bytes a transaction takes from the public free net. Every free transaction adds to the
+   * same two rows, executed side by side they are updated as each transaction is committed.
+   */
+  private class PublicNetUsage implements ExecutionLayer.Update {
+
+    private final long bytes;
+    private final long now;
+
+    PublicNetUsage(long bytes, long now) {
+      this.bytes = bytes;
+      this.now = now;
+    }
+
+    private long usage() {
+      long publicNetUsage = dbManager.getDynamicPropertiesStore().getPublicNetUsage();
+      long publicNetTime = dbManager.getDynamicPropertiesStore().getPublicNetTime();
+      return increase(publicNetUsage, 0, publicNetTime, now);
+    }
+
+    @Override
+    public boolean fits() {
+      long publicNetLimit = dbManager.getDynamicPropertiesStore().getPublicNetLimit();
+      return bytes <= publicNetLimit - usage();
+    }
+
+    @Override
+    public void apply() {
+      long publicNetTime = now;
+      long newPublicNetUsage = increase(usage(), bytes, publicNetTime, now);
+      dbManager.getDynamicPropertiesStore().savePublicNetUsage(newPublicNetUsage);
+      dbManager.getDynamicPropertiesStore().savePublicNetTime(publicNetTime);
+    }
+  }
+
 }
 
 
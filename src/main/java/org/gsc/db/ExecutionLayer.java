@@ -0,0 +1,201 @@
+package org.gsc.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.gsc.core.db2.common.IRevokingDB;
+import org.gsc.db.common.WrappedByteArray;
+
+/**
+ * Private write buffer of one transaction executed off the main thread. While a layer is entered
+ * on a thread, the stores of that thread write into the layer instead of their database and read
+ * their own writes back from it; every other key read is recorded, so the scheduler can tell
+ * whether a transaction saw a row an earlier transaction of the block has changed since.
+ *
+ * <p>Rows that every transaction of a kind updates, like the public free net usage, would make
+ * any two of them conflict. A transaction hands those to {@link #update(Update)} instead: it is
+ * checked against the rows without recording the reads and made when the layer is committed, if
+ * the check still comes out the same on the rows the transactions before it left.
+ */
+public class ExecutionLayer {
+
+  private static final ThreadLocal<ExecutionLayer> CURRENT = new ThreadLocal<>();
+  // marks a deleted row, compared by identity so an empty value is never mistaken for it
+  static final byte[] DELETED = new byte[0];
+
+  private final Map<IRevokingDB, Map<WrappedByteArray, byte[]>> writes = new LinkedHashMap<>();
+  private final Map<IRevokingDB, Set<WrappedByteArray>> reads = new HashMap<>();
+  private final List<Runnable> afterCommit = new ArrayList<>();
+  private final List<Update> updates = new ArrayList<>();
+  // whether each of the updates fitted the rows when it was executed
+  private final List<Boolean> fitted = new ArrayList<>();
+  // the transaction iterated a store, its reads can't be checked
+  private boolean untracked;
+  private Throwable failure;
+
+  public static ExecutionLayer current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * run an action once the layer is committed, or right away when no layer is entered.
+   */
+  public static void afterCommit(Runnable action) {
+    ExecutionLayer layer = CURRENT.get();
+    if (layer == null) {
+      action.run();
+    } else {
+      layer.afterCommit.add(action);
+    }
+  }
+
+  public interface Action {
+
+    void run() throws Exception;
+  }
+
+  /**
+   * An update of rows shared by many transactions, made only when they allow it.
+   */
+  public interface Update {
+
+    /**
+     * @return whether the rows as they are now allow the update
+     */
+    boolean fits();
+
+    void apply();
+  }
+
+  /**
+   * make the update if it fits, right away when no layer is entered, else once the layer is
+   * committed. The updates of one layer don't see each other.
+   *
+   * @return whether the update fits
+   */
+  public static boolean update(Update update) {
+    ExecutionLayer layer = CURRENT.get();
+    if (layer == null) {
+      boolean fits = update.fits();
+      if (fits) {
+        update.apply();
+      }
+      return fits;
+    }
+
+    // the rows as the run found them, without recording the reads
+    CURRENT.remove();
+    boolean fits;
+    try {
+      fits = update.fits();
+    } finally {
+      CURRENT.set(layer);
+    }
+    layer.updates.add(update);
+    layer.fitted.add(fits);
+    return fits;
+  }
+
+  /**
+   * run the action with this layer entered on the calling thread, keeping what it throws.
+   */
+  public ExecutionLayer execute(Action action) {
+    CURRENT.set(this);
+    try {
+      action.run();
+    } catch (Throwable t) {
+      failure = t;
+    } finally {
+      CURRENT.remove();
+    }
+    return this;
+  }
+
+  /**
+   * @return the value written by this layer, {@link #DELETED} for a deleted row, null when the
+   *     layer did not touch the key
+   */
+  byte[] getWritten(IRevokingDB db, byte[] key) {
+    Map<WrappedByteArray, byte[]> rows = writes.get(db);
+    return rows == null ? null : rows.get(WrappedByteArray.of(key));
+  }
+
+  void read(IRevokingDB db, byte[] key) {
+    reads.computeIfAbsent(db, k -> new HashSet<>()).add(WrappedByteArray.of(key.clone()));
+  }
+
+  void write(IRevokingDB db, byte[] key, byte[] value) {
+    writes.computeIfAbsent(db, k -> new LinkedHashMap<>())
+        .put(WrappedByteArray.of(key.clone()), value);
+  }
+
+  void markUntracked() {
+    untracked = true;
+  }
+
+  public boolean isUntracked() {
+    return untracked;
+  }
+
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * @param written rows written by the transactions merged before this one
+   */
+  public boolean readsAny(Map<IRevokingDB, Set<WrappedByteArray>> written) {
+    for (Map.Entry<IRevokingDB, Set<WrappedByteArray>> e : reads.entrySet()) {
+      Set<WrappedByteArray> rows = written.get(e.getKey());
+      if (rows == null) {
+        continue;
+      }
+      for (WrappedByteArray key : e.getValue()) {
+        if (rows.contains(key)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether each update fits the rows as they are now the way it did when the transaction
+   *     was executed, so committing makes the same updates executing it now would
+   */
+  public boolean updatesHold() {
+    for (int i = 0; i < updates.size(); i++) {
+      if (updates.get(i).fits() != fitted.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * write the buffered rows into their databases, add their keys to written, then make the
+   * updates that fit.
+   */
+  public void commit(Map<IRevokingDB, Set<WrappedByteArray>> written) {
+    writes.forEach((db, rows) -> {
+      rows.forEach((key, value) -> {
+        if (value == DELETED) {
+          db.delete(key.getBytes());
+        } else {
+          db.put(key.getBytes(), value);
+        }
+      });
+      written.computeIfAbsent(db, k -> new HashSet<>()).addAll(rows.keySet());
+    });
+    for (int i = 0; i < updates.size(); i++) {
+      if (fitted.get(i)) {
+        updates.get(i).apply();
+      }
+    }
+    afterCommit.forEach(Runnable::run);
+  }
+}
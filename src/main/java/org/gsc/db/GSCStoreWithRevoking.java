@@ -1,12 +1,17 @@
 package org.gsc.db;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Streams;
 import com.google.common.reflect.TypeToken;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import javax.annotation.PostConstruct;
@@ -14,6 +19,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.gsc.core.db2.core.IGSCChainBase;
 import org.gsc.core.wrapper.ProtoWrapper;
+import org.gsc.db.common.WrappedByteArray;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.gsc.config.args.Args;
 import org.gsc.db.api.IndexHelper;
@@ -28,6 +34,11 @@ public abstract class GSCStoreWithRevoking<T extends ProtoWrapper> implements IG
 
   protected IRevokingDB revokingDB;
   private TypeToken<T> token = new TypeToken<T>(getClass()) {};
+  // resolved once per store, looking the constructor up on every read is what made of() slow
+  private Constructor<T> factory;
+  // wrapper constructor taking the decoded protobuf message, only set when decoded values are cached
+  private Constructor<T> instanceFactory;
+  private Cache<WrappedByteArray, Decoded> decodedCache;
   @Autowired
   private RevokingDatabase revokingDatabase;
   @Autowired(required = false)
@@ -50,6 +61,8 @@ public abstract class GSCStoreWithRevoking<T extends ProtoWrapper> implements IG
   @PostConstruct
   private void init() {
     revokingDatabase.add(revokingDB);
+    // registered unwrapped, the revoking database works on the concrete implementations
+    revokingDB = new LayeredRevokingDB(revokingDB);
   }
 
   // only for test
@@ -57,54 +70,127 @@ public abstract class GSCStoreWithRevoking<T extends ProtoWrapper> implements IG
       this.revokingDB = new RevokingDBWithCachingOldValue(dbName, (AbstractRevokingStore) revokingDatabase);
   }
 
+  /**
+   * keep up to storage.db.decodedCacheSize recently decoded messages of this store, so hot rows
+   * skip the protobuf parsing. The messages are immutable and every read wraps them in a new
+   * wrapper, so a caller modifying its wrapper never touches the cached message.
+   */
+  protected void cacheDecoded() {
+    int size = Args.getInstance().getStorage().getDecodedCacheSize();
+    if (size <= 0) {
+      return;
+    }
+
+    try {
+      Class<?> instanceType = token.getRawType().getMethod("getInstance").getReturnType();
+      instanceFactory = (Constructor<T>) token.getRawType().getConstructor(instanceType);
+    } catch (NoSuchMethodException e) {
+      logger.warn("{} can't be built from its message, decoded cache disabled.", getName());
+      return;
+    }
+
+    decodedCache = CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .recordStats()
+        .build();
+  }
+
   @Override
   public void put(byte[] key, T item) {
     if (Objects.isNull(key) || Objects.isNull(item)) {
       return;
     }
 
-    revokingDB.put(key, item.getData());
+    byte[] value = item.getData();
+    revokingDB.put(key, value);
+    if (decodedCache != null) {
+      decodedCache.put(WrappedByteArray.of(key.clone()), new Decoded(value, item.getInstance()));
+    }
   }
 
   @Override
   public void delete(byte[] key) {
     revokingDB.delete(key);
+    if (decodedCache != null) {
+      decodedCache.invalidate(WrappedByteArray.of(key));
+    }
   }
 
   @Override
   public T get(byte[] key) throws ItemNotFoundException, BadItemException {
-    return of(revokingDB.get(key));
+    return of(key, revokingDB.get(key));
   }
 
   @Override
   public T getUnchecked(byte[] key) {
-    byte[] value = revokingDB.getUnchecked(key);
+    return ofUnchecked(key, revokingDB.getUnchecked(key));
+  }
+
+  /**
+   * getUnchecked of every one of keys, with the rows read in one batch.
+   */
+  public List<T> getAllUnchecked(List<byte[]> keys) {
+    List<byte[]> values = revokingDB.getAll(keys);
+    List<T> items = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      items.add(ofUnchecked(keys.get(i), values.get(i)));
+    }
+    return items;
+  }
 
+  protected T ofUnchecked(byte[] key, byte[] value) {
     try {
-      return of(value);
+      return of(key, value);
     } catch (BadItemException e) {
       return null;
     }
   }
 
   /**
-   * Constructor<T> constructor = token.getRawType().getConstructor(byte[].class);
-   * add (Constructor<T>)  by kay 2018-09-04
-   * @param value
-   * @return
-   * @throws BadItemException
+   * decode the value stored under key, reusing the cached message when the stored bytes are
+   * still the ones it was decoded from. Comparing the bytes keeps the cache right across
+   * revoked and merged snapshots, which change rows without going through this store.
    */
+  protected T of(byte[] key, byte[] value) throws BadItemException {
+    if (decodedCache == null || value == null) {
+      return of(value);
+    }
+
+    WrappedByteArray k = WrappedByteArray.of(key);
+    Decoded decoded = decodedCache.getIfPresent(k);
+    if (decoded != null && Arrays.equals(decoded.data, value)) {
+      return newInstance(instanceFactory, decoded.instance);
+    }
+
+    T t = of(value);
+    decodedCache.put(WrappedByteArray.of(key.clone()), new Decoded(value, t.getInstance()));
+    return t;
+  }
+
   public T of(byte[] value) throws BadItemException {
+    if (factory == null) {
+      try {
+        factory = (Constructor<T>) token.getRawType().getConstructor(byte[].class);
+      } catch (NoSuchMethodException e) {
+        throw new BadItemException(e.getMessage());
+      }
+    }
+
+    return newInstance(factory, value);
+  }
+
+  private T newInstance(Constructor<T> constructor, Object arg) throws BadItemException {
     try {
-      Constructor<T> constructor = (Constructor<T>) token.getRawType().getConstructor(byte[].class);
-      @SuppressWarnings("unchecked")
-      T t = constructor.newInstance((Object) value);
-      return t;
-    } catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
+      return constructor.newInstance(arg);
+    } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
       throw new BadItemException(e.getMessage());
     }
   }
 
+  public long getDecodedCacheHitCount() {
+    return decodedCache == null ? 0 : decodedCache.stats().hitCount();
+  }
+
   @Override
   public boolean has(byte[] key) {
     return revokingDB.has(key);
@@ -123,6 +209,9 @@ public abstract class GSCStoreWithRevoking<T extends ProtoWrapper> implements IG
   @Override
   public void reset() {
     revokingDB.reset();
+    if (decodedCache != null) {
+      decodedCache.invalidateAll();
+    }
   }
 
   @Override
@@ -140,4 +229,14 @@ public abstract class GSCStoreWithRevoking<T extends ProtoWrapper> implements IG
     return Streams.stream(revokingDB.iterator()).count();
   }
 
+  private static class Decoded {
+
+    private final byte[] data;
+    private final Object instance;
+
+    private Decoded(byte[] data, Object instance) {
+      this.data = data;
+      this.instance = instance;
+    }
+  }
 }
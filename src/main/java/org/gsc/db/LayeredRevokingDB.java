@@ -0,0 +1,139 @@
+package org.gsc.db;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.apache.commons.lang3.ArrayUtils;
+import org.gsc.core.db2.common.IRevokingDB;
+import org.gsc.core.exception.ItemNotFoundException;
+
+/**
+ * Routes the reads and writes of a thread that entered an {@link ExecutionLayer} to the layer,
+ * everything else goes straight to the wrapped database. Iterating while a layer is entered
+ * doesn't see the layer's own writes, the layer is marked untracked so its transaction is run
+ * again on the main thread.
+ */
+public class LayeredRevokingDB implements IRevokingDB {
+
+  @Getter
+  private final IRevokingDB db;
+
+  public LayeredRevokingDB(IRevokingDB db) {
+    this.db = db;
+  }
+
+  @Override
+  public void put(byte[] key, byte[] newValue) {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer == null) {
+      db.put(key, newValue);
+    } else if (key != null && newValue != null) {
+      layer.write(db, key, newValue);
+    }
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer == null) {
+      db.delete(key);
+    } else {
+      layer.write(db, key, ExecutionLayer.DELETED);
+    }
+  }
+
+  @Override
+  public boolean has(byte[] key) {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer == null) {
+      return db.has(key);
+    }
+
+    byte[] value = layer.getWritten(db, key);
+    if (value == null) {
+      layer.read(db, key);
+      return db.has(key);
+    }
+    return value != ExecutionLayer.DELETED;
+  }
+
+  @Override
+  public byte[] get(byte[] key) throws ItemNotFoundException {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer == null) {
+      return db.get(key);
+    }
+
+    byte[] value = layer.getWritten(db, key);
+    if (value == null) {
+      layer.read(db, key);
+      return db.get(key);
+    }
+    if (ArrayUtils.isEmpty(value)) {
+      throw new ItemNotFoundException();
+    }
+    return value;
+  }
+
+  @Override
+  public byte[] getUnchecked(byte[] key) {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer == null) {
+      return db.getUnchecked(key);
+    }
+
+    byte[] value = layer.getWritten(db, key);
+    if (value == null) {
+      layer.read(db, key);
+      return db.getUnchecked(key);
+    }
+    return ArrayUtils.isEmpty(value) ? null : value;
+  }
+
+  @Override
+  public List<byte[]> getAll(List<byte[]> keys) {
+    if (ExecutionLayer.current() == null) {
+      return db.getAll(keys);
+    }
+    // one by one, so the layer sees its own writes and records what it read
+    return keys.stream().map(this::getUnchecked).collect(Collectors.toList());
+  }
+
+  @Override
+  public void close() {
+    db.close();
+  }
+
+  @Override
+  public void reset() {
+    db.reset();
+  }
+
+  @Override
+  public Set<byte[]> getlatestValues(long limit) {
+    markUntracked();
+    return db.getlatestValues(limit);
+  }
+
+  @Override
+  public Set<byte[]> getValuesNext(byte[] key, long limit) {
+    markUntracked();
+    return db.getValuesNext(key, limit);
+  }
+
+  @Override
+  public Iterator<Map.Entry<byte[], byte[]>> iterator() {
+    markUntracked();
+    return db.iterator();
+  }
+
+  private static void markUntracked() {
+    ExecutionLayer layer = ExecutionLayer.current();
+    if (layer != null) {
+      layer.markUntracked();
+    }
+  }
+}
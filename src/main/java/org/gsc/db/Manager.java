@@ -10,6 +10,7 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.gsc.common.overlay.discover.node.Node;
+import org.gsc.common.storage.BlockDepositCache;
 import org.gsc.common.storage.DepositImpl;
 import org.gsc.common.utils.*;
 import org.gsc.config.Parameter.ChainConstant;
@@ -18,6 +19,8 @@ import org.gsc.config.args.GenesisBlock;
 import org.gsc.core.Constant;
 import org.gsc.core.db2.core.IGSCChainBase;
 import org.gsc.core.db2.core.ISession;
+import org.gsc.core.db2.core.SnapshotManager;
+import org.gsc.core.db2.core.StateCheckpoint;
 import org.gsc.core.exception.*;
 import org.gsc.core.witness.ProposalController;
 import org.gsc.core.witness.WitnessController;
@@ -25,7 +28,10 @@ import org.gsc.core.wrapper.*;
 import org.gsc.core.wrapper.BlockWrapper.BlockId;
 import org.gsc.core.wrapper.utils.BlockUtil;
 import org.gsc.db.KhaosDatabase.KhaosBlock;
+import org.gsc.db.common.WrappedByteArray;
 import org.gsc.protos.Protocol.AccountType;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
 import org.gsc.protos.Protocol.Transaction;
 import org.gsc.runtime.Runtime;
 import org.gsc.runtime.vm.program.invoke.ProgramInvokeFactoryImpl;
@@ -121,6 +127,19 @@ public class Manager {
 
   private ExecutorService validateSignService;
 
+  private ParallelTransactionExecutor transactionExecutor;
+
+  // the state of the last two checkpointed blocks, for nodes restoring their stores from it
+  private volatile StateCheckpoint stateCheckpoint;
+  private volatile StateCheckpoint previousStateCheckpoint;
+  // the last block a checkpoint was asked for, it may not be pinned yet
+  private long stateCheckpointNum;
+  private ExecutorService stateCheckpointExecutor;
+
+  // what the transactions of the block being processed read and wrote through their deposits
+  @Getter
+  private BlockDepositCache blockDepositCache;
+
   private Thread repushThread;
 
   private boolean isRunRepushThread = true;
@@ -321,6 +340,8 @@ public class Manager {
       System.exit(1);
     }
     forkController.init(this);
+    getTransactionStore().getRecentTransactions()
+        .reset(getDynamicPropertiesStore().getLatestBlockHeaderTimestamp());
     revokingStore.enable();
 
 //    this.codeStore = CodeStore.create("code");
@@ -329,6 +350,17 @@ public class Manager {
 
     validateSignService = Executors
         .newFixedThreadPool(Args.getInstance().getValidateSignThreadNum());
+    if (Args.getInstance().getExecuteTransactionThreadNum() > 1) {
+      transactionExecutor = new ParallelTransactionExecutor(this,
+          Args.getInstance().getExecuteTransactionThreadNum());
+    }
+
+    if (revokingStore instanceof SnapshotManager
+        && Args.getInstance().getStateCheckpointInterval() > 0) {
+      stateCheckpointExecutor = Executors.newSingleThreadExecutor(
+          r -> new Thread(r, "state-checkpoint"));
+      ((SnapshotManager) revokingStore).addFlushListener(this::checkpointState);
+    }
 
     repushThread = new Thread(repushLoop);
     repushThread.start();
@@ -525,7 +557,14 @@ public class Manager {
   }
 
   void validateDup(TransactionWrapper transactionCapsule) throws DupTransactionException {
-    if (getTransactionStore().getUnchecked(transactionCapsule.getTransactionId().getBytes())
+    RecentTransactionIndex.State state = getTransactionStore().getRecentTransactions()
+        .lookup(transactionCapsule.getTransactionId(), transactionCapsule.getExpiration());
+    if (state == RecentTransactionIndex.State.ABSENT) {
+      return;
+    }
+
+    if (state == RecentTransactionIndex.State.PRESENT
+        || getTransactionStore().getUnchecked(transactionCapsule.getTransactionId().getBytes())
         != null) {
       logger.debug(ByteArray.toHexString(transactionCapsule.getTransactionId().getBytes()));
       throw new DupTransactionException("dup trans");
@@ -620,6 +659,8 @@ public class Manager {
       logger.info("begin to erase block:" + oldHeadBlock);
       khaosDb.pop();
       revokingStore.pop();
+      oldHeadBlock.getTransactions().forEach(trx ->
+          getTransactionStore().getRecentTransactions().unconfirm(trx.getTransactionId()));
       logger.info("end to erase block:" + oldHeadBlock);
       popedTransactions.addAll(oldHeadBlock.getTransactions());
       // todo: need add ??
@@ -639,6 +680,11 @@ public class Manager {
     this.blockStore.put(block.getBlockId().getBytes(), block);
     this.blockIndexStore.put(block.getBlockId());
     updateFork();
+
+    RecentTransactionIndex recentTransactions = getTransactionStore().getRecentTransactions();
+    block.getTransactions().forEach(trx ->
+        recentTransactions.confirm(trx.getTransactionId(), trx.getExpiration()));
+    recentTransactions.expire(getDynamicPropertiesStore().getLatestBlockHeaderTimestamp());
   }
 
   private void switchFork(BlockWrapper newHead)
@@ -758,7 +804,7 @@ public class Manager {
           throw new BadBlockException("The signature is not validated");
         }
 
-        if (!block.calcMerkleRoot().equals(block.getMerkleRoot())) {
+        if (!block.validateMerkleRoot()) {
           logger.warn(
               "The merkle root doesn't match, Calc result is "
                   + block.calcMerkleRoot()
@@ -991,7 +1037,7 @@ public class Manager {
 //      throw new UnsupportVMException("this node doesn't support vm, trx id: " + trxCap.getTransactionId().toString());
 //    }
 
-    DepositImpl deposit = DepositImpl.createRoot(this);
+    DepositImpl deposit = DepositImpl.createRoot(this, blockDepositCache);
     Runtime runtime = new Runtime(trace, blockCap, deposit, new ProgramInvokeFactoryImpl());
     if (runtime.isCallConstant()) {
       // Fixme Wrong exception
@@ -1037,6 +1083,7 @@ public class Manager {
 
     transactionHistoryStore.put(trxCap.getTransactionId().getBytes(), transactionInfo);
 
+    ExecutionLayer.afterCommit(deposit::publish);
     return true;
   }
 
@@ -1226,11 +1273,24 @@ public class Manager {
       throw new ValidateScheduleException("validateWitnessSchedule error");
     }
 
-    for (TransactionWrapper transactionCapsule : block.getTransactions()) {
-      if (block.generatedByMyself) {
-        transactionCapsule.setVerified(true);
+    blockDepositCache = new BlockDepositCache();
+    try {
+      for (TransactionWrapper transactionCapsule : block.getTransactions()) {
+        if (block.generatedByMyself) {
+          transactionCapsule.setVerified(true);
+        }
+        if (transactionExecutor == null) {
+          processTransaction(transactionCapsule, block);
+        }
+      }
+      if (transactionExecutor != null) {
+        transactionExecutor.execute(block);
       }
-      processTransaction(transactionCapsule, block);
+    } finally {
+      logger.debug("block {} deposit cache hits: code {}, contract {}, storage {}, misses {}",
+          block.getNum(), blockDepositCache.getCodeHits(), blockDepositCache.getContractHits(),
+          blockDepositCache.getStorageHits(), blockDepositCache.getMisses());
+      blockDepositCache = null;
     }
 
     // update witness dynamicPropertiesStore.getNextMaintenanceTime() <= blockTime;
@@ -1326,6 +1386,119 @@ public class Manager {
     return dynamicPropertiesStore.getLatestBlockHeaderNumber() - revokingStore.size();
   }
 
+  // called by every flush, the stores in levelDB hold the state after the root block once it is
+  // written. The block being applied doesn't wait for that, the checkpoint is taken in between.
+  private void checkpointState() {
+    long rootNum = dynamicPropertiesStore.getLatestBlockHeaderNumber() - revokingStore.size();
+    if (rootNum <= 0 || rootNum % Args.getInstance().getStateCheckpointInterval() != 0
+        || rootNum == stateCheckpointNum) {
+      return;
+    }
+
+    BlockId blockId;
+    try {
+      blockId = getBlockIdByNum(rootNum);
+    } catch (ItemNotFoundException e) {
+      logger.warn("failed to checkpoint state at block {}: {}", rootNum, e.getMessage());
+      return;
+    }
+    stateCheckpointNum = rootNum;
+    ((SnapshotManager) revokingStore).checkpoint(rootNum, blockId)
+        .whenComplete((checkpoint, t) -> {
+          if (t != null) {
+            logger.warn("failed to checkpoint state at block {}: {}", rootNum, t.getMessage());
+            return;
+          }
+          try {
+            stateCheckpointExecutor.execute(() -> useStateCheckpoint(checkpoint));
+          } catch (RejectedExecutionException e) {
+            checkpoint.close();
+          }
+        });
+  }
+
+  // on the checkpoint thread, in the order the checkpoints were taken
+  private void useStateCheckpoint(StateCheckpoint checkpoint) {
+    if (previousStateCheckpoint != null) {
+      previousStateCheckpoint.close();
+    }
+    previousStateCheckpoint = stateCheckpoint;
+    stateCheckpoint = checkpoint;
+    try {
+      checkpoint.getManifest();
+    } catch (IllegalStateException e) {
+      logger.info("state checkpoint at block {} closed before its manifest was built",
+          checkpoint.getBlockNum());
+    }
+  }
+
+  private StateCheckpoint getStateCheckpoint(long blockNum) {
+    for (StateCheckpoint checkpoint : Arrays.asList(stateCheckpoint, previousStateCheckpoint)) {
+      if (checkpoint != null && checkpoint.getBlockNum() == blockNum
+          && checkpoint.isManifestReady()) {
+        return checkpoint;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * the manifest of the state checkpoint at blockNum, null if there is none ready.
+   */
+  public StateManifest getStateManifest(long blockNum) {
+    StateCheckpoint checkpoint = getStateCheckpoint(blockNum);
+    return checkpoint == null ? null : checkpoint.getManifest();
+  }
+
+  /**
+   * a chunk of the state checkpoint at blockNum, null if there is no such chunk.
+   */
+  public StateChunk getStateChunk(long blockNum, String store, int index) {
+    StateCheckpoint checkpoint = getStateCheckpoint(blockNum);
+    return checkpoint == null ? null : checkpoint.getChunk(store, index);
+  }
+
+  /**
+   * drop the state of this node, which must not have applied any block, to restore it from a
+   * state checkpoint.
+   */
+  public synchronized void beginStateRestore() {
+    if (!(revokingStore instanceof SnapshotManager)) {
+      throw new IllegalStateException("state can only be restored with db version 2.");
+    }
+    if (dynamicPropertiesStore.getLatestBlockHeaderNumber() != 0) {
+      throw new IllegalStateException("state can only be restored before the first block.");
+    }
+
+    session.reset();
+    pendingTransactions.clear();
+    ((SnapshotManager) revokingStore).beginRestore();
+  }
+
+  /**
+   * write a verified chunk of a state checkpoint.
+   */
+  public synchronized void restoreState(StateChunk chunk) {
+    Map<WrappedByteArray, WrappedByteArray> rows = new HashMap<>();
+    chunk.getRowsList().forEach(row -> rows.put(WrappedByteArray.of(row.getKey().toByteArray()),
+        WrappedByteArray.of(row.getValue().toByteArray())));
+    ((SnapshotManager) revokingStore).restore(chunk.getStore(), rows);
+  }
+
+  /**
+   * continue from the head block of the restored state.
+   */
+  public synchronized void finishStateRestore() throws ItemNotFoundException, BadItemException {
+    ((SnapshotManager) revokingStore).finishRestore();
+    // what init loaded from the genesis state
+    khaosDb.start(getBlockById(dynamicPropertiesStore.getLatestBlockHeaderHash()));
+    forkController.init(this);
+    forkController.reset();
+    getTransactionStore().getRecentTransactions()
+        .reset(dynamicPropertiesStore.getLatestBlockHeaderTimestamp());
+    logger.info("state restored at block {}", dynamicPropertiesStore.getLatestBlockHeaderNumber());
+  }
+
   public BlockId getSolidBlockId() {
     try {
       long num = dynamicPropertiesStore.getLatestSolidifiedBlockNum();
@@ -1428,6 +1601,23 @@ public class Manager {
 
   public void closeAllStore() {
     System.err.println("******** begin to close db ********");
+    if (stateCheckpointExecutor != null) {
+      stateCheckpointExecutor.shutdown();
+      try {
+        stateCheckpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (transactionExecutor != null) {
+      transactionExecutor.close();
+    }
+    if (stateCheckpoint != null) {
+      stateCheckpoint.close();
+    }
+    if (previousStateCheckpoint != null) {
+      previousStateCheckpoint.close();
+    }
     closeOneStore(accountStore);
     closeOneStore(blockStore);
     closeOneStore(blockIndexStore);
@@ -1472,41 +1662,32 @@ public class Manager {
 
   private static class ValidateSignTask implements Callable<Boolean> {
 
-    private TransactionWrapper trx;
-    private CountDownLatch countDownLatch;
+    private List<TransactionWrapper> trxs;
 
-    ValidateSignTask(TransactionWrapper trx, CountDownLatch countDownLatch) {
-      this.trx = trx;
-      this.countDownLatch = countDownLatch;
+    ValidateSignTask(List<TransactionWrapper> trxs) {
+      this.trxs = trxs;
     }
 
     @Override
     public Boolean call() throws ValidateSignatureException {
-      try {
-        trx.validateSignature();
-      } catch (ValidateSignatureException e) {
-        throw e;
-      } finally {
-        countDownLatch.countDown();
-      }
+      TransactionWrapper.validateSignatures(trxs);
       return true;
     }
   }
 
-  public synchronized void preValidateTransactionSign(BlockWrapper block)
+  public void preValidateTransactionSign(BlockWrapper block)
       throws InterruptedException, ValidateSignatureException {
     logger.info("PreValidate Transaction Sign, size:" + block.getTransactions().size()
         + ",block num:" + block.getNum());
+    // a chunk per thread, the signatures of a chunk are recovered together
     int transSize = block.getTransactions().size();
-    CountDownLatch countDownLatch = new CountDownLatch(transSize);
-    List<Future<Boolean>> futures = new ArrayList<>(transSize);
+    int threadNum = Math.max(1, Args.getInstance().getValidateSignThreadNum());
+    int chunkSize = Math.max(1, (transSize + threadNum - 1) / threadNum);
+    List<Future<Boolean>> futures = new ArrayList<>(threadNum);
 
-    for (TransactionWrapper transaction : block.getTransactions()) {
-      Future<Boolean> future = validateSignService
-          .submit(new ValidateSignTask(transaction, countDownLatch));
-      futures.add(future);
+    for (List<TransactionWrapper> chunk : Lists.partition(block.getTransactions(), chunkSize)) {
+      futures.add(validateSignService.submit(new ValidateSignTask(chunk)));
     }
-    countDownLatch.await();
 
     for (Future<Boolean> future : futures) {
       try {
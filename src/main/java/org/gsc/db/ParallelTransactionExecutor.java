@@ -0,0 +1,213 @@
+package org.gsc.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.core.db2.common.IRevokingDB;
+import org.gsc.core.exception.AccountResourceInsufficientException;
+import org.gsc.core.exception.ContractExeException;
+import org.gsc.core.exception.ContractValidateException;
+import org.gsc.core.exception.DupTransactionException;
+import org.gsc.core.exception.ReceiptCheckErrException;
+import org.gsc.core.exception.ReceiptException;
+import org.gsc.core.exception.TaposException;
+import org.gsc.core.exception.TooBigTransactionException;
+import org.gsc.core.exception.TooBigTransactionResultException;
+import org.gsc.core.exception.TransactionExpirationException;
+import org.gsc.core.exception.TransactionTraceException;
+import org.gsc.core.exception.UnsupportVMException;
+import org.gsc.core.exception.ValidateSignatureException;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.core.wrapper.TransactionWrapper;
+import org.gsc.db.common.WrappedByteArray;
+import org.gsc.protos.Contract.TransferAssetContract;
+import org.gsc.protos.Contract.TransferContract;
+import org.gsc.protos.Protocol.Transaction.Contract;
+
+/**
+ * Executes the transactions of a block on several threads with the same outcome as executing them
+ * one after the other.
+ *
+ * <p>Runs of consecutive transfers touching distinct accounts are executed together, each
+ * transaction into its own {@link ExecutionLayer} against the state before the run. Once the whole
+ * run is done the layers are committed in block order on the calling thread; a transaction that
+ * read a row written by an earlier one of the run, whose {@link ExecutionLayer.Update updates} no
+ * longer fit the same way, or that failed, is executed again on top of what was committed so far.
+ * Every other kind of transaction is executed alone, as before.
+ */
+@Slf4j
+public class ParallelTransactionExecutor {
+
+  private final Manager manager;
+  private final ExecutorService workers;
+  // transactions of runs executed again on the calling thread, since the start
+  private long reexecuted;
+
+  public ParallelTransactionExecutor(Manager manager, int threadNum) {
+    this.manager = manager;
+    this.workers = Executors.newFixedThreadPool(threadNum,
+        new ThreadFactoryBuilder().setNameFormat("execute-trx-%d").setDaemon(true).build());
+  }
+
+  public void execute(BlockWrapper block)
+      throws ValidateSignatureException, ContractValidateException, ContractExeException,
+      ReceiptException, AccountResourceInsufficientException, TransactionExpirationException,
+      TooBigTransactionException, TooBigTransactionResultException, DupTransactionException,
+      TaposException, TransactionTraceException, ReceiptCheckErrException, UnsupportVMException {
+    List<TransactionWrapper> transactions = block.getTransactions();
+    int from = 0;
+    while (from < transactions.size()) {
+      int to = nextRun(transactions, from);
+      if (to - from == 1) {
+        manager.processTransaction(transactions.get(from), block);
+      } else {
+        executeRun(transactions.subList(from, to), block);
+      }
+      from = to;
+    }
+  }
+
+  private void executeRun(List<TransactionWrapper> run, BlockWrapper block)
+      throws ValidateSignatureException, ContractValidateException, ContractExeException,
+      ReceiptException, AccountResourceInsufficientException, TransactionExpirationException,
+      TooBigTransactionException, TooBigTransactionResultException, DupTransactionException,
+      TaposException, TransactionTraceException, ReceiptCheckErrException, UnsupportVMException {
+    // may mark the chain forked, which must not end up in a layer
+    manager.getForkController().shouldBeForked();
+
+    List<Future<ExecutionLayer>> futures = new ArrayList<>(run.size());
+    for (TransactionWrapper trx : run) {
+      futures.add(workers.submit(
+          () -> new ExecutionLayer().execute(() -> manager.processTransaction(trx, block))));
+    }
+    // nothing is written to the stores before every worker is done reading them
+    List<ExecutionLayer> layers = new ArrayList<>(run.size());
+    for (Future<ExecutionLayer> future : futures) {
+      layers.add(await(future));
+    }
+
+    Map<IRevokingDB, Set<WrappedByteArray>> written = new HashMap<>();
+    boolean direct = false;
+    int reexecuted = 0;
+    for (int i = 0; i < run.size(); i++) {
+      TransactionWrapper trx = run.get(i);
+      if (direct) {
+        manager.processTransaction(trx, block);
+        continue;
+      }
+
+      ExecutionLayer layer = layers.get(i);
+      if (!isClean(layer) || layer.readsAny(written) || !layer.updatesHold()) {
+        ++reexecuted;
+        layer = new ExecutionLayer().execute(() -> manager.processTransaction(trx, block));
+        if (!isClean(layer)) {
+          // throws the failure with its own type, what it writes isn't tracked from here on
+          direct = true;
+          manager.processTransaction(trx, block);
+          continue;
+        }
+      }
+      layer.commit(written);
+    }
+    this.reexecuted += reexecuted;
+    logger.debug("executed {} transactions in parallel, {} again", run.size(), reexecuted);
+  }
+
+  public long getReexecuted() {
+    return reexecuted;
+  }
+
+  /**
+   * stop the workers, once the block being executed, if any, is done.
+   */
+  public void close() {
+    workers.shutdown();
+    try {
+      workers.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static boolean isClean(ExecutionLayer layer) {
+    return layer.getFailure() == null && !layer.isUntracked();
+  }
+
+  private static ExecutionLayer await(Future<ExecutionLayer> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      // execute() keeps what the transaction throws, only a rejected task ends up here
+      ExecutionLayer layer = new ExecutionLayer();
+      layer.markUntracked();
+      return layer;
+    }
+  }
+
+  /**
+   * @return the end of the run starting at from, a run of one for a transaction that isn't a
+   *     transfer or that shares an account with the one before it.
+   */
+  private static int nextRun(List<TransactionWrapper> transactions, int from) {
+    Set<ByteString> keys = new HashSet<>();
+    int to = from;
+    while (to < transactions.size()) {
+      Set<ByteString> trxKeys = declaredKeys(transactions.get(to));
+      if (trxKeys.isEmpty() || !Collections.disjoint(keys, trxKeys)) {
+        break;
+      }
+      keys.addAll(trxKeys);
+      ++to;
+    }
+    return Math.max(to, from + 1);
+  }
+
+  /**
+   * @return the accounts a transfer is known to touch, with its id since the dup check of two
+   *     copies of a transaction must not run side by side, or nothing for any other transaction.
+   */
+  private static Set<ByteString> declaredKeys(TransactionWrapper trx) {
+    List<Contract> contracts = trx.getInstance().getRawData().getContractList();
+    if (contracts.size() != 1) {
+      return Collections.emptySet();
+    }
+
+    Set<ByteString> keys = new HashSet<>();
+    Contract contract = contracts.get(0);
+    try {
+      switch (contract.getType()) {
+        case TransferContract:
+          TransferContract transfer = contract.getParameter().unpack(TransferContract.class);
+          keys.add(transfer.getOwnerAddress());
+          keys.add(transfer.getToAddress());
+          break;
+        case TransferAssetContract:
+          TransferAssetContract transferAsset =
+              contract.getParameter().unpack(TransferAssetContract.class);
+          keys.add(transferAsset.getOwnerAddress());
+          keys.add(transferAsset.getToAddress());
+          break;
+        default:
+          return Collections.emptySet();
+      }
+    } catch (InvalidProtocolBufferException e) {
+      return Collections.emptySet();
+    }
+    keys.add(ByteString.copyFrom(trx.getTransactionId().getBytes()));
+    return keys;
+  }
+}
@@ -0,0 +1,141 @@
+package org.gsc.db;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.Constant;
+
+/**
+ * Ids of the transactions written to the transaction store lately, bucketed by expiration, so the
+ * dup check can answer most lookups without reading the store.
+ *
+ * <p>Every id written to the store is added, and nothing is removed when a session is revoked, so
+ * the index is a superset of the store for expirations above {@link #coveredAfter}. Ids of
+ * transactions in applied blocks are confirmed, and unconfirmed again when their block is erased
+ * on a fork switch, so a confirmed id is known to be in the store. Buckets are dropped once the
+ * head block passes their expiration or the index is full; the covered range shrinks with them.
+ */
+@Slf4j
+public class RecentTransactionIndex {
+
+  public enum State {
+    PRESENT, ABSENT, UNKNOWN
+  }
+
+  private static final long BUCKET_MS = 60 * 1_000L;
+  private static final int DEFAULT_MAX_SIZE = 500_000;
+
+  private final int maxSize;
+  private final Map<Sha256Hash, Entry> entries = new HashMap<>();
+  private final NavigableMap<Long, Set<Sha256Hash>> buckets = new TreeMap<>();
+  // ids expiring at or before it may be in the store without being in the index
+  private long coveredAfter = Long.MAX_VALUE;
+  // ids expiring at or before it are not kept anymore
+  private long droppedUntil = Long.MIN_VALUE;
+
+  public RecentTransactionIndex() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public RecentTransactionIndex(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * start over at the given head block time. Transactions written before could expire as late as
+   * one maximum expiration window later, the index only covers what expires after that.
+   */
+  public synchronized void reset(long headBlockTime) {
+    entries.clear();
+    buckets.clear();
+    droppedUntil = Long.MIN_VALUE;
+    coveredAfter = headBlockTime + Constant.MAXIMUM_TIME_UNTIL_EXPIRATION;
+  }
+
+  public synchronized State lookup(Sha256Hash id, long expiration) {
+    Entry entry = entries.get(id);
+    if (entry != null) {
+      return entry.confirmations > 0 ? State.PRESENT : State.UNKNOWN;
+    }
+    return expiration > coveredAfter ? State.ABSENT : State.UNKNOWN;
+  }
+
+  /**
+   * the transaction was written to the store, possibly in a session that is revoked later.
+   */
+  public synchronized void add(Sha256Hash id, long expiration) {
+    entry(id, expiration);
+  }
+
+  /**
+   * the transaction is part of an applied block of the main chain.
+   */
+  public synchronized void confirm(Sha256Hash id, long expiration) {
+    Entry entry = entry(id, expiration);
+    if (entry != null) {
+      ++entry.confirmations;
+    }
+  }
+
+  /**
+   * the block holding the transaction was erased.
+   */
+  public synchronized void unconfirm(Sha256Hash id) {
+    Entry entry = entries.get(id);
+    if (entry != null && entry.confirmations > 0) {
+      --entry.confirmations;
+    }
+  }
+
+  /**
+   * drop the buckets whose transactions all expire at or before the head block time, they can't
+   * pass the expiration check anymore.
+   */
+  public synchronized void expire(long headBlockTime) {
+    while (!buckets.isEmpty() && bucketEnd(buckets.firstKey()) <= headBlockTime) {
+      dropFirstBucket();
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private Entry entry(Sha256Hash id, long expiration) {
+    Entry entry = entries.get(id);
+    if (entry != null || expiration <= droppedUntil) {
+      return entry;
+    }
+
+    entry = new Entry();
+    entries.put(id, entry);
+    buckets.computeIfAbsent(Math.floorDiv(expiration, BUCKET_MS), k -> new HashSet<>()).add(id);
+    while (entries.size() > maxSize && buckets.size() > 1) {
+      dropFirstBucket();
+    }
+    return entries.get(id);
+  }
+
+  private void dropFirstBucket() {
+    Map.Entry<Long, Set<Sha256Hash>> first = buckets.pollFirstEntry();
+    first.getValue().forEach(entries::remove);
+    droppedUntil = Math.max(droppedUntil, bucketEnd(first.getKey()));
+    if (coveredAfter != Long.MAX_VALUE) {
+      coveredAfter = Math.max(coveredAfter, droppedUntil);
+    }
+  }
+
+  private static long bucketEnd(long bucket) {
+    return (bucket + 1) * BUCKET_MS - 1;
+  }
+
+  private static class Entry {
+
+    private int confirmations;
+  }
+}
@@ -1,5 +1,6 @@
 package org.gsc.db;
 
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.gsc.core.wrapper.StorageRowWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,14 @@ public class StorageRowStore extends GSCStoreWithRevoking<StorageRowWrapper> {
     return row;
   }
 
+  public List<StorageRowWrapper> get(List<byte[]> keys) {
+    List<StorageRowWrapper> rows = getAllUnchecked(keys);
+    for (int i = 0; i < keys.size(); i++) {
+      rows.get(i).setRowKey(keys.get(i));
+    }
+    return rows;
+  }
+
   void destory() {
     instance = null;
   }
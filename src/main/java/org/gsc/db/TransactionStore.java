@@ -3,8 +3,10 @@ package org.gsc.db;
 import java.util.Objects;
 
 import com.google.common.collect.Streams;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
+import org.gsc.common.utils.Sha256Hash;
 import org.gsc.core.wrapper.TransactionWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,6 +18,9 @@ import org.gsc.core.exception.StoreException;
 @Component
 public class TransactionStore extends GSCStoreWithRevoking<TransactionWrapper> {
 
+  @Getter
+  private RecentTransactionIndex recentTransactions = new RecentTransactionIndex();
+
   @Autowired
   private TransactionStore(@Value("trans") String dbName) {
     super(dbName);
@@ -24,8 +29,11 @@ public class TransactionStore extends GSCStoreWithRevoking<TransactionWrapper> {
   @Override
   public void put(byte[] key, TransactionWrapper item) {
     super.put(key, item);
+    if (Objects.nonNull(key) && key.length == Sha256Hash.LENGTH && Objects.nonNull(item)) {
+      recentTransactions.add(Sha256Hash.wrap(key), item.getExpiration());
+    }
     if (Objects.nonNull(indexHelper)) {
-      indexHelper.update(item.getInstance());
+      ExecutionLayer.afterCommit(() -> indexHelper.update(item.getInstance()));
     }
   }
 
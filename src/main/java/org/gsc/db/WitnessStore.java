@@ -19,6 +19,7 @@ public class WitnessStore extends GSCStoreWithRevoking<WitnessWrapper> {
   @Autowired
   protected WitnessStore(@Value("witness") String dbName) {
     super(dbName);
+    cacheDecoded();
   }
 
   /**
@@ -33,6 +34,6 @@ public class WitnessStore extends GSCStoreWithRevoking<WitnessWrapper> {
   @Override
   public WitnessWrapper get(byte[] key) {
     byte[] value = revokingDB.getUnchecked(key);
-    return ArrayUtils.isEmpty(value) ? null : new WitnessWrapper(value);
+    return ArrayUtils.isEmpty(value) ? null : ofUnchecked(key, value);
   }
 }
@@ -0,0 +1,50 @@
+package org.gsc.net.message;
+
+import com.google.protobuf.ByteString;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.wrapper.BlockWrapper.BlockId;
+import org.gsc.protos.Protocol.BlockTransactions;
+import org.gsc.protos.Protocol.Transaction;
+
+public class BlockTransactionsMessage extends GSCMessage {
+
+  private BlockTransactions transactions;
+  private BlockId blockId;
+
+  public BlockTransactionsMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.BLOCK_TRANSACTIONS.asByte();
+    this.data = data;
+    this.transactions = BlockTransactions.parseFrom(data);
+    this.blockId = new BlockId(Sha256Hash.wrap(transactions.getBlockId()));
+  }
+
+  public BlockTransactionsMessage(BlockId blockId, List<Transaction> trxs) {
+    this.transactions = BlockTransactions.newBuilder()
+        .setBlockId(ByteString.copyFrom(blockId.getBytes()))
+        .addAllTransactions(trxs)
+        .build();
+    this.blockId = blockId;
+    this.type = MessageTypes.BLOCK_TRANSACTIONS.asByte();
+    this.data = transactions.toByteArray();
+  }
+
+  public BlockId getBlockId() {
+    return blockId;
+  }
+
+  public List<Transaction> getTransactions() {
+    return transactions.getTransactionsList();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + blockId.getString() + ", trx size: "
+        + transactions.getTransactionsCount();
+  }
+}
@@ -0,0 +1,108 @@
+package org.gsc.net.message;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.exception.BadItemException;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.core.wrapper.BlockWrapper.BlockId;
+import org.gsc.core.wrapper.TransactionWrapper;
+import org.gsc.protos.Protocol.BlockHeader;
+import org.gsc.protos.Protocol.CompactBlock;
+
+/**
+ * A block as its header and a short id for every transaction, derived from the transaction id
+ * with a key only this message uses, so nobody can make up transactions colliding in advance.
+ */
+public class CompactBlockMessage extends GSCMessage {
+
+  public static final int SHORT_ID_BYTES = 6;
+
+  private static final long SHORT_ID_MASK = (1L << (8 * SHORT_ID_BYTES)) - 1;
+
+  private CompactBlock compactBlock;
+  private BlockId blockId;
+  private HashFunction shortIdHash;
+
+  public CompactBlockMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.COMPACT_BLOCK.asByte();
+    this.data = data;
+    this.compactBlock = CompactBlock.parseFrom(data);
+    if (compactBlock.getShortIds().size() % SHORT_ID_BYTES != 0) {
+      throw new BadItemException("short ids of compact block are broken");
+    }
+    init();
+  }
+
+  public CompactBlockMessage(BlockWrapper block, long salt) {
+    this.compactBlock = CompactBlock.newBuilder()
+        .setBlockHeader(block.getInstance().getBlockHeader())
+        .setSalt(salt)
+        .build();
+    init();
+
+    List<TransactionWrapper> transactions = block.getTransactions();
+    byte[] shortIds = new byte[transactions.size() * SHORT_ID_BYTES];
+    for (int i = 0; i < transactions.size(); i++) {
+      long shortId = shortIdOf(transactions.get(i).getTransactionId());
+      for (int j = 0; j < SHORT_ID_BYTES; j++) {
+        shortIds[i * SHORT_ID_BYTES + j] = (byte) (shortId >>> (8 * (SHORT_ID_BYTES - 1 - j)));
+      }
+    }
+    this.compactBlock = compactBlock.toBuilder().setShortIds(ByteString.copyFrom(shortIds)).build();
+    this.type = MessageTypes.COMPACT_BLOCK.asByte();
+    this.data = compactBlock.toByteArray();
+  }
+
+  private void init() {
+    BlockHeader header = compactBlock.getBlockHeader();
+    blockId = new BlockId(Sha256Hash.of(header.getRawData().toByteArray()),
+        header.getRawData().getNumber());
+    byte[] key = Sha256Hash.of(
+        Bytes.concat(blockId.getBytes(), Longs.toByteArray(compactBlock.getSalt())))
+        .getBytes();
+    shortIdHash = Hashing.sipHash24(Longs.fromByteArray(key),
+        Longs.fromByteArray(Arrays.copyOfRange(key, 8, 16)));
+  }
+
+  public long shortIdOf(Sha256Hash trxId) {
+    return shortIdHash.hashBytes(trxId.getBytes()).asLong() & SHORT_ID_MASK;
+  }
+
+  public long getShortId(int index) {
+    ByteString shortIds = compactBlock.getShortIds();
+    long shortId = 0;
+    for (int j = 0; j < SHORT_ID_BYTES; j++) {
+      shortId = shortId << 8 | shortIds.byteAt(index * SHORT_ID_BYTES + j) & 0xFF;
+    }
+    return shortId;
+  }
+
+  public int getTransactionCount() {
+    return compactBlock.getShortIds().size() / SHORT_ID_BYTES;
+  }
+
+  public BlockHeader getBlockHeader() {
+    return compactBlock.getBlockHeader();
+  }
+
+  public BlockId getBlockId() {
+    return blockId;
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder().append(super.toString()).append(blockId.getString())
+        .append(", trx size: ").append(getTransactionCount()).append("\n").toString();
+  }
+}
@@ -0,0 +1,48 @@
+package org.gsc.net.message;
+
+import com.google.protobuf.ByteString;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.wrapper.BlockWrapper.BlockId;
+import org.gsc.protos.Protocol.BlockTransactionsRequest;
+
+public class FetchBlockTransactionsMessage extends GSCMessage {
+
+  private BlockTransactionsRequest request;
+  private BlockId blockId;
+
+  public FetchBlockTransactionsMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.FETCH_BLOCK_TRANSACTIONS.asByte();
+    this.data = data;
+    this.request = BlockTransactionsRequest.parseFrom(data);
+    this.blockId = new BlockId(Sha256Hash.wrap(request.getBlockId()));
+  }
+
+  public FetchBlockTransactionsMessage(BlockId blockId, List<Integer> indexes) {
+    this.request = BlockTransactionsRequest.newBuilder()
+        .setBlockId(ByteString.copyFrom(blockId.getBytes()))
+        .addAllIndexes(indexes)
+        .build();
+    this.blockId = blockId;
+    this.type = MessageTypes.FETCH_BLOCK_TRANSACTIONS.asByte();
+    this.data = request.toByteArray();
+  }
+
+  public BlockId getBlockId() {
+    return blockId;
+  }
+
+  public List<Integer> getIndexes() {
+    return request.getIndexesList();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + blockId.getString() + ", indexes: " + request.getIndexesCount();
+  }
+}
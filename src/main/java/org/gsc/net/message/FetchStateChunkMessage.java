@@ -0,0 +1,47 @@
+package org.gsc.net.message;
+
+import org.gsc.protos.Protocol.StateCheckpointRequest;
+
+public class FetchStateChunkMessage extends GSCMessage {
+
+  private StateCheckpointRequest request;
+
+  public FetchStateChunkMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.FETCH_STATE_CHUNK.asByte();
+    this.data = data;
+    this.request = StateCheckpointRequest.parseFrom(data);
+  }
+
+  public FetchStateChunkMessage(long blockNum, String store, int index) {
+    this.request = StateCheckpointRequest.newBuilder()
+        .setBlockNum(blockNum)
+        .setStore(store)
+        .setIndex(index)
+        .build();
+    this.type = MessageTypes.FETCH_STATE_CHUNK.asByte();
+    this.data = request.toByteArray();
+  }
+
+  public long getBlockNum() {
+    return request.getBlockNum();
+  }
+
+  public String getStore() {
+    return request.getStore();
+  }
+
+  public int getIndex() {
+    return request.getIndex();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "block num: " + getBlockNum() + ", store: " + getStore()
+        + ", index: " + getIndex();
+  }
+}
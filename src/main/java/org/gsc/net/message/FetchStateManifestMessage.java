@@ -0,0 +1,34 @@
+package org.gsc.net.message;
+
+import org.gsc.protos.Protocol.StateCheckpointRequest;
+
+public class FetchStateManifestMessage extends GSCMessage {
+
+  private StateCheckpointRequest request;
+
+  public FetchStateManifestMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.FETCH_STATE_MANIFEST.asByte();
+    this.data = data;
+    this.request = StateCheckpointRequest.parseFrom(data);
+  }
+
+  public FetchStateManifestMessage(long blockNum) {
+    this.request = StateCheckpointRequest.newBuilder().setBlockNum(blockNum).build();
+    this.type = MessageTypes.FETCH_STATE_MANIFEST.asByte();
+    this.data = request.toByteArray();
+  }
+
+  public long getBlockNum() {
+    return request.getBlockNum();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return StateManifestMessage.class;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "block num: " + getBlockNum();
+  }
+}
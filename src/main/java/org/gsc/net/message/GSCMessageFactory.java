@@ -52,6 +52,20 @@ public class GSCMessageFactory extends MessageFactory {
         return new FetchBlockHeadersMessage(packed);
       case TRX_INVENTORY:
         return new TransactionInventoryMessage(packed);
+      case FETCH_STATE_MANIFEST:
+        return new FetchStateManifestMessage(packed);
+      case STATE_MANIFEST:
+        return new StateManifestMessage(packed);
+      case FETCH_STATE_CHUNK:
+        return new FetchStateChunkMessage(packed);
+      case STATE_CHUNK:
+        return new StateChunkMessage(packed);
+      case COMPACT_BLOCK:
+        return new CompactBlockMessage(packed);
+      case FETCH_BLOCK_TRANSACTIONS:
+        return new FetchBlockTransactionsMessage(packed);
+      case BLOCK_TRANSACTIONS:
+        return new BlockTransactionsMessage(packed);
       default:
         throw new P2pException(P2pException.TypeEnum.NO_SUCH_MESSAGE,
             receivedTypes.toString() + ", len=" + packed.length);
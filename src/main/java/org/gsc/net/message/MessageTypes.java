@@ -33,6 +33,20 @@ public enum MessageTypes {
 
   TRX_INVENTORY(0x13),
 
+  FETCH_STATE_MANIFEST(0x14),
+
+  STATE_MANIFEST(0x15),
+
+  FETCH_STATE_CHUNK(0x16),
+
+  STATE_CHUNK(0x17),
+
+  COMPACT_BLOCK(0x18),
+
+  FETCH_BLOCK_TRANSACTIONS(0x19),
+
+  BLOCK_TRANSACTIONS(0x1A),
+
   P2P_HELLO(0x20),
 
   P2P_DISCONNECT(0x21),
@@ -82,7 +96,7 @@ public enum MessageTypes {
   }
 
   public static boolean ingscRange(byte code) {
-    return code <= TRX_INVENTORY.asByte() && code >= FIRST.asByte();
+    return code <= BLOCK_TRANSACTIONS.asByte() && code >= FIRST.asByte();
   }
 
   @Override
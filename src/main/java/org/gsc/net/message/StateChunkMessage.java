@@ -0,0 +1,35 @@
+package org.gsc.net.message;
+
+import org.gsc.protos.Protocol.StateChunk;
+
+public class StateChunkMessage extends GSCMessage {
+
+  private StateChunk chunk;
+
+  public StateChunkMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.STATE_CHUNK.asByte();
+    this.data = data;
+    this.chunk = StateChunk.parseFrom(data);
+  }
+
+  public StateChunkMessage(StateChunk chunk) {
+    this.chunk = chunk;
+    this.type = MessageTypes.STATE_CHUNK.asByte();
+    this.data = chunk.toByteArray();
+  }
+
+  public StateChunk getChunk() {
+    return chunk;
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "block num: " + chunk.getBlockNum() + ", store: "
+        + chunk.getStore() + ", index: " + chunk.getIndex() + ", rows: " + chunk.getRowsCount();
+  }
+}
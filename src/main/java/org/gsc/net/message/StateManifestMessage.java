@@ -0,0 +1,35 @@
+package org.gsc.net.message;
+
+import org.gsc.protos.Protocol.StateManifest;
+
+public class StateManifestMessage extends GSCMessage {
+
+  private StateManifest manifest;
+
+  public StateManifestMessage(byte[] data) throws Exception {
+    this.type = MessageTypes.STATE_MANIFEST.asByte();
+    this.data = data;
+    this.manifest = StateManifest.parseFrom(data);
+  }
+
+  public StateManifestMessage(StateManifest manifest) {
+    this.manifest = manifest;
+    this.type = MessageTypes.STATE_MANIFEST.asByte();
+    this.data = manifest.toByteArray();
+  }
+
+  public StateManifest getManifest() {
+    return manifest;
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "block num: " + manifest.getBlockNum() + ", stores: "
+        + manifest.getStoresCount();
+  }
+}
@@ -15,12 +15,20 @@ import org.gsc.core.exception.StoreException;
 import org.gsc.core.exception.GSCException;
 import org.gsc.core.exception.UnLinkedBlockException;
 import org.gsc.net.message.MessageTypes;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
 
 public interface NodeDelegate {
 
   LinkedList<Sha256Hash> handleBlock(BlockWrapper block, boolean syncMode)
       throws BadBlockException, UnLinkedBlockException, InterruptedException, NonCommonBlockException;
 
+  /**
+   * Check what a block can be checked for without the state it applies to, so handleBlock finds
+   * it done. A block failing a check is left to handleBlock to reject.
+   */
+  void preValidateBlock(BlockWrapper block);
+
   boolean handleTransaction(TransactionWrapper trx) throws BadTransactionException;
 
   Deque<BlockId> getBlockChainSummary(BlockId beginBLockId, Deque<BlockId> blockIds)
@@ -49,4 +57,20 @@ public interface NodeDelegate {
   BlockWrapper getGenesisBlock();
 
   boolean canChainRevoke(long num);
+
+  /**
+   * The manifest of the state checkpoint at blockNum, null if this node has none ready.
+   */
+  StateManifest getStateManifest(long blockNum);
+
+  StateChunk getStateChunk(long blockNum, String store, int index);
+
+  /**
+   * Drop the state of this node to restore it from verified chunks of a state checkpoint.
+   */
+  void beginStateRestore();
+
+  void restoreState(StateChunk chunk);
+
+  void finishStateRestore() throws StoreException;
 }
@@ -23,6 +23,8 @@ import org.gsc.core.exception.*;
 import org.gsc.net.message.BlockMessage;
 import org.gsc.net.message.MessageTypes;
 import org.gsc.net.message.TransactionMessage;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
 
 @Slf4j
 public class NodeDelegateImpl implements NodeDelegate {
@@ -94,6 +96,20 @@ public class NodeDelegateImpl implements NodeDelegate {
   }
 
 
+  @Override
+  public void preValidateBlock(BlockWrapper block) {
+    try {
+      if (block.validateSignature() && block.validateMerkleRoot()) {
+        dbManager.preValidateTransactionSign(block);
+      }
+    } catch (ValidateSignatureException e) {
+      logger.debug("block {} fails validation: {}", block.getBlockId().getString(),
+          e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   @Override
   public boolean handleTransaction(TransactionWrapper trx) throws BadTransactionException {
     if (dbManager.getDynamicPropertiesStore().supportVM()) {
@@ -375,4 +391,29 @@ public class NodeDelegateImpl implements NodeDelegate {
   public boolean canChainRevoke(long num) {
     return num >= dbManager.getSyncBeginNumber();
   }
+
+  @Override
+  public StateManifest getStateManifest(long blockNum) {
+    return dbManager.getStateManifest(blockNum);
+  }
+
+  @Override
+  public StateChunk getStateChunk(long blockNum, String store, int index) {
+    return dbManager.getStateChunk(blockNum, store, index);
+  }
+
+  @Override
+  public void beginStateRestore() {
+    dbManager.beginStateRestore();
+  }
+
+  @Override
+  public void restoreState(StateChunk chunk) {
+    dbManager.restoreState(chunk);
+  }
+
+  @Override
+  public void finishStateRestore() throws StoreException {
+    dbManager.finishStateRestore();
+  }
 }
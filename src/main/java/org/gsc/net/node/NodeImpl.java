@@ -4,13 +4,14 @@ import static org.gsc.config.Parameter.ChainConstant.BLOCK_PRODUCED_INTERVAL;
 import static org.gsc.config.Parameter.NetConstants.MAX_TRX_PER_PEER;
 import static org.gsc.config.Parameter.NetConstants.MSG_CACHE_DURATION_IN_BLOCKS;
 import static org.gsc.config.Parameter.NetConstants.NET_MAX_TRX_PER_SECOND;
-import static org.gsc.config.Parameter.NodeConstant.MAX_BLOCKS_SYNC_FROM_ONE_PEER;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Deque;
@@ -23,11 +24,14 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javafx.util.Pair;
@@ -42,6 +46,7 @@ import org.gsc.common.overlay.discover.node.statistics.MessageCount;
 import org.gsc.common.overlay.message.Message;
 import org.gsc.common.overlay.server.Channel.GSCState;
 import org.gsc.common.overlay.server.SyncPool;
+import org.gsc.common.utils.ByteArray;
 import org.gsc.common.utils.ExecutorLoop;
 import org.gsc.common.utils.Sha256Hash;
 import org.gsc.common.utils.SlidingWindowCounter;
@@ -54,16 +59,24 @@ import org.gsc.config.args.Args;
 import org.gsc.core.exception.BadBlockException;
 import org.gsc.core.exception.BadTransactionException;
 import org.gsc.core.exception.NonCommonBlockException;
+import org.gsc.core.exception.RevokingStoreIllegalStateException;
 import org.gsc.core.exception.StoreException;
 import org.gsc.core.exception.TraitorPeerException;
 import org.gsc.core.exception.GSCException;
 import org.gsc.core.exception.UnLinkedBlockException;
 import org.gsc.net.message.BlockMessage;
+import org.gsc.net.message.BlockTransactionsMessage;
 import org.gsc.net.message.ChainInventoryMessage;
+import org.gsc.net.message.CompactBlockMessage;
+import org.gsc.net.message.FetchBlockTransactionsMessage;
 import org.gsc.net.message.FetchInvDataMessage;
+import org.gsc.net.message.FetchStateChunkMessage;
+import org.gsc.net.message.FetchStateManifestMessage;
 import org.gsc.net.message.InventoryMessage;
 import org.gsc.net.message.ItemNotFound;
 import org.gsc.net.message.MessageTypes;
+import org.gsc.net.message.StateChunkMessage;
+import org.gsc.net.message.StateManifestMessage;
 import org.gsc.net.message.SyncBlockChainMessage;
 import org.gsc.net.message.TransactionMessage;
 import org.gsc.net.message.TransactionsMessage;
@@ -73,6 +86,8 @@ import org.gsc.net.peer.PeerConnectionDelegate;
 import org.gsc.protos.Protocol;
 import org.gsc.protos.Protocol.Inventory.InventoryType;
 import org.gsc.protos.Protocol.ReasonCode;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
 import org.gsc.protos.Protocol.Transaction;
 
 @Slf4j
@@ -92,6 +107,17 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       .maximumSize(10).expireAfterWrite(60, TimeUnit.SECONDS)
       .recordStats().build();
 
+  // the compact form of the blocks in BlockCache, one salt per block for all peers
+  private Cache<Sha256Hash, CompactBlockMessage> CompactBlockCache = CacheBuilder.newBuilder()
+      .maximumSize(10).expireAfterWrite(60, TimeUnit.SECONDS)
+      .recordStats().build();
+
+  private SecureRandom compactBlockSalt = new SecureRandom();
+
+  // blocks rebuilt from compact blocks, waiting for transactions from the peers that sent them
+  private Cache<BlockId, PartialBlock> partialBlocks = CacheBuilder.newBuilder()
+      .maximumSize(10).expireAfterWrite(60, TimeUnit.SECONDS).build();
+
   private SlidingWindowCounter fetchWaterLine =
       new SlidingWindowCounter(BLOCK_PRODUCED_INTERVAL * MSG_CACHE_DURATION_IN_BLOCKS / 100);
 
@@ -255,6 +281,20 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   private Map<BlockMessage, PeerConnection> blockJustReceived = new ConcurrentHashMap<>();
 
+  // sync blocks are checked as far as they can be before their turn to be applied comes, on
+  // threads of their own, and join blockJustReceived afterwards
+  private static final int SYNC_VERIFY_THREAD_NUM = 2;
+
+  private ExecutorService syncBlockVerifyPool = Executors
+      .newFixedThreadPool(SYNC_VERIFY_THREAD_NUM,
+          new ThreadFactoryBuilder().setNameFormat("SyncBlockVerify-%d").build());
+
+  private AtomicInteger syncBlockVerifying = new AtomicInteger();
+
+  private SyncWindow syncWindow = new SyncWindow();
+
+  private AtomicBoolean handleSyncBlockScheduled = new AtomicBoolean();
+
   private ExecutorLoop<SyncBlockChainMessage> loopSyncBlockChain;
 
   private ExecutorLoop<FetchInvDataMessage> loopFetchBlocks;
@@ -280,6 +320,12 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   private volatile boolean isFetchSyncActive = false;
 
+  // set while the state of a checkpointed block is restored from peers, blocks wait until then
+  private volatile StateSync stateSync;
+
+  private ScheduledExecutorService stateSyncExecutor = Executors
+      .newSingleThreadScheduledExecutor();
+
   @Override
   public void onMessage(PeerConnection peer, GSCMessage msg) {
     switch (msg.getType()) {
@@ -304,6 +350,27 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       case INVENTORY:
         onHandleInventoryMessage(peer, (InventoryMessage) msg);
         break;
+      case FETCH_STATE_MANIFEST:
+        onHandleFetchStateManifestMessage(peer, (FetchStateManifestMessage) msg);
+        break;
+      case STATE_MANIFEST:
+        onHandleStateManifestMessage(peer, (StateManifestMessage) msg);
+        break;
+      case FETCH_STATE_CHUNK:
+        onHandleFetchStateChunkMessage(peer, (FetchStateChunkMessage) msg);
+        break;
+      case STATE_CHUNK:
+        onHandleStateChunkMessage(peer, (StateChunkMessage) msg);
+        break;
+      case COMPACT_BLOCK:
+        onHandleCompactBlockMessage(peer, (CompactBlockMessage) msg);
+        break;
+      case FETCH_BLOCK_TRANSACTIONS:
+        onHandleFetchBlockTransactionsMessage(peer, (FetchBlockTransactionsMessage) msg);
+        break;
+      case BLOCK_TRANSACTIONS:
+        onHandleBlockTransactionsMessage(peer, (BlockTransactionsMessage) msg);
+        break;
       default:
         throw new IllegalArgumentException("No such message");
     }
@@ -351,6 +418,11 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   @Override
   public void listen() {
+    String stateRoot = Args.getInstance().getStateSyncRoot();
+    if (!stateRoot.isEmpty() && del.getHeadBlockId().getNum() == 0) {
+      stateSync = new StateSync(Args.getInstance().getStateSyncBlockNum(),
+          Sha256Hash.wrap(ByteArray.fromHexString(stateRoot)));
+    }
     pool.init(this);
     isAdvertiseActive = true;
     isFetchActive = true;
@@ -405,17 +477,8 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     //TODO: wait to refactor these threads.
     //handleSyncBlockLoop.start();
 
-    handleSyncBlockExecutor.scheduleWithFixedDelay(() -> {
-      try {
-        if (isHandleSyncBlockActive) {
-          isHandleSyncBlockActive = false;
-          //Thread handleSyncBlockThread = new Thread(() -> handleSyncBlock());
-          handleSyncBlock();
-        }
-      } catch (Throwable t) {
-        logger.error("Unhandled exception", t);
-      }
-    }, 10, 1, TimeUnit.SECONDS);
+    handleSyncBlockExecutor.scheduleWithFixedDelay(this::handleSyncBlockIfActive,
+        10, 1, TimeUnit.SECONDS);
 
     //terminate inactive loop
     disconnectInactiveExecutor.scheduleWithFixedDelay(() -> {
@@ -457,6 +520,16 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       }
     }, 10, 1, TimeUnit.SECONDS);
 
+    if (stateSync != null) {
+      stateSyncExecutor.scheduleWithFixedDelay(() -> {
+        try {
+          fetchStateChunks();
+        } catch (Throwable t) {
+          logger.error("Unhandled exception", t);
+        }
+      }, 1, 1, TimeUnit.SECONDS);
+    }
+
     //fetchWaterLine:
     fetchWaterLineExecutor.scheduleWithFixedDelay(() -> {
       try {
@@ -536,6 +609,31 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     sendPackage.sendInv();
   }
 
+  private void handleSyncBlockIfActive() {
+    try {
+      if (isHandleSyncBlockActive) {
+        isHandleSyncBlockActive = false;
+        //Thread handleSyncBlockThread = new Thread(() -> handleSyncBlock());
+        handleSyncBlock();
+      }
+    } catch (Throwable t) {
+      logger.error("Unhandled exception", t);
+    }
+  }
+
+  /**
+   * handle the sync blocks waiting now instead of at the next tick of handleSyncBlockExecutor.
+   */
+  private void scheduleHandleSyncBlock() {
+    isHandleSyncBlockActive = true;
+    if (handleSyncBlockScheduled.compareAndSet(false, true)) {
+      handleSyncBlockExecutor.execute(() -> {
+        handleSyncBlockScheduled.set(false);
+        handleSyncBlockIfActive();
+      });
+    }
+  }
+
   private synchronized void handleSyncBlock() {
     if (isSuspendFetch) {
       isSuspendFetch = false;
@@ -577,10 +675,14 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           if (isFound[0]) {
             blockWaitToProc.remove(msg);
             isBlockProc[0] = true;
+            long start = System.nanoTime();
             if (freshBlockId.contains(msg.getBlockId()) || processSyncBlock(
                 msg.getBlockCapsule())) {
+              syncWindow.onApplied(System.nanoTime() - start);
               finishProcessSyncBlock(msg.getBlockCapsule());
             }
+            // the window has room again
+            isFetchSyncActive = true;
           }
         }
       });
@@ -600,6 +702,8 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
             + "unSyncNum: %d\n"
             + "blockWaitToProc: %d\n"
             + "blockJustReceived: %d\n"
+            + "syncBlockVerifying: %d\n"
+            + "syncWindow: %d\n"
             + "syncBlockIdWeRequested: %d\n",
         del.getHeadBlockId().getNum(),
         advObjToSpread.size(),
@@ -608,9 +712,17 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
         getUnSyncNum(),
         blockWaitToProc.size(),
         blockJustReceived.size(),
+        syncBlockVerifying.get(),
+        syncWindow.getWindow(),
         syncBlockIdWeRequested.size()
     ));
 
+    StateSync sync = stateSync;
+    if (sync != null) {
+      sb.append(String.format("stateChunksMissing: %d of block %d\n",
+          sync.getMissingCount(), sync.getBlockNum()));
+    }
+
     logger.info(sb.toString());
   }
 
@@ -637,6 +749,10 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
 
   private void onHandleInventoryMessage(PeerConnection peer, InventoryMessage msg) {
+    if (stateSync != null) {
+      return;
+    }
+
     for (Sha256Hash id : msg.getHashList()) {
       if (msg.getInventoryType().equals(InventoryType.TRX) && TrxCache.getIfPresent(id) != null) {
         logger.info("{} {} from peer {} Already exist.", msg.getInventoryType(), id,
@@ -715,10 +831,21 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
         return;
       }
       peer.getSyncBlockRequested().remove(blockId);
-      synchronized (blockJustReceived) {
-        blockJustReceived.put(blkMsg, peer);
-      }
-      isHandleSyncBlockActive = true;
+      syncWindow.onReceived(peer, System.currentTimeMillis());
+      syncBlockVerifying.incrementAndGet();
+      syncBlockVerifyPool.execute(() -> {
+        try {
+          del.preValidateBlock(blkMsg.getBlockCapsule());
+        } catch (Throwable t) {
+          logger.error("Unhandled exception", t);
+        } finally {
+          synchronized (blockJustReceived) {
+            blockJustReceived.put(blkMsg, peer);
+          }
+          syncBlockVerifying.decrementAndGet();
+          scheduleHandleSyncBlock();
+        }
+      });
       syncFlag = true;
       if (!peer.isBusy()) {
         if (peer.getUnfetchSyncNum() > 0
@@ -1031,6 +1158,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       } else {
         msg = TrxCache.getIfPresent(hash);
       }
+      boolean fresh = msg != null;
 
       if (msg == null) {
         msg = del.getData(hash, type);
@@ -1045,7 +1173,9 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
       if (type.equals(MessageTypes.BLOCK)) {
         block = ((BlockMessage) msg).getBlockCapsule();
-        peer.sendMessage(msg);
+        // a peer has most transactions of a fresh block already, sync blocks it hasn't
+        peer.sendMessage(fresh && isCompactBlockPeer(peer)
+            ? getCompactBlock((BlockMessage) msg) : msg);
       } else {
         transactions.add(((TransactionMessage) msg).getTransactionCapsule().getInstance());
         size += ((TransactionMessage) msg).getTransactionCapsule().getInstance()
@@ -1066,6 +1196,95 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     }
   }
 
+  private boolean isCompactBlockPeer(PeerConnection peer) {
+    return Args.getInstance().isCompactBlock() && peer.getHelloMessage() != null
+        && peer.getHelloMessage().isCompactBlock();
+  }
+
+  private Message getCompactBlock(BlockMessage msg) {
+    try {
+      return CompactBlockCache.get(msg.getBlockId(),
+          () -> new CompactBlockMessage(msg.getBlockCapsule(), compactBlockSalt.nextLong()));
+    } catch (ExecutionException e) {
+      logger.error("Can't compact block {}: {}", msg.getBlockId().getString(), e.getMessage());
+      return msg;
+    }
+  }
+
+  private void onHandleCompactBlockMessage(PeerConnection peer, CompactBlockMessage msg) {
+    BlockId blockId = msg.getBlockId();
+    if (!peer.getAdvObjWeRequested().containsKey(new Item(blockId, InventoryType.BLOCK))) {
+      logger.info("Received a compact block {} not requested from peer {}", blockId.getString(),
+          peer.getNode().getHost());
+      return;
+    }
+    onPartialBlock(new PartialBlock(peer, msg, TrxCache.asMap().values()));
+  }
+
+  private void onHandleBlockTransactionsMessage(PeerConnection peer,
+      BlockTransactionsMessage msg) {
+    PartialBlock partial = partialBlocks.getIfPresent(msg.getBlockId());
+    if (partial == null || partial.getPeer() != peer) {
+      logger.info("Received transactions of block {} not waited for from peer {}",
+          msg.getBlockId().getString(), peer.getNode().getHost());
+      return;
+    }
+    if (!partial.fill(msg.getTransactions())) {
+      partialBlocks.invalidate(msg.getBlockId());
+      banTraitorPeer(peer, ReasonCode.BAD_PROTOCOL);
+      return;
+    }
+    onPartialBlock(partial);
+  }
+
+  /**
+   * Handle a block rebuilt from a compact block once it has all its transactions, or ask its peer
+   * for what is missing. A complete block not matching its merkle root took a wrong transaction
+   * for a short id, all of them are asked for then.
+   */
+  private void onPartialBlock(PartialBlock partial) {
+    BlockId blockId = partial.getCompactBlock().getBlockId();
+    PeerConnection peer = partial.getPeer();
+    if (partial.isComplete()) {
+      BlockWrapper block = partial.toBlock();
+      // a full block not matching is rejected like any other bad block
+      if (block.validateMerkleRoot() || partial.isFullyRequested()) {
+        partialBlocks.invalidate(blockId);
+        onHandleBlockMessage(peer, new BlockMessage(block));
+        return;
+      }
+      logger.info("Compact block {} doesn't match its merkle root, fetching all transactions",
+          blockId.getString());
+    }
+    partialBlocks.put(blockId, partial);
+    peer.sendMessage(
+        new FetchBlockTransactionsMessage(blockId, partial.request(partial.isComplete())));
+  }
+
+  private void onHandleFetchBlockTransactionsMessage(PeerConnection peer,
+      FetchBlockTransactionsMessage msg) {
+    Message blockMsg = BlockCache.getIfPresent(msg.getBlockId());
+    if (blockMsg == null) {
+      blockMsg = del.getData(msg.getBlockId(), MessageTypes.BLOCK);
+    }
+    if (blockMsg == null) {
+      logger.info("Peer {} asked for transactions of block {} not here",
+          peer.getNode().getHost(), msg.getBlockId().getString());
+      return;
+    }
+
+    List<TransactionWrapper> trxs = ((BlockMessage) blockMsg).getBlockCapsule().getTransactions();
+    List<Transaction> transactions = new ArrayList<>();
+    for (int index : msg.getIndexes()) {
+      if (index < 0 || index >= trxs.size()) {
+        disconnectPeer(peer, ReasonCode.BAD_PROTOCOL);
+        return;
+      }
+      transactions.add(trxs.get(index).getInstance());
+    }
+    peer.sendMessage(new BlockTransactionsMessage(msg.getBlockId(), transactions));
+  }
+
   private void banTraitorPeer(PeerConnection peer, ReasonCode reason) {
     disconnectPeer(peer, reason); //TODO: ban it
   }
@@ -1238,27 +1457,37 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
         .getAsLong();
   }
 
+  /**
+   * Blocks requested from peers or received but not applied yet.
+   */
+  private int getSyncBlocksOnTheWay() {
+    return getActivePeer().stream().mapToInt(peer -> peer.getSyncBlockRequested().size()).sum()
+        + syncBlockVerifying.get() + blockJustReceived.size() + blockWaitToProc.size();
+  }
+
   private synchronized void startFetchSyncBlock() {
-    //TODO: check how many block is processing and decide if fetch more
     HashMap<PeerConnection, List<BlockId>> send = new HashMap<>();
     HashSet<BlockId> request = new HashSet<>();
+    int[] room = {syncWindow.getWindow() - getSyncBlocksOnTheWay()};
 
+    // a peer still sending sync blocks is asked for more while it has room for them
     getActivePeer().stream()
-        .filter(peer -> peer.isNeedSyncFromPeer() && !peer.isBusy())
+        .filter(peer -> peer.isNeedSyncFromPeer() && peer.getSyncChainRequested() == null
+            && peer.getAdvObjWeRequested().isEmpty())
         .forEach(peer -> {
           if (!send.containsKey(peer)) { //TODO: Attention multi thread here
             send.put(peer, new LinkedList<>());
           }
+          int peerRoom = syncWindow.getPeerLimit(peer) - peer.getSyncBlockRequested().size();
           for (BlockId blockId : peer.getSyncBlockToFetch()) {
+            if (room[0] <= 0 || send.get(peer).size() >= peerRoom) {
+              break;
+            }
             if (!request.contains(blockId) //TODO: clean processing block
                 && (syncBlockIdWeRequested.getIfPresent(blockId) == null)) {
               send.get(peer).add(blockId);
               request.add(blockId);
-              //TODO: check max block num to fetch from one peer.
-              if (send.get(peer).size()
-                  > MAX_BLOCKS_SYNC_FROM_ONE_PEER) { //Max Blocks peer get one time
-                break;
-              }
+              --room[0];
             }
           }
         });
@@ -1272,6 +1501,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       List<Sha256Hash> ids = new LinkedList<>();
       ids.addAll(blockIds);
       if (!ids.isEmpty()) {
+        syncWindow.onFetch(peer, System.currentTimeMillis());
         peer.sendMessage(new FetchInvDataMessage(ids, InventoryType.BLOCK));
       }
     });
@@ -1327,8 +1557,123 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     }
   }
 
+  private void onHandleFetchStateManifestMessage(PeerConnection peer,
+      FetchStateManifestMessage msg) {
+    StateManifest manifest = del.getStateManifest(msg.getBlockNum());
+    // an empty manifest tells the peer there is no checkpoint of that block here
+    peer.sendMessage(new StateManifestMessage(
+        manifest == null ? StateManifest.getDefaultInstance() : manifest));
+  }
+
+  private void onHandleStateManifestMessage(PeerConnection peer, StateManifestMessage msg) {
+    StateSync sync = stateSync;
+    if (sync == null) {
+      return;
+    }
+
+    synchronized (sync) {
+      boolean started = sync.isStarted();
+      if (!sync.onManifest(peer, msg.getManifest())) {
+        logger.info("Peer {} has no state of block {} with the trusted root",
+            peer.getNode().getHost(), sync.getBlockNum());
+        return;
+      }
+      if (!started) {
+        try {
+          del.beginStateRestore();
+        } catch (IllegalStateException | RevokingStoreIllegalStateException e) {
+          logger.error("Can't restore the state of block {}: {}", sync.getBlockNum(),
+              e.getMessage());
+          stateSync = null;
+          getActivePeer().forEach(this::onConnectPeer);
+          return;
+        }
+      }
+    }
+
+    if (sync.isDone()) {
+      finishStateSync();
+    } else {
+      fetchStateChunks();
+    }
+  }
+
+  private void onHandleFetchStateChunkMessage(PeerConnection peer, FetchStateChunkMessage msg) {
+    StateChunk chunk = del.getStateChunk(msg.getBlockNum(), msg.getStore(), msg.getIndex());
+    if (chunk == null) {
+      logger.info("Peer {} asked for {} of a state checkpoint not here",
+          peer.getNode().getHost(), msg);
+      return;
+    }
+    peer.sendMessage(new StateChunkMessage(chunk));
+  }
+
+  private void onHandleStateChunkMessage(PeerConnection peer, StateChunkMessage msg) {
+    StateSync sync = stateSync;
+    StateChunk chunk = msg.getChunk();
+    if (sync == null || !sync.isMissing(chunk)) {
+      return;
+    }
+
+    if (!sync.matches(chunk)) {
+      sync.remove(peer);
+      banTraitorPeer(peer, ReasonCode.BAD_PROTOCOL);
+      return;
+    }
+
+    try {
+      del.restoreState(chunk);
+    } catch (RevokingStoreIllegalStateException e) {
+      // a store this node doesn't have, the chunk is asked from the other peers
+      logger.warn("Can't restore chunk {} of store {} from {}: {}", chunk.getIndex(),
+          chunk.getStore(), peer.getInetAddress(), e.getMessage());
+      sync.remove(peer);
+      disconnectPeer(peer, ReasonCode.INCOMPATIBLE_VERSION);
+      fetchStateChunks();
+      return;
+    }
+    if (sync.onRestored(chunk)) {
+      finishStateSync();
+    } else {
+      fetchStateChunks();
+    }
+  }
+
+  private void fetchStateChunks() {
+    StateSync sync = stateSync;
+    if (sync == null || !sync.isStarted()) {
+      return;
+    }
+    sync.nextRequests(System.currentTimeMillis())
+        .forEach((peer, requests) -> requests.forEach(peer::sendMessage));
+  }
+
+  private synchronized void finishStateSync() {
+    if (stateSync == null) {
+      return;
+    }
+
+    try {
+      del.finishStateRestore();
+    } catch (StoreException e) {
+      logger.error("Restored state has no head block: {}", e.getMessage());
+      return;
+    }
+    stateSync = null;
+    getActivePeer().forEach(this::onConnectPeer);
+  }
+
   @Override
   public void onConnectPeer(PeerConnection peer) {
+    StateSync sync = stateSync;
+    if (sync != null) {
+      // blocks are only synced on top of the restored state
+      if (peer.getHelloMessage().getHeadBlockId().getNum() >= sync.getBlockNum()) {
+        peer.sendMessage(new FetchStateManifestMessage(sync.getBlockNum()));
+      }
+      return;
+    }
+
     if (peer.getHelloMessage().getHeadBlockId().getNum() > del.getHeadBlockId().getNum()) {
       peer.setGscState(GSCState.SYNCING);
       startSyncWithPeer(peer);
@@ -1340,6 +1685,13 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
   @Override
   public void onDisconnectPeer(PeerConnection peer) {
 
+    syncWindow.remove(peer);
+
+    StateSync sync = stateSync;
+    if (sync != null) {
+      sync.remove(peer);
+    }
+
     if (!peer.getSyncBlockRequested().isEmpty()) {
       peer.getSyncBlockRequested().keySet()
           .forEach(blockId -> syncBlockIdWeRequested.invalidate(blockId));
@@ -1372,6 +1724,8 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     loopAdvertiseInv.shutdown();
     fetchSyncBlocksExecutor.shutdown();
     handleSyncBlockExecutor.shutdown();
+    syncBlockVerifyPool.shutdown();
+    stateSyncExecutor.shutdown();
   }
 
   private void disconnectPeer(PeerConnection peer, ReasonCode reason) {
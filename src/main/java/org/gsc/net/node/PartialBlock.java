@@ -0,0 +1,105 @@
+package org.gsc.net.node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.net.message.CompactBlockMessage;
+import org.gsc.net.message.TransactionMessage;
+import org.gsc.net.peer.PeerConnection;
+import org.gsc.protos.Protocol.Block;
+import org.gsc.protos.Protocol.Transaction;
+
+/**
+ * A block rebuilt from a compact block and the transactions this node already has. A transaction
+ * it hasn't, or which more than one known transaction could be, is asked from the peer that sent
+ * the block; if the block then doesn't match its merkle root all of them are.
+ */
+class PartialBlock {
+
+  @Getter
+  private final PeerConnection peer;
+  @Getter
+  private final CompactBlockMessage compactBlock;
+  private final Transaction[] transactions;
+  private List<Integer> requested = new ArrayList<>();
+  @Getter
+  private boolean fullyRequested;
+
+  PartialBlock(PeerConnection peer, CompactBlockMessage compactBlock,
+      Collection<TransactionMessage> known) {
+    this.peer = peer;
+    this.compactBlock = compactBlock;
+    this.transactions = new Transaction[compactBlock.getTransactionCount()];
+
+    // short id to index, -1 for the ones more than one transaction of the block has
+    Map<Long, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < transactions.length; i++) {
+      indexes.merge(compactBlock.getShortId(i), i, (a, b) -> -1);
+    }
+    boolean[] ambiguous = new boolean[transactions.length];
+    for (TransactionMessage trx : known) {
+      Integer index = indexes.get(compactBlock.shortIdOf(trx.getMessageId()));
+      if (index == null || index < 0 || ambiguous[index]) {
+        continue;
+      }
+      if (transactions[index] != null) {
+        transactions[index] = null;
+        ambiguous[index] = true;
+      } else {
+        transactions[index] = trx.getTransactionCapsule().getInstance();
+      }
+    }
+  }
+
+  List<Integer> getMissing() {
+    List<Integer> missing = new ArrayList<>();
+    for (int i = 0; i < transactions.length; i++) {
+      if (transactions[i] == null) {
+        missing.add(i);
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * The indexes to ask the peer for, the missing ones or at the end all of them.
+   */
+  List<Integer> request(boolean all) {
+    if (all) {
+      Arrays.fill(transactions, null);
+      fullyRequested = true;
+    }
+    requested = getMissing();
+    return requested;
+  }
+
+  /**
+   * The peer sent the transactions at the requested indexes, false if they don't fit.
+   */
+  boolean fill(List<Transaction> received) {
+    if (received.size() != requested.size()) {
+      return false;
+    }
+    for (int i = 0; i < received.size(); i++) {
+      transactions[requested.get(i)] = received.get(i);
+    }
+    requested = new ArrayList<>();
+    return true;
+  }
+
+  boolean isComplete() {
+    return getMissing().isEmpty();
+  }
+
+  BlockWrapper toBlock() {
+    return new BlockWrapper(Block.newBuilder()
+        .setBlockHeader(compactBlock.getBlockHeader())
+        .addAllTransactions(Arrays.asList(transactions))
+        .build());
+  }
+}
@@ -0,0 +1,174 @@
+package org.gsc.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.db2.core.StateCheckpoint;
+import org.gsc.net.message.FetchStateChunkMessage;
+import org.gsc.net.peer.PeerConnection;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
+
+/**
+ * What is left of restoring the state of one checkpointed block from peers instead of replaying
+ * the blocks up to it. A manifest is only taken if its root is the trusted one, and a chunk only if
+ * its rows hash to what that manifest lists for it; every peer which served the trusted manifest
+ * gets a few chunks to send at a time.
+ */
+@Slf4j
+class StateSync {
+
+  static final int MAX_CHUNKS_PER_PEER = 4;
+  static final long CHUNK_TIMEOUT_MS = 60_000;
+
+  @Getter
+  private final long blockNum;
+  private final Sha256Hash root;
+
+  private StateManifest manifest;
+  private final Map<ChunkId, ByteString> hashes = new HashMap<>();
+  private final Set<ChunkId> missing = new LinkedHashSet<>();
+  private final Deque<ChunkId> toFetch = new ArrayDeque<>();
+  private final Map<ChunkId, Request> requested = new HashMap<>();
+  private final Set<PeerConnection> servers = new LinkedHashSet<>();
+
+  @EqualsAndHashCode
+  @AllArgsConstructor
+  private static class ChunkId {
+
+    private final String store;
+    private final int index;
+  }
+
+  @AllArgsConstructor
+  private static class Request {
+
+    private final PeerConnection peer;
+    private final long time;
+  }
+
+  StateSync(long blockNum, Sha256Hash root) {
+    this.blockNum = blockNum;
+    this.root = root;
+  }
+
+  synchronized boolean isStarted() {
+    return manifest != null;
+  }
+
+  synchronized boolean isDone() {
+    return manifest != null && missing.isEmpty();
+  }
+
+  /**
+   * A peer sent the manifest of its checkpoint, true if it is the trusted one. The first one
+   * taken lists the chunks to fetch.
+   */
+  synchronized boolean onManifest(PeerConnection peer, StateManifest received) {
+    if (received.getBlockNum() != blockNum || !StateCheckpoint.rootOf(received).equals(root)) {
+      return false;
+    }
+
+    if (manifest == null) {
+      manifest = received;
+      received.getStoresList().forEach(store -> {
+        for (int i = 0; i < store.getChunkHashesCount(); i++) {
+          ChunkId id = new ChunkId(store.getName(), i);
+          hashes.put(id, store.getChunkHashes(i));
+          missing.add(id);
+          toFetch.add(id);
+        }
+      });
+      logger.info("restoring the state of block {} from {} chunks", blockNum, missing.size());
+    }
+    servers.add(peer);
+    return true;
+  }
+
+  /**
+   * The chunks to ask every serving peer for now. A peer that didn't send a chunk in time isn't
+   * asked anymore, the chunk is asked from another one.
+   */
+  synchronized Map<PeerConnection, List<FetchStateChunkMessage>> nextRequests(long now) {
+    requested.entrySet().removeIf(e -> {
+      if (now - e.getValue().time < CHUNK_TIMEOUT_MS) {
+        return false;
+      }
+      servers.remove(e.getValue().peer);
+      toFetch.addFirst(e.getKey());
+      return true;
+    });
+
+    Map<PeerConnection, Integer> load = new HashMap<>();
+    requested.values().forEach(r -> load.merge(r.peer, 1, Integer::sum));
+
+    Map<PeerConnection, List<FetchStateChunkMessage>> requests = new LinkedHashMap<>();
+    for (PeerConnection peer : servers) {
+      int n = load.getOrDefault(peer, 0);
+      while (n < MAX_CHUNKS_PER_PEER && !toFetch.isEmpty()) {
+        ChunkId id = toFetch.poll();
+        if (!missing.contains(id) || requested.containsKey(id)) {
+          continue;
+        }
+        requested.put(id, new Request(peer, now));
+        requests.computeIfAbsent(peer, p -> new ArrayList<>())
+            .add(new FetchStateChunkMessage(blockNum, id.store, id.index));
+        n++;
+      }
+    }
+    return requests;
+  }
+
+  synchronized boolean isMissing(StateChunk chunk) {
+    return chunk.getBlockNum() == blockNum
+        && missing.contains(new ChunkId(chunk.getStore(), chunk.getIndex()));
+  }
+
+  /**
+   * Whether the rows of a chunk hash to what the manifest lists for it.
+   */
+  synchronized boolean matches(StateChunk chunk) {
+    ByteString hash = hashes.get(new ChunkId(chunk.getStore(), chunk.getIndex()));
+    return hash != null
+        && StateCheckpoint.hashChunk(chunk.getRowsList()).equals(Sha256Hash.wrap(hash));
+  }
+
+  /**
+   * A chunk is written, true if it was the last one missing.
+   */
+  synchronized boolean onRestored(StateChunk chunk) {
+    ChunkId id = new ChunkId(chunk.getStore(), chunk.getIndex());
+    requested.remove(id);
+    return missing.remove(id) && missing.isEmpty();
+  }
+
+  /**
+   * Stop asking a peer, what it was asked for is asked from the others.
+   */
+  synchronized void remove(PeerConnection peer) {
+    servers.remove(peer);
+    requested.entrySet().removeIf(e -> {
+      if (e.getValue().peer != peer) {
+        return false;
+      }
+      toFetch.addFirst(e.getKey());
+      return true;
+    });
+  }
+
+  synchronized int getMissingCount() {
+    return missing.size();
+  }
+}
@@ -0,0 +1,85 @@
+package org.gsc.net.node;
+
+import static org.gsc.config.Parameter.NodeConstant.MAX_BLOCKS_IN_PROCESS;
+import static org.gsc.config.Parameter.NodeConstant.MAX_BLOCKS_SYNC_FROM_ONE_PEER;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gsc.net.peer.PeerConnection;
+
+/**
+ * How many sync blocks to have on the way, requested or received but not applied yet: enough to
+ * keep applying for {@link #LOOKAHEAD_MS} at the rate blocks were applied lately. A peer gets
+ * enough of them to keep sending for two of its round trips at that rate, a round trip being the
+ * time from a fetch to the first block it brings.
+ */
+class SyncWindow {
+
+  static final int MIN_WINDOW = (int) MAX_BLOCKS_IN_PROCESS;
+  static final int MAX_WINDOW = (int) (4 * MAX_BLOCKS_SYNC_FROM_ONE_PEER);
+  static final int MIN_PER_PEER = 50;
+  static final int MAX_PER_PEER = (int) MAX_BLOCKS_SYNC_FROM_ONE_PEER;
+  static final long LOOKAHEAD_MS = 30_000;
+
+  // weight of a new sample in the moving averages
+  private static final double ALPHA = 0.1;
+
+  private volatile double applyMs;
+
+  private final Map<PeerConnection, PeerState> peers = new ConcurrentHashMap<>();
+
+  private static class PeerState {
+
+    private volatile long fetchTime;
+    private volatile double roundTripMs;
+  }
+
+  /**
+   * A block took nanos to apply.
+   */
+  void onApplied(long nanos) {
+    double ms = nanos / 1_000_000.0;
+    applyMs = applyMs == 0 ? ms : applyMs + ALPHA * (ms - applyMs);
+  }
+
+  void onFetch(PeerConnection peer, long now) {
+    PeerState state = peers.computeIfAbsent(peer, p -> new PeerState());
+    if (state.fetchTime == 0) {
+      state.fetchTime = now;
+    }
+  }
+
+  void onReceived(PeerConnection peer, long now) {
+    PeerState state = peers.get(peer);
+    if (state == null || state.fetchTime == 0) {
+      return;
+    }
+    double ms = now - state.fetchTime;
+    state.roundTripMs = state.roundTripMs == 0 ? ms
+        : state.roundTripMs + ALPHA * (ms - state.roundTripMs);
+    state.fetchTime = 0;
+  }
+
+  void remove(PeerConnection peer) {
+    peers.remove(peer);
+  }
+
+  int getWindow() {
+    if (applyMs == 0) {
+      return MIN_WINDOW;
+    }
+    return clamp(LOOKAHEAD_MS / applyMs, MIN_WINDOW, MAX_WINDOW);
+  }
+
+  int getPeerLimit(PeerConnection peer) {
+    PeerState state = peers.get(peer);
+    if (applyMs == 0 || state == null || state.roundTripMs == 0) {
+      return MAX_PER_PEER;
+    }
+    return clamp(2 * state.roundTripMs / applyMs, MIN_PER_PEER, MAX_PER_PEER);
+  }
+
+  private static int clamp(double blocks, int min, int max) {
+    return (int) Math.max(min, Math.min(max, Math.ceil(blocks)));
+  }
+}
@@ -0,0 +1,121 @@
+package org.gsc.runtime;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.gsc.common.storage.DepositImpl;
+import org.gsc.config.args.Args;
+import org.gsc.core.exception.ContractExeException;
+import org.gsc.core.exception.ContractValidateException;
+import org.gsc.core.exception.HeaderNotFound;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.db.ExecutionLayer;
+import org.gsc.db.Manager;
+import org.gsc.protos.Protocol.Transaction;
+import org.gsc.runtime.vm.program.invoke.ProgramInvokeFactoryImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Runs the constant calls of triggerContract on vm.constantCallThreadNum threads of their own
+ * instead of the request threads, at most {@link #MAX_PENDING_PER_THREAD} waiting per thread.
+ *
+ * <p>Every call gets its own root deposit on top of the head block and executes in an
+ * {@link ExecutionLayer} that is dropped afterwards, so nothing a call writes, not even a
+ * self-destruct, reaches the stores. A call stops once it used vm.constantCallCpuTimeMs of cpu
+ * time. Calls read the stores as they are, a block being applied meanwhile may be partly seen.
+ */
+@Component
+public class ConstantCallExecutor {
+
+  static final int MAX_PENDING_PER_THREAD = 64;
+
+  @Autowired
+  private Manager dbManager;
+
+  private final ThreadPoolExecutor workers;
+
+  public ConstantCallExecutor() {
+    int threadNum = Math.max(1, Args.getInstance().getConstantCallThreadNum());
+    workers = new ThreadPoolExecutor(threadNum, threadNum, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threadNum * MAX_PENDING_PER_THREAD),
+        new ThreadFactoryBuilder().setNameFormat("constant-call-%d").setDaemon(true).build());
+  }
+
+  ConstantCallExecutor(Manager dbManager) {
+    this();
+    this.dbManager = dbManager;
+  }
+
+  // the calls waiting for a thread
+  int getPendingCount() {
+    return workers.getQueue().size();
+  }
+
+  /**
+   * @return the runtime of the call once it ran, its result and error are set.
+   */
+  public Runtime execute(Transaction trx)
+      throws ContractValidateException, ContractExeException, HeaderNotFound {
+    Future<Runtime> future;
+    try {
+      future = workers.submit(() -> call(trx));
+    } catch (RejectedExecutionException e) {
+      throw new ContractValidateException("too many constant calls pending, try again later");
+    }
+
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ContractValidateException) {
+        throw (ContractValidateException) cause;
+      }
+      if (cause instanceof ContractExeException) {
+        throw (ContractExeException) cause;
+      }
+      if (cause instanceof HeaderNotFound) {
+        throw (HeaderNotFound) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private Runtime call(Transaction trx) throws Exception {
+    List<BlockWrapper> blockWrapperList = dbManager.getBlockStore().getBlockByLatestNum(1);
+    if (CollectionUtils.isEmpty(blockWrapperList)) {
+      throw new HeaderNotFound("latest block not found");
+    }
+
+    Runtime runtime = new Runtime(trx, new BlockWrapper(blockWrapperList.get(0).getInstance()),
+        DepositImpl.createRoot(dbManager), new ProgramInvokeFactoryImpl());
+    ExecutionLayer layer = new ExecutionLayer().execute(() -> {
+      runtime.execute();
+      runtime.go();
+      runtime.finalization();
+    });
+    if (layer.getFailure() instanceof Exception) {
+      throw (Exception) layer.getFailure();
+    }
+    if (layer.getFailure() != null) {
+      throw new RuntimeException(layer.getFailure());
+    }
+    return runtime;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+}
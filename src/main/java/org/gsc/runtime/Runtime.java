@@ -91,6 +91,9 @@ public class Runtime {
   //tx trace
   private TransactionTrace trace;
 
+  // run for triggerContract, it may use vm.constantCallCpuTimeMs of cpu time
+  private boolean constantCall;
+
 
   /**
    * For blockCap's trx run
@@ -135,6 +138,7 @@ public class Runtime {
     this.deposit = deposit;
     this.programInvokeFactory = programInvokeFactory;
     this.executorType = ET_PRE_TYPE;
+    this.constantCall = true;
     this.blockCap = block;
     this.energyProcessor = new EnergyProcessor(deposit.getDbManager());
     this.storageMarket = new StorageMarket(deposit.getDbManager());
@@ -406,6 +410,9 @@ public class Runtime {
           .getMaxCpuTimeOfOneTX() * 1000;
       long thisTxCPULimitInUs =
           (long) (MAX_CPU_TIME_OF_ONE_TX * getThisTxCPULimitInUsRatio());
+      if (constantCall && Args.getInstance().getConstantCallCpuTimeMs() > 0) {
+        thisTxCPULimitInUs = Args.getInstance().getConstantCallCpuTimeMs() * 1000;
+      }
 
       long vmStartInUs = System.nanoTime() / 1000;
       long vmShouldEndInUs = vmStartInUs + thisTxCPULimitInUs;
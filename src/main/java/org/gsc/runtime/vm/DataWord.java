@@ -22,11 +22,9 @@ import com.fasterxml.jackson.annotation.JsonValue;
 import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Hex;
 import org.gsc.common.utils.ByteUtil;
-import org.gsc.common.utils.FastByteComparisons;
 import org.gsc.db.ByteArrayWrapper;
 
 import java.math.BigInteger;
-import java.nio.ByteBuffer;
 
 /**
  * DataWord is the 32-byte array representation of a 256-bit number
@@ -43,25 +41,24 @@ public class DataWord implements Comparable<DataWord> {
     public static final BigInteger MAX_VALUE = _2_256.subtract(BigInteger.ONE);
     public static final DataWord ZERO = new DataWord(new byte[32]);      // don't push it in to the stack
     public static final DataWord ZERO_EMPTY_ARRAY = new DataWord(new byte[0]);      // don't push it in to the stack
+    private static final long INT_MASK = 0xFFFFFFFFL;
+    // the digits the divisions work on, so they don't allocate per operation
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
-    private byte[] data = new byte[32];
+    // the word as four 64 bit limbs, least significant first; the arithmetic works on them in place
+    private final long[] limbs = new long[4];
+    // the big endian bytes of the limbs, made on demand and dropped, never written, on a change
+    private byte[] data;
 
     public DataWord() {
     }
 
     public DataWord(int num) {
-        this(ByteBuffer.allocate(4).putInt(num));
+        limbs[0] = num & INT_MASK;
     }
 
     public DataWord(long num) {
-        this(ByteBuffer.allocate(8).putLong(num));
-    }
-
-    private DataWord(ByteBuffer buffer) {
-        final ByteBuffer data = ByteBuffer.allocate(32);
-        final byte[] array = buffer.array();
-        System.arraycopy(array, 0, data.array(), 32 - array.length, array.length);
-        this.data = data.array();
+        limbs[0] = num;
     }
 
     @JsonCreator
@@ -73,31 +70,56 @@ public class DataWord implements Comparable<DataWord> {
         this(wrappedData.getData());
     }
 
+    /**
+     * The value of the bytes, a shorter array zero extended. The array is read, not kept, so the
+     * caller may change it afterwards.
+     */
     public DataWord(byte[] data) {
-        if (data == null)
+        if (data == null) {
             this.data = ByteUtil.EMPTY_BYTE_ARRAY;
-        else if (data.length == 32)
-            this.data = data;
-        else if (data.length <= 32)
-            System.arraycopy(data, 0, this.data, 32 - data.length, data.length);
-        else
+            return;
+        }
+        if (data.length > 32)
             throw new RuntimeException("Data word can't exceed 32 bytes: " + data);
+
+        for (int i = 0; i < 4; i++) {
+            limbs[i] = limb(data, i);
+        }
     }
 
+    /**
+     * The big endian bytes of the word. They are kept until the word changes, and a change makes
+     * new ones, so holding on to them is safe; writing to them doesn't change the word.
+     */
     public byte[] getData() {
+        byte[] data = this.data;
+        if (data == null) {
+            data = new byte[32];
+            for (int i = 0; i < 4; i++) {
+                putLimb(data, i, limbs[i]);
+            }
+            this.data = data;
+        }
         return data;
     }
 
     public byte[] getNoLeadZeroesData() {
-        return ByteUtil.stripLeadingZeroes(data);
+        return ByteUtil.stripLeadingZeroes(getData());
     }
 
     public byte[] getLast20Bytes() {
-        return Arrays.copyOfRange(data, 12, data.length);
+        return Arrays.copyOfRange(getData(), 12, 32);
+    }
+
+    /**
+     * The byte at index of the big endian bytes, as getData()[index].
+     */
+    public byte getByte(int index) {
+        return (byte) (limbs[3 - (index >>> 3)] >>> ((7 - (index & 7)) << 3));
     }
 
     public BigInteger value() {
-        return new BigInteger(1, data);
+        return new BigInteger(1, getData());
     }
 
     /**
@@ -109,13 +131,7 @@ public class DataWord implements Comparable<DataWord> {
      * @throws ArithmeticException - if this will not fit in an int.
      */
     public int intValue() {
-        int intVal = 0;
-
-        for (byte aData : data) {
-            intVal = (intVal << 8) + (aData & 0xff);
-        }
-
-        return intVal;
+        return (int) limbs[0];
     }
 
     /**
@@ -123,10 +139,8 @@ public class DataWord implements Comparable<DataWord> {
      * otherwise works as #intValue()
      */
     public int intValueSafe() {
-        int bytesOccupied = bytesOccupied();
-        int intValue = intValue();
-        if (bytesOccupied > 4 || intValue < 0) return Integer.MAX_VALUE;
-        return intValue;
+        if ((limbs[1] | limbs[2] | limbs[3]) != 0 || limbs[0] >>> 31 != 0) return Integer.MAX_VALUE;
+        return (int) limbs[0];
     }
 
     /**
@@ -138,13 +152,7 @@ public class DataWord implements Comparable<DataWord> {
      * @throws ArithmeticException - if this will not fit in a long.
      */
     public long longValue() {
-
-        long longVal = 0;
-        for (byte aData : data) {
-            longVal = (longVal << 8) + (aData & 0xff);
-        }
-
-        return longVal;
+        return limbs[0];
     }
 
     /**
@@ -152,56 +160,64 @@ public class DataWord implements Comparable<DataWord> {
      * otherwise works as #longValue()
      */
     public long longValueSafe() {
-        int bytesOccupied = bytesOccupied();
-        long longValue = longValue();
-        if (bytesOccupied > 8 || longValue < 0) return Long.MAX_VALUE;
-        return longValue;
+        if ((limbs[1] | limbs[2] | limbs[3]) != 0 || limbs[0] < 0) return Long.MAX_VALUE;
+        return limbs[0];
     }
 
     public BigInteger sValue() {
-        return new BigInteger(data);
+        return new BigInteger(getData());
     }
 
     public String  bigIntValue() {
-        return new BigInteger(data).toString();
+        return new BigInteger(getData()).toString();
     }
 
     public boolean isZero() {
-        for (byte tmp : data) {
-            if (tmp != 0) return false;
-        }
-        return true;
+        return (limbs[0] | limbs[1] | limbs[2] | limbs[3]) == 0;
     }
 
     // only in case of signed operation
     // when the number is explicit defined
     // as negative
     public boolean isNegative() {
-        int result = data[0] & 0x80;
-        return result == 0x80;
+        return limbs[3] < 0;
+    }
+
+    /**
+     * Sets the word to value, zero extended.
+     */
+    void set(long value) {
+        limbs[0] = value;
+        limbs[1] = 0;
+        limbs[2] = 0;
+        limbs[3] = 0;
+        changed();
     }
 
     public DataWord and(DataWord w2) {
 
-        for (int i = 0; i < this.data.length; ++i) {
-            this.data[i] &= w2.data[i];
+        for (int i = 0; i < 4; ++i) {
+            this.limbs[i] &= w2.limbs[i];
         }
+        changed();
         return this;
     }
 
     public DataWord or(DataWord w2) {
 
-        for (int i = 0; i < this.data.length; ++i) {
-            this.data[i] |= w2.data[i];
+        for (int i = 0; i < 4; ++i) {
+            this.limbs[i] |= w2.limbs[i];
         }
+        changed();
         return this;
     }
 
     public DataWord xor(DataWord w2) {
 
-        for (int i = 0; i < this.data.length; ++i) {
-            this.data[i] ^= w2.data[i];
+        for (int i = 0; i < 4; ++i) {
+            this.limbs[i] ^= w2.limbs[i];
         }
+        changed();
         return this;
     }
 
@@ -209,51 +225,48 @@ public class DataWord implements Comparable<DataWord> {
 
         if (this.isZero()) return;
 
-        for (int i = 0; i < this.data.length; ++i) {
-            this.data[i] = (byte) ~this.data[i];
-        }
-
-        for (int i = this.data.length - 1; i >= 0; --i) {
-            this.data[i] = (byte) (1 + this.data[i] & 0xFF);
-            if (this.data[i] != 0) break;
+        long carry = 1;
+        for (int i = 0; i < 4; ++i) {
+            long limb = ~this.limbs[i] + carry;
+            carry = carry == 1 && limb == 0 ? 1 : 0;
+            this.limbs[i] = limb;
         }
+        changed();
     }
 
     public void bnot() {
-        if (this.isZero()) {
-            this.data = ByteUtil.copyToArray(MAX_VALUE);
-            return;
+        for (int i = 0; i < 4; ++i) {
+            this.limbs[i] = ~this.limbs[i];
         }
-        this.data = ByteUtil.copyToArray(MAX_VALUE.subtract(this.value()));
+        changed();
     }
 
-    // By   : Holger
-    // From : http://stackoverflow.com/a/24023466/459349
+    /*
+     * The arithmetic below changes the limbs in place. A word may be its own operand, so every
+     * operand limb is read before the result limb it could overlap is written.
+     */
+
     public void add(DataWord word) {
-        byte[] result = new byte[32];
-        for (int i = 31, overflow = 0; i >= 0; i--) {
-            int v = (this.data[i] & 0xff) + (word.data[i] & 0xff) + overflow;
-            result[i] = (byte) v;
-            overflow = v >>> 8;
+        long carry = 0;
+        for (int i = 0; i < 4; i++) {
+            long a = limbs[i];
+            long sum = a + word.limbs[i] + carry;
+            carry = Long.compareUnsigned(sum, a) < 0 || (carry == 1 && sum == a) ? 1 : 0;
+            limbs[i] = sum;
         }
-        this.data = result;
+        changed();
     }
 
     // old add-method with BigInteger quick hack
     public void add2(DataWord word) {
         BigInteger result = value().add(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        assign(ByteUtil.copyToArray(result.and(MAX_VALUE)));
     }
 
-    // TODO: mul can be done in more efficient way
-    // TODO:     with shift left shift right trick
-    // TODO      without BigInteger quick hack
     public void mul(DataWord word) {
-        BigInteger result = value().multiply(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        multiply(word.limbs[0], word.limbs[1], word.limbs[2], word.limbs[3]);
     }
 
-    // TODO: improve with no BigInteger
     public void div(DataWord word) {
 
         if (word.isZero()) {
@@ -261,11 +274,19 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().divide(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int bit = singleBit(word.limbs);
+        if (bit >= 0) {
+            shiftRight(bit);
+            return;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        toDigits(limbs, 4, scratch.u);
+        toDigits(word.limbs, 4, scratch.v);
+        divide(scratch, 8);
+        fromDigits(scratch.quotient);
     }
 
-    // TODO: improve with no BigInteger
     public void sDiv(DataWord word) {
 
         if (word.isZero()) {
@@ -273,23 +294,48 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().divide(word.sValue());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        Scratch scratch = SCRATCH.get();
+        absDigits(this, scratch.u);
+        absDigits(word, scratch.v);
+        divide(scratch, 8);
+        if (this.isNegative() != word.isNegative()) {
+            negate(scratch.quotient, 8);
+        }
+        fromDigits(scratch.quotient);
     }
 
-    // TODO: improve with no BigInteger
     public void sub(DataWord word) {
-        BigInteger result = value().subtract(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        long borrow = 0;
+        for (int i = 0; i < 4; i++) {
+            long a = limbs[i];
+            long b = word.limbs[i];
+            limbs[i] = a - b - borrow;
+            borrow = Long.compareUnsigned(a, b) < 0 || (borrow == 1 && a == b) ? 1 : 0;
+        }
+        changed();
     }
 
-    // TODO: improve with no BigInteger
     public void exp(DataWord word) {
-        BigInteger result = value().modPow(word.value(), _2_256);
-        this.data = ByteUtil.copyToArray(result);
+        long e0 = word.limbs[0], e1 = word.limbs[1], e2 = word.limbs[2], e3 = word.limbs[3];
+        long b0 = limbs[0], b1 = limbs[1], b2 = limbs[2], b3 = limbs[3];
+        set(1);
+
+        // square and multiply from the highest set bit of the exponent down
+        boolean started = false;
+        for (int i = 3; i >= 0; i--) {
+            long e = i == 3 ? e3 : i == 2 ? e2 : i == 1 ? e1 : e0;
+            for (int bit = 63; bit >= 0; bit--) {
+                if (started) {
+                    multiply(limbs[0], limbs[1], limbs[2], limbs[3]);
+                }
+                if ((e >>> bit & 1) != 0) {
+                    multiply(b0, b1, b2, b3);
+                    started = true;
+                }
+            }
+        }
     }
 
-    // TODO: improve with no BigInteger
     public void mod(DataWord word) {
 
         if (word.isZero()) {
@@ -297,8 +343,17 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().mod(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int bit = singleBit(word.limbs);
+        if (bit >= 0) {
+            keepLow(bit);
+            return;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        toDigits(limbs, 4, scratch.u);
+        toDigits(word.limbs, 4, scratch.v);
+        divide(scratch, 8);
+        fromDigits(scratch.remainder);
     }
 
     public void sMod(DataWord word) {
@@ -308,37 +363,354 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().abs().mod(word.sValue().abs());
-        result = (sValue().signum() == -1) ? result.negate() : result;
-
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        Scratch scratch = SCRATCH.get();
+        absDigits(this, scratch.u);
+        absDigits(word, scratch.v);
+        divide(scratch, 8);
+        if (this.isNegative()) {
+            negate(scratch.remainder, 8);
+        }
+        fromDigits(scratch.remainder);
     }
 
     public void addmod(DataWord word1, DataWord word2) {
         if (word2.isZero()) {
-            this.data = new byte[32];
+            this.and(ZERO);
             return;
         }
 
-        BigInteger result = value().add(word1.value()).mod(word2.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        // the 257 bit sum
+        Scratch scratch = SCRATCH.get();
+        long[] sum = scratch.wide;
+        long carry = 0;
+        for (int i = 0; i < 4; i++) {
+            long a = limbs[i];
+            long s = a + word1.limbs[i] + carry;
+            carry = Long.compareUnsigned(s, a) < 0 || (carry == 1 && s == a) ? 1 : 0;
+            sum[i] = s;
+        }
+        sum[4] = carry;
+
+        toDigits(sum, 5, scratch.u);
+        toDigits(word2.limbs, 4, scratch.v);
+        divide(scratch, 10);
+        fromDigits(scratch.remainder);
     }
 
     public void mulmod(DataWord word1, DataWord word2) {
 
         if (this.isZero() || word1.isZero() || word2.isZero()) {
-            this.data = new byte[32];
+            this.and(ZERO);
+            return;
+        }
+
+        // the 512 bit product
+        Scratch scratch = SCRATCH.get();
+        long[] product = scratch.wide;
+        for (int i = 0; i < 8; i++) {
+            product[i] = 0;
+        }
+        for (int i = 0; i < 4; i++) {
+            long a = limbs[i];
+            long carry = 0;
+            for (int j = 0; j < 4; j++) {
+                long b = word1.limbs[j];
+                long lo = a * b;
+                long hi = multiplyHigh(a, b);
+                long s = product[i + j] + lo;
+                if (Long.compareUnsigned(s, lo) < 0) hi++;
+                s += carry;
+                if (Long.compareUnsigned(s, carry) < 0) hi++;
+                product[i + j] = s;
+                carry = hi;
+            }
+            product[i + 4] = carry;
+        }
+
+        toDigits(product, 8, scratch.u);
+        toDigits(word2.limbs, 4, scratch.v);
+        divide(scratch, 16);
+        fromDigits(scratch.remainder);
+    }
+
+    private void changed() {
+        data = null;
+    }
+
+    private void assign(byte[] bytes) {
+        for (int i = 0; i < 4; i++) {
+            limbs[i] = limb(bytes, i);
+        }
+        changed();
+    }
+
+    // the low 256 bits of this * b
+    private void multiply(long b0, long b1, long b2, long b3) {
+        long a0 = limbs[0], a1 = limbs[1], a2 = limbs[2], a3 = limbs[3];
+        limbs[0] = a0 * b0;
+        limbs[1] = multiplyHigh(a0, b0);
+        limbs[2] = 0;
+        limbs[3] = 0;
+        multiplyAdd(1, a0, b1);
+        multiplyAdd(1, a1, b0);
+        multiplyAdd(2, a0, b2);
+        multiplyAdd(2, a1, b1);
+        multiplyAdd(2, a2, b0);
+        limbs[3] += a0 * b3 + a1 * b2 + a2 * b1 + a3 * b0;
+        changed();
+    }
+
+    // adds the 128 bit x * y at limb i, dropping what goes past the word
+    private void multiplyAdd(int i, long x, long y) {
+        if (x == 0 || y == 0) {
             return;
         }
+        addAt(i, x * y);
+        addAt(i + 1, multiplyHigh(x, y));
+    }
+
+    private void addAt(int i, long value) {
+        for (; i < 4; i++) {
+            long sum = limbs[i] + value;
+            limbs[i] = sum;
+            if (Long.compareUnsigned(sum, value) >= 0) {
+                return;
+            }
+            value = 1;
+        }
+    }
+
+    // the high 64 bits of the unsigned 128 bit product, Hacker's Delight mulhu
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & INT_MASK;
+        long x1 = x >>> 32;
+        long y0 = y & INT_MASK;
+        long y1 = y >>> 32;
+        long t = x1 * y0 + ((x0 * y0) >>> 32);
+        long u = x0 * y1 + (t & INT_MASK);
+        return x1 * y1 + (t >>> 32) + (u >>> 32);
+    }
+
+    // the index of the only set bit, -1 if there are none or more
+    private static int singleBit(long[] limbs) {
+        int bit = -1;
+        for (int i = 0; i < 4; i++) {
+            long limb = limbs[i];
+            if (limb == 0) {
+                continue;
+            }
+            if (bit >= 0 || (limb & (limb - 1)) != 0) {
+                return -1;
+            }
+            bit = (i << 6) + Long.numberOfTrailingZeros(limb);
+        }
+        return bit;
+    }
+
+    private void shiftRight(int bits) {
+        int skip = bits >>> 6;
+        int shift = bits & 63;
+        for (int i = 0; i < 4; i++) {
+            int from = i + skip;
+            long low = from < 4 ? limbs[from] >>> shift : 0;
+            long high = shift != 0 && from + 1 < 4 ? limbs[from + 1] << (64 - shift) : 0;
+            limbs[i] = low | high;
+        }
+        changed();
+    }
+
+    private void keepLow(int bits) {
+        for (int i = 0; i < 4; i++) {
+            int below = bits - (i << 6);
+            if (below <= 0) {
+                limbs[i] = 0;
+            } else if (below < 64) {
+                limbs[i] &= (1L << below) - 1;
+            }
+        }
+        changed();
+    }
+
+    // reads words shorter than 32 bytes, like ZERO_EMPTY_ARRAY, as zero extended
+    private static long limb(byte[] data, int i) {
+        int end = data.length - (i << 3);
+        long limb = 0;
+        for (int k = Math.max(0, end - 8); k < end; k++) {
+            limb = (limb << 8) | (data[k] & 0xFF);
+        }
+        return limb;
+    }
+
+    private static void putLimb(byte[] data, int i, long limb) {
+        int offset = 24 - (i << 3);
+        for (int k = offset + 7; k >= offset; k--) {
+            data[k] = (byte) limb;
+            limb >>>= 8;
+        }
+    }
+
+    /*
+     * The divisions work on 32 bit digits, least significant first, where a product of two
+     * digits fits in a long.
+     */
 
-        BigInteger result = value().multiply(word1.value()).mod(word2.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+    private static void toDigits(long[] limbs, int count, int[] digits) {
+        for (int i = 0; i < count; i++) {
+            digits[i << 1] = (int) limbs[i];
+            digits[(i << 1) + 1] = (int) (limbs[i] >>> 32);
+        }
+    }
+
+    private void fromDigits(int[] digits) {
+        for (int i = 0; i < 4; i++) {
+            limbs[i] = ((long) digits[(i << 1) + 1] << 32) | (digits[i << 1] & INT_MASK);
+        }
+        changed();
+    }
+
+    private static void absDigits(DataWord word, int[] digits) {
+        toDigits(word.limbs, 4, digits);
+        if (word.isNegative()) {
+            negate(digits, 8);
+        }
+    }
+
+    // two's complement in place
+    private static void negate(int[] digits, int length) {
+        long carry = 1;
+        for (int i = 0; i < length; i++) {
+            long t = (~digits[i] & INT_MASK) + carry;
+            digits[i] = (int) t;
+            carry = t >>> 32;
+        }
+    }
+
+    // Long.divideUnsigned of Java 8 goes through BigInteger for a dividend past Long.MAX_VALUE
+    private static long divideUnsigned(long dividend, long divisor) {
+        if (dividend >= 0) {
+            return dividend / divisor;
+        }
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long rest = dividend - quotient * divisor;
+        return quotient + (Long.compareUnsigned(rest, divisor) >= 0 ? 1 : 0);
+    }
+
+    private static int significant(int[] digits, int length) {
+        while (length > 0 && digits[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Knuth's algorithm D (Hacker's Delight, divmnu), unsigned, of the low length digits of the
+     * scratch u by its eight digits of v, into its quotient and remainder. v must not be zero.
+     */
+    private static void divide(Scratch scratch, int length) {
+        int[] u = scratch.u;
+        int[] v = scratch.v;
+        int[] quotient = scratch.quotient;
+        int[] remainder = scratch.remainder;
+        java.util.Arrays.fill(quotient, 0);
+        java.util.Arrays.fill(remainder, 0);
+
+        int m = significant(u, length);
+        int n = significant(v, 8);
+        if (m < n) {
+            System.arraycopy(u, 0, remainder, 0, m);
+            return;
+        }
+
+        if (n == 1) {
+            long divisor = v[0] & INT_MASK;
+            long rest = 0;
+            for (int j = m - 1; j >= 0; j--) {
+                long t = (rest << 32) | (u[j] & INT_MASK);
+                long q = divideUnsigned(t, divisor);
+                quotient[j] = (int) q;
+                rest = t - q * divisor;
+            }
+            remainder[0] = (int) rest;
+            return;
+        }
+
+        // normalize so the top digit of the divisor has its high bit set
+        int s = Integer.numberOfLeadingZeros(v[n - 1]);
+        int[] vn = scratch.vn;
+        for (int i = n - 1; i > 0; i--) {
+            vn[i] = (v[i] << s) | (s == 0 ? 0 : v[i - 1] >>> (32 - s));
+        }
+        vn[0] = v[0] << s;
+        int[] un = scratch.un;
+        un[m] = s == 0 ? 0 : u[m - 1] >>> (32 - s);
+        for (int i = m - 1; i > 0; i--) {
+            un[i] = (u[i] << s) | (s == 0 ? 0 : u[i - 1] >>> (32 - s));
+        }
+        un[0] = u[0] << s;
+
+        long top = vn[n - 1] & INT_MASK;
+        long next = vn[n - 2] & INT_MASK;
+        for (int j = m - n; j >= 0; j--) {
+            long numerator = ((un[j + n] & INT_MASK) << 32) | (un[j + n - 1] & INT_MASK);
+            long qhat = divideUnsigned(numerator, top);
+            long rhat = numerator - qhat * top;
+            while (qhat > INT_MASK || Long.compareUnsigned(qhat * next,
+                (rhat << 32) | (un[j + n - 2] & INT_MASK)) > 0) {
+                qhat--;
+                rhat += top;
+                if (rhat > INT_MASK) {
+                    break;
+                }
+            }
+
+            // multiply and subtract
+            long borrow = 0;
+            long t;
+            for (int i = 0; i < n; i++) {
+                long p = qhat * (vn[i] & INT_MASK);
+                t = (un[i + j] & INT_MASK) - borrow - (p & INT_MASK);
+                un[i + j] = (int) t;
+                borrow = (p >>> 32) - (t >> 32);
+            }
+            t = (un[j + n] & INT_MASK) - borrow;
+            un[j + n] = (int) t;
+
+            if (t < 0) {
+                // subtracted one time too many, add back
+                qhat--;
+                long carry = 0;
+                for (int i = 0; i < n; i++) {
+                    t = (un[i + j] & INT_MASK) + (vn[i] & INT_MASK) + carry;
+                    un[i + j] = (int) t;
+                    carry = t >>> 32;
+                }
+                un[j + n] += (int) carry;
+            }
+            quotient[j] = (int) qhat;
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            remainder[i] = (un[i] >>> s) | (s == 0 ? 0 : un[i + 1] << (32 - s));
+        }
+        remainder[n - 1] = un[n - 1] >>> s;
+    }
+
+    // sized for the 512 bit product of MULMOD
+    private static class Scratch {
+
+        private final long[] wide = new long[8];
+        private final int[] u = new int[16];
+        private final int[] v = new int[8];
+        private final int[] quotient = new int[16];
+        private final int[] remainder = new int[8];
+        private final int[] un = new int[17];
+        private final int[] vn = new int[8];
     }
 
     @JsonValue
     @Override
     public String toString() {
-        return Hex.toHexString(data);
+        return Hex.toHexString(getData());
     }
 
     public String toPrefixString() {
@@ -358,7 +730,11 @@ public class DataWord implements Comparable<DataWord> {
     }
 
     public DataWord clone() {
-        return new DataWord(Arrays.clone(data));
+        DataWord word = new DataWord();
+        System.arraycopy(limbs, 0, word.limbs, 0, 4);
+        if (data != null && data.length == 0)
+            word.data = data;
+        return word;
     }
 
     @Override
@@ -368,42 +744,57 @@ public class DataWord implements Comparable<DataWord> {
 
         DataWord dataWord = (DataWord) o;
 
-        return java.util.Arrays.equals(data, dataWord.data);
+        return java.util.Arrays.equals(limbs, dataWord.limbs);
 
     }
 
     @Override
     public int hashCode() {
-        return java.util.Arrays.hashCode(data);
+        return java.util.Arrays.hashCode(limbs);
     }
 
     @Override
     public int compareTo(DataWord o) {
-        if (o == null || o.getData() == null) return -1;
-        int result = FastByteComparisons.compareTo(
-                data, 0, data.length,
-                o.getData(), 0, o.getData().length);
-        // Convert result into -1, 0 or 1 as is the convention
-        return (int) Math.signum(result);
+        if (o == null) return -1;
+        for (int i = 3; i >= 0; i--) {
+            int result = Long.compareUnsigned(limbs[i], o.limbs[i]);
+            if (result != 0) return result < 0 ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * compareTo of the words as signed numbers.
+     */
+    public int sCompareTo(DataWord o) {
+        if (limbs[3] != o.limbs[3]) return limbs[3] < o.limbs[3] ? -1 : 1;
+        return compareTo(o);
     }
 
     public void signExtend(byte k) {
         if (0 > k || k > 31)
             throw new IndexOutOfBoundsException();
-        byte mask = this.sValue().testBit((k * 8) + 7) ? (byte) 0xff : 0;
-        for (int i = 31; i > k; i--) {
-            this.data[31 - i] = mask;
+        int bit = (k << 3) + 7;
+        int i = bit >>> 6;
+        int shift = bit & 63;
+        boolean negative = (limbs[i] >>> shift & 1) != 0;
+        long above = shift == 63 ? 0 : -1L << (shift + 1);
+        limbs[i] = negative ? limbs[i] | above : limbs[i] & ~above;
+        for (int j = i + 1; j < 4; j++) {
+            limbs[j] = negative ? -1 : 0;
         }
+        changed();
     }
 
     public int bytesOccupied() {
-        int firstNonZero = ByteUtil.firstNonZeroByte(data);
-        if (firstNonZero == -1) return 0;
-        return 31 - firstNonZero + 1;
+        for (int i = 3; i >= 0; i--) {
+            if (limbs[i] != 0) return (i << 3) + (71 - Long.numberOfLeadingZeros(limbs[i])) / 8;
+        }
+        return 0;
     }
 
     public boolean isHex(String hex) {
-        return Hex.toHexString(data).equals(hex);
+        return Hex.toHexString(getData()).equals(hex);
     }
 
     public String asString(){
@@ -411,6 +802,6 @@ public class DataWord implements Comparable<DataWord> {
     }
 
     public String toHexString() {
-            return Hex.toHexString(data);
+            return Hex.toHexString(getData());
     }
 }
@@ -29,9 +29,13 @@ import static org.gsc.common.utils.ByteUtil.parseBytes;
 import static org.gsc.common.utils.ByteUtil.parseWord;
 import static org.gsc.common.utils.ByteUtil.stripLeadingZeroes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.primitives.Longs;
 import com.google.protobuf.ByteString;
 import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
@@ -39,6 +43,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.gsc.core.operator.Operator;
 import org.gsc.core.operator.OperatorFactory;
 import org.gsc.core.wrapper.TransactionWrapper;
+import org.gsc.db.common.WrappedByteArray;
 import org.spongycastle.util.encoders.Hex;
 import org.gsc.crypto.ECKey;
 import org.gsc.crypto.zksnark.BN128;
@@ -223,45 +228,57 @@ public class PrecompiledContracts {
 
     public abstract Pair<Boolean, byte[]> execute(byte[] data);
 
-    private byte[] callerAddress;
+    // the contracts are shared, what a call hands them is kept per thread so that calls executed
+    // on several threads at once don't see each other's
+    private final ThreadLocal<CallContext> context = ThreadLocal.withInitial(CallContext::new);
 
     public void setCallerAddress(byte[] callerAddress) {
-      this.callerAddress = callerAddress.clone();
+      context.get().callerAddress = callerAddress.clone();
     }
 
     public void setDeposit(Deposit deposit) {
-      this.deposit = deposit;
+      context.get().deposit = deposit;
     }
 
     public void setResult(ProgramResult result) {
-      this.result = result;
+      context.get().result = result;
     }
 
-    private Deposit deposit;
-
-    private ProgramResult result;
-
     public byte[] getCallerAddress() {
-      return callerAddress.clone();
+      return context.get().callerAddress.clone();
     }
 
     public Deposit getDeposit() {
-      return deposit;
+      return context.get().deposit;
     }
 
     public ProgramResult getResult() {
-      return result;
+      return context.get().result;
     }
 
     public boolean isRootCallConstant() {
-      return isRootCallConstant;
+      return context.get().isRootCallConstant;
     }
 
     public void setRootCallConstant(boolean rootCallConstant) {
-      isRootCallConstant = rootCallConstant;
+      context.get().isRootCallConstant = rootCallConstant;
     }
 
-    private boolean isRootCallConstant;
+    /**
+     * drop what the call handed the contract, so a pooled thread doesn't keep the deposit and
+     * result of its last call alive.
+     */
+    public void clearContext() {
+      context.remove();
+    }
+
+    private static class CallContext {
+
+      private byte[] callerAddress;
+      private Deposit deposit;
+      private ProgramResult result;
+      private boolean isRootCallConstant;
+    }
 
 
   }
@@ -343,6 +360,12 @@ public class PrecompiledContracts {
 
   public static class ECRecover extends PrecompiledContract {
 
+    private static final int INPUT_LENGTH = 128;
+
+    // addresses recovered lately by (hash, v, r, s), the same signatures are checked over and over
+    private static final Cache<WrappedByteArray, byte[]> recovered = CacheBuilder.newBuilder()
+        .maximumSize(1024).build();
+
     @Override
     public long getEnergyForData(byte[] data) {
       return 3000;
@@ -350,34 +373,42 @@ public class PrecompiledContracts {
 
     @Override
     public Pair<Boolean, byte[]> execute(byte[] data) {
-
-      byte[] h = new byte[32];
-      byte[] v = new byte[32];
-      byte[] r = new byte[32];
-      byte[] s = new byte[32];
-
-      DataWord out = null;
-
-      try {
-        System.arraycopy(data, 0, h, 0, 32);
-        System.arraycopy(data, 32, v, 0, 32);
-        System.arraycopy(data, 64, r, 0, 32);
-
-        int sLength = data.length < 128 ? data.length - 96 : 32;
-        System.arraycopy(data, 96, s, 0, sLength);
-
-        ECKey.ECDSASignature signature = ECKey.ECDSASignature.fromComponents(r, s, v[31]);
-        if (validateV(v) && signature.validateComponents()) {
-          out = new DataWord(ECKey.signatureToAddress(h, signature));
+      // short call data is zero extended, its s is zero then and no signature
+      byte[] input = data == null ? new byte[INPUT_LENGTH] : Arrays.copyOf(data, INPUT_LENGTH);
+      WrappedByteArray key = WrappedByteArray.of(input);
+      byte[] address = recovered.getIfPresent(key);
+      if (address == null) {
+        try {
+          address = recover(input);
+          recovered.put(key, address);
+        } catch (SignatureException | IllegalArgumentException e) {
+          // no key made the signature, not kept so what failed is tried again
+          address = EMPTY_BYTE_ARRAY;
         }
-      } catch (Throwable any) {
       }
-
-      if (out == null) {
-        return Pair.of(true, EMPTY_BYTE_ARRAY);
-      } else {
-        return Pair.of(true, out.getData());
+      return Pair.of(true, address.clone());
+    }
+
+    /**
+     * @return the signer as a word, empty when the components aren't those of a signature
+     * @throws SignatureException or IllegalArgumentException when no key can be recovered
+     */
+    private static byte[] recover(byte[] input) throws SignatureException {
+      byte[] h = Arrays.copyOfRange(input, 0, 32);
+      byte[] v = Arrays.copyOfRange(input, 32, 64);
+      byte[] r = Arrays.copyOfRange(input, 64, 96);
+      byte[] s = Arrays.copyOfRange(input, 96, 128);
+
+      ECKey.ECDSASignature signature = ECKey.ECDSASignature.fromComponents(r, s, v[31]);
+      if (!validateV(v) || !signature.validateComponents()) {
+        return EMPTY_BYTE_ARRAY;
       }
+      return new DataWord(ECKey.signatureToAddress(h, signature)).getData();
+    }
+
+    static boolean isMemoized(byte[] data) {
+      return recovered.getIfPresent(WrappedByteArray.of(Arrays.copyOf(data, INPUT_LENGTH)))
+          != null;
     }
 
     private static boolean validateV(byte[] v) {
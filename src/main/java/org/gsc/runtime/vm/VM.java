@@ -9,6 +9,7 @@ import static org.gsc.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.spongycastle.util.encoders.Hex;
@@ -19,6 +20,7 @@ import org.gsc.runtime.vm.program.Program;
 import org.gsc.runtime.vm.program.Program.JVMStackOverFlowException;
 import org.gsc.runtime.vm.program.Program.OutOfEnergyException;
 import org.gsc.runtime.vm.program.Stack;
+import org.gsc.runtime.vm.trace.VMProfiler;
 
 @Slf4j(topic = "VM")
 
@@ -35,6 +37,72 @@ public class VM {
   // 3MB
   private static BigInteger MEM_LIMIT = BigInteger.valueOf(3 * 1024 * 1024);
 
+  // by opcode byte: the energy of the ops whose cost doesn't depend on their operands, -1 for the
+  // ones step prices from the stack and memory
+  private static final long[] STATIC_ENERGY = new long[256];
+  // by opcode byte: the ops the CPU time is checked at, where a basic block starts, the run leaves
+  // for a callee or it ends
+  private static final boolean[] CHECKS_CLOCK = new boolean[256];
+  // by opcode byte: how many bytes of code the instruction takes
+  private static final int[] LENGTH = new int[256];
+
+  static {
+    EnergyCost energyCosts = EnergyCost.getInstance();
+    Arrays.fill(STATIC_ENERGY, -1);
+    for (OpCode op : OpCode.values()) {
+      int code = op.val() & 0xFF;
+      switch (op) {
+        case SUICIDE:
+        case SSTORE:
+        case MSTORE:
+        case MSTORE8:
+        case MLOAD:
+        case RETURN:
+        case REVERT:
+        case SHA3:
+        case CALLDATACOPY:
+        case RETURNDATACOPY:
+        case CODECOPY:
+        case EXTCODECOPY:
+        case CALL:
+        case CALLCODE:
+        case DELEGATECALL:
+        case STATICCALL:
+        case CREATE:
+        case LOG0:
+        case LOG1:
+        case LOG2:
+        case LOG3:
+        case LOG4:
+        case EXP:
+          break;
+        case STOP:
+          STATIC_ENERGY[code] = energyCosts.getSTOP();
+          break;
+        case SLOAD:
+          STATIC_ENERGY[code] = energyCosts.getSLOAD();
+          break;
+        case BALANCE:
+          STATIC_ENERGY[code] = energyCosts.getBALANCE();
+          break;
+        case EXTCODESIZE:
+          STATIC_ENERGY[code] = energyCosts.getEXT_CODE_SIZE();
+          break;
+        default:
+          STATIC_ENERGY[code] = op.getTier().asInt();
+          break;
+      }
+
+      CHECKS_CLOCK[code] = op == OpCode.JUMPDEST || op.isCall() || op == OpCode.CREATE
+          || op == OpCode.STOP || op == OpCode.RETURN || op == OpCode.REVERT
+          || op == OpCode.SUICIDE;
+      LENGTH[code] = 1;
+      if (op.asInt() >= OpCode.PUSH1.asInt() && op.asInt() <= OpCode.PUSH32.asInt()) {
+        LENGTH[code] += op.asInt() - OpCode.PUSH1.asInt() + 1;
+      }
+    }
+  }
+
 
   /* Keeps track of the number of steps that performed in this VM */
   private int vmCounter = 0;
@@ -90,11 +158,12 @@ public class VM {
     }
 
     try {
-      OpCode op = OpCode.code(program.getCurrentOp());
+      OpCode op = program.getCurrentOpCode();
       if (op == null) {
         throw Program.Exception.invalidOpCode(program.getCurrentOp());
       }
 
+      int code = op.val() & 0xFF;
       program.setLastOp(op.val());
       program.verifyStackSize(op.require());
       program.verifyStackOverflow(op.require(), op.ret()); //Check not exceeding stack limits
@@ -104,181 +173,176 @@ public class VM {
 
       String hint = "";
       long callEnergy = 0, memWords = 0; // parameters for logging
-      long energyCost = op.getTier().asInt();
+      long energyCost = STATIC_ENERGY[code];
       EnergyCost energyCosts = EnergyCost.getInstance();
       DataWord adjustedCallEnergy = null;
 
-      // Calculate fees and spend energy
-      switch (op) {
-        case STOP:
-          energyCost = energyCosts.getSTOP();
-          break;
-        case SUICIDE:
-          energyCost = energyCosts.getSUICIDE();
-          DataWord suicideAddressWord = stack.get(stack.size() - 1);
-          if (isDeadAccount(program, suicideAddressWord) &&
-              !program.getBalance(program.getOwnerAddress()).isZero()) {
-            energyCost += energyCosts.getNEW_ACCT_SUICIDE();
-          }
-          break;
-        case SSTORE:
-          // todo: check the reset to 0, refund or not
-          DataWord newValue = stack.get(stack.size() - 2);
-          DataWord oldValue = program.storageLoad(stack.peek());
-          if (oldValue == null && !newValue.isZero()) {
-            // set a new not-zero value
-            energyCost = energyCosts.getSET_SSTORE();
-          } else if (oldValue != null && newValue.isZero()) {
-            // set zero to an old value
-            program.futureRefundEnergy(energyCosts.getREFUND_SSTORE());
-            energyCost = energyCosts.getCLEAR_SSTORE();
-          } else {
-            // include:
-            // [1] oldValue == null && newValue == 0
-            // [2] oldValue != null && newValue != 0
-            energyCost = energyCosts.getRESET_SSTORE();
-          }
-          break;
-        case SLOAD:
-          energyCost = energyCosts.getSLOAD();
-          break;
-        case BALANCE:
-          energyCost = energyCosts.getBALANCE();
-          break;
-
-        // These all operate on memory and therefore potentially expand it:
-        case MSTORE:
-          energyCost = calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), new DataWord(32)),
-              0, op);
-          break;
-        case MSTORE8:
-          energyCost = calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), new DataWord(1)),
-              0, op);
-          break;
-        case MLOAD:
-          energyCost = calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), new DataWord(32)),
-              0, op);
-          break;
-        case RETURN:
-        case REVERT:
-          energyCost = energyCosts.getSTOP() + calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
-          break;
-        case SHA3:
-          energyCost = energyCosts.getSHA3() + calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
-          DataWord size = stack.get(stack.size() - 2);
-          long chunkUsed = (size.longValueSafe() + 31) / 32;
-          energyCost += chunkUsed * energyCosts.getSHA3_WORD();
-          break;
-        case CALLDATACOPY:
-        case RETURNDATACOPY:
-          energyCost = calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), stack.get(stack.size() - 3)),
-              stack.get(stack.size() - 3).longValueSafe(), op);
-          break;
-        case CODECOPY:
-          energyCost = calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.peek(), stack.get(stack.size() - 3)),
-              stack.get(stack.size() - 3).longValueSafe(), op);
-          break;
-        case EXTCODESIZE:
-          energyCost = energyCosts.getEXT_CODE_SIZE();
-          break;
-        case EXTCODECOPY:
-          energyCost = energyCosts.getEXT_CODE_COPY() + calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 4)),
-              stack.get(stack.size() - 4).longValueSafe(), op);
-          break;
-        case CALL:
-        case CALLCODE:
-        case DELEGATECALL:
-        case STATICCALL:
-          // here, contract call an other contract, or a library, and so on
-          // todo: check the callvalue here
-          energyCost = energyCosts.getCALL();
-          DataWord callEnergyWord = stack.get(stack.size() - 1);
-          DataWord callAddressWord = stack.get(stack.size() - 2);
-          DataWord value = op.callHasValue() ?
-              stack.get(stack.size() - 3) : DataWord.ZERO;
-
-          //check to see if account does not exist and is not a precompiled contract
-          if (op == CALL) {
-            if (isDeadAccount(program, callAddressWord) && !value.isZero()) {
-              energyCost += energyCosts.getNEW_ACCT_CALL();
+      // Calculate the fees of the ops priced by their operands and spend energy
+      if (energyCost < 0) {
+        switch (op) {
+          case SUICIDE:
+            energyCost = energyCosts.getSUICIDE();
+            DataWord suicideAddressWord = stack.get(stack.size() - 1);
+            if (isDeadAccount(program, suicideAddressWord) &&
+                !program.getBalance(program.getOwnerAddress()).isZero()) {
+              energyCost += energyCosts.getNEW_ACCT_SUICIDE();
+            }
+            break;
+          case SSTORE:
+            // todo: check the reset to 0, refund or not
+            DataWord newValue = stack.get(stack.size() - 2);
+            DataWord oldValue = program.storageLoad(stack.peek());
+            if (oldValue == null && !newValue.isZero()) {
+              // set a new not-zero value
+              energyCost = energyCosts.getSET_SSTORE();
+            } else if (oldValue != null && newValue.isZero()) {
+              // set zero to an old value
+              program.futureRefundEnergy(energyCosts.getREFUND_SSTORE());
+              energyCost = energyCosts.getCLEAR_SSTORE();
+            } else {
+              // include:
+              // [1] oldValue == null && newValue == 0
+              // [2] oldValue != null && newValue != 0
+              energyCost = energyCosts.getRESET_SSTORE();
+            }
+            break;
+          // These all operate on memory and therefore potentially expand it:
+          case MSTORE:
+            energyCost = calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), 32),
+                0, op);
+            break;
+          case MSTORE8:
+            energyCost = calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), 1),
+                0, op);
+            break;
+          case MLOAD:
+            energyCost = calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), 32),
+                0, op);
+            break;
+          case RETURN:
+          case REVERT:
+            energyCost = energyCosts.getSTOP() + calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
+            break;
+          case SHA3:
+            energyCost = energyCosts.getSHA3() + calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), stack.get(stack.size() - 2)), 0, op);
+            DataWord size = stack.get(stack.size() - 2);
+            long chunkUsed = (size.longValueSafe() + 31) / 32;
+            energyCost += chunkUsed * energyCosts.getSHA3_WORD();
+            break;
+          case CALLDATACOPY:
+          case RETURNDATACOPY:
+            energyCost = calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), stack.get(stack.size() - 3)),
+                stack.get(stack.size() - 3).longValueSafe(), op);
+            break;
+          case CODECOPY:
+            energyCost = calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.peek(), stack.get(stack.size() - 3)),
+                stack.get(stack.size() - 3).longValueSafe(), op);
+            break;
+          case EXTCODECOPY:
+            energyCost = energyCosts.getEXT_CODE_COPY() + calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 4)),
+                stack.get(stack.size() - 4).longValueSafe(), op);
+            break;
+          case CALL:
+          case CALLCODE:
+          case DELEGATECALL:
+          case STATICCALL:
+            // here, contract call an other contract, or a library, and so on
+            // todo: check the callvalue here
+            energyCost = energyCosts.getCALL();
+            DataWord callEnergyWord = stack.get(stack.size() - 1);
+            DataWord callAddressWord = stack.get(stack.size() - 2);
+            DataWord value = op.callHasValue() ?
+                stack.get(stack.size() - 3) : DataWord.ZERO;
+
+            //check to see if account does not exist and is not a precompiled contract
+            if (op == CALL) {
+              if (isDeadAccount(program, callAddressWord) && !value.isZero()) {
+                energyCost += energyCosts.getNEW_ACCT_CALL();
+              }
             }
-          }
-
-          // TODO #POC9 Make sure this is converted to BigInteger (256num support)
-          if (!value.isZero()) {
-            energyCost += energyCosts.getVT_CALL();
-          }
-
-          int opOff = op.callHasValue() ? 4 : 3;
-          BigInteger in = memNeeded(stack.get(stack.size() - opOff),
-              stack.get(stack.size() - opOff - 1)); // in offset+size
-          BigInteger out = memNeeded(stack.get(stack.size() - opOff - 2),
-              stack.get(stack.size() - opOff - 3)); // out offset+size
-          energyCost += calcMemEnergy(energyCosts, oldMemSize, in.max(out), 0, op);
-          checkMemorySize(op, in.max(out));
-
-          if (energyCost > program.getEnergyLimitLeft().longValueSafe()) {
-            throw new OutOfEnergyException(
-                "Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
-                op.name(),
-                energyCost, program.getEnergyLimitLeft().longValueSafe());
-          }
-          DataWord getEnergyLimitLeft = program.getEnergyLimitLeft().clone();
-          getEnergyLimitLeft.sub(new DataWord(energyCost));
 
-          adjustedCallEnergy = program.getCallEnergy(op, callEnergyWord, getEnergyLimitLeft);
-          energyCost += adjustedCallEnergy.longValueSafe();
-          break;
-        case CREATE:
-          energyCost = energyCosts.getCREATE() + calcMemEnergy(energyCosts, oldMemSize,
-              memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
-          break;
-        case LOG0:
-        case LOG1:
-        case LOG2:
-        case LOG3:
-        case LOG4:
-          int nTopics = op.val() - OpCode.LOG0.val();
-          BigInteger dataSize = stack.get(stack.size() - 2).value();
-          BigInteger dataCost = dataSize
-              .multiply(BigInteger.valueOf(energyCosts.getLOG_DATA_ENERGY()));
-          if (program.getEnergyLimitLeft().value().compareTo(dataCost) < 0) {
-            throw new OutOfEnergyException(
-                "Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
-                op.name(),
-                dataCost.longValueExact(), program.getEnergyLimitLeft().longValueSafe());
-          }
-          energyCost = energyCosts.getLOG_ENERGY() +
-              energyCosts.getLOG_TOPIC_ENERGY() * nTopics +
-              energyCosts.getLOG_DATA_ENERGY() * stack.get(stack.size() - 2).longValue() +
-              calcMemEnergy(energyCosts, oldMemSize,
-                  memNeeded(stack.peek(), stack.get(stack.size() - 2)),
-                  0, op);
-
-          checkMemorySize(op, memNeeded(stack.peek(), stack.get(stack.size() - 2)));
-          break;
-        case EXP:
+            // TODO #POC9 Make sure this is converted to BigInteger (256num support)
+            if (!value.isZero()) {
+              energyCost += energyCosts.getVT_CALL();
+            }
 
-          DataWord exp = stack.get(stack.size() - 2);
-          int bytesOccupied = exp.bytesOccupied();
-          energyCost =
-              energyCosts.getEXP_ENERGY() + energyCosts.getEXP_BYTE_ENERGY() * bytesOccupied;
-          break;
-        default:
-          break;
+            int opOff = op.callHasValue() ? 4 : 3;
+            BigInteger in = memNeeded(stack.get(stack.size() - opOff),
+                stack.get(stack.size() - opOff - 1)); // in offset+size
+            BigInteger out = memNeeded(stack.get(stack.size() - opOff - 2),
+                stack.get(stack.size() - opOff - 3)); // out offset+size
+            energyCost += calcMemEnergy(energyCosts, oldMemSize, in.max(out), 0, op);
+            checkMemorySize(op, in.max(out));
+
+            if (energyCost > program.getEnergyLimitLeft().longValueSafe()) {
+              throw new OutOfEnergyException(
+                  "Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
+                  op.name(),
+                  energyCost, program.getEnergyLimitLeft().longValueSafe());
+            }
+            DataWord getEnergyLimitLeft = program.getEnergyLimitLeft().clone();
+            getEnergyLimitLeft.sub(new DataWord(energyCost));
+
+            adjustedCallEnergy = program.getCallEnergy(op, callEnergyWord, getEnergyLimitLeft);
+            energyCost += adjustedCallEnergy.longValueSafe();
+            break;
+          case CREATE:
+            energyCost = energyCosts.getCREATE() + calcMemEnergy(energyCosts, oldMemSize,
+                memNeeded(stack.get(stack.size() - 2), stack.get(stack.size() - 3)), 0, op);
+            break;
+          case LOG0:
+          case LOG1:
+          case LOG2:
+          case LOG3:
+          case LOG4:
+            int nTopics = op.val() - OpCode.LOG0.val();
+            BigInteger dataSize = stack.get(stack.size() - 2).value();
+            BigInteger dataCost = dataSize
+                .multiply(BigInteger.valueOf(energyCosts.getLOG_DATA_ENERGY()));
+            if (program.getEnergyLimitLeft().value().compareTo(dataCost) < 0) {
+              throw new OutOfEnergyException(
+                  "Not enough energy for '%s' operation executing: opEnergy[%d], programEnergy[%d]",
+                  op.name(),
+                  dataCost.longValueExact(), program.getEnergyLimitLeft().longValueSafe());
+            }
+            energyCost = energyCosts.getLOG_ENERGY() +
+                energyCosts.getLOG_TOPIC_ENERGY() * nTopics +
+                energyCosts.getLOG_DATA_ENERGY() * stack.get(stack.size() - 2).longValue() +
+                calcMemEnergy(energyCosts, oldMemSize,
+                    memNeeded(stack.peek(), stack.get(stack.size() - 2)),
+                    0, op);
+
+            checkMemorySize(op, memNeeded(stack.peek(), stack.get(stack.size() - 2)));
+            break;
+          case EXP:
+
+            DataWord exp = stack.get(stack.size() - 2);
+            int bytesOccupied = exp.bytesOccupied();
+            energyCost =
+                energyCosts.getEXP_ENERGY() + energyCosts.getEXP_BYTE_ENERGY() * bytesOccupied;
+            break;
+          default:
+            energyCost = op.getTier().asInt();
+            break;
+        }
       }
 
       // DEBUG System.out.println(" OP IS " + op.name() + " ENERGYCOST IS " + energyCost + " NUM IS " + op.asInt());
       program.spendEnergy(energyCost, op.name());
-      program.checkCPUTimeLimit(op.name());
+      // the clock is read once per basic block, where it starts and before it can end the run,
+      // halting or at the last instruction of the code: every loop goes through a JUMPDEST and a
+      // callee checks on its own
+      if (CHECKS_CLOCK[code] || program.getPC() + LENGTH[code] >= program.getCode().length) {
+        program.checkCPUTimeLimit(op.name());
+      }
       // logger.info("after opName: {}, {}", op.name(), System.nanoTime() / 1000 - lastTime);
 
       // Execute operation
@@ -295,7 +359,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " + " + word2.value();
           }
 
@@ -309,7 +373,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " * " + word2.value();
           }
 
@@ -322,7 +386,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " - " + word2.value();
           }
 
@@ -335,7 +399,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " / " + word2.value();
           }
 
@@ -348,7 +412,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.sValue() + " / " + word2.sValue();
           }
 
@@ -361,7 +425,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " % " + word2.value();
           }
 
@@ -374,7 +438,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.sValue() + " #% " + word2.sValue();
           }
 
@@ -387,7 +451,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " ** " + word2.value();
           }
 
@@ -402,7 +466,7 @@ public class VM {
 
           if (k.compareTo(_32_) < 0) {
             DataWord word2 = program.stackPop();
-            if (logger.isInfoEnabled()) {
+            if (logger.isDebugEnabled()) {
               hint = word1 + "  " + word2.value();
             }
             word2.signExtend(k.byteValue());
@@ -415,7 +479,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           word1.bnot();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + word1.value();
           }
 
@@ -424,77 +488,53 @@ public class VM {
         }
         break;
         case LT: {
-          // TODO: can be improved by not using BigInteger
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " < " + word2.value();
           }
 
-          if (word1.value().compareTo(word2.value()) == -1) {
-            word1.and(DataWord.ZERO);
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.compareTo(word2) < 0 ? 1 : 0);
           program.stackPush(word1);
           program.step();
         }
         break;
         case SLT: {
-          // TODO: can be improved by not using BigInteger
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.sValue() + " < " + word2.sValue();
           }
 
-          if (word1.sValue().compareTo(word2.sValue()) == -1) {
-            word1.and(DataWord.ZERO);
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.sCompareTo(word2) < 0 ? 1 : 0);
           program.stackPush(word1);
           program.step();
         }
         break;
         case SGT: {
-          // TODO: can be improved by not using BigInteger
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.sValue() + " > " + word2.sValue();
           }
 
-          if (word1.sValue().compareTo(word2.sValue()) == 1) {
-            word1.and(DataWord.ZERO);
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.sCompareTo(word2) > 0 ? 1 : 0);
           program.stackPush(word1);
           program.step();
         }
         break;
         case GT: {
-          // TODO: can be improved by not using BigInteger
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " > " + word2.value();
           }
 
-          if (word1.value().compareTo(word2.value()) == 1) {
-            word1.and(DataWord.ZERO);
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.compareTo(word2) > 0 ? 1 : 0);
           program.stackPush(word1);
           program.step();
         }
@@ -503,29 +543,20 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " == " + word2.value();
           }
 
-          if (word1.xor(word2).isZero()) {
-            word1.and(DataWord.ZERO);
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.xor(word2).isZero() ? 1 : 0);
           program.stackPush(word1);
           program.step();
         }
         break;
         case ISZERO: {
           DataWord word1 = program.stackPop();
-          if (word1.isZero()) {
-            word1.getData()[31] = 1;
-          } else {
-            word1.and(DataWord.ZERO);
-          }
+          word1.set(word1.isZero() ? 1 : 0);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + word1.value();
           }
 
@@ -541,7 +572,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " && " + word2.value();
           }
 
@@ -554,7 +585,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " || " + word2.value();
           }
 
@@ -567,7 +598,7 @@ public class VM {
           DataWord word1 = program.stackPop();
           DataWord word2 = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word1.value() + " ^ " + word2.value();
           }
 
@@ -581,15 +612,13 @@ public class VM {
           DataWord word2 = program.stackPop();
           final DataWord result;
           if (word1.value().compareTo(_32_) == -1) {
-            byte tmp = word2.getData()[word1.intValue()];
-            word2.and(DataWord.ZERO);
-            word2.getData()[31] = tmp;
+            word2.set(word2.getByte(word1.intValue()) & 0xFF);
             result = word2;
           } else {
             result = new DataWord();
           }
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + result.value();
           }
 
@@ -628,7 +657,7 @@ public class VM {
           byte[] encoded = sha3(buffer);
           DataWord word = new DataWord(encoded);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = word.toString();
           }
 
@@ -643,7 +672,7 @@ public class VM {
         case ADDRESS: {
           DataWord address = program.getOwnerAddress();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "address: " + Hex.toHexString(address.getLast20Bytes());
           }
 
@@ -655,7 +684,7 @@ public class VM {
           DataWord address = program.stackPop();
           DataWord balance = program.getBalance(address);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "address: "
                 + Hex.toHexString(address.getLast20Bytes())
                 + " balance: " + balance.toString();
@@ -668,7 +697,7 @@ public class VM {
         case ORIGIN: {
           DataWord originAddress = program.getOriginAddress();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "address: " + Hex.toHexString(originAddress.getLast20Bytes());
           }
 
@@ -683,7 +712,7 @@ public class VM {
            the address length in vm is matching with 20
            */
           callerAddress = new DataWord(callerAddress.getLast20Bytes());
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "address: " + Hex.toHexString(callerAddress.getLast20Bytes());
           }
 
@@ -694,7 +723,7 @@ public class VM {
         case CALLVALUE: {
           DataWord callValue = program.getCallValue();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "value: " + callValue;
           }
 
@@ -706,7 +735,7 @@ public class VM {
           DataWord dataOffs = program.stackPop();
           DataWord value = program.getDataValue(dataOffs);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "data: " + value;
           }
 
@@ -717,7 +746,7 @@ public class VM {
         case CALLDATASIZE: {
           DataWord dataSize = program.getDataSize();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "size: " + dataSize.value();
           }
 
@@ -732,7 +761,7 @@ public class VM {
 
           byte[] msgData = program.getDataCopy(dataOffsetData, lengthData);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "data: " + Hex.toHexString(msgData);
           }
 
@@ -743,7 +772,7 @@ public class VM {
         case RETURNDATASIZE: {
           DataWord dataSize = program.getReturnDataBufferSize();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "size: " + dataSize.value();
           }
 
@@ -763,7 +792,7 @@ public class VM {
                 program.getReturnDataBufferSize().longValueSafe());
           }
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "data: " + Hex.toHexString(msgData);
           }
 
@@ -783,7 +812,7 @@ public class VM {
           }
           DataWord codeLength = new DataWord(length);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "size: " + length;
           }
 
@@ -819,7 +848,7 @@ public class VM {
             System.arraycopy(fullCode, codeOffset, codeCopy, 0, sizeToBeCopied);
           }
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "code: " + Hex.toHexString(codeCopy);
           }
 
@@ -830,7 +859,7 @@ public class VM {
         case GASPRICE: {
           DataWord energyPrice = new DataWord(0);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "price: " + energyPrice.toString();
           }
 
@@ -848,7 +877,7 @@ public class VM {
 
           DataWord blockHash = program.getBlockHash(blockIndex);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "blockHash: " + blockHash;
           }
 
@@ -859,7 +888,7 @@ public class VM {
         case COINBASE: {
           DataWord coinbase = program.getCoinbase();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "coinbase: " + Hex.toHexString(coinbase.getLast20Bytes());
           }
 
@@ -870,7 +899,7 @@ public class VM {
         case TIMESTAMP: {
           DataWord timestamp = program.getTimestamp();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "timestamp: " + timestamp.value();
           }
 
@@ -881,7 +910,7 @@ public class VM {
         case NUMBER: {
           DataWord number = program.getNumber();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "number: " + number.value();
           }
 
@@ -892,7 +921,7 @@ public class VM {
         case DIFFICULTY: {
           DataWord difficulty = program.getDifficulty();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "difficulty: " + difficulty;
           }
 
@@ -904,7 +933,7 @@ public class VM {
           // todo: this energylimit is the block's energy limit
           DataWord energyLimit = new DataWord(0);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "energylimit: " + energyLimit;
           }
 
@@ -990,7 +1019,7 @@ public class VM {
           LogInfo logInfo =
               new LogInfo(address.getLast20Bytes(), topics, data);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = logInfo.toString();
           }
 
@@ -1002,7 +1031,7 @@ public class VM {
           DataWord addr = program.stackPop();
           DataWord data = program.memoryLoad(addr);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "data: " + data;
           }
 
@@ -1014,7 +1043,7 @@ public class VM {
           DataWord addr = program.stackPop();
           DataWord value = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "addr: " + addr + " value: " + value;
           }
 
@@ -1034,7 +1063,7 @@ public class VM {
           DataWord key = program.stackPop();
           DataWord val = program.storageLoad(key);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "key: " + key + " value: " + val;
           }
 
@@ -1054,7 +1083,7 @@ public class VM {
           DataWord addr = program.stackPop();
           DataWord value = program.stackPop();
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "[" + program.getOwnerAddress().toPrefixString() + "] key: " + addr + " value: "
                 + value;
           }
@@ -1067,7 +1096,7 @@ public class VM {
           DataWord pos = program.stackPop();
           int nextPC = program.verifyJumpDest(pos);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "~> " + nextPC;
           }
 
@@ -1082,7 +1111,7 @@ public class VM {
           if (!cond.isZero()) {
             int nextPC = program.verifyJumpDest(pos);
 
-            if (logger.isInfoEnabled()) {
+            if (logger.isDebugEnabled()) {
               hint = "~> " + nextPC;
             }
 
@@ -1097,7 +1126,7 @@ public class VM {
           int pc = program.getPC();
           DataWord pcWord = new DataWord(pc);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = pcWord.toString();
           }
 
@@ -1109,7 +1138,7 @@ public class VM {
           int memSize = program.getMemSize();
           DataWord wordMemSize = new DataWord(memSize);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + memSize;
           }
 
@@ -1119,7 +1148,7 @@ public class VM {
         break;
         case GAS: {
           DataWord energy = program.getEnergyLimitLeft();
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + energy;
           }
 
@@ -1165,7 +1194,7 @@ public class VM {
 
           byte[] data = program.sweep(nPush);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "" + Hex.toHexString(data);
           }
 
@@ -1263,7 +1292,7 @@ public class VM {
           byte[] hReturn = program.memoryChunk(offset.intValueSafe(), size.intValueSafe());
           program.setHReturn(hReturn);
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "data: " + Hex.toHexString(hReturn)
                 + " offset: " + offset.value()
                 + " size: " + size.value();
@@ -1286,7 +1315,7 @@ public class VM {
           program.suicide(address);
           program.getResult().addTouchAccount(address.getLast20Bytes());
 
-          if (logger.isInfoEnabled()) {
+          if (logger.isDebugEnabled()) {
             hint = "address: " + Hex.toHexString(program.getOwnerAddress().getLast20Bytes());
           }
 
@@ -1298,13 +1327,11 @@ public class VM {
       }
 
       program.setPreviouslyExecutedOp(op.val());
-            /*
-            if (logger.isInfoEnabled() && !op.isCall())
-                logger.info(logString, String.format("%5s", "[" + program.getPC() + "]"),
-                        String.format("%-12s",
-                                op.name()), program.getDroplimit().value(),
-                        program.getCallDeep(), hint);
-            */
+      if (logger.isDebugEnabled() && !op.isCall()) {
+        logger.debug(logString, String.format("%5s", "[" + program.getPC() + "]"),
+            String.format("%-12s", op.name()), program.getEnergyLimitLeft().value(),
+            program.getCallDeep(), hint);
+      }
       vmCounter++;
     } catch (RuntimeException e) {
       logger.warn("VM halted: [{}]", e.getMessage());
@@ -1318,13 +1345,21 @@ public class VM {
   }
 
   public void play(Program program) {
+    VMProfiler.Run profiled = null;
     try {
       if (program.byTestingSuite()) {
         return;
       }
 
-      while (!program.isStopped()) {
-        this.step(program);
+      profiled = VMProfiler.enter(program);
+      if (profiled == null) {
+        while (!program.isStopped()) {
+          this.step(program);
+        }
+      } else {
+        while (!program.isStopped()) {
+          profiled.step(this);
+        }
       }
 
     } catch (JVMStackOverFlowException e) {
@@ -1340,7 +1375,9 @@ public class VM {
           .error("\n !!! StackOverflowError: update your java run command with -Xss !!!\n", soe);
       throw new JVMStackOverFlowException();
     } finally {
-
+      if (profiled != null) {
+        profiled.exit();
+      }
     }
   }
 
@@ -1360,4 +1397,11 @@ public class VM {
   private static BigInteger memNeeded(DataWord offset, DataWord size) {
     return size.isZero() ? BigInteger.ZERO : offset.value().add(size.value());
   }
+
+  /**
+   * memNeeded for a fixed, non zero size, without a word allocated for it.
+   */
+  private static BigInteger memNeeded(DataWord offset, long size) {
+    return offset.value().add(BigInteger.valueOf(size));
+  }
 }
@@ -18,12 +18,12 @@
 package org.gsc.runtime.vm.program;
 
 import static java.lang.Math.ceil;
-import static java.lang.Math.min;
 import static java.lang.String.format;
 import static org.gsc.common.utils.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.gsc.common.utils.ByteUtil.oneByteToHexString;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.gsc.runtime.vm.DataWord;
 import org.gsc.runtime.vm.program.listener.ProgramListener;
@@ -34,7 +34,9 @@ public class Memory implements ProgramListenerAware {
   private static final int CHUNK_SIZE = 1024;
   private static final int WORD_SIZE = 32;
 
-  private List<byte[]> chunks = new LinkedList<>();
+  // one contiguous buffer growing by doubling, only its first internalSize() bytes are in use
+  private byte[] buffer = EMPTY_BYTE_ARRAY;
+  private int allocated;
   private int softSize;
   private ProgramListener programListener;
 
@@ -49,27 +51,7 @@ public class Memory implements ProgramListenerAware {
     }
 
     extend(address, size);
-    byte[] data = new byte[size];
-
-    int chunkIndex = address / CHUNK_SIZE;
-    int chunkOffset = address % CHUNK_SIZE;
-
-    int toGrab = data.length;
-    int start = 0;
-
-    while (toGrab > 0) {
-      int copied = grabMax(chunkIndex, chunkOffset, toGrab, data, start);
-
-      // read next chunk from the start
-      ++chunkIndex;
-      chunkOffset = 0;
-
-      // mark remind
-      toGrab -= copied;
-      start += copied;
-    }
-
-    return data;
+    return Arrays.copyOfRange(buffer, address, address + size);
   }
 
   public void write(int address, byte[] data, int dataSize, boolean limited) {
@@ -82,9 +64,6 @@ public class Memory implements ProgramListenerAware {
       extend(address, dataSize);
     }
 
-    int chunkIndex = address / CHUNK_SIZE;
-    int chunkOffset = address % CHUNK_SIZE;
-
     int toCapture = 0;
     if (limited) {
       toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
@@ -92,17 +71,8 @@ public class Memory implements ProgramListenerAware {
       toCapture = dataSize;
     }
 
-    int start = 0;
-    while (toCapture > 0) {
-      int captured = captureMax(chunkIndex, chunkOffset, toCapture, data, start);
-
-      // capture next chunk
-      ++chunkIndex;
-      chunkOffset = 0;
-
-      // mark remind
-      toCapture -= captured;
-      start += captured;
+    if (toCapture > 0) {
+      System.arraycopy(data, 0, buffer, address, toCapture);
     }
 
     if (programListener != null) {
@@ -124,7 +94,7 @@ public class Memory implements ProgramListenerAware {
     final int newSize = Math.addExact(address,size);
     int toAllocate = newSize - internalSize();
     if (toAllocate > 0) {
-      addChunks((int) ceil((double) toAllocate / CHUNK_SIZE));
+      allocate((int) ceil((double) toAllocate / CHUNK_SIZE));
     }
 
     toAllocate = newSize - softSize;
@@ -139,18 +109,14 @@ public class Memory implements ProgramListenerAware {
   }
 
   public DataWord readWord(int address) {
-    return new DataWord(read(address, 32));
+    extend(address, WORD_SIZE);
+    // copied, the word must not change with the memory
+    return new DataWord(Arrays.copyOfRange(buffer, address, address + WORD_SIZE));
   }
 
   // just access expecting all data valid
   public byte readByte(int address) {
-
-    int chunkIndex = address / CHUNK_SIZE;
-    int chunkOffset = address % CHUNK_SIZE;
-
-    byte[] chunk = chunks.get(chunkIndex);
-
-    return chunk[chunkOffset];
+    return buffer[address];
   }
 
   @Override
@@ -191,35 +157,25 @@ public class Memory implements ProgramListenerAware {
   }
 
   public int internalSize() {
-    return chunks.size() * CHUNK_SIZE;
+    return allocated;
   }
 
+  /**
+   * the memory cut in CHUNK_SIZE pieces, copies of it.
+   */
   public List<byte[]> getChunks() {
-    return new LinkedList<>(chunks);
-  }
-
-  private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
-
-    byte[] chunk = chunks.get(chunkIndex);
-    int toCapture = min(size, chunk.length - chunkOffset);
-
-    System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
-    return toCapture;
-  }
-
-  private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
-
-    byte[] chunk = chunks.get(chunkIndex);
-    int toGrab = min(size, chunk.length - chunkOffset);
-
-    System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
-
-    return toGrab;
+    List<byte[]> chunks = new ArrayList<>(allocated / CHUNK_SIZE);
+    for (int offset = 0; offset < allocated; offset += CHUNK_SIZE) {
+      chunks.add(Arrays.copyOfRange(buffer, offset, offset + CHUNK_SIZE));
+    }
+    return chunks;
   }
 
-  private void addChunks(int num) {
-    for (int i = 0; i < num; ++i) {
-      chunks.add(new byte[CHUNK_SIZE]);
+  private void allocate(int chunks) {
+    allocated = Math.addExact(allocated, Math.multiplyExact(chunks, CHUNK_SIZE));
+    if (allocated > buffer.length) {
+      long capacity = Math.max(2L * buffer.length, allocated);
+      buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Integer.MAX_VALUE));
     }
   }
 }
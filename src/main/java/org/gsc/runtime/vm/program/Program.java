@@ -92,32 +92,33 @@ public class Program {
   private BlockWrapper blockCap;
 
   public static byte[] getRootTransactionId() {
-    return rootTransactionId.clone();
+    return rootTransactionId.get().clone();
   }
 
   public static void setRootTransactionId(byte[] rootTransactionId) {
-    Program.rootTransactionId = rootTransactionId.clone();
+    Program.rootTransactionId.set(rootTransactionId.clone());
   }
 
   public static long getNonce() {
-    return nonce;
+    return nonce.get();
   }
 
   public static void setNonce(long nonceValue) {
-    nonce = nonceValue;
+    nonce.set(nonceValue);
   }
 
   public static Boolean getRootCallConstant() {
-    return isRootCallConstant;
+    return isRootCallConstant.get();
   }
 
   public static void setRootCallConstant(Boolean rootCallConstant) {
-    isRootCallConstant = rootCallConstant;
+    isRootCallConstant.set(rootCallConstant);
   }
 
-  private static long nonce = 0;
-  private static byte[] rootTransactionId = null;
-  private static Boolean isRootCallConstant = null;
+  // per thread, a constant call may run while a block is being applied
+  private static final ThreadLocal<Long> nonce = ThreadLocal.withInitial(() -> 0L);
+  private static final ThreadLocal<byte[]> rootTransactionId = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean> isRootCallConstant = new ThreadLocal<>();
 
   private InternalTransaction transaction;
 
@@ -184,7 +185,7 @@ public class Program {
 
   public ProgramPrecompile getProgramPrecompile() {
     if (programPrecompile == null) {
-      programPrecompile = ProgramPrecompile.compile(ops);
+      programPrecompile = ProgramPrecompile.of(ops);
     }
     return programPrecompile;
   }
@@ -233,6 +234,14 @@ public class Program {
     return isEmpty(ops) ? 0 : ops[pc];
   }
 
+  /**
+   * the decoded current instruction, null for an undefined code.
+   */
+  public OpCode getCurrentOpCode() {
+    OpCode op = getProgramPrecompile().getInstruction(pc);
+    return op != null ? op : OpCode.code(getCurrentOp());
+  }
+
   /**
    * Last Op can only be set publicly (no getLastOp method), is used for logging.
    */
@@ -468,7 +477,7 @@ public class Program {
     this.increaseNonce();
     //this.transactionHash = Sha256Hash.hash(transactionHash);
     byte[] newAddress = Wallet
-        .generateContractAddress(rootTransactionId, nonce);
+        .generateContractAddress(rootTransactionId.get(), nonce.get());
 
     AccountWrapper existingAddr = getContractState().getAccount(newAddress);
     //boolean contractAlreadyExists = existingAddr != null && existingAddr.isContractExist(blockchainConfig);
@@ -752,11 +761,11 @@ public class Program {
   }
 
   public static void increaseNonce() {
-    nonce++;
+    nonce.set(nonce.get() + 1);
   }
 
   public static void resetNonce() {
-    nonce = 0;
+    nonce.set(0L);
   }
 
   public void spendEnergy(long energyValue, String opName) {
@@ -1308,14 +1317,19 @@ public class Program {
       this.stackPushZero();
       // deposit.rollback();
     } else {
-      // Delegate or not. if is delegated, we will use msg sender, otherwise use contract address
-      contract.setCallerAddress(convertTogscAddress(msg.getType().callIsDelegate() ?
-          getCallerAddress().getLast20Bytes() : getOwnerAddress().getLast20Bytes()));
-      // this is the depositImpl, not contractState as above
-      contract.setDeposit(this.invoke.getDeposit());
-      contract.setResult(this.result);
-      contract.setRootCallConstant(Program.getRootCallConstant().booleanValue());
-      Pair<Boolean, byte[]> out = contract.execute(data);
+      Pair<Boolean, byte[]> out;
+      try {
+        // Delegate or not. if is delegated, we will use msg sender, otherwise use contract address
+        contract.setCallerAddress(convertTogscAddress(msg.getType().callIsDelegate() ?
+            getCallerAddress().getLast20Bytes() : getOwnerAddress().getLast20Bytes()));
+        // this is the depositImpl, not contractState as above
+        contract.setDeposit(this.invoke.getDeposit());
+        contract.setResult(this.result);
+        contract.setRootCallConstant(Program.getRootCallConstant().booleanValue());
+        out = contract.execute(data);
+      } finally {
+        contract.clearContext();
+      }
 
       if (out.getLeft()) { // success
         this.refundEnergy(msg.getEnergy().longValue() - requiredEnergy, "call pre-compiled");
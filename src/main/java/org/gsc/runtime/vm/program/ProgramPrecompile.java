@@ -17,9 +17,12 @@
  */
 package org.gsc.runtime.vm.program;
 
-import java.util.HashSet;
-import java.util.Set;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.BitSet;
 import lombok.extern.slf4j.Slf4j;
+import org.gsc.db.common.WrappedByteArray;
 import org.gsc.runtime.vm.OpCode;
 
 
@@ -31,8 +34,26 @@ public class ProgramPrecompile {
 
   // private static final Logger logger = LoggerFactory.getLogger("PP");
   private static final int version = 1;
-
-  private Set<Integer> jumpdest = new HashSet<>();
+  // heap the cached analyses may take, in bytes
+  private static final long CACHE_WEIGHT = 32L * 1024 * 1024;
+  // the cache entry, the key and the analysis objects, and the array headers
+  private static final int ENTRY_OVERHEAD = 128;
+  // an OpCode reference, counted as uncompressed
+  private static final int REFERENCE_SIZE = 8;
+
+  // analysis of the code run lately, keyed by the code itself since the same contract is called
+  // over and over and a lookup costs one pass over the code, less than analyzing it again
+  private static final Cache<WrappedByteArray, ProgramPrecompile> cache = CacheBuilder
+      .newBuilder()
+      .maximumWeight(CACHE_WEIGHT)
+      .weigher((WrappedByteArray code, ProgramPrecompile precompile) -> ENTRY_OVERHEAD
+          + code.getBytes().length + precompile.analysisSize())
+      .recordStats()
+      .build();
+
+  private BitSet jumpdest = new BitSet();
+  // the instruction starting at each pc, null inside push data and for undefined codes
+  private OpCode[] instructions;
 
     /*
     public byte[] serialize() {
@@ -58,18 +79,36 @@ public class ProgramPrecompile {
     }
     */
 
+  /**
+   * the analysis of the code, from the cache when the same code ran before. The result is shared
+   * and must not be modified.
+   */
+  public static ProgramPrecompile of(byte[] ops) {
+    ProgramPrecompile ret = cache.getIfPresent(WrappedByteArray.of(ops));
+    if (ret == null) {
+      ret = compile(ops);
+      cache.put(WrappedByteArray.of(ops.clone()), ret);
+    }
+    return ret;
+  }
+
+  public static CacheStats getCacheStats() {
+    return cache.stats();
+  }
+
   public static ProgramPrecompile compile(byte[] ops) {
     ProgramPrecompile ret = new ProgramPrecompile();
+    ret.instructions = new OpCode[ops.length];
     for (int i = 0; i < ops.length; ++i) {
 
       OpCode op = OpCode.code(ops[i]);
       if (op == null) {
         continue;
       }
+      ret.instructions[i] = op;
 
       if (op.equals(OpCode.JUMPDEST)) {
-        logger.info("JUMPDEST:" + i);
-        ret.jumpdest.add(i);
+        ret.jumpdest.set(i);
       }
 
       if (op.asInt() >= OpCode.PUSH1.asInt() && op.asInt() <= OpCode.PUSH32.asInt()) {
@@ -108,8 +147,20 @@ public class ProgramPrecompile {
     return null;
   }
 
+  // bytes of the decoded instructions and the jump destinations
+  private int analysisSize() {
+    return instructions.length * REFERENCE_SIZE + jumpdest.size() / Byte.SIZE;
+  }
+
   public boolean hasJumpDest(int pc) {
-    return jumpdest.contains(pc);
+    return pc >= 0 && jumpdest.get(pc);
+  }
+
+  /**
+   * @return the instruction at pc, null when pc is out of the code or inside push data
+   */
+  public OpCode getInstruction(int pc) {
+    return pc >= 0 && pc < instructions.length ? instructions[pc] : null;
   }
 /*
     public static void main(String[] args) throws Exception {
@@ -1,10 +1,16 @@
 package org.gsc.runtime.vm.program;
 
 import static java.lang.System.arraycopy;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import org.gsc.common.storage.BlockDepositCache;
 import org.gsc.core.wrapper.StorageRowWrapper;
 import org.gsc.crypto.Hash;
 import org.gsc.runtime.vm.DataWord;
@@ -14,21 +20,78 @@ public class Storage {
 
   private byte[] addrHash;  // contract address
   private StorageRowStore store;
+  private BlockDepositCache blockCache;
   private final Map<DataWord, StorageRowWrapper> rowCache = new HashMap<>();
+  // rows read ahead from the slots the contract used before, and the slots this run read
+  private final Map<DataWord, StorageRowWrapper> prefetched = new HashMap<>();
+  private final Set<DataWord> loaded = new HashSet<>();
   private long beforeUseSize = 0;
 
   private static final int PREFIX_BYTES = 16;
 
   public Storage(byte[] address, StorageRowStore store) {
+    this(address, store, null);
+  }
+
+  public Storage(byte[] address, StorageRowStore store, BlockDepositCache blockCache) {
     addrHash = addrHash(address);
     this.store = store;
+    this.blockCache = blockCache;
+    prefetch();
+  }
+
+  private void prefetch() {
+    List<DataWord> keys = new ArrayList<>();
+    for (DataWord key : StoragePrefetcher.predict(addrHash)) {
+      StorageRowWrapper row = getCached(key);
+      if (row == null) {
+        keys.add(key);
+      } else {
+        prefetched.put(key, row);
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    List<StorageRowWrapper> rows = store.get(keys.stream()
+        .map(key -> compose(key.getData(), addrHash))
+        .collect(Collectors.toList()));
+    for (int i = 0; i < keys.size(); i++) {
+      prefetched.put(keys.get(i), rows.get(i));
+    }
+  }
+
+  private StorageRowWrapper load(DataWord key) {
+    loaded.add(key);
+    StorageRowWrapper row = prefetched.get(key);
+    if (row == null) {
+      row = getCached(key);
+    }
+    return row == null ? store.get(compose(key.getData(), addrHash)) : row;
+  }
+
+  // the row as an earlier transaction of the block left it
+  private StorageRowWrapper getCached(DataWord key) {
+    if (blockCache == null) {
+      return null;
+    }
+
+    byte[] rowKey = compose(key.getData(), addrHash);
+    byte[] value = blockCache.getStorageRow(rowKey);
+    if (value == null) {
+      return null;
+    }
+    StorageRowWrapper row = new StorageRowWrapper(value.length == 0 ? null : value);
+    row.setRowKey(rowKey);
+    return row;
   }
 
   public DataWord getValue(DataWord key) {
     if (rowCache.containsKey(key)) {
       return rowCache.get(key).getValue();
     } else {
-      StorageRowWrapper row = store.get(compose(key.getData(), addrHash));
+      StorageRowWrapper row = load(key);
       if (row == null || row.getInstance() == null) {
         return null;
       } else {
@@ -43,10 +106,9 @@ public class Storage {
     if (rowCache.containsKey(key)) {
       rowCache.get(key).setValue(value);
     } else {
-      byte[] rowKey = compose(key.getData(), addrHash);
-      StorageRowWrapper row = store.get(rowKey);
+      StorageRowWrapper row = load(key);
       if (row == null || row.getInstance() == null) {
-        row = new StorageRowWrapper(rowKey, value.getData());
+        row = new StorageRowWrapper(compose(key.getData(), addrHash), value.getData());
       } else {
         row.setValue(value);
         beforeUseSize += row.getInstance().length;
@@ -81,7 +143,20 @@ public class Storage {
     return this.beforeUseSize;
   }
 
+  /**
+   * hand the rows as they are after commit to the block cache, including the ones read as absent.
+   */
+  public void publish(BlockDepositCache blockCache) {
+    rowCache.values().forEach(row -> blockCache.putStorageRow(row.getRowKey(),
+        row.getValue().isZero() ? null : row.getData()));
+    loaded.stream()
+        .filter(key -> !rowCache.containsKey(key))
+        .forEach(key -> blockCache.putStorageRow(compose(key.getData(), addrHash), null));
+  }
+
   public void commit() {
+    StoragePrefetcher.record(addrHash, loaded, prefetched.size(),
+        (int) loaded.stream().filter(prefetched::containsKey).count());
     rowCache.forEach((key, value) -> {
       if (value.isDirty()) {
         if (value.getValue().isZero()) {
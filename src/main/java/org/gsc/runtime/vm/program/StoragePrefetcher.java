@@ -0,0 +1,93 @@
+package org.gsc.runtime.vm.program;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.config.args.Args;
+import org.gsc.db.common.WrappedByteArray;
+import org.gsc.runtime.vm.DataWord;
+
+/**
+ * Remembers the storage slots every contract used on its last invocations, up to
+ * vm.storagePrefetchSlots of them, so its next invocation can read them in one batch as soon as it
+ * first uses its storage instead of one by one as it runs.
+ */
+@Slf4j(topic = "VM")
+public class StoragePrefetcher {
+
+  private static final int MAX_CONTRACTS = 10_000;
+
+  // slots read ahead, the ones of them the contract then used, and the ones it used that weren't
+  private static final LongAdder predicted = new LongAdder();
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+
+  // least recently used slot first
+  private static final Cache<WrappedByteArray, LinkedHashSet<DataWord>> usedSlots =
+      CacheBuilder.newBuilder().maximumSize(MAX_CONTRACTS).build();
+
+  private StoragePrefetcher() {
+  }
+
+  static List<DataWord> predict(byte[] addrHash) {
+    if (Args.getInstance().getStoragePrefetchSlots() <= 0) {
+      return Collections.emptyList();
+    }
+
+    LinkedHashSet<DataWord> slots = usedSlots.getIfPresent(WrappedByteArray.of(addrHash));
+    if (slots == null) {
+      return Collections.emptyList();
+    }
+    synchronized (slots) {
+      return new ArrayList<>(slots);
+    }
+  }
+
+  static void record(byte[] addrHash, Collection<DataWord> used, int prefetched,
+      int usedPrefetched) {
+    predicted.add(prefetched);
+    hits.add(usedPrefetched);
+    misses.add(used.size() - usedPrefetched);
+    logger.debug("storage prefetch: {} of {} slots read ahead used, {} read on demand",
+        usedPrefetched, prefetched, used.size() - usedPrefetched);
+
+    int maxSlots = Args.getInstance().getStoragePrefetchSlots();
+    if (maxSlots <= 0 || used.isEmpty()) {
+      return;
+    }
+
+    LinkedHashSet<DataWord> slots = usedSlots.asMap()
+        .computeIfAbsent(WrappedByteArray.of(addrHash.clone()), k -> new LinkedHashSet<>());
+    synchronized (slots) {
+      for (DataWord slot : used) {
+        DataWord copy = slot.clone();
+        slots.remove(copy);
+        slots.add(copy);
+      }
+      Iterator<DataWord> oldest = slots.iterator();
+      while (slots.size() > maxSlots) {
+        oldest.next();
+        oldest.remove();
+      }
+    }
+  }
+
+  public static long getPredictedSlots() {
+    return predicted.sum();
+  }
+
+  public static long getPrefetchHits() {
+    return hits.sum();
+  }
+
+  public static long getPrefetchMisses() {
+    return misses.sum();
+  }
+}
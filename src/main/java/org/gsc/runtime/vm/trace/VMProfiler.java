@@ -0,0 +1,286 @@
+package org.gsc.runtime.vm.trace;
+
+import static org.gsc.runtime.utils.MUtil.convertTogscAddress;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.config.args.Args;
+import org.gsc.runtime.vm.OpCode;
+import org.gsc.runtime.vm.VM;
+import org.gsc.runtime.vm.program.Program;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Profiles one in vm.profileSampleRate transactions running contracts, with every contract they
+ * call: how often each op ran and how long it took, and the calls, energy, time, SLOADs and
+ * SSTOREs of every contract. The time and energy of a contract include the contracts it calls.
+ * Samples are summed up over windows of vm.profileWindowSec seconds, every full window is logged
+ * and the last one is served by /getvmprofile. Unlike {@link ProgramTrace} it keeps no per
+ * instruction data, a run that isn't sampled costs a counter increment or a thread local read.
+ */
+@Slf4j(topic = "VMProfile")
+public class VMProfiler {
+
+  // bucket i of an op's histogram counts the runs of it taking [2^i, 2^(i+1)) ns
+  private static final int BUCKETS = 32;
+  private static final int MAX_CONTRACTS = 10_000;
+  private static final int TOP_LOGGED = 10;
+
+  private static final AtomicLong roots = new AtomicLong();
+  private static final ThreadLocal<Boolean> sampling = new ThreadLocal<>();
+
+  private static volatile Window current = new Window();
+  private static volatile Report lastReport;
+  private static ScheduledExecutorService roller;
+
+  private VMProfiler() {
+  }
+
+  /**
+   * @return the sample the program runs in, null when its transaction isn't sampled.
+   */
+  public static Run enter(Program program) {
+    if (program.getCallDeep() == 0) {
+      int rate = Args.getInstance().getVmProfileSampleRate();
+      if (rate <= 0 || roots.incrementAndGet() % rate != 0) {
+        return null;
+      }
+      startRoller();
+      sampling.set(Boolean.TRUE);
+    } else if (sampling.get() == null) {
+      return null;
+    }
+    return new Run(program, current);
+  }
+
+  private static synchronized void startRoller() {
+    if (roller != null) {
+      return;
+    }
+    long windowSec = Math.max(1, Args.getInstance().getVmProfileWindowSec());
+    roller = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("vm-profile").setDaemon(true).build());
+    roller.scheduleAtFixedRate(() -> {
+      try {
+        log(roll());
+      } catch (Exception e) {
+        logger.warn("vm profile failed", e);
+      }
+    }, windowSec, windowSec, TimeUnit.SECONDS);
+  }
+
+  /**
+   * start a new window and report the one it replaces.
+   */
+  static Report roll() {
+    Window window = current;
+    current = new Window();
+    lastReport = window.report(System.currentTimeMillis());
+    return lastReport;
+  }
+
+  private static void log(Report report) {
+    if (report.sampledRuns == 0) {
+      return;
+    }
+    logger.info("vm profile of {}s, {} sampled runs; hottest ops: {}; hottest contracts: {}",
+        (report.end - report.start) / 1000, report.sampledRuns,
+        report.ops.stream().limit(TOP_LOGGED)
+            .map(op -> op.op + " " + op.count + "x " + op.totalNanos / 1000 + "us")
+            .collect(Collectors.joining(", ")),
+        report.contracts.stream().limit(TOP_LOGGED)
+            .map(c -> c.address + " " + c.calls + " calls " + c.nanos / 1000 + "us "
+                + c.energy + " energy")
+            .collect(Collectors.joining(", ")));
+  }
+
+  /**
+   * @return the last full window, null before one is done.
+   */
+  public static Report getLastReport() {
+    return lastReport;
+  }
+
+  /**
+   * One program run of a sampled transaction.
+   */
+  public static class Run {
+
+    private final Program program;
+    private final Window window;
+    private final long start = System.nanoTime();
+    private long sloads;
+    private long sstores;
+
+    private Run(Program program, Window window) {
+      this.program = program;
+      this.window = window;
+    }
+
+    public void step(VM vm) {
+      OpCode op = program.getCurrentOpCode();
+      long stepStart = System.nanoTime();
+      try {
+        vm.step(program);
+      } finally {
+        if (op != null) {
+          window.record(op, System.nanoTime() - stepStart);
+          if (op == OpCode.SLOAD) {
+            ++sloads;
+          } else if (op == OpCode.SSTORE) {
+            ++sstores;
+          }
+        }
+      }
+    }
+
+    public void exit() {
+      if (program.getCallDeep() == 0) {
+        sampling.remove();
+      }
+      window.record(Hex.toHexString(convertTogscAddress(
+          program.getOwnerAddress().getLast20Bytes())), System.nanoTime() - start,
+          program.getResult().getEnergyUsed(), sloads, sstores);
+      if (program.getCallDeep() == 0) {
+        window.sampledRuns.increment();
+      }
+    }
+  }
+
+  private static class Window {
+
+    private final long start = System.currentTimeMillis();
+    private final LongAdder sampledRuns = new LongAdder();
+    private final LongAdder[] opCounts = adders(256);
+    private final LongAdder[] opNanos = adders(256);
+    private final LongAdder[][] opHistograms = new LongAdder[256][];
+    private final Map<String, ContractStats> contracts = new ConcurrentHashMap<>();
+
+    private Window() {
+      for (int i = 0; i < opHistograms.length; i++) {
+        opHistograms[i] = adders(BUCKETS);
+      }
+    }
+
+    private void record(OpCode op, long nanos) {
+      int code = op.val() & 0xff;
+      opCounts[code].increment();
+      opNanos[code].add(nanos);
+      opHistograms[code][Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1))]
+          .increment();
+    }
+
+    private void record(String address, long nanos, long energy, long sloads, long sstores) {
+      ContractStats stats = contracts.get(address);
+      if (stats == null) {
+        if (contracts.size() >= MAX_CONTRACTS) {
+          return;
+        }
+        stats = contracts.computeIfAbsent(address, k -> new ContractStats());
+      }
+      stats.calls.increment();
+      stats.nanos.add(nanos);
+      stats.energy.add(energy);
+      stats.sloads.add(sloads);
+      stats.sstores.add(sstores);
+    }
+
+    private Report report(long end) {
+      Report report = new Report();
+      report.start = start;
+      report.end = end;
+      report.sampledRuns = sampledRuns.sum();
+      for (int i = 0; i < 256; i++) {
+        long count = opCounts[i].sum();
+        if (count == 0) {
+          continue;
+        }
+        OpReport op = new OpReport();
+        op.op = OpCode.code((byte) i).name();
+        op.count = count;
+        op.totalNanos = opNanos[i].sum();
+        long[] histogram = Arrays.stream(opHistograms[i]).mapToLong(LongAdder::sum).toArray();
+        int last = histogram.length;
+        while (last > 0 && histogram[last - 1] == 0) {
+          --last;
+        }
+        op.histogram = Arrays.copyOf(histogram, last);
+        report.ops.add(op);
+      }
+      report.ops.sort(Comparator.comparingLong((OpReport op) -> op.totalNanos).reversed());
+
+      contracts.forEach((address, stats) -> {
+        ContractReport contract = new ContractReport();
+        contract.address = address;
+        contract.calls = stats.calls.sum();
+        contract.nanos = stats.nanos.sum();
+        contract.energy = stats.energy.sum();
+        contract.sloads = stats.sloads.sum();
+        contract.sstores = stats.sstores.sum();
+        report.contracts.add(contract);
+      });
+      report.contracts.sort(
+          Comparator.comparingLong((ContractReport contract) -> contract.nanos).reversed());
+      return report;
+    }
+
+    private static LongAdder[] adders(int n) {
+      LongAdder[] adders = new LongAdder[n];
+      for (int i = 0; i < n; i++) {
+        adders[i] = new LongAdder();
+      }
+      return adders;
+    }
+  }
+
+  private static class ContractStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder energy = new LongAdder();
+    private final LongAdder sloads = new LongAdder();
+    private final LongAdder sstores = new LongAdder();
+  }
+
+  /**
+   * A window of samples, start and end in ms since the epoch, ops and contracts by time spent.
+   */
+  public static class Report {
+
+    long start;
+    long end;
+    long sampledRuns;
+    List<OpReport> ops = new ArrayList<>();
+    List<ContractReport> contracts = new ArrayList<>();
+  }
+
+  static class OpReport {
+
+    String op;
+    long count;
+    long totalNanos;
+    long[] histogram;
+  }
+
+  static class ContractReport {
+
+    String address;
+    long calls;
+    long nanos;
+    long energy;
+    long sloads;
+    long sstores;
+  }
+}
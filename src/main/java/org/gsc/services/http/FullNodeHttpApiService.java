@@ -125,6 +125,10 @@ public class FullNodeHttpApiService implements Service {
   private GetChainParametersServlet getChainParametersServlet;
   @Autowired
   private GetAccountResourceServlet getAccountResourceServlet;
+  @Autowired
+  private GetVMProfileServlet getVMProfileServlet;
+  @Autowired
+  private GetStorageStatsServlet getStorageStatsServlet;
   @Override
   public void init() {
 
@@ -200,6 +204,8 @@ public class FullNodeHttpApiService implements Service {
       context.addServlet(new ServletHolder(listExchangesServlet), "/listexchanges");
       context.addServlet(new ServletHolder(getChainParametersServlet), "/getchainparameters");
       context.addServlet(new ServletHolder(getAccountResourceServlet), "/getaccountresource");
+      context.addServlet(new ServletHolder(getVMProfileServlet), "/getvmprofile");
+      context.addServlet(new ServletHolder(getStorageStatsServlet), "/getstoragestats");
       server.start();
     } catch (Exception e) {
       logger.debug("IOException: {}", e.getMessage());
@@ -0,0 +1,52 @@
+package org.gsc.services.http;
+
+import com.alibaba.fastjson.JSONObject;
+import java.io.IOException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.gsc.core.db2.core.SnapshotImpl;
+import org.springframework.stereotype.Component;
+
+
+@Component
+@Slf4j
+public class GetStorageStatsServlet extends HttpServlet {
+
+  protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+    try {
+      JSONObject filter = new JSONObject();
+      filter.put("hits", SnapshotImpl.getFilterHits());
+      filter.put("skips", SnapshotImpl.getFilterSkips());
+      filter.put("falsePositives", SnapshotImpl.getFilterFalsePositives());
+
+      JSONObject stats = new JSONObject();
+      stats.put("snapshotFilter", filter);
+
+      JSONObject valueCaches = new JSONObject();
+      LevelDbDataSourceImpl.getAllValueCacheStats().forEach((name, cacheStats) -> {
+        JSONObject cache = new JSONObject();
+        cache.put("hitRate", cacheStats.hitRate());
+        cache.put("hits", cacheStats.hitCount());
+        cache.put("misses", cacheStats.missCount());
+        cache.put("evictions", cacheStats.evictionCount());
+        valueCaches.put(name, cache);
+      });
+      stats.put("valueCaches", valueCaches);
+      response.getWriter().println(stats.toJSONString());
+    } catch (Exception e) {
+      logger.debug("Exception: {}", e.getMessage());
+      try {
+        response.getWriter().println(Util.printErrorMsg(e));
+      } catch (IOException ioe) {
+        logger.debug("IOException: {}", ioe.getMessage());
+      }
+    }
+  }
+
+  protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+    doPost(request, response);
+  }
+}
@@ -0,0 +1,36 @@
+package org.gsc.services.http;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.runtime.vm.trace.Serializers;
+import org.gsc.runtime.vm.trace.VMProfiler;
+import org.gsc.runtime.vm.trace.VMProfiler.Report;
+import org.springframework.stereotype.Component;
+
+
+@Component
+@Slf4j
+public class GetVMProfileServlet extends HttpServlet {
+
+  protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+    try {
+      Report report = VMProfiler.getLastReport();
+      response.getWriter()
+          .println(report == null ? "{}" : Serializers.serializeFieldsOnly(report, true));
+    } catch (Exception e) {
+      logger.debug("Exception: {}", e.getMessage());
+      try {
+        response.getWriter().println(Util.printErrorMsg(e));
+      } catch (IOException ioe) {
+        logger.debug("IOException: {}", ioe.getMessage());
+      }
+    }
+  }
+
+  protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+    doPost(request, response);
+  }
+}
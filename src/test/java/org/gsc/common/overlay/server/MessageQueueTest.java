@@ -0,0 +1,104 @@
+package org.gsc.common.overlay.server;
+
+import static org.gsc.common.overlay.message.StaticMessages.PING_MESSAGE;
+import static org.gsc.common.overlay.message.StaticMessages.PONG_MESSAGE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Collections;
+import org.gsc.common.overlay.discover.node.Node;
+import org.gsc.common.overlay.discover.node.statistics.NodeStatistics;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.net.message.BlockInventoryMessage;
+import org.gsc.net.message.ChainInventoryMessage;
+import org.gsc.net.message.MessageTypes;
+import org.gsc.net.message.SyncBlockChainMessage;
+import org.gsc.net.message.TransactionInventoryMessage;
+import org.gsc.net.message.TransactionMessage;
+import org.gsc.protos.Protocol.BlockInventory;
+import org.gsc.protos.Protocol.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageQueueTest {
+
+  private EmbeddedChannel embedded;
+  private MessageQueue msgQueue;
+  private int flushes;
+
+  @Before
+  public void init() {
+    embedded = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+      @Override
+      public void flush(ChannelHandlerContext ctx) {
+        ++flushes;
+        ctx.flush();
+      }
+    }, new ChannelInboundHandlerAdapter());
+    msgQueue = new MessageQueue();
+    msgQueue.setChannel(new Channel() {
+      {
+        nodeStatistics = new NodeStatistics(new Node(new byte[64], "127.0.0.1", 16666));
+      }
+    });
+    msgQueue.activate(embedded.pipeline().lastContext());
+    embedded.runPendingTasks();
+  }
+
+  @After
+  public void destroy() {
+    msgQueue.close();
+    embedded.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testLanesAndOneFlush() {
+    msgQueue.sendMessage(new TransactionMessage(Transaction.getDefaultInstance()));
+    msgQueue.sendMessage(new TransactionInventoryMessage(
+        Collections.singletonList(Sha256Hash.ZERO_HASH)));
+    msgQueue.sendMessage(new BlockInventoryMessage(Collections.emptyList(),
+        BlockInventory.Type.ADVTISE));
+    msgQueue.sendMessage(PONG_MESSAGE);
+    Assert.assertNull(embedded.readOutbound());
+
+    flushes = 0;
+    embedded.runPendingTasks();
+    Assert.assertEquals(MessageTypes.P2P_PONG.asByte(), nextType());
+    Assert.assertEquals(MessageTypes.INVENTORY.asByte(), nextType());
+    Assert.assertEquals(MessageTypes.BLOCK_INVENTORY.asByte(), nextType());
+    Assert.assertEquals(MessageTypes.TRX.asByte(), nextType());
+    Assert.assertNull(embedded.readOutbound());
+    Assert.assertEquals(1, flushes);
+  }
+
+  @Test
+  public void testRequestsWaitForTheirAnswer() {
+    msgQueue.sendMessage(PING_MESSAGE);
+    msgQueue.sendMessage(new SyncBlockChainMessage(Collections.emptyList()));
+    embedded.runPendingTasks();
+    Assert.assertEquals(MessageTypes.P2P_PING.asByte(), nextType());
+    Assert.assertNull(embedded.readOutbound());
+
+    msgQueue.receivedMessage(PONG_MESSAGE);
+    embedded.runPendingTasks();
+    Assert.assertEquals(MessageTypes.SYNC_BLOCK_CHAIN.asByte(), nextType());
+
+    msgQueue.receivedMessage(new ChainInventoryMessage(Collections.emptyList(), 0L));
+    embedded.runPendingTasks();
+    Assert.assertNull(embedded.readOutbound());
+  }
+
+  private byte nextType() {
+    ByteBuf data = embedded.readOutbound();
+    try {
+      return data.getByte(0);
+    } finally {
+      data.release();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.gsc.common.storage;
+
+import org.gsc.common.utils.ByteArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockDepositCacheTest {
+
+  private static final byte[] ADDRESS = ByteArray.fromString("contract");
+  private static final byte[] ROW = ByteArray.fromString("row");
+
+  @Test
+  public void testStorageRows() {
+    BlockDepositCache cache = new BlockDepositCache();
+    Assert.assertNull(cache.getStorageRow(ROW));
+
+    byte[] value = {1, 2, 3};
+    cache.putStorageRow(ROW, value);
+    value[0] = 9;
+    byte[] cached = cache.getStorageRow(ROW);
+    Assert.assertArrayEquals(new byte[]{1, 2, 3}, cached);
+    cached[1] = 9;
+    Assert.assertArrayEquals(new byte[]{1, 2, 3}, cache.getStorageRow(ROW));
+
+    // a deleted row is known to be absent, not missing from the cache
+    cache.putStorageRow(ROW, null);
+    Assert.assertEquals(0, cache.getStorageRow(ROW).length);
+    Assert.assertEquals(3, cache.getStorageHits());
+    Assert.assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testInvalidateContract() {
+    BlockDepositCache cache = new BlockDepositCache();
+    cache.putCode(ADDRESS, new byte[]{0x60, 0x00});
+    cache.putContract(ADDRESS, new byte[]{0x0a});
+    Assert.assertNotNull(cache.getCode(ADDRESS));
+    Assert.assertNotNull(cache.getContract(ADDRESS));
+
+    cache.invalidateContract(ADDRESS);
+    Assert.assertNull(cache.getCode(ADDRESS));
+    Assert.assertNull(cache.getContract(ADDRESS));
+    Assert.assertEquals(1, cache.getCodeHits());
+    Assert.assertEquals(1, cache.getContractHits());
+    Assert.assertEquals(2, cache.getMisses());
+  }
+}
@@ -0,0 +1,112 @@
+package org.gsc.common.storage;
+
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.utils.ByteArray;
+import org.gsc.crypto.Hash;
+import org.gsc.protos.Protocol.AccountType;
+import org.gsc.runtime.vm.DataWord;
+import org.gsc.runtime.vm.program.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * SLOAD and SSTORE the way a contract call does them, through the child deposit of the call once
+ * its rows are cached, against the same calls holding the deposit monitor the way the
+ * synchronized methods used to: once for the storage access and again for the account lookup in
+ * it. Biased locking is off, as it is on the JDKs that dropped it, so an uncontended monitor costs
+ * what it costs there.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:-UseBiasedLocking")
+public class DepositBenchmark {
+
+  private static final byte[] ADDRESS = ByteArray.fromString("contract");
+
+  @Param({"64"})
+  public int slots;
+
+  private Deposit deposit;
+  private DataWord[] keys;
+  private DataWord value;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // there are no stores behind the root deposit, the block cache knows the rows are empty
+    BlockDepositCache blockCache = new BlockDepositCache();
+    byte[] addrHash = Hash.sha3(ADDRESS);
+    keys = new DataWord[slots];
+    for (int i = 0; i < slots; i++) {
+      keys[i] = new DataWord(i);
+      byte[] rowKey = keys[i].getData().clone();
+      System.arraycopy(addrHash, 0, rowKey, 0, 16);
+      blockCache.putStorageRow(rowKey, null);
+    }
+    Storage storage = new Storage(ADDRESS, null, blockCache);
+
+    DepositImpl root = DepositImpl.createRoot(null, blockCache);
+    root.createAccount(ADDRESS, AccountType.Contract);
+    root.putStorage(Key.create(ADDRESS), storage);
+    deposit = root.newDepositChild();
+    value = new DataWord(1);
+    for (DataWord key : keys) {
+      deposit.putStorageValue(ADDRESS, key, value);
+    }
+  }
+
+  @Benchmark
+  public DataWord sload() {
+    return deposit.getStorageValue(ADDRESS, nextKey());
+  }
+
+  @Benchmark
+  public DataWord sloadLocked() {
+    synchronized (deposit) {
+      synchronized (deposit) {
+        return deposit.getStorageValue(ADDRESS, nextKey());
+      }
+    }
+  }
+
+  @Benchmark
+  public void sstore() {
+    deposit.putStorageValue(ADDRESS, nextKey(), value);
+  }
+
+  @Benchmark
+  public void sstoreLocked() {
+    synchronized (deposit) {
+      synchronized (deposit) {
+        deposit.putStorageValue(ADDRESS, nextKey(), value);
+      }
+    }
+  }
+
+  private DataWord nextKey() {
+    next = next + 1 == keys.length ? 0 : next + 1;
+    return keys[next];
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(DepositBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
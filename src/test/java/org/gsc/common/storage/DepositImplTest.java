@@ -0,0 +1,133 @@
+package org.gsc.common.storage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.gsc.common.utils.ByteArray;
+import org.gsc.protos.Protocol.AccountType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DepositImplTest {
+
+  private static final byte[] ADDRESS = ByteArray.fromString("owner");
+
+  @Test
+  public void testOtherThreadIsRejected() throws InterruptedException {
+    DepositImpl deposit = DepositImpl.createRoot(null);
+    deposit.createAccount(ADDRESS, AccountType.Normal);
+    Assert.assertEquals(10, deposit.addBalance(ADDRESS, 10));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> deposit.getBalance(ADDRESS)).get();
+      Assert.fail("a deposit is confined to the thread that created it");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testChildOfAnotherThread() throws Exception {
+    DepositImpl deposit = DepositImpl.createRoot(null);
+    deposit.createAccount(ADDRESS, AccountType.Normal);
+    deposit.addBalance(ADDRESS, 10);
+
+    // a child made on a worker would read its parent from there, so the parent rejects it
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(deposit::newDepositChild).get();
+      Assert.fail("the parent is still confined to the thread that created it");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(10, deposit.getBalance(ADDRESS));
+  }
+
+  @Test
+  public void testEveryEntryPointIsConfined() throws InterruptedException {
+    DepositImpl deposit = DepositImpl.createRoot(null);
+    Key key = Key.create(ADDRESS);
+    Value value = Value.create(new byte[0]);
+    List<Callable<?>> calls = Arrays.asList(
+        () -> deposit.createAccount(ADDRESS, "name", AccountType.Normal),
+        () -> deposit.getTransaction(ADDRESS),
+        () -> deposit.getBlock(ADDRESS),
+        deposit::computeAfterRunStorageSize,
+        deposit::getBeforeRunStorageSize,
+        deposit::newDepositChild,
+        () -> {
+          deposit.deleteContract(ADDRESS);
+          return null;
+        },
+        () -> {
+          deposit.putAccount(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putTransaction(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putBlock(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putWitness(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putCode(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putContract(key, value);
+          return null;
+        },
+        () -> {
+          deposit.putStorage(key, null);
+          return null;
+        },
+        () -> {
+          deposit.putVotes(key, value);
+          return null;
+        },
+        () -> {
+          deposit.syncCacheFromAccountStore(ADDRESS);
+          return null;
+        },
+        () -> {
+          deposit.syncCacheFromVotesStore(ADDRESS);
+          return null;
+        },
+        () -> {
+          deposit.setParent(null);
+          return null;
+        },
+        () -> {
+          deposit.commit();
+          return null;
+        });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int i = 0; i < calls.size(); i++) {
+        try {
+          executor.submit(calls.get(i)).get();
+          Assert.fail("call " + i + " ran on another thread");
+        } catch (ExecutionException e) {
+          Assert.assertTrue("call " + i, e.getCause() instanceof IllegalStateException);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.gsc.common.storage.leveldb;
+
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.config.args.Args;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@Slf4j
+public class LevelDbValueCacheTest {
+
+  private static final String dbPath = "output-levelDb-value-cache-test";
+  private LevelDbDataSourceImpl dataSource;
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, "config-test-mainnet.conf");
+    Args.getInstance().getStorage().setPropertyMapFromConfig(ConfigFactory.parseString(
+        "storage.properties = [{name = cached, valueCacheSize = 1024}]"));
+    dataSource = new LevelDbDataSourceImpl(dbPath + File.separator, "cached");
+    dataSource.initDB();
+  }
+
+  @After
+  public void destroy() {
+    dataSource.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Test
+  public void testReadThrough() {
+    byte[] key = "key".getBytes();
+    Assert.assertNull(dataSource.getData(key));
+    Assert.assertNull(dataSource.getData(key));
+    Assert.assertEquals(1, dataSource.getValueCacheStats().hitCount());
+
+    dataSource.putData(key, "v1".getBytes());
+    Assert.assertArrayEquals("v1".getBytes(), dataSource.getData(key));
+    Assert.assertArrayEquals("v1".getBytes(), dataSource.getData(key));
+    Assert.assertEquals(2, dataSource.getValueCacheStats().hitCount());
+
+    // the caller owns the returned array
+    dataSource.getData(key)[0] = 'x';
+    Assert.assertArrayEquals("v1".getBytes(), dataSource.getData(key));
+
+    dataSource.deleteData(key);
+    Assert.assertNull(dataSource.getData(key));
+  }
+
+  @Test
+  public void testBatchInvalidates() {
+    byte[] key = "key".getBytes();
+    dataSource.putData(key, "v1".getBytes());
+    Assert.assertArrayEquals("v1".getBytes(), dataSource.getData(key));
+
+    Map<byte[], byte[]> batch = new HashMap<>(ImmutableMap.of(key, "v2".getBytes()));
+    dataSource.updateByBatch(batch);
+    Assert.assertArrayEquals("v2".getBytes(), dataSource.getData(key));
+
+    batch.put(key, null);
+    dataSource.updateByBatch(batch);
+    Assert.assertNull(dataSource.getData(key));
+  }
+
+  @Test
+  public void testStatsExported() {
+    byte[] key = "key".getBytes();
+    dataSource.putData(key, "v1".getBytes());
+    dataSource.getData(key);
+    dataSource.getData(key);
+    Assert.assertEquals(1, LevelDbDataSourceImpl.getAllValueCacheStats().get("cached").hitCount());
+    Assert.assertEquals(1, LevelDbDataSourceImpl.getAllValueCacheStats().get("cached").missCount());
+
+    dataSource.closeDB();
+    Assert.assertFalse(LevelDbDataSourceImpl.getAllValueCacheStats().containsKey("cached"));
+    dataSource.initDB();
+  }
+
+  @Test
+  public void testConcurrentReadsSeeLastWrite() throws Exception {
+    byte[] key = "key".getBytes();
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      Future<?>[] reads = new Future<?>[4];
+      for (int t = 0; t < reads.length; t++) {
+        reads[t] = readers.submit(() -> {
+          start.await();
+          for (int i = 0; i < 2000; i++) {
+            dataSource.getData(key);
+          }
+          return null;
+        });
+      }
+      start.countDown();
+      for (int i = 0; i < 500; i++) {
+        dataSource.putData(key, ("v" + i).getBytes());
+      }
+      for (Future<?> read : reads) {
+        read.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      readers.shutdownNow();
+    }
+    Assert.assertArrayEquals("v499".getBytes(), dataSource.getData(key));
+  }
+
+  @Test
+  public void testBounded() {
+    for (int i = 0; i < 100; i++) {
+      byte[] key = ("key" + i).getBytes();
+      dataSource.putData(key, new byte[64]);
+      dataSource.getData(key);
+    }
+    Assert.assertTrue(dataSource.getValueCacheStats().evictionCount() > 0);
+  }
+}
@@ -0,0 +1,41 @@
+package org.gsc.core.db2.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+  @Test
+  public void testNoFalseNegative() {
+    BloomFilter filter = new BloomFilter(1000);
+    Assert.assertFalse(filter.mightContain(BloomFilter.hash("key0".getBytes())));
+    for (int i = 0; i < 1000; i++) {
+      filter.add(BloomFilter.hash(("key" + i).getBytes()));
+    }
+    // the same keys again don't fill it any further
+    for (int i = 0; i < 1000; i++) {
+      filter.add(BloomFilter.hash(("key" + i).getBytes()));
+    }
+    Assert.assertFalse(filter.isSaturated(1000));
+    Assert.assertTrue(filter.isSaturated(1001));
+
+    int falsePositives = 0;
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(filter.mightContain(BloomFilter.hash(("key" + i).getBytes())));
+      if (filter.mightContain(BloomFilter.hash(("other" + i).getBytes()))) {
+        ++falsePositives;
+      }
+    }
+    Assert.assertTrue("false positives: " + falsePositives, falsePositives < 30);
+  }
+
+  @Test
+  public void testMerge() {
+    BloomFilter a = new BloomFilter();
+    BloomFilter b = new BloomFilter();
+    b.add(BloomFilter.hash("b".getBytes()));
+    Assert.assertTrue(a.merge(b));
+    Assert.assertTrue(a.mightContain(BloomFilter.hash("b".getBytes())));
+    Assert.assertFalse(a.merge(new BloomFilter(4096)));
+  }
+}
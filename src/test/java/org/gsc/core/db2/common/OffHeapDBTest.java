@@ -0,0 +1,159 @@
+package org.gsc.core.db2.common;
+
+import com.google.common.collect.Streams;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.gsc.core.db2.common.Value.Operator;
+import org.gsc.db.common.WrappedByteArray;
+
+public class OffHeapDBTest {
+
+  @Test
+  public void testSameAsHashDB() {
+    Random random = new Random(42);
+    HashDB expected = new HashDB();
+    OffHeapDB actual = new OffHeapDB();
+    Operator[] operators = Operator.values();
+
+    for (int i = 0; i < 50000; i++) {
+      byte[] k = new byte[1 + random.nextInt(4)];
+      random.nextBytes(k);
+      Key key = Key.of(k);
+      if (random.nextInt(4) == 0) {
+        expected.remove(key);
+        actual.remove(key);
+        continue;
+      }
+
+      byte[] v = null;
+      Operator operator = operators[random.nextInt(operators.length)];
+      if (operator != Operator.DELETE) {
+        v = new byte[random.nextInt(random.nextInt(100) == 0 ? 2 * 1024 * 1024 : 64)];
+        random.nextBytes(v);
+      }
+      expected.put(key, Value.of(operator, v));
+      actual.put(key, Value.of(operator, v));
+
+      Value value = actual.get(key);
+      Assert.assertEquals(operator, value.getOperator());
+      Assert.assertArrayEquals(v, value.getBytes());
+    }
+
+    Map<WrappedByteArray, Value> all = toMap(expected);
+    Assert.assertEquals(all.size(), actual.size());
+    Assert.assertEquals(all, toMap(actual));
+    all.forEach((k, v) -> {
+      Value value = actual.get(Key.of(k.getBytes()));
+      Assert.assertEquals(v.getOperator(), value.getOperator());
+    });
+  }
+
+  @Test
+  public void testReadWhileWriting() throws Exception {
+    OffHeapDB db = new OffHeapDB();
+    AtomicBoolean writing = new AtomicBoolean(true);
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    List<Future<?>> results = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      results.add(readers.submit(() -> {
+        Random random = new Random();
+        while (writing.get()) {
+          int i = random.nextInt(20000);
+          Value value = db.get(Key.of(("key" + i).getBytes()));
+          // a row is absent or written under its own key
+          if (value != null) {
+            Assert.assertTrue(new String(value.getBytes()).startsWith("value" + i + "-"));
+          }
+        }
+      }));
+    }
+
+    // overwrites leave garbage behind, so rehashes compact the chunks too
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 20000; i++) {
+        db.put(Key.of(("key" + i).getBytes()),
+            Value.of(Operator.MODIFY, ("value" + i + "-" + round).getBytes()));
+      }
+    }
+    writing.set(false);
+    for (Future<?> result : results) {
+      result.get();
+    }
+    readers.shutdown();
+    Assert.assertEquals(20000, db.size());
+  }
+
+  @Test
+  public void testClose() {
+    OffHeapDB db = new OffHeapDB();
+    db.put(Key.of("key".getBytes()), Value.of(Operator.CREATE, "value".getBytes()));
+    db.close();
+    Assert.assertNull(db.get(Key.of("key".getBytes())));
+    Assert.assertEquals(0, db.size());
+    Assert.assertFalse(db.iterator().hasNext());
+    db.close();
+  }
+
+  @Test
+  public void testCloseWhileIterating() {
+    OffHeapDB db = new OffHeapDB();
+    for (int i = 0; i < 100; i++) {
+      db.put(Key.of(("key" + i).getBytes()), Value.of(Operator.CREATE, ("value" + i).getBytes()));
+    }
+
+    // an API thread walking the snapshot while the block thread merges and frees it
+    Iterator<Map.Entry<Key, Value>> iterator = db.iterator();
+    Assert.assertTrue(iterator.hasNext());
+    iterator.next();
+    db.close();
+    int rows = 1;
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Value> row = iterator.next();
+      Assert.assertEquals("value" + new String(row.getKey().getBytes()).substring(3),
+          new String(row.getValue().getBytes()));
+      ++rows;
+    }
+    Assert.assertEquals(100, rows);
+    Assert.assertFalse(db.iterator().hasNext());
+  }
+
+  @Test
+  public void testRehashWhileIterating() {
+    OffHeapDB db = new OffHeapDB();
+    for (int i = 0; i < 10; i++) {
+      db.put(Key.of(("key" + i).getBytes()), Value.of(Operator.CREATE, ("value" + i).getBytes()));
+    }
+
+    Iterator<Map.Entry<Key, Value>> iterator = db.iterator();
+    iterator.next();
+    // grows the index and compacts the chunks
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 1000; i++) {
+        db.put(Key.of(("key" + i).getBytes()),
+            Value.of(Operator.MODIFY, ("value" + i + "-" + round).getBytes()));
+      }
+    }
+    int rows = 1;
+    while (iterator.hasNext()) {
+      Assert.assertEquals(Operator.CREATE, iterator.next().getValue().getOperator());
+      ++rows;
+    }
+    Assert.assertEquals(10, rows);
+  }
+
+  private static Map<WrappedByteArray, Value> toMap(DB<Key, Value> db) {
+    return Streams.stream(db)
+        .collect(Collectors.toMap(e -> WrappedByteArray.of(e.getKey().getBytes()),
+            Map.Entry::getValue));
+  }
+}
@@ -0,0 +1,110 @@
+package org.gsc.core.db2.common;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.iq80.leveldb.WriteOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.gsc.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.config.args.Args;
+import org.gsc.db.common.WrappedByteArray;
+
+/**
+ * Cost of writing the flush checkpoint of one solidified block: the append-only log against the
+ * temporary levelDB that was created, filled and deleted on every flush before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+  private static final String dbPath = "output_write_ahead_log_benchmark";
+  private static final String[] DB_NAMES = {"account", "witness", "properties", "block", "trans",
+      "storage-row", "contract", "code", "votes", "asset-issue"};
+
+  @Param({"10", "1000"})
+  private int rowsPerStore;
+
+  private Map<String, Map<WrappedByteArray, WrappedByteArray>> batches;
+  private WriteAheadLog log;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Args.setParam(new String[]{"-d", dbPath}, "config-test-mainnet.conf");
+    Random random = new Random(0);
+    batches = new LinkedHashMap<>();
+    for (String dbName : DB_NAMES) {
+      Map<WrappedByteArray, WrappedByteArray> rows = new HashMap<>();
+      for (int i = 0; i < rowsPerStore; i++) {
+        byte[] key = new byte[32];
+        byte[] value = new byte[128];
+        random.nextBytes(key);
+        random.nextBytes(value);
+        rows.put(WrappedByteArray.of(key), WrappedByteArray.of(value));
+      }
+      batches.put(dbName, rows);
+    }
+    log = new WriteAheadLog(Paths.get(dbPath, "checkpoint.wal"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    log.close();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Benchmark
+  public void writeAheadLog() {
+    log.append(batches);
+    if (log.size() > 16 * 1024 * 1024) {
+      log.truncate();
+    }
+  }
+
+  @Benchmark
+  public void levelDbCheckPoint() {
+    LevelDbDataSourceImpl levelDbDataSource = new LevelDbDataSourceImpl(dbPath, "tmp");
+    levelDbDataSource.initDB();
+    Map<byte[], byte[]> rows = new HashMap<>();
+    batches.forEach((dbName, batch) -> {
+      byte[] name = Bytes.concat(Ints.toByteArray(dbName.getBytes().length), dbName.getBytes());
+      batch.forEach((k, v) -> rows.put(Bytes.concat(name, k.getBytes()),
+          Bytes.concat(new byte[]{1}, v.getBytes())));
+    });
+    levelDbDataSource.updateByBatch(rows, new WriteOptions().sync(true));
+    levelDbDataSource.closeDB();
+    FileUtil.recursiveDelete(levelDbDataSource.getDbPath().toString());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(WriteAheadLogBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
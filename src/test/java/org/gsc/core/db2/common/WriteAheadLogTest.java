@@ -0,0 +1,94 @@
+package org.gsc.core.db2.common;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.db.common.WrappedByteArray;
+
+@Slf4j
+public class WriteAheadLogTest {
+
+  private static final String dbPath = "output_write_ahead_log_test";
+  private Path path = Paths.get(dbPath, "checkpoint.wal");
+
+  @After
+  public void removeDb() {
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Test
+  public void testRecover() {
+    try (WriteAheadLog log = new WriteAheadLog(path, 1024)) {
+      log.append(frame("account", "a1", "v1"));
+      log.append(frame("account", "a1", null));
+      // bigger than the initial mapping
+      log.append(frame("witness", "w1", new String(new byte[4096])));
+    }
+
+    try (WriteAheadLog log = new WriteAheadLog(path, 1024)) {
+      Map<String, Map<WrappedByteArray, WrappedByteArray>> recovered = log.recover();
+      Assert.assertEquals(2, recovered.size());
+      Assert.assertNull(recovered.get("account").get(key("a1")).getBytes());
+      Assert.assertEquals(4096, recovered.get("witness").get(key("w1")).getBytes().length);
+
+      log.truncate();
+      Assert.assertTrue(log.recover().isEmpty());
+      log.append(frame("account", "a2", "v2"));
+    }
+
+    try (WriteAheadLog log = new WriteAheadLog(path, 1024)) {
+      Map<String, Map<WrappedByteArray, WrappedByteArray>> recovered = log.recover();
+      Assert.assertEquals(1, recovered.size());
+      Assert.assertArrayEquals("v2".getBytes(), recovered.get("account").get(key("a2")).getBytes());
+    }
+  }
+
+  @Test
+  public void testTornFrame() throws Exception {
+    try (WriteAheadLog log = new WriteAheadLog(path, 1024)) {
+      log.append(frame("account", "a1", "v1"));
+      log.append(frame("account", "a2", "v2"));
+    }
+
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+      // flip the last byte of the second frame
+      long secondFrameEnd = 16 + 2 * (16 + frameSize("account", "a1", "v1")) - 1;
+      file.seek(secondFrameEnd);
+      int b = file.read();
+      file.seek(secondFrameEnd);
+      file.write(b ^ 0xff);
+    }
+
+    try (WriteAheadLog log = new WriteAheadLog(path, 1024)) {
+      Map<WrappedByteArray, WrappedByteArray> rows = log.recover().get("account");
+      Assert.assertEquals(1, rows.size());
+      Assert.assertArrayEquals("v1".getBytes(), rows.get(key("a1")).getBytes());
+    }
+  }
+
+  private static int frameSize(String db, String k, String v) {
+    return 4 + 8 + db.length() + 8 + k.length() + v.length();
+  }
+
+  private static WrappedByteArray key(String k) {
+    return WrappedByteArray.of(k.getBytes());
+  }
+
+  private static Map<String, Map<WrappedByteArray, WrappedByteArray>> frame(String db, String k,
+      String v) {
+    Map<WrappedByteArray, WrappedByteArray> rows = new HashMap<>();
+    rows.put(key(k), WrappedByteArray.of(v == null ? null : v.getBytes()));
+    Map<String, Map<WrappedByteArray, WrappedByteArray>> frame = new LinkedHashMap<>();
+    frame.put(db, rows);
+    return frame;
+  }
+}
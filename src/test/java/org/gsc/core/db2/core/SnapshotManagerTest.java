@@ -0,0 +1,356 @@
+package org.gsc.core.db2.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.config.args.Args;
+import org.gsc.core.db2.common.LevelDB;
+import org.gsc.core.exception.RevokingStoreIllegalStateException;
+import org.gsc.db.common.WrappedByteArray;
+import org.gsc.protos.Protocol.StateChunk;
+
+@Slf4j
+public class SnapshotManagerTest {
+
+  private static final String dbPath = "output_snapshot_manager_test";
+  private FailingSnapshotManager revokingDatabase;
+  private RevokingDBWithCachingNewValue account;
+  private RevokingDBWithCachingNewValue witness;
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, "config-test-mainnet.conf");
+    Args.getInstance().getStorage().setAsyncFlush(true);
+    revokingDatabase = new FailingSnapshotManager();
+    account = new RevokingDBWithCachingNewValue("snapshot-manager-account");
+    witness = new RevokingDBWithCachingNewValue("snapshot-manager-witness");
+    revokingDatabase.add(account);
+    revokingDatabase.add(witness);
+    revokingDatabase.enable();
+    revokingDatabase.check();
+  }
+
+  @After
+  public void removeDb() {
+    revokingDatabase.shutdown();
+    account.close();
+    witness.close();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Test
+  public void testAsyncFlush() throws Exception {
+    revokingDatabase.setMaxSize(3);
+    for (int i = 0; i < 10; i++) {
+      try (ISession session = revokingDatabase.buildSession()) {
+        account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        witness.put(("witness" + i).getBytes(), ("vote" + i).getBytes());
+        if (i > 0) {
+          account.delete(("account" + (i - 1)).getBytes());
+        }
+        session.commit();
+      }
+    }
+
+    // visible while the writer may still be busy
+    Assert.assertArrayEquals("balance9".getBytes(), account.getUnchecked("account9".getBytes()));
+    Assert.assertNull(account.getUnchecked("account0".getBytes()));
+    Assert.assertArrayEquals("vote0".getBytes(), witness.getUnchecked("witness0".getBytes()));
+
+    CompletableFuture<Void> future = revokingDatabase.flush();
+    future.get();
+    SnapshotRoot root = (SnapshotRoot) witness.getHead().getRoot();
+    Assert.assertArrayEquals("vote0".getBytes(),
+        ((LevelDB) root.getDb()).get("witness0".getBytes()));
+    Assert.assertArrayEquals("vote9".getBytes(), witness.getUnchecked("witness9".getBytes()));
+    Assert.assertEquals(10, witness.getlatestValues(100).size());
+  }
+
+  @Test
+  public void testStagedRowsInRange() {
+    SnapshotRoot root = (SnapshotRoot) account.getHead().getRoot();
+    Map<WrappedByteArray, WrappedByteArray> stored = new HashMap<>();
+    for (int i = 1; i <= 5; i++) {
+      stored.put(WrappedByteArray.of(("a" + i).getBytes()),
+          WrappedByteArray.of(("v" + i).getBytes()));
+    }
+    root.flush(stored);
+
+    Map<WrappedByteArray, WrappedByteArray> batch = new HashMap<>();
+    batch.put(WrappedByteArray.of("a2".getBytes()), WrappedByteArray.of(null));
+    batch.put(WrappedByteArray.of("a3".getBytes()), WrappedByteArray.of("changed".getBytes()));
+    batch.put(WrappedByteArray.of("a6".getBytes()), WrappedByteArray.of("v6".getBytes()));
+    root.stage(batch);
+
+    Map<WrappedByteArray, WrappedByteArray> next = root.getNext("a3".getBytes(), 2);
+    Assert.assertEquals(2, next.size());
+    Assert.assertArrayEquals("changed".getBytes(),
+        next.get(WrappedByteArray.of("a3".getBytes())).getBytes());
+    Assert.assertArrayEquals("v4".getBytes(),
+        next.get(WrappedByteArray.of("a4".getBytes())).getBytes());
+
+    next = root.getNext("a0".getBytes(), 10);
+    Assert.assertEquals(5, next.size());
+    Assert.assertFalse(next.containsKey(WrappedByteArray.of("a2".getBytes())));
+    next.values().forEach(v -> Assert.assertNotNull(v.getBytes()));
+
+    Set<byte[]> latest = root.getlatestValues(2);
+    Assert.assertEquals(2, latest.size());
+    Assert.assertTrue(latest.stream().anyMatch(v -> Arrays.equals("v6".getBytes(), v)));
+    Assert.assertTrue(latest.stream().anyMatch(v -> Arrays.equals("v5".getBytes(), v)));
+
+    root.unstage(batch);
+    Assert.assertEquals(5, root.getNext("a0".getBytes(), 10).size());
+  }
+
+  @Test
+  public void testGetAllMatchesGet() throws Exception {
+    revokingDatabase.setMaxSize(1);
+    for (int i = 0; i < 4; i++) {
+      try (ISession session = revokingDatabase.buildSession()) {
+        account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        session.commit();
+      }
+    }
+    revokingDatabase.flush().get();
+
+    try (ISession session = revokingDatabase.buildSession()) {
+      account.put("account1".getBytes(), "changed".getBytes());
+      account.delete("account2".getBytes());
+      List<byte[]> keys = Arrays.asList("account0".getBytes(), "account1".getBytes(),
+          "account2".getBytes(), "account3".getBytes(), "missing".getBytes());
+      List<byte[]> values = account.getAll(keys);
+      Assert.assertEquals(keys.size(), values.size());
+      for (int i = 0; i < keys.size(); i++) {
+        Assert.assertArrayEquals(account.getUnchecked(keys.get(i)), values.get(i));
+      }
+      Assert.assertArrayEquals("changed".getBytes(), values.get(1));
+      Assert.assertNull(values.get(2));
+      Assert.assertNull(values.get(4));
+    }
+  }
+
+  @Test
+  public void testOffHeapSnapshot() {
+    Args.getInstance().getStorage().setOffHeapSnapshot(true);
+    try (ISession session = revokingDatabase.buildSession()) {
+      account.put("account".getBytes(), "balance".getBytes());
+      try (ISession tmpSession = revokingDatabase.buildSession()) {
+        account.put("account".getBytes(), "balance2".getBytes());
+        account.put("other".getBytes(), "balance3".getBytes());
+        tmpSession.merge();
+      }
+      try (ISession tmpSession = revokingDatabase.buildSession()) {
+        account.delete("other".getBytes());
+        Assert.assertFalse(account.has("other".getBytes()));
+      }
+      Assert.assertArrayEquals("balance2".getBytes(), account.getUnchecked("account".getBytes()));
+      Assert.assertArrayEquals("balance3".getBytes(), account.getUnchecked("other".getBytes()));
+      session.commit();
+    } finally {
+      Args.getInstance().getStorage().setOffHeapSnapshot(false);
+    }
+  }
+
+  @Test
+  public void testFilterCountsDistinctKeys() {
+    try (ISession session = revokingDatabase.buildSession()) {
+      SnapshotImpl snapshot = (SnapshotImpl) account.getHead();
+      int expectedKeys = snapshot.getFilterExpectedKeys();
+      for (int i = 0; i < 10 * expectedKeys; i++) {
+        account.put("hot".getBytes(), ("balance" + i).getBytes());
+      }
+      Assert.assertEquals(1, snapshot.getKeyCount());
+      Assert.assertEquals(expectedKeys, snapshot.getFilterExpectedKeys());
+
+      try (ISession tmpSession = revokingDatabase.buildSession()) {
+        for (int i = 0; i < expectedKeys; i++) {
+          account.put(("account" + i).getBytes(), "balance".getBytes());
+        }
+        account.put("hot".getBytes(), "changed".getBytes());
+        tmpSession.merge();
+      }
+      // the hot key is in both snapshots, it is counted once
+      Assert.assertEquals(expectedKeys + 1, snapshot.getKeyCount());
+      // rebuilt once, when the distinct keys outgrew it
+      Assert.assertEquals(4 * (expectedKeys + 1), snapshot.getFilterExpectedKeys());
+      for (int i = 0; i < expectedKeys; i++) {
+        Assert.assertArrayEquals("balance".getBytes(),
+            account.getUnchecked(("account" + i).getBytes()));
+      }
+      Assert.assertArrayEquals("changed".getBytes(), account.getUnchecked("hot".getBytes()));
+      session.commit();
+    }
+  }
+
+  @Test
+  public void testMergeIntoLargestFilter() {
+    try (ISession session = revokingDatabase.buildSession()) {
+      SnapshotImpl snapshot = (SnapshotImpl) account.getHead();
+      int expectedKeys = snapshot.getFilterExpectedKeys();
+      snapshot.setMaxFilterKeys(expectedKeys);
+      account.put("account".getBytes(), "balance".getBytes());
+
+      // the merged keys outgrow a filter that can't be rebuilt any bigger
+      try (ISession tmpSession = revokingDatabase.buildSession()) {
+        for (int i = 0; i < 2 * expectedKeys; i++) {
+          account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        }
+        tmpSession.merge();
+      }
+      Assert.assertEquals(expectedKeys, snapshot.getFilterExpectedKeys());
+      for (int i = 0; i < 2 * expectedKeys; i++) {
+        Assert.assertArrayEquals(("balance" + i).getBytes(),
+            account.getUnchecked(("account" + i).getBytes()));
+      }
+      Assert.assertArrayEquals("balance".getBytes(), account.getUnchecked("account".getBytes()));
+
+      // and the keys written into it afterwards
+      for (int i = 0; i < 2 * expectedKeys; i++) {
+        account.put(("other" + i).getBytes(), ("balance" + i).getBytes());
+      }
+      for (int i = 0; i < 2 * expectedKeys; i++) {
+        Assert.assertArrayEquals(("balance" + i).getBytes(),
+            account.getUnchecked(("other" + i).getBytes()));
+      }
+      session.commit();
+    }
+  }
+
+  @Test
+  public void testFilterSkipsSnapshots() {
+    try (ISession session = revokingDatabase.buildSession()) {
+      account.put("account".getBytes(), "balance".getBytes());
+      try (ISession tmpSession = revokingDatabase.buildSession()) {
+        witness.put("witness".getBytes(), "vote".getBytes());
+        long skips = SnapshotImpl.getFilterSkips();
+        long hits = SnapshotImpl.getFilterHits();
+        Assert.assertArrayEquals("balance".getBytes(), account.getUnchecked("account".getBytes()));
+        Assert.assertNull(account.getUnchecked("missing".getBytes()));
+        Assert.assertEquals(hits + 1, SnapshotImpl.getFilterHits());
+        Assert.assertTrue(SnapshotImpl.getFilterSkips() >= skips + 3);
+        tmpSession.merge();
+      }
+      session.commit();
+    }
+  }
+
+  @Test
+  public void testCheckpointBetweenFlushes() throws Exception {
+    revokingDatabase.setMaxSize(100);
+    for (int i = 0; i < 3; i++) {
+      try (ISession session = revokingDatabase.buildSession()) {
+        account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        session.commit();
+      }
+    }
+
+    // asked for right after the first flush, the second is queued before the rows are pinned
+    revokingDatabase.flush();
+    CompletableFuture<StateCheckpoint> future = revokingDatabase
+        .checkpoint(1, Sha256Hash.of("block".getBytes()));
+    revokingDatabase.flush();
+    revokingDatabase.flush().get();
+
+    try (StateCheckpoint checkpoint = future.get()) {
+      checkpoint.getManifest();
+      StateChunk chunk = checkpoint.getChunk("snapshot-manager-account", 0);
+      Assert.assertEquals(1, chunk.getRowsCount());
+      Assert.assertEquals("account0", chunk.getRows(0).getKey().toStringUtf8());
+    }
+  }
+
+  @Test
+  public void testFailedFlushIsWrittenAgain() throws Exception {
+    revokingDatabase.setMaxSize(100);
+    for (int i = 0; i < 3; i++) {
+      try (ISession session = revokingDatabase.buildSession()) {
+        account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        session.commit();
+      }
+    }
+    LevelDB db = (LevelDB) ((SnapshotRoot) account.getHead().getRoot()).getDb();
+
+    revokingDatabase.failures = 1;
+    try {
+      revokingDatabase.flush().get();
+      Assert.fail("the write failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("disk full", e.getCause().getMessage());
+    }
+    Assert.assertNull(db.get("account0".getBytes()));
+    Assert.assertArrayEquals("balance0".getBytes(), account.getUnchecked("account0".getBytes()));
+
+    // the next flush writes the failed one first, on the calling thread
+    revokingDatabase.flush().get();
+    Assert.assertArrayEquals("balance0".getBytes(), db.get("account0".getBytes()));
+    revokingDatabase.flush().get();
+    Assert.assertArrayEquals("balance1".getBytes(), db.get("account1".getBytes()));
+    Assert.assertEquals(3, account.getlatestValues(100).size());
+  }
+
+  @Test
+  public void testFailingFlushStopsBlocks() throws Exception {
+    revokingDatabase.setMaxSize(100);
+    for (int i = 0; i < 3; i++) {
+      try (ISession session = revokingDatabase.buildSession()) {
+        account.put(("account" + i).getBytes(), ("balance" + i).getBytes());
+        session.commit();
+      }
+    }
+    LevelDB db = (LevelDB) ((SnapshotRoot) account.getHead().getRoot()).getDb();
+
+    revokingDatabase.failures = 2;
+    try {
+      revokingDatabase.flush().get();
+      Assert.fail("the write failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("disk full", e.getCause().getMessage());
+    }
+    try {
+      revokingDatabase.flush();
+      Assert.fail("the write failed again");
+    } catch (RevokingStoreIllegalStateException e) {
+      Assert.assertEquals("disk full", e.getCause().getMessage());
+    }
+    Assert.assertEquals(2, revokingDatabase.getSize());
+
+    // nothing was lost once the disk has room again
+    revokingDatabase.flush().get();
+    Assert.assertEquals(1, revokingDatabase.getSize());
+    Assert.assertArrayEquals("balance0".getBytes(), db.get("account0".getBytes()));
+    Assert.assertArrayEquals("balance1".getBytes(), db.get("account1".getBytes()));
+    Assert.assertNull(db.get("account2".getBytes()));
+    Assert.assertArrayEquals("balance2".getBytes(), account.getUnchecked("account2".getBytes()));
+  }
+
+  /**
+   * fails as many commits as asked, as a full disk would.
+   */
+  private static class FailingSnapshotManager extends SnapshotManager {
+
+    private volatile int failures;
+
+    @Override
+    void commit(Map<SnapshotRoot, Map<WrappedByteArray, WrappedByteArray>> batches) {
+      if (failures > 0) {
+        --failures;
+        throw new IllegalStateException("disk full");
+      }
+      super.commit(batches);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.gsc.core.wrapper;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.protos.Contract.TransferContract;
+import org.gsc.protos.Protocol.Transaction;
+import org.gsc.protos.Protocol.Transaction.Contract.ContractType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Hashing done for the transactions of one block while it is pushed: the id is asked for by the
+ * dup check, the transaction store, the hash cache, the inventory and the transaction info, the
+ * merkle hash once by the merkle root. Memoized wrappers against hashing on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionWrapperBenchmark {
+
+  private static final int ID_CALLS_PER_TRANSACTION = 5;
+
+  @Param({"100", "2000"})
+  private int transactionsPerBlock;
+
+  private List<Transaction> transactions;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(0);
+    transactions = new ArrayList<>();
+    for (int i = 0; i < transactionsPerBlock; i++) {
+      byte[] owner = new byte[21];
+      byte[] to = new byte[21];
+      random.nextBytes(owner);
+      random.nextBytes(to);
+      TransferContract contract = TransferContract.newBuilder()
+          .setOwnerAddress(ByteString.copyFrom(owner))
+          .setToAddress(ByteString.copyFrom(to))
+          .setAmount(random.nextInt(1_000_000))
+          .build();
+      TransactionWrapper trx = new TransactionWrapper(contract, ContractType.TransferContract);
+      trx.setTimestamp();
+      byte[] signature = new byte[65];
+      random.nextBytes(signature);
+      transactions.add(trx.getInstance().toBuilder()
+          .addSignature(ByteString.copyFrom(signature)).build());
+    }
+  }
+
+  @Benchmark
+  public void memoized(Blackhole blackhole) {
+    for (Transaction transaction : transactions) {
+      TransactionWrapper trx = new TransactionWrapper(transaction);
+      for (int i = 0; i < ID_CALLS_PER_TRANSACTION; i++) {
+        blackhole.consume(trx.getTransactionId());
+      }
+      blackhole.consume(trx.getMerkleHash());
+    }
+  }
+
+  @Benchmark
+  public void hashEveryCall(Blackhole blackhole) {
+    for (Transaction transaction : transactions) {
+      for (int i = 0; i < ID_CALLS_PER_TRANSACTION; i++) {
+        blackhole.consume(Sha256Hash.of(transaction.getRawData().toByteArray()));
+      }
+      blackhole.consume(Sha256Hash.of(transaction.toByteArray()));
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(TransactionWrapperBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
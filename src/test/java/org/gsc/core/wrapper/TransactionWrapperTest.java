@@ -0,0 +1,100 @@
+package org.gsc.core.wrapper;
+
+import com.google.protobuf.ByteString;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.exception.ValidateSignatureException;
+import org.gsc.crypto.ECKey;
+import org.gsc.protos.Contract.TransferContract;
+import org.gsc.protos.Protocol.Transaction.Contract.ContractType;
+import org.gsc.protos.Protocol.Transaction.Result.code;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionWrapperTest {
+
+  private static TransactionWrapper newTransaction() {
+    return newTransaction(new byte[21]);
+  }
+
+  private static TransactionWrapper newTransaction(byte[] owner) {
+    TransferContract contract = TransferContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFrom(owner))
+        .setToAddress(ByteString.copyFrom(new byte[21]))
+        .setAmount(1)
+        .build();
+    return new TransactionWrapper(contract, ContractType.TransferContract);
+  }
+
+  private static Sha256Hash rawHash(TransactionWrapper trx) {
+    return Sha256Hash.of(trx.getInstance().getRawData().toByteArray());
+  }
+
+  private static Sha256Hash merkleHash(TransactionWrapper trx) {
+    return Sha256Hash.of(trx.getInstance().toByteArray());
+  }
+
+  @Test
+  public void testHashFollowsMutators() {
+    TransactionWrapper trx = newTransaction();
+    Sha256Hash id = trx.getTransactionId();
+    Assert.assertSame(id, trx.getTransactionId());
+    Assert.assertSame(trx.getMerkleHash(), trx.getMerkleHash());
+
+    trx.setExpiration(100);
+    Assert.assertNotEquals(id, trx.getTransactionId());
+    Assert.assertEquals(rawHash(trx), trx.getTransactionId());
+    Assert.assertEquals(merkleHash(trx), trx.getMerkleHash());
+
+    trx.setReference(1, new byte[32]);
+    Assert.assertEquals(rawHash(trx), trx.getTransactionId());
+    Assert.assertEquals(merkleHash(trx), trx.getMerkleHash());
+
+    // the id only covers the raw data, the merkle hash covers signatures and results too
+    id = trx.getTransactionId();
+    trx.sign(new byte[]{1, 2, 3});
+    Assert.assertSame(id, trx.getTransactionId());
+    Assert.assertEquals(merkleHash(trx), trx.getMerkleHash());
+
+    trx.setResult(new TransactionResultWrapper(code.SUCESS, 0));
+    Assert.assertEquals(merkleHash(trx), trx.getMerkleHash());
+
+    trx.resetResult();
+    Assert.assertEquals(merkleHash(trx), trx.getMerkleHash());
+    Assert.assertSame(id, trx.getTransactionId());
+  }
+
+  @Test
+  public void testValidateSignatures() throws ValidateSignatureException {
+    List<TransactionWrapper> trxs = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      ECKey key = ECKey.fromPrivate(BigInteger.valueOf(i));
+      TransactionWrapper trx = newTransaction(key.getAddress());
+      trx.sign(key.getPrivKeyBytes());
+      trxs.add(trx);
+    }
+    TransactionWrapper.validateSignatures(trxs);
+    for (TransactionWrapper trx : trxs) {
+      Assert.assertTrue(trx.validateSignature());
+    }
+
+    TransactionWrapper forged = newTransaction(ECKey.fromPrivate(BigInteger.ONE).getAddress());
+    forged.sign(ECKey.fromPrivate(BigInteger.TEN).getPrivKeyBytes());
+    TransactionWrapper unsigned = newTransaction(ECKey.fromPrivate(BigInteger.ONE).getAddress());
+    try {
+      TransactionWrapper.validateSignatures(Arrays.asList(trxs.get(0), forged));
+      Assert.fail();
+    } catch (ValidateSignatureException e) {
+      Assert.assertEquals("sig error", e.getMessage());
+    }
+    try {
+      TransactionWrapper.validateSignatures(Arrays.asList(unsigned, trxs.get(1)));
+      Assert.fail();
+    } catch (ValidateSignatureException e) {
+      Assert.assertEquals("miss sig or contract", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package org.gsc.core.wrapper.utils;
+
+import com.google.common.primitives.Ints;
+import java.util.ArrayList;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.protos.Protocol.Block;
+import org.gsc.protos.Protocol.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelMerkleTreeTest {
+
+  private static List<Sha256Hash> getHash(int hashNum) {
+    List<Sha256Hash> hashList = new ArrayList<>();
+    for (int i = 0; i < hashNum; i++) {
+      hashList.add(Sha256Hash.of(Ints.toByteArray(i)));
+    }
+    return hashList;
+  }
+
+  @Test
+  public void testSameRootAsMerkleTree() {
+    int[] sizes = {1, 2, 3, 7, 63, 64, 65, 127, 128, 129, 1000, 4097};
+    for (int size : sizes) {
+      List<Sha256Hash> hashList = getHash(size);
+      Assert.assertEquals("size " + size,
+          MerkleTree.getInstance().createTree(hashList).getRoot().getHash(),
+          ParallelMerkleTree.getRoot(size, hashList::get));
+    }
+  }
+
+  @Test
+  public void testBlockMerkleRoot() {
+    Block.Builder block = Block.newBuilder();
+    List<Sha256Hash> hashList = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      Transaction transaction = Transaction.newBuilder().setRawData(
+          Transaction.raw.newBuilder().setTimestamp(i)).build();
+      block.addTransactions(transaction);
+      hashList.add(Sha256Hash.of(transaction.toByteArray()));
+    }
+
+    BlockWrapper blockWrapper = new BlockWrapper(block.build());
+    Assert.assertEquals(MerkleTree.getInstance().createTree(hashList).getRoot().getHash(),
+        blockWrapper.calcMerkleRoot());
+  }
+}
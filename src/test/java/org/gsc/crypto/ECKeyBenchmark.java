@@ -0,0 +1,76 @@
+package org.gsc.crypto;
+
+import ch.qos.logback.classic.Logger;
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.crypto.ECKey.ECDSASignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recovering the signers of a chunk of transactions, as a thread validating the signatures of a
+ * block does: one signature after the other against the whole chunk at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ECKeyBenchmark {
+
+  @Param({"1", "64"})
+  private int signatures;
+
+  private byte[][] hashes;
+  private ECDSASignature[] signatureList;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // the tests log at debug, a node runs at info
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+        .setLevel(ch.qos.logback.classic.Level.INFO);
+    hashes = new byte[signatures][];
+    signatureList = new ECDSASignature[signatures];
+    for (int i = 0; i < signatures; i++) {
+      ECKey key = ECKey.fromPrivate(BigInteger.valueOf(i + 1).shiftLeft(200).add(BigInteger.TEN));
+      hashes[i] = Sha256Hash.hash(BigInteger.valueOf(i).toByteArray());
+      signatureList[i] = key.sign(hashes[i]);
+    }
+  }
+
+  @Benchmark
+  public void oneByOne(Blackhole blackhole) throws SignatureException {
+    for (int i = 0; i < signatures; i++) {
+      blackhole.consume(ECKey.signatureToAddress(hashes[i], signatureList[i]));
+    }
+  }
+
+  @Benchmark
+  public void batch(Blackhole blackhole) {
+    blackhole.consume(ECKey.signaturesToAddresses(hashes, signatureList));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(ECKeyBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -18,6 +19,7 @@ import java.util.Arrays;
 import com.google.protobuf.ByteString;
 import lombok.extern.slf4j.Slf4j;
 import org.gsc.common.utils.ByteArray;
+import org.gsc.crypto.ECKey.ECDSASignature;
 import org.gsc.core.wrapper.WitnessWrapper;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
@@ -101,6 +103,31 @@ public class ECKeyTest {
     fail("Expecting an IllegalArgumentException for a non 32-byte input");
   }
 
+  @Test
+  public void testSignaturesToAddresses() throws SignatureException {
+    byte[][] hashes = new byte[4][];
+    ECDSASignature[] signatures = new ECDSASignature[4];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = Hash.sha3(new byte[]{(byte) i});
+      signatures[i] = ECKey.fromPrivate(privateKey.add(BigInteger.valueOf(i))).sign(hashes[i]);
+    }
+    // no key can be recovered from a bad header
+    signatures[2] = ECDSASignature.fromComponents(signatures[2].r.toByteArray(),
+        signatures[2].s.toByteArray(), (byte) 40);
+
+    byte[][] addresses = ECKey.signaturesToAddresses(hashes, signatures);
+    for (int i = 0; i < hashes.length; i++) {
+      if (i == 2) {
+        assertNull(addresses[i]);
+      } else {
+        assertArrayEquals(ECKey.signatureToAddress(hashes[i], signatures[i]), addresses[i]);
+        assertArrayEquals(
+            ECKey.fromPrivate(privateKey.add(BigInteger.valueOf(i))).getAddress(), addresses[i]);
+      }
+    }
+    assertEquals(0, ECKey.signaturesToAddresses(new byte[0][], new ECDSASignature[0]).length);
+  }
+
   @Test(expected = SignatureException.class)
   public void testBadBase64Sig() throws SignatureException {
     byte[] messageHash = new byte[32];
@@ -0,0 +1,48 @@
+package org.gsc.crypto.zksnark;
+
+import static org.gsc.crypto.zksnark.Params.P;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FpTest {
+
+  @Test
+  public void testMatchesBigIntegerArithmetic() {
+    Random random = new Random(42);
+    BigInteger[] edges = {BigInteger.ZERO, BigInteger.ONE, P.subtract(BigInteger.ONE),
+        P.subtract(BigInteger.valueOf(2)), BigInteger.ONE.shiftLeft(253)};
+    for (int i = 0; i < 2000; i++) {
+      BigInteger a = i < edges.length ? edges[i] : new BigInteger(254, random).mod(P);
+      BigInteger b = i < edges.length ? edges[edges.length - 1 - i]
+          : new BigInteger(254, random).mod(P);
+      Fp x = Fp.create(a);
+      Fp y = Fp.create(b);
+
+      Assert.assertEquals(a.add(b).mod(P), value(x.add(y)));
+      Assert.assertEquals(a.subtract(b).mod(P), value(x.sub(y)));
+      Assert.assertEquals(a.multiply(b).mod(P), value(x.mul(y)));
+      Assert.assertEquals(a.multiply(a).mod(P), value(x.squared()));
+      Assert.assertEquals(a.shiftLeft(1).mod(P), value(x.dbl()));
+      Assert.assertEquals(a.negate().mod(P), value(x.negate()));
+      if (a.signum() != 0) {
+        Assert.assertEquals(a.modInverse(P), value(x.inverse()));
+      }
+      Assert.assertEquals(a.signum() == 0, x.isZero());
+      Assert.assertEquals(Fp.create(a), x.add(y).sub(y));
+    }
+  }
+
+  @Test
+  public void testValidity() {
+    Assert.assertTrue(Fp.create(P.subtract(BigInteger.ONE)).isValid());
+    Assert.assertFalse(Fp.create(P).isValid());
+    Assert.assertFalse(Fp.create(P.add(BigInteger.ONE).toByteArray()).isValid());
+  }
+
+  private static BigInteger value(Fp fp) {
+    return new BigInteger(fp.bytes());
+  }
+}
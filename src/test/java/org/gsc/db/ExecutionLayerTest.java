@@ -0,0 +1,222 @@
+package org.gsc.db;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.gsc.common.utils.ByteArray;
+import org.gsc.core.db2.common.IRevokingDB;
+import org.gsc.core.exception.ItemNotFoundException;
+import org.gsc.db.common.WrappedByteArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExecutionLayerTest {
+
+  private static final byte[] KEY_A = ByteArray.fromString("a");
+  private static final byte[] KEY_B = ByteArray.fromString("b");
+  private static final byte[] KEY_C = ByteArray.fromString("c");
+
+  private final MapRevokingDB db = new MapRevokingDB();
+  private final LayeredRevokingDB layered = new LayeredRevokingDB(db);
+
+  @Test
+  public void testWritesStayInLayerUntilCommit() throws ItemNotFoundException {
+    db.put(KEY_A, ByteArray.fromLong(1));
+    db.put(KEY_B, ByteArray.fromLong(2));
+
+    ExecutionLayer layer = new ExecutionLayer().execute(() -> {
+      layered.put(KEY_A, ByteArray.fromLong(10));
+      layered.delete(KEY_B);
+      Assert.assertEquals(10, ByteArray.toLong(layered.get(KEY_A)));
+      Assert.assertFalse(layered.has(KEY_B));
+      Assert.assertNull(layered.getUnchecked(KEY_B));
+    });
+    Assert.assertNull(layer.getFailure());
+    Assert.assertEquals(1, ByteArray.toLong(layered.get(KEY_A)));
+    Assert.assertTrue(layered.has(KEY_B));
+
+    Map<IRevokingDB, Set<WrappedByteArray>> written = new HashMap<>();
+    layer.commit(written);
+    Assert.assertEquals(10, ByteArray.toLong(layered.get(KEY_A)));
+    Assert.assertFalse(layered.has(KEY_B));
+    Assert.assertEquals(2, written.get(db).size());
+  }
+
+  @Test
+  public void testReadsOfOwnWritesAreNotConflicts() {
+    ExecutionLayer first = new ExecutionLayer().execute(() -> layered.put(KEY_A, new byte[]{1}));
+    ExecutionLayer second = new ExecutionLayer().execute(() -> {
+      layered.put(KEY_A, new byte[]{2});
+      layered.getUnchecked(KEY_A);
+      layered.getUnchecked(KEY_C);
+    });
+    ExecutionLayer third = new ExecutionLayer().execute(() -> layered.has(KEY_A));
+
+    Map<IRevokingDB, Set<WrappedByteArray>> written = new HashMap<>();
+    first.commit(written);
+    Assert.assertFalse(second.readsAny(written));
+    second.commit(written);
+    Assert.assertTrue(third.readsAny(written));
+    Assert.assertArrayEquals(new byte[]{2}, db.getUnchecked(KEY_A));
+  }
+
+  @Test
+  public void testFailureAndIterationAreKept() {
+    ExecutionLayer failed = new ExecutionLayer().execute(() -> {
+      throw new ItemNotFoundException("missing");
+    });
+    Assert.assertTrue(failed.getFailure() instanceof ItemNotFoundException);
+    Assert.assertNull(ExecutionLayer.current());
+
+    ExecutionLayer iterated = new ExecutionLayer().execute(layered::iterator);
+    Assert.assertTrue(iterated.isUntracked());
+  }
+
+  @Test
+  public void testAfterCommit() {
+    AtomicInteger runs = new AtomicInteger();
+    ExecutionLayer.afterCommit(runs::incrementAndGet);
+    Assert.assertEquals(1, runs.get());
+
+    ExecutionLayer layer = new ExecutionLayer()
+        .execute(() -> ExecutionLayer.afterCommit(runs::incrementAndGet));
+    Assert.assertEquals(1, runs.get());
+    layer.commit(new HashMap<>());
+    Assert.assertEquals(2, runs.get());
+  }
+
+  @Test
+  public void testUpdatesAreMadeAtCommit() {
+    layered.put(KEY_A, ByteArray.fromLong(0));
+    ExecutionLayer first = new ExecutionLayer()
+        .execute(() -> Assert.assertTrue(ExecutionLayer.update(new Usage(2, 3))));
+    ExecutionLayer second = new ExecutionLayer()
+        .execute(() -> Assert.assertTrue(ExecutionLayer.update(new Usage(1, 3))));
+    Assert.assertEquals(0, ByteArray.toLong(layered.getUnchecked(KEY_A)));
+
+    // the shared row isn't a conflict, both add to it
+    Map<IRevokingDB, Set<WrappedByteArray>> written = new HashMap<>();
+    Assert.assertTrue(first.updatesHold());
+    first.commit(written);
+    Assert.assertFalse(second.readsAny(written));
+    Assert.assertTrue(second.updatesHold());
+    second.commit(written);
+    Assert.assertEquals(3, ByteArray.toLong(layered.getUnchecked(KEY_A)));
+
+    // made right away without a layer
+    Assert.assertFalse(ExecutionLayer.update(new Usage(1, 3)));
+    Assert.assertTrue(ExecutionLayer.update(new Usage(1, 4)));
+    Assert.assertEquals(4, ByteArray.toLong(layered.getUnchecked(KEY_A)));
+  }
+
+  @Test
+  public void testUpdateThatNoLongerFits() {
+    layered.put(KEY_A, ByteArray.fromLong(0));
+    ExecutionLayer first = new ExecutionLayer()
+        .execute(() -> ExecutionLayer.update(new Usage(2, 3)));
+    ExecutionLayer second = new ExecutionLayer()
+        .execute(() -> ExecutionLayer.update(new Usage(2, 3)));
+    ExecutionLayer third = new ExecutionLayer()
+        .execute(() -> Assert.assertFalse(ExecutionLayer.update(new Usage(4, 3))));
+
+    first.commit(new HashMap<>());
+    // executed now the second one would find no room left
+    Assert.assertFalse(second.updatesHold());
+    // and the third one still doesn't fit, which it didn't either
+    Assert.assertTrue(third.updatesHold());
+    third.commit(new HashMap<>());
+    Assert.assertEquals(2, ByteArray.toLong(layered.getUnchecked(KEY_A)));
+  }
+
+  /**
+   * adds to the usage in row a up to a limit.
+   */
+  private class Usage implements ExecutionLayer.Update {
+
+    private final long amount;
+    private final long limit;
+
+    Usage(long amount, long limit) {
+      this.amount = amount;
+      this.limit = limit;
+    }
+
+    @Override
+    public boolean fits() {
+      return ByteArray.toLong(layered.getUnchecked(KEY_A)) + amount <= limit;
+    }
+
+    @Override
+    public void apply() {
+      long usage = ByteArray.toLong(layered.getUnchecked(KEY_A));
+      layered.put(KEY_A, ByteArray.fromLong(usage + amount));
+    }
+  }
+
+  private static class MapRevokingDB implements IRevokingDB {
+
+    private final Map<WrappedByteArray, byte[]> rows = new HashMap<>();
+
+    @Override
+    public void put(byte[] key, byte[] newValue) {
+      rows.put(WrappedByteArray.of(key), newValue);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      rows.remove(WrappedByteArray.of(key));
+    }
+
+    @Override
+    public boolean has(byte[] key) {
+      return rows.containsKey(WrappedByteArray.of(key));
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws ItemNotFoundException {
+      byte[] value = rows.get(WrappedByteArray.of(key));
+      if (value == null) {
+        throw new ItemNotFoundException();
+      }
+      return value;
+    }
+
+    @Override
+    public byte[] getUnchecked(byte[] key) {
+      return rows.get(WrappedByteArray.of(key));
+    }
+
+    @Override
+    public List<byte[]> getAll(List<byte[]> keys) {
+      return keys.stream().map(this::getUnchecked).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void reset() {
+      rows.clear();
+    }
+
+    @Override
+    public Set<byte[]> getlatestValues(long limit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<byte[]> getValuesNext(byte[] key, long limit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Map.Entry<byte[], byte[]>> iterator() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
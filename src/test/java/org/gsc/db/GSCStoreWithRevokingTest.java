@@ -0,0 +1,64 @@
+package org.gsc.db;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.config.args.Args;
+import org.gsc.core.wrapper.WitnessWrapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GSCStoreWithRevokingTest {
+
+  private static final String dbPath = "output_GSCStoreWithRevoking_test";
+  private WitnessStore witnessStore;
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, "config-test-mainnet.conf");
+    Args.getInstance().getStorage().setDecodedCacheSize(16);
+    witnessStore = new WitnessStore("witness-decoded-test");
+  }
+
+  @After
+  public void destroy() {
+    witnessStore.close();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Test
+  public void testDecodedCache() {
+    byte[] key = "witness".getBytes();
+    witnessStore.put(key, new WitnessWrapper(ByteString.copyFrom(key), 10, "url"));
+
+    WitnessWrapper first = witnessStore.get(key);
+    WitnessWrapper second = witnessStore.get(key);
+    Assert.assertEquals(2, witnessStore.getDecodedCacheHitCount());
+    Assert.assertNotSame(first, second);
+
+    // a caller changing its wrapper must not change what the next reader sees
+    first.setVoteCount(20);
+    Assert.assertEquals(10, witnessStore.get(key).getVoteCount());
+
+    witnessStore.put(key, first);
+    Assert.assertEquals(20, witnessStore.getUnchecked(key).getVoteCount());
+
+    witnessStore.delete(key);
+    Assert.assertNull(witnessStore.get(key));
+  }
+
+  @Test
+  public void testStaleBytesAreDecodedAgain() {
+    byte[] key = "witness".getBytes();
+    witnessStore.put(key, new WitnessWrapper(ByteString.copyFrom(key), 10, "url"));
+    witnessStore.get(key);
+
+    // a row changed below the store, as revoking a snapshot does
+    witnessStore.revokingDB.put(key,
+        new WitnessWrapper(ByteString.copyFrom(key), 30, "url").getData());
+    Assert.assertEquals(30, witnessStore.get(key).getVoteCount());
+  }
+}
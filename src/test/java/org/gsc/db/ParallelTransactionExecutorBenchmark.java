@@ -0,0 +1,148 @@
+package org.gsc.db;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.application.GSCApplicationContext;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.config.DefaultConfig;
+import org.gsc.config.args.Args;
+import org.gsc.core.Wallet;
+import org.gsc.core.db2.core.ISession;
+import org.gsc.core.wrapper.AccountWrapper;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.core.wrapper.TransactionWrapper;
+import org.gsc.protos.Contract.TransferContract;
+import org.gsc.protos.Protocol.AccountType;
+import org.gsc.protos.Protocol.Transaction.Contract.ContractType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * A block of transfers between distinct accounts, each paid for with free net, executed by the
+ * transaction executor with one thread and with several, reported as blocks per second with the
+ * transactions executed again after their run next to it. Every block is revoked once executed,
+ * its transactions expire a millisecond later than the ones of the block before so none is a dup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelTransactionExecutorBenchmark {
+
+  private static final String dbPath = "output_parallel_executor_benchmark";
+
+  @Param({"1", "4"})
+  public int threads;
+
+  @Param({"256"})
+  public int transfers;
+
+  private GSCApplicationContext context;
+  private Manager manager;
+  private ParallelTransactionExecutor executor;
+  private BlockWrapper head;
+  private long expiration;
+  private BlockWrapper block;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Args.setParam(new String[]{"-d", dbPath}, "config-test-mainnet.conf");
+    Args.getInstance().setValidateSignThreadNum(1);
+    context = new GSCApplicationContext(DefaultConfig.class);
+    manager = context.getBean(Manager.class);
+    executor = new ParallelTransactionExecutor(manager, threads);
+    head = manager.getGenesisBlock();
+    expiration = manager.getHeadBlockTimeStamp() + TimeUnit.HOURS.toMillis(1);
+    for (int i = 0; i < 2 * transfers; i++) {
+      AccountWrapper account = new AccountWrapper(ByteString.copyFromUtf8("account" + i),
+          ByteString.copyFrom(address(i)), AccountType.Normal, 1_000_000_000L);
+      manager.getAccountStore().put(account.createDbKey(), account);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void nextBlock() {
+    ++expiration;
+    block = new BlockWrapper(head.getNum() + 1, head.getBlockId(), head.getTimeStamp() + 3000,
+        ByteString.EMPTY);
+    block.generatedByMyself = true;
+    for (int i = 0; i < transfers; i++) {
+      TransferContract transfer = TransferContract.newBuilder()
+          .setOwnerAddress(ByteString.copyFrom(address(2 * i)))
+          .setToAddress(ByteString.copyFrom(address(2 * i + 1)))
+          .setAmount(1)
+          .build();
+      TransactionWrapper trx = new TransactionWrapper(transfer, ContractType.TransferContract);
+      trx.setReference(head.getNum(), head.getBlockId().getBytes());
+      trx.setExpiration(expiration);
+      trx.setVerified(true);
+      block.addTransaction(trx);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executor.close();
+    Args.clearParam();
+    context.destroy();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Benchmark
+  public void executeBlock(Reexecuted reexecuted) throws Exception {
+    long before = executor.getReexecuted();
+    try (ISession session = manager.getRevokingStore().buildSession()) {
+      executor.execute(block);
+    }
+    reexecuted.transactions += executor.getReexecuted() - before;
+  }
+
+  private static byte[] address(int i) {
+    byte[] address = new byte[21];
+    address[0] = Wallet.getAddressPreFixByte();
+    address[17] = (byte) (i >>> 24);
+    address[18] = (byte) (i >>> 16);
+    address[19] = (byte) (i >>> 8);
+    address[20] = (byte) i;
+    return address;
+  }
+
+  /**
+   * Transactions executed again in an iteration, which JMH turns into a rate.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Reexecuted {
+
+    public long transactions;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      transactions = 0;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(ParallelTransactionExecutorBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,78 @@
+package org.gsc.db;
+
+import com.google.common.primitives.Longs;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.Constant;
+import org.gsc.db.RecentTransactionIndex.State;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecentTransactionIndexTest {
+
+  private static final long HEAD = 1_000_000_000L;
+  private static final long COVERED = HEAD + Constant.MAXIMUM_TIME_UNTIL_EXPIRATION;
+
+  private static Sha256Hash id(long i) {
+    return Sha256Hash.of(Longs.toByteArray(i));
+  }
+
+  @Test
+  public void testNotCoveredBeforeReset() {
+    RecentTransactionIndex index = new RecentTransactionIndex();
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(1), Long.MAX_VALUE - 1));
+  }
+
+  @Test
+  public void testLookup() {
+    RecentTransactionIndex index = new RecentTransactionIndex();
+    index.reset(HEAD);
+
+    // written before the restart, only the store knows
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(1), COVERED));
+    Assert.assertEquals(State.ABSENT, index.lookup(id(1), COVERED + 1));
+
+    // pending, the session may still be revoked
+    index.add(id(1), COVERED + 1);
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(1), COVERED + 1));
+
+    index.confirm(id(1), COVERED + 1);
+    Assert.assertEquals(State.PRESENT, index.lookup(id(1), COVERED + 1));
+
+    // fork switch erased the block
+    index.unconfirm(id(1));
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(1), COVERED + 1));
+    index.confirm(id(1), COVERED + 1);
+    Assert.assertEquals(State.PRESENT, index.lookup(id(1), COVERED + 1));
+  }
+
+  @Test
+  public void testExpire() {
+    RecentTransactionIndex index = new RecentTransactionIndex();
+    index.reset(HEAD);
+    long expiration = COVERED + 10 * 60 * 1_000L;
+    index.confirm(id(1), expiration);
+    index.confirm(id(2), expiration + 5 * 60 * 1_000L);
+
+    index.expire(expiration + 60 * 1_000L);
+    Assert.assertEquals(1, index.size());
+    Assert.assertEquals(State.PRESENT, index.lookup(id(2), expiration + 5 * 60 * 1_000L));
+    // the head may go back on a fork switch, dropped ids must not read as absent then
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(1), expiration));
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(3), expiration));
+
+    index.add(id(4), expiration);
+    Assert.assertEquals(1, index.size());
+  }
+
+  @Test
+  public void testBounded() {
+    RecentTransactionIndex index = new RecentTransactionIndex(100);
+    index.reset(HEAD);
+    for (int i = 0; i < 1000; i++) {
+      index.confirm(id(i), COVERED + 1 + i * 60 * 1_000L);
+    }
+    Assert.assertTrue(index.size() <= 100);
+    Assert.assertEquals(State.UNKNOWN, index.lookup(id(0), COVERED + 1));
+    Assert.assertEquals(State.PRESENT, index.lookup(id(999), COVERED + 1 + 999 * 60 * 1_000L));
+  }
+}
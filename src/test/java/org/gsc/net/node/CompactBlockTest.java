@@ -0,0 +1,153 @@
+package org.gsc.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.net.message.BlockTransactionsMessage;
+import org.gsc.net.message.CompactBlockMessage;
+import org.gsc.net.message.FetchBlockTransactionsMessage;
+import org.gsc.net.message.GSCMessage;
+import org.gsc.net.message.GSCMessageFactory;
+import org.gsc.net.message.TransactionMessage;
+import org.gsc.net.peer.PeerConnection;
+import org.gsc.protos.Protocol.Block;
+import org.gsc.protos.Protocol.Transaction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A block relayed as a compact block and rebuilt from the transactions the receiving node has,
+ * the messages between the nodes going through their wire encoding.
+ */
+public class CompactBlockTest {
+
+  private static final int TRANSACTIONS = 50;
+
+  private GSCMessageFactory factory = new GSCMessageFactory();
+  private PeerConnection peer = new PeerConnection();
+  private BlockWrapper block;
+
+  @Before
+  public void init() {
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < TRANSACTIONS; i++) {
+      transactions.add(newTransaction(i));
+    }
+    block = new BlockWrapper(System.currentTimeMillis(), Sha256Hash.ZERO_HASH.getByteString(), 1,
+        transactions);
+    block.setMerkleRoot();
+  }
+
+  private static Transaction newTransaction(long i) {
+    return Transaction.newBuilder().setRawData(Transaction.raw.newBuilder()
+        .setTimestamp(i).setData(ByteString.copyFromUtf8("transfer " + i))).build();
+  }
+
+  // through the encoding of the wire to the other node
+  private <T> T send(GSCMessage message, Class<T> type) throws Exception {
+    byte[] encoded = new byte[message.getData().length + 1];
+    encoded[0] = message.getType().asByte();
+    System.arraycopy(message.getData(), 0, encoded, 1, message.getData().length);
+    return type.cast(factory.create(encoded));
+  }
+
+  // what the sender of the block answers
+  private BlockTransactionsMessage serve(BlockWrapper block, FetchBlockTransactionsMessage fetch)
+      throws Exception {
+    FetchBlockTransactionsMessage received = send(fetch, FetchBlockTransactionsMessage.class);
+    Assert.assertEquals(block.getBlockId(), received.getBlockId());
+    List<Transaction> transactions = new ArrayList<>();
+    received.getIndexes().forEach(i -> transactions.add(block.getInstance().getTransactions(i)));
+    return send(new BlockTransactionsMessage(received.getBlockId(), transactions),
+        BlockTransactionsMessage.class);
+  }
+
+  @Test
+  public void testRebuildFromKnownTransactions() throws Exception {
+    CompactBlockMessage compact = send(new CompactBlockMessage(block, 7L),
+        CompactBlockMessage.class);
+    Assert.assertEquals(block.getBlockId(), compact.getBlockId());
+    Assert.assertEquals(TRANSACTIONS, compact.getTransactionCount());
+    Assert.assertTrue(compact.getData().length < block.getData().length / 2);
+
+    // all but a few, and some the block doesn't have
+    List<TransactionMessage> known = new ArrayList<>();
+    for (int i = 0; i < TRANSACTIONS; i++) {
+      if (i % 10 != 3) {
+        known.add(new TransactionMessage(block.getInstance().getTransactions(i)));
+      }
+    }
+    for (int i = TRANSACTIONS; i < 3 * TRANSACTIONS; i++) {
+      known.add(new TransactionMessage(newTransaction(i)));
+    }
+
+    PartialBlock partial = new PartialBlock(peer, compact, known);
+    Assert.assertEquals(Arrays.asList(3, 13, 23, 33, 43), partial.getMissing());
+    FetchBlockTransactionsMessage fetch = new FetchBlockTransactionsMessage(
+        compact.getBlockId(), partial.request(false));
+    Assert.assertTrue(partial.fill(serve(block, fetch).getTransactions()));
+    Assert.assertTrue(partial.isComplete());
+
+    BlockWrapper rebuilt = partial.toBlock();
+    Assert.assertTrue(rebuilt.validateMerkleRoot());
+    Assert.assertEquals(block.getBlockId(), rebuilt.getBlockId());
+    Assert.assertArrayEquals(block.getData(), rebuilt.getData());
+  }
+
+  @Test
+  public void testSaltChangesShortIds() {
+    CompactBlockMessage compact = new CompactBlockMessage(block, 7L);
+    CompactBlockMessage other = new CompactBlockMessage(block, 8L);
+    Sha256Hash trxId = block.getTransactions().get(0).getTransactionId();
+    Assert.assertEquals(compact.shortIdOf(trxId), compact.getShortId(0));
+    Assert.assertNotEquals(compact.shortIdOf(trxId), other.shortIdOf(trxId));
+  }
+
+  @Test
+  public void testWrongTransactionFallsBackToAll() throws Exception {
+    // the short id of another transaction sits where a transaction of the block belongs, as if
+    // they collided
+    Transaction other = newTransaction(TRANSACTIONS);
+    BlockWrapper colliding = new BlockWrapper(
+        block.getInstance().toBuilder().setTransactions(5, other).build());
+    CompactBlockMessage compact = send(new CompactBlockMessage(colliding, 7L),
+        CompactBlockMessage.class);
+
+    List<TransactionMessage> known = new ArrayList<>();
+    colliding.getInstance().getTransactionsList()
+        .forEach(trx -> known.add(new TransactionMessage(trx)));
+    PartialBlock partial = new PartialBlock(peer, compact, known);
+    Assert.assertTrue(partial.isComplete());
+    Assert.assertFalse(partial.toBlock().validateMerkleRoot());
+
+    List<Integer> all = partial.request(true);
+    Assert.assertEquals(TRANSACTIONS, all.size());
+    Assert.assertTrue(partial.isFullyRequested());
+    Assert.assertFalse(partial.fill(new ArrayList<>()));
+    FetchBlockTransactionsMessage fetch = new FetchBlockTransactionsMessage(
+        compact.getBlockId(), all);
+    Assert.assertTrue(partial.fill(serve(block, fetch).getTransactions()));
+    Assert.assertTrue(partial.toBlock().validateMerkleRoot());
+    Assert.assertArrayEquals(block.getData(), partial.toBlock().getData());
+  }
+
+  @Test
+  public void testAmbiguousTransactionIsFetched() {
+    CompactBlockMessage compact = new CompactBlockMessage(block, 7L);
+    Block twice = block.getInstance().toBuilder()
+        .setTransactions(9, block.getInstance().getTransactions(8)).build();
+    CompactBlockMessage duplicated = new CompactBlockMessage(new BlockWrapper(twice), 7L);
+
+    List<TransactionMessage> known = new ArrayList<>();
+    block.getInstance().getTransactionsList()
+        .forEach(trx -> known.add(new TransactionMessage(trx)));
+    Assert.assertTrue(new PartialBlock(peer, compact, known).isComplete());
+    // a short id twice in the block can't tell which transaction goes where
+    Assert.assertEquals(Arrays.asList(8, 9),
+        new PartialBlock(peer, duplicated, known).getMissing());
+  }
+}
@@ -0,0 +1,231 @@
+package org.gsc.net.node;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.config.args.Args;
+import org.gsc.core.db2.core.ISession;
+import org.gsc.core.db2.core.RevokingDBWithCachingNewValue;
+import org.gsc.core.db2.core.SnapshotManager;
+import org.gsc.core.db2.core.StateCheckpoint;
+import org.gsc.core.exception.RevokingStoreIllegalStateException;
+import org.gsc.db.common.WrappedByteArray;
+import org.gsc.net.message.FetchStateChunkMessage;
+import org.gsc.net.message.FetchStateManifestMessage;
+import org.gsc.net.message.GSCMessage;
+import org.gsc.net.message.GSCMessageFactory;
+import org.gsc.net.message.StateChunkMessage;
+import org.gsc.net.message.StateManifestMessage;
+import org.gsc.net.peer.PeerConnection;
+import org.gsc.protos.Protocol.StateChunk;
+import org.gsc.protos.Protocol.StateManifest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A node restoring its stores from the state checkpoint of another one, the messages between them
+ * going through their wire encoding.
+ */
+public class StateSyncTest {
+
+  private static final String serverPath = "output_state_sync_server";
+  private static final String clientPath = "output_state_sync_client";
+  private static final int ACCOUNTS = 3000;
+
+  private GSCMessageFactory factory = new GSCMessageFactory();
+  private SnapshotManager server;
+  private RevokingDBWithCachingNewValue serverAccount;
+  private RevokingDBWithCachingNewValue serverWitness;
+  private SnapshotManager client;
+  private RevokingDBWithCachingNewValue clientAccount;
+  private RevokingDBWithCachingNewValue clientWitness;
+  private StateCheckpoint checkpoint;
+
+  @Before
+  public void init() throws Exception {
+    Args.setParam(new String[]{"-d", serverPath}, "config-test-mainnet.conf");
+    server = new SnapshotManager();
+    serverAccount = new RevokingDBWithCachingNewValue("state-sync-account");
+    serverWitness = new RevokingDBWithCachingNewValue("state-sync-witness");
+    server.add(serverAccount);
+    server.add(serverWitness);
+    server.enable();
+    server.check();
+
+    server.setMaxSize(1);
+    byte[] balance = new byte[1024];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      try (ISession session = server.buildSession()) {
+        serverAccount.put(("account" + i).getBytes(), balance);
+        if (i % 100 == 0) {
+          serverWitness.put(("witness" + i).getBytes(), ("vote" + i).getBytes());
+        }
+        session.commit();
+      }
+    }
+    // the last block stays above the flushed ones
+    server.flush();
+    checkpoint = server.checkpoint(ACCOUNTS - 1, Sha256Hash.of("block".getBytes())).get();
+
+    Args.setParam(new String[]{"-d", clientPath}, "config-test-mainnet.conf");
+    client = new SnapshotManager();
+    clientAccount = new RevokingDBWithCachingNewValue("state-sync-account");
+    clientWitness = new RevokingDBWithCachingNewValue("state-sync-witness");
+    client.add(clientAccount);
+    client.add(clientWitness);
+    client.enable();
+    client.check();
+    clientAccount.put("genesis".getBytes(), "balance".getBytes());
+  }
+
+  @After
+  public void removeDb() {
+    checkpoint.close();
+    server.shutdown();
+    serverAccount.close();
+    serverWitness.close();
+    client.shutdown();
+    clientAccount.close();
+    clientWitness.close();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(serverPath));
+    FileUtil.deleteDir(new File(clientPath));
+  }
+
+  // through the encoding of the wire to the other node
+  private <T> T send(GSCMessage message, Class<T> type) throws Exception {
+    byte[] encoded = new byte[message.getData().length + 1];
+    encoded[0] = message.getType().asByte();
+    System.arraycopy(message.getData(), 0, encoded, 1, message.getData().length);
+    return type.cast(factory.create(encoded));
+  }
+
+  // what the server answers to a manifest request
+  private StateManifest serveManifest(FetchStateManifestMessage request) {
+    return request.getBlockNum() == checkpoint.getBlockNum() ? checkpoint.getManifest()
+        : StateManifest.getDefaultInstance();
+  }
+
+  @Test
+  public void testRestoreFromPeer() throws Exception {
+    StateManifest manifest = checkpoint.getManifest();
+    Assert.assertEquals(2, manifest.getStoresCount());
+    Assert.assertEquals(2, manifest.getStores(0).getChunkHashesCount());
+
+    StateSync sync = new StateSync(ACCOUNTS - 1, StateCheckpoint.rootOf(manifest));
+    PeerConnection peer = new PeerConnection();
+
+    FetchStateManifestMessage request = send(
+        new FetchStateManifestMessage(sync.getBlockNum()), FetchStateManifestMessage.class);
+    StateManifestMessage answer = send(new StateManifestMessage(serveManifest(request)),
+        StateManifestMessage.class);
+    Assert.assertTrue(sync.onManifest(peer, answer.getManifest()));
+    client.beginRestore();
+
+    boolean done = false;
+    while (!done) {
+      Map<PeerConnection, List<FetchStateChunkMessage>> requests =
+          sync.nextRequests(System.currentTimeMillis());
+      Assert.assertTrue(requests.get(peer).size() <= StateSync.MAX_CHUNKS_PER_PEER);
+      for (FetchStateChunkMessage fetch : requests.get(peer)) {
+        FetchStateChunkMessage received = send(fetch, FetchStateChunkMessage.class);
+        StateChunk chunk = send(new StateChunkMessage(
+            checkpoint.getChunk(received.getStore(), received.getIndex())),
+            StateChunkMessage.class).getChunk();
+        Assert.assertTrue(sync.isMissing(chunk));
+        Assert.assertTrue(sync.matches(chunk));
+        client.restore(chunk.getStore(), toRows(chunk));
+        done = sync.onRestored(chunk);
+      }
+    }
+    client.finishRestore();
+
+    Assert.assertTrue(sync.isDone());
+    Assert.assertNull(clientAccount.getUnchecked("genesis".getBytes()));
+    for (int i = 0; i < ACCOUNTS - 1; i++) {
+      Assert.assertNotNull(clientAccount.getUnchecked(("account" + i).getBytes()));
+    }
+    // the block above the checkpoint isn't part of it
+    Assert.assertNull(clientAccount.getUnchecked(("account" + (ACCOUNTS - 1)).getBytes()));
+    Assert.assertArrayEquals("vote2900".getBytes(),
+        clientWitness.getUnchecked("witness2900".getBytes()));
+  }
+
+  @Test
+  public void testRejectUntrustedData() {
+    StateManifest manifest = checkpoint.getManifest();
+    StateSync sync = new StateSync(ACCOUNTS - 1, Sha256Hash.of("other".getBytes()));
+    Assert.assertFalse(sync.onManifest(new PeerConnection(), manifest));
+    Assert.assertFalse(sync.isStarted());
+
+    sync = new StateSync(ACCOUNTS - 1, StateCheckpoint.rootOf(manifest));
+    PeerConnection liar = new PeerConnection();
+    PeerConnection honest = new PeerConnection();
+    Assert.assertTrue(sync.onManifest(liar, manifest));
+    Assert.assertTrue(sync.onManifest(honest, manifest));
+
+    // three chunks, all asked from the first peer
+    long now = System.currentTimeMillis();
+    Map<PeerConnection, List<FetchStateChunkMessage>> requests = sync.nextRequests(now);
+    Assert.assertEquals(3, requests.get(liar).size());
+    Assert.assertNull(requests.get(honest));
+    FetchStateChunkMessage fetch = requests.get(liar).get(0);
+    StateChunk chunk = checkpoint.getChunk(fetch.getStore(), fetch.getIndex());
+    StateChunk forged = chunk.toBuilder()
+        .setRows(0, chunk.getRows(0).toBuilder().setValue(ByteString.copyFromUtf8("rich")))
+        .build();
+    Assert.assertTrue(sync.isMissing(forged));
+    Assert.assertFalse(sync.matches(forged));
+
+    // what the liar was asked for goes to the honest peer
+    sync.remove(liar);
+    requests = sync.nextRequests(now);
+    Assert.assertFalse(requests.containsKey(liar));
+    Assert.assertEquals(3, requests.get(honest).size());
+
+    // a peer not answering in time isn't asked anymore
+    requests = sync.nextRequests(now + StateSync.CHUNK_TIMEOUT_MS);
+    Assert.assertTrue(requests.isEmpty());
+    Assert.assertEquals(3, sync.getMissingCount());
+  }
+
+  @Test
+  public void testUnknownStoreIsAskedAgain() {
+    StateManifest manifest = checkpoint.getManifest();
+    StateSync sync = new StateSync(ACCOUNTS - 1, StateCheckpoint.rootOf(manifest));
+    PeerConnection first = new PeerConnection();
+    PeerConnection second = new PeerConnection();
+    Assert.assertTrue(sync.onManifest(first, manifest));
+    Assert.assertTrue(sync.onManifest(second, manifest));
+    client.beginRestore();
+
+    long now = System.currentTimeMillis();
+    FetchStateChunkMessage fetch = sync.nextRequests(now).get(first).get(0);
+    StateChunk chunk = checkpoint.getChunk(fetch.getStore(), fetch.getIndex());
+    try {
+      client.restore("state-sync-unknown", toRows(chunk));
+      Assert.fail("the client has no such store");
+    } catch (RevokingStoreIllegalStateException e) {
+      Assert.assertTrue(sync.isMissing(chunk));
+    }
+
+    // the peer is dropped, the chunk goes to the other one
+    sync.remove(first);
+    Assert.assertTrue(sync.nextRequests(now).get(second).stream().anyMatch(
+        request -> request.getStore().equals(fetch.getStore())
+            && request.getIndex() == fetch.getIndex()));
+  }
+
+  private static Map<WrappedByteArray, WrappedByteArray> toRows(StateChunk chunk) {
+    Map<WrappedByteArray, WrappedByteArray> rows = new HashMap<>();
+    chunk.getRowsList().forEach(row -> rows.put(WrappedByteArray.of(row.getKey().toByteArray()),
+        WrappedByteArray.of(row.getValue().toByteArray())));
+    return rows;
+  }
+}
@@ -0,0 +1,56 @@
+package org.gsc.net.node;
+
+import org.gsc.net.peer.PeerConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SyncWindowTest {
+
+  @Test
+  public void testWindowFollowsApplyRate() {
+    SyncWindow window = new SyncWindow();
+    Assert.assertEquals(SyncWindow.MIN_WINDOW, window.getWindow());
+
+    // 30 s of blocks taking 10 ms each
+    window.onApplied(10_000_000);
+    Assert.assertEquals(3000, window.getWindow());
+
+    // a faster block moves the average a bit
+    window.onApplied(1_000_000);
+    Assert.assertEquals(3297, window.getWindow());
+
+    for (int i = 0; i < 100; i++) {
+      window.onApplied(1_000_000);
+    }
+    Assert.assertEquals(SyncWindow.MAX_WINDOW, window.getWindow());
+
+    for (int i = 0; i < 100; i++) {
+      window.onApplied(1_000_000_000);
+    }
+    Assert.assertEquals(SyncWindow.MIN_WINDOW, window.getWindow());
+  }
+
+  @Test
+  public void testPeerLimitFollowsRoundTrip() {
+    SyncWindow window = new SyncWindow();
+    PeerConnection near = new PeerConnection();
+    PeerConnection far = new PeerConnection();
+    Assert.assertEquals(SyncWindow.MAX_PER_PEER, window.getPeerLimit(near));
+
+    window.onApplied(10_000_000);
+    window.onFetch(near, 1000);
+    window.onReceived(near, 1100);
+    window.onFetch(far, 1000);
+    // a second fetch before the first one brought a block doesn't restart the round trip
+    window.onFetch(far, 1500);
+    window.onReceived(far, 4000);
+    // blocks of the same fetch that come after the first one aren't round trips
+    window.onReceived(far, 9000);
+
+    Assert.assertEquals(SyncWindow.MIN_PER_PEER, window.getPeerLimit(near));
+    Assert.assertEquals(600, window.getPeerLimit(far));
+
+    window.remove(far);
+    Assert.assertEquals(SyncWindow.MAX_PER_PEER, window.getPeerLimit(far));
+  }
+}
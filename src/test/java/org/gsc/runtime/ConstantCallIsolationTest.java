@@ -0,0 +1,221 @@
+package org.gsc.runtime;
+
+import static org.gsc.runtime.utils.MUtil.convertTogscAddress;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.application.GSCApplicationContext;
+import org.gsc.common.storage.DepositImpl;
+import org.gsc.common.utils.FileUtil;
+import org.gsc.config.DefaultConfig;
+import org.gsc.config.args.Args;
+import org.gsc.core.Wallet;
+import org.gsc.core.exception.ContractValidateException;
+import org.gsc.core.wrapper.BlockWrapper;
+import org.gsc.db.Manager;
+import org.gsc.protos.Protocol.AccountType;
+import org.gsc.protos.Protocol.Transaction;
+import org.gsc.runtime.vm.DataWord;
+import org.gsc.runtime.vm.PrecompiledContracts;
+import org.gsc.runtime.vm.PrecompiledContracts.PrecompiledContract;
+import org.gsc.runtime.vm.VM;
+import org.gsc.runtime.vm.program.InternalTransaction;
+import org.gsc.runtime.vm.program.Program;
+import org.gsc.runtime.vm.program.invoke.ProgramInvokeMockImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.spongycastle.util.encoders.Hex;
+
+public class ConstantCallIsolationTest {
+
+  private static final String dbPath = "output_ConstantCallIsolationTest";
+
+  private ExecutorService executor;
+
+  @Before
+  public void init() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testRootTransactionPerThread() throws Exception {
+    Program.setRootTransactionId(new byte[]{1});
+    Program.setRootCallConstant(false);
+    Program.resetNonce();
+    Program.increaseNonce();
+
+    executor.submit(() -> {
+      Program.setRootTransactionId(new byte[]{2});
+      Program.setRootCallConstant(true);
+      Program.resetNonce();
+    }).get();
+    Assert.assertTrue(executor.submit(Program::getRootCallConstant).get());
+
+    Assert.assertArrayEquals(new byte[]{1}, Program.getRootTransactionId());
+    Assert.assertFalse(Program.getRootCallConstant());
+    Assert.assertEquals(1, Program.getNonce());
+  }
+
+  @Test
+  public void testPrecompiledContractCallPerThread() throws Exception {
+    PrecompiledContract contract = PrecompiledContracts.getContractForAddress(new DataWord(1));
+    contract.setCallerAddress(new byte[]{1});
+    contract.setRootCallConstant(false);
+
+    executor.submit(() -> {
+      contract.setCallerAddress(new byte[]{2});
+      contract.setRootCallConstant(true);
+    }).get();
+
+    Assert.assertArrayEquals(new byte[]{1}, contract.getCallerAddress());
+    Assert.assertFalse(contract.isRootCallConstant());
+    Assert.assertTrue(executor.submit(contract::isRootCallConstant).get());
+    contract.clearContext();
+  }
+
+  @Test
+  public void testPrecompiledContractContextCleared() {
+    PrecompiledContract identity = PrecompiledContracts.getContractForAddress(new DataWord(4));
+    Program.setRootCallConstant(false);
+
+    // PUSH1 0 for the out size, out offset, in size and in offset, PUSH1 4, GAS, STATICCALL
+    Program program = new Program(Hex.decode("600060006000600060045afa00"),
+        new EnergyInvoke(), new InternalTransaction(Transaction.getDefaultInstance()));
+    new VM().play(program);
+    Assert.assertNull(program.getResult().getException());
+    Assert.assertEquals(1, program.getStack().peek().intValue());
+
+    // the pooled thread doesn't keep the deposit and result of the call
+    Assert.assertNull(identity.getDeposit());
+    Assert.assertNull(identity.getResult());
+  }
+
+  @Test
+  public void testRejectedWhenQueueIsFull() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Manager dbManager = Mockito.mock(Manager.class);
+    Mockito.when(dbManager.getBlockStore()).thenAnswer(invocation -> {
+      started.countDown();
+      release.await();
+      return null;
+    });
+
+    int threadNum = Args.getInstance().getConstantCallThreadNum();
+    Args.getInstance().setConstantCallThreadNum(1);
+    ConstantCallExecutor constantCalls = new ConstantCallExecutor(dbManager);
+    ExecutorService callers = Executors.newCachedThreadPool();
+    try {
+      Transaction trx = Transaction.getDefaultInstance();
+      callers.submit(() -> constantCalls.execute(trx));
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < ConstantCallExecutor.MAX_PENDING_PER_THREAD; i++) {
+        callers.submit(() -> constantCalls.execute(trx));
+      }
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (constantCalls.getPendingCount() < ConstantCallExecutor.MAX_PENDING_PER_THREAD) {
+        Assert.assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+
+      try {
+        constantCalls.execute(trx);
+        Assert.fail("the queue of the only thread is full");
+      } catch (ContractValidateException e) {
+        Assert.assertEquals("too many constant calls pending, try again later", e.getMessage());
+      }
+    } finally {
+      release.countDown();
+      callers.shutdownNow();
+      constantCalls.shutdown();
+      Args.getInstance().setConstantCallThreadNum(threadNum);
+    }
+  }
+
+  @Test
+  public void testWritesAreDropped() throws Exception {
+    Args.setParam(new String[]{"--output-directory", dbPath, "--support-constant"},
+        "config-test-mainnet.conf");
+    // half the processors is none on a single one
+    Args.getInstance().setValidateSignThreadNum(1);
+    GSCApplicationContext context = new GSCApplicationContext(DefaultConfig.class);
+    try {
+      Manager dbManager = context.getBean(Manager.class);
+      dbManager.getDynamicPropertiesStore().saveAllowCreationOfContracts(1);
+      byte[] owner = Hex.decode(Wallet.getAddressPreFixString()
+          + "abd4b9367799eaa3197fecb144eb71de1e049abc");
+      DepositImpl deposit = DepositImpl.createRoot(dbManager);
+      deposit.createAccount(owner, AccountType.Normal);
+      deposit.addBalance(owner, 30000000000000L);
+
+      // kill() is declared constant, its code stores 1 at slot 0 and self-destructs:
+      // PUSH1 1, PUSH1 0, SSTORE, CALLER, SELFDESTRUCT
+      String abi = "[{\"constant\":true,\"inputs\":[],\"name\":\"kill\",\"outputs\":[],"
+          + "\"payable\":false,\"stateMutability\":\"view\",\"type\":\"function\"}]";
+      String code = "6007600d60003960076000f300" + "600160005533ff";
+      Transaction deploy = GVMTestUtils.generateDeploySmartContractAndGetTransaction("Kill",
+          owner, abi, code, 0, 1000000000L, 0, null);
+      Runtime created = GVMTestUtils.processTransactionAndReturnRuntime(deploy, deposit, null);
+      Assert.assertNull(created.getRuntimeError());
+      byte[] contract = Wallet.generateContractAddress(deploy);
+      Assert.assertNotNull(dbManager.getContractStore().get(contract));
+
+      // a head block past the genesis one, whose witness is an address
+      BlockWrapper head = new BlockWrapper(1, dbManager.getGenesisBlockId(),
+          System.currentTimeMillis(), ByteString.copyFrom(owner));
+      dbManager.getBlockStore().put(head.getBlockId().getBytes(), head);
+
+      Transaction trx = GVMTestUtils.generateTriggerSmartContractAndGetTransaction(owner,
+          contract, GVMTestUtils.parseABI("kill()", null), 0, 1000000000L);
+      Runtime runtime = context.getBean(ConstantCallExecutor.class).execute(trx);
+      Assert.assertNull(runtime.getResult().getException());
+      Assert.assertEquals(1, runtime.getResult().getDeleteAccounts().size());
+
+      Assert.assertNotNull(dbManager.getContractStore().get(contract));
+      Assert.assertNotNull(dbManager.getAccountStore().get(contract));
+      Assert.assertTrue(dbManager.getCodeStore().has(contract));
+      Assert.assertNull(DepositImpl.createRoot(dbManager).getStorageValue(contract,
+          new DataWord(0)));
+    } finally {
+      Args.clearParam();
+      context.destroy();
+      FileUtil.deleteDir(new File(dbPath));
+    }
+  }
+
+  /**
+   * The mock invoke with energy, no deadline and an owner its deposit has.
+   */
+  private static class EnergyInvoke extends ProgramInvokeMockImpl {
+
+    EnergyInvoke() {
+      DepositImpl deposit = DepositImpl.createRoot(null);
+      deposit.createAccount(convertTogscAddress(getOwnerAddress().getLast20Bytes()),
+          AccountType.Normal);
+      // a call commits into the parent, there are no stores under the root
+      setRepository((DepositImpl) deposit.newDepositChild());
+    }
+
+    @Override
+    public long getEnergyLimit() {
+      return 1_000_000;
+    }
+
+    @Override
+    public long getVmShouldEndInUs() {
+      return Long.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package org.gsc.runtime.vm;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.gsc.runtime.vm.PrecompiledContracts.PrecompiledContract;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+public class BN128PrecompilesTest {
+
+  private static final String G1 =
+      "0000000000000000000000000000000000000000000000000000000000000001"
+          + "0000000000000000000000000000000000000000000000000000000000000002";
+  private static final String G1_NEG =
+      "0000000000000000000000000000000000000000000000000000000000000001"
+          + "30644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd45";
+  private static final String G2 =
+      "198e9393920d483a7260bfb731fb5d25f1aa493335a9e71297e485b7aef312c2"
+          + "1800deef121f1e76426a00665e5c4479674322d4f75edadd46debd5cd992f6ed"
+          + "090689d0585ff075ec9e99ad690c3395bc4b313370b38ef355acdadcd122975b"
+          + "12c85ea5db8c6deb4aab71808dcb408fe3d1e7690c43d37b4ce6cc0166fa7daa";
+  private static final String G1_DOUBLE =
+      "030644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd3"
+          + "15ed738c0e0a7c92e7845f96b2ae9c0a68a6a449e3538fc7ff3ebf7a5a18a2c4";
+  private static final String SCALAR =
+      "30586f85e8fcea91c0db1ed30aacf7350a2a1d5a2d4de1b9d3d2b53cbd0e9d47";
+  private static final String G1_TIMES_SCALAR =
+      "19b22d56b7f1eb6299a103b0acc2af02ce383c491d38e4515e51140704876748"
+          + "2bf2112c5b92faafe5a9309ce17ca1a873b5cdbe9412501d1f6ee4b0e722d3b1";
+  private static final String ONE =
+      "0000000000000000000000000000000000000000000000000000000000000001";
+  private static final String ZERO =
+      "0000000000000000000000000000000000000000000000000000000000000000";
+
+  @Test
+  public void testAddition() {
+    Assert.assertEquals(G1_DOUBLE, execute(6, G1 + G1));
+    Assert.assertEquals(G1, execute(6, G1 + ZERO + ZERO));
+    Assert.assertEquals(ZERO + ZERO, execute(6, G1 + G1_NEG));
+  }
+
+  @Test
+  public void testMultiplication() {
+    Assert.assertEquals(G1_DOUBLE,
+        execute(7, G1 + "0000000000000000000000000000000000000000000000000000000000000002"));
+    Assert.assertEquals(G1_TIMES_SCALAR, execute(7, G1 + SCALAR));
+  }
+
+  @Test
+  public void testPairing() {
+    Assert.assertEquals(ONE, execute(8, G1 + G2 + G1_NEG + G2));
+    Assert.assertEquals(ZERO, execute(8, G1 + G2));
+    Assert.assertEquals(ONE, execute(8, ""));
+  }
+
+  @Test
+  public void testInvalidPoints() {
+    // not on the curve, and a coordinate not below the field modulus
+    String offCurve = ONE + "0000000000000000000000000000000000000000000000000000000000000003";
+    String tooLarge = "30644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd48"
+        + "0000000000000000000000000000000000000000000000000000000000000002";
+    Assert.assertFalse(contract(6).execute(Hex.decode(offCurve + G1)).getLeft());
+    Assert.assertFalse(contract(7).execute(Hex.decode(tooLarge + SCALAR)).getLeft());
+    Assert.assertFalse(contract(8).execute(Hex.decode(offCurve + G2)).getLeft());
+  }
+
+  private static String execute(int address, String input) {
+    Pair<Boolean, byte[]> out = contract(address).execute(Hex.decode(input));
+    Assert.assertTrue(out.getLeft());
+    return Hex.toHexString(out.getRight());
+  }
+
+  private static PrecompiledContract contract(int address) {
+    return PrecompiledContracts.getContractForAddress(new DataWord(address));
+  }
+}
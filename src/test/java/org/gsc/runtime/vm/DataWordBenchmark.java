@@ -0,0 +1,195 @@
+package org.gsc.runtime.vm;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.gsc.common.utils.ByteUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * DataWord arithmetic on limbs against the BigInteger round trips it replaced, on the opcode
+ * mixes of two kinds of contracts: ERC20 style transfers (balance checks, SafeMath add, sub, mul
+ * and div) and hashing style loops (MiMC like rounds of ADDMOD, MULMOD, EXP and MOD over a 254
+ * bit prime).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataWordBenchmark {
+
+  private static final int TRANSFERS = 1_000;
+  private static final int ROUNDS = 200;
+  private static final BigInteger PRIME = new BigInteger(
+      "21888242871839275222246405745257275088548364400416034343698204186575808495617");
+
+  private DataWord[] balances;
+  private DataWord[] amounts;
+  private DataWord price;
+  private DataWord prime;
+  private DataWord[] roundKeys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(0);
+    balances = new DataWord[TRANSFERS + 1];
+    amounts = new DataWord[TRANSFERS];
+    for (int i = 0; i <= TRANSFERS; i++) {
+      // 18 decimals tokens, past 64 bits like real balances
+      balances[i] = new DataWord(ByteUtil.copyToArray(
+          BigInteger.TEN.pow(24).add(BigInteger.valueOf(random.nextInt(Integer.MAX_VALUE)))));
+    }
+    for (int i = 0; i < TRANSFERS; i++) {
+      amounts[i] = new DataWord(ByteUtil.copyToArray(
+          BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(1 + random.nextInt(1000)))));
+    }
+    price = new DataWord(3_000_000L);
+    prime = new DataWord(ByteUtil.copyToArray(PRIME));
+    roundKeys = new DataWord[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      roundKeys[i] = new DataWord(ByteUtil.copyToArray(new BigInteger(250, random)));
+    }
+  }
+
+  @Benchmark
+  public void erc20Limbs(Blackhole blackhole) {
+    for (int i = 0; i < TRANSFERS; i++) {
+      DataWord from = balances[i].clone();
+      DataWord to = balances[i + 1].clone();
+      DataWord amount = amounts[i];
+      if (from.compareTo(amount) < 0) {
+        continue;
+      }
+      from.sub(amount);
+      to.add(amount);
+      // SafeMath mul: c = a * b; require(c / a == b)
+      DataWord value = amount.clone();
+      value.mul(price);
+      DataWord check = value.clone();
+      check.div(amount);
+      blackhole.consume(check.equals(price));
+      blackhole.consume(from);
+      blackhole.consume(to);
+    }
+  }
+
+  @Benchmark
+  public void erc20BigInteger(Blackhole blackhole) {
+    for (int i = 0; i < TRANSFERS; i++) {
+      byte[] from = balances[i].getData();
+      byte[] to = balances[i + 1].getData();
+      byte[] amount = amounts[i].getData();
+      if (new BigInteger(1, from).compareTo(new BigInteger(1, amount)) < 0) {
+        continue;
+      }
+      from = BigIntegerWord.sub(from, amount);
+      to = BigIntegerWord.add(to, amount);
+      byte[] value = BigIntegerWord.mul(amount, price.getData());
+      byte[] check = BigIntegerWord.div(value, amount);
+      blackhole.consume(Arrays.equals(check, price.getData()));
+      blackhole.consume(from);
+      blackhole.consume(to);
+    }
+  }
+
+  @Benchmark
+  public void hashingLimbs(Blackhole blackhole) {
+    DataWord state = roundKeys[0].clone();
+    DataWord five = new DataWord(5);
+    for (int i = 0; i < ROUNDS; i++) {
+      state.addmod(roundKeys[i], prime);
+      DataWord square = state.clone();
+      square.mulmod(state, prime);
+      DataWord fourth = square.clone();
+      fourth.mulmod(square, prime);
+      state.mulmod(fourth, prime);
+      DataWord power = state.clone();
+      power.exp(five);
+      power.mod(prime);
+      blackhole.consume(power);
+    }
+    blackhole.consume(state);
+  }
+
+  @Benchmark
+  public void hashingBigInteger(Blackhole blackhole) {
+    byte[] state = roundKeys[0].getData();
+    byte[] five = new DataWord(5).getData();
+    byte[] p = prime.getData();
+    for (int i = 0; i < ROUNDS; i++) {
+      state = BigIntegerWord.addmod(state, roundKeys[i].getData(), p);
+      byte[] square = BigIntegerWord.mulmod(state, state, p);
+      byte[] fourth = BigIntegerWord.mulmod(square, square, p);
+      state = BigIntegerWord.mulmod(state, fourth, p);
+      byte[] power = BigIntegerWord.mod(BigIntegerWord.exp(state, five), p);
+      blackhole.consume(power);
+    }
+    blackhole.consume(state);
+  }
+
+  /**
+   * The arithmetic DataWord had before the limbs.
+   */
+  private static class BigIntegerWord {
+
+    private static byte[] add(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).add(value(b)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] sub(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).subtract(value(b)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] mul(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).multiply(value(b)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] div(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).divide(value(b)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] mod(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).mod(value(b)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] exp(byte[] a, byte[] b) {
+      return ByteUtil.copyToArray(value(a).modPow(value(b), DataWord._2_256));
+    }
+
+    private static byte[] addmod(byte[] a, byte[] b, byte[] n) {
+      return ByteUtil.copyToArray(value(a).add(value(b)).mod(value(n)).and(DataWord.MAX_VALUE));
+    }
+
+    private static byte[] mulmod(byte[] a, byte[] b, byte[] n) {
+      return ByteUtil.copyToArray(
+          value(a).multiply(value(b)).mod(value(n)).and(DataWord.MAX_VALUE));
+    }
+
+    private static BigInteger value(byte[] data) {
+      return new BigInteger(1, data);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(DataWordBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -17,11 +17,17 @@
  */
 package org.gsc.runtime.vm;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
 import java.math.BigInteger;
+import java.util.Random;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
+import org.gsc.common.utils.ByteUtil;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
@@ -410,6 +416,178 @@ public class DataWordTest {
         assertTrue(wr.isZero());
     }
 
+    @Test
+    public void testArithmeticMatchesBigInteger() {
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            DataWord a = randomWord(random);
+            DataWord b = randomWord(random);
+            DataWord c = randomWord(random);
+            BigInteger x = a.value();
+            BigInteger y = b.value();
+            BigInteger z = c.value();
+            String context = a + " " + b + " " + c;
+
+            assertEquals(context, x.add(y).and(DataWord.MAX_VALUE), apply(a, w -> w.add(b)));
+            assertEquals(context, x.subtract(y).and(DataWord.MAX_VALUE), apply(a, w -> w.sub(b)));
+            assertEquals(context, x.multiply(y).and(DataWord.MAX_VALUE), apply(a, w -> w.mul(b)));
+            assertEquals(context, y.signum() == 0 ? BigInteger.ZERO : x.divide(y),
+                apply(a, w -> w.div(b)));
+            assertEquals(context, y.signum() == 0 ? BigInteger.ZERO : x.mod(y),
+                apply(a, w -> w.mod(b)));
+            assertEquals(context, z.signum() == 0 ? BigInteger.ZERO : x.add(y).mod(z),
+                apply(a, w -> w.addmod(b, c)));
+            assertEquals(context, z.signum() == 0 ? BigInteger.ZERO : x.multiply(y).mod(z),
+                apply(a, w -> w.mulmod(b, c)));
+
+            BigInteger sx = a.sValue();
+            BigInteger sy = b.sValue();
+            if (sy.signum() != 0) {
+                assertEquals(context, sx.divide(sy).and(DataWord.MAX_VALUE),
+                    apply(a, w -> w.sDiv(b)));
+                BigInteger mod = sx.abs().mod(sy.abs());
+                assertEquals(context, (sx.signum() == -1 ? mod.negate() : mod).and(DataWord.MAX_VALUE),
+                    apply(a, w -> w.sMod(b)));
+            }
+        }
+    }
+
+    @Test
+    public void testExpMatchesBigInteger() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            DataWord a = randomWord(random);
+            DataWord b = randomWord(random);
+            assertEquals(a + " " + b, a.value().modPow(b.value(), DataWord._2_256),
+                apply(a, w -> w.exp(b)));
+        }
+    }
+
+    @Test
+    public void testPowerOfTwoDivisors() {
+        Random random = new Random(2);
+        for (int bit = 0; bit < 256; bit++) {
+            DataWord a = randomWord(random);
+            DataWord b = new DataWord(ByteUtil.copyToArray(BigInteger.ONE.shiftLeft(bit)));
+            BigInteger x = a.value();
+            BigInteger y = b.value();
+            assertEquals(a + " " + bit, x.divide(y), apply(a, w -> w.div(b)));
+            assertEquals(a + " " + bit, x.mod(y), apply(a, w -> w.mod(b)));
+        }
+    }
+
+    @Test
+    public void testOwnOperand() {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            DataWord a = randomWord(random);
+            BigInteger x = a.value();
+            assertEquals(x.add(x).and(DataWord.MAX_VALUE), apply(a, w -> w.add(w)));
+            assertEquals(BigInteger.ZERO, apply(a, w -> w.sub(w)));
+            assertEquals(x.multiply(x).and(DataWord.MAX_VALUE), apply(a, w -> w.mul(w)));
+            assertEquals(x.modPow(x, DataWord._2_256), apply(a, w -> w.exp(w)));
+            if (x.signum() != 0) {
+                assertEquals(x.multiply(x).mod(x), apply(a, w -> w.mulmod(w, w)));
+            }
+        }
+    }
+
+    @Test
+    public void testDataKeptAcrossChanges() {
+        DataWord word = new DataWord(Hex.decode("0102"));
+        byte[] before = word.getData();
+        word.add(new DataWord(1));
+        assertEquals("0000000000000000000000000000000000000000000000000000000000000102",
+            Hex.toHexString(before));
+        assertEquals("0000000000000000000000000000000000000000000000000000000000000103",
+            word.toString());
+        assertEquals(0x03, word.getByte(31));
+        assertEquals(0x01, word.getByte(30));
+
+        word.set(7);
+        assertArrayEquals(new DataWord(7).getData(), word.getData());
+    }
+
+    @Test
+    public void testCallerArrayNotKept() {
+        byte[] bytes = new byte[32];
+        bytes[31] = 5;
+        DataWord word = new DataWord(bytes);
+        bytes[31] = 6;
+        assertEquals(5, word.intValue());
+        assertEquals(5, word.getData()[31]);
+        assertEquals(5, word.getByte(31));
+    }
+
+    @Test
+    public void testCompare() {
+        DataWord minusOne = new DataWord(Hex.decode(
+            "ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+        DataWord one = new DataWord(1);
+        assertEquals(1, minusOne.compareTo(one));
+        assertEquals(-1, minusOne.sCompareTo(one));
+        assertEquals(1, one.sCompareTo(minusOne));
+        assertEquals(0, one.sCompareTo(new DataWord(1)));
+        assertEquals(-1, new DataWord(Hex.decode("0100")).compareTo(new DataWord(Hex.decode("0101"))));
+    }
+
+    @Test
+    public void testArithmeticDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof ThreadMXBean)) {
+            return;
+        }
+        ThreadMXBean threads = (ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        DataWord a = new DataWord(Hex.decode(
+            "9999999999999999999999999999999999999999999999999999999999999999"));
+        DataWord b = new DataWord(Hex.decode("8888888888888888888888888888888888"));
+        DataWord c = new DataWord(Hex.decode("77777777777777777777777777"));
+        // the scratch digits of the divisions
+        a.div(b);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            a.add(b);
+            a.sub(c);
+            a.mul(b);
+            a.div(c);
+            a.mod(b);
+            a.addmod(b, c);
+            a.mulmod(b, c);
+            a.exp(c);
+            a.or(b);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+
+    private static BigInteger apply(DataWord word, Consumer<DataWord> op) {
+        DataWord result = word.clone();
+        op.accept(result);
+        assertEquals(32, result.getData().length);
+        return result.value();
+    }
+
+    // words of every length, with runs of zero and all one digits to hit the division corner cases
+    private static DataWord randomWord(Random random) {
+        byte[] data = new byte[32];
+        int from = random.nextInt(33);
+        for (int i = from; i < 32; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    data[i] = 0;
+                    break;
+                case 1:
+                    data[i] = (byte) 0xff;
+                    break;
+                default:
+                    data[i] = (byte) random.nextInt();
+            }
+        }
+        return new DataWord(data);
+    }
+
     private static BigInteger pow(BigInteger x, BigInteger y) {
         if (y.compareTo(BigInteger.ZERO) < 0)
             throw new IllegalArgumentException();
@@ -0,0 +1,78 @@
+package org.gsc.runtime.vm;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.crypto.ECKey;
+import org.gsc.crypto.ECKey.ECDSASignature;
+import org.gsc.runtime.vm.PrecompiledContracts.ECRecover;
+import org.gsc.runtime.vm.PrecompiledContracts.PrecompiledContract;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ECRecoverTest {
+
+  private final PrecompiledContract ecRecover =
+      PrecompiledContracts.getContractForAddress(new DataWord(1));
+
+  @Test
+  public void testRecoveredAddressIsMemoized() throws Exception {
+    ECKey key = ECKey.fromPrivate(BigInteger.valueOf(0x5eed));
+    byte[] hash = Sha256Hash.hash("memo".getBytes());
+    ECDSASignature signature = key.sign(hash);
+    byte[] input = new byte[128];
+    System.arraycopy(hash, 0, input, 0, 32);
+    input[63] = signature.v;
+    copyWord(signature.r, input, 64);
+    copyWord(signature.s, input, 96);
+
+    byte[] expected = new DataWord(ECKey.signatureToAddress(hash, signature)).getData();
+    byte[] first = ecRecover.execute(input).getRight();
+    Assert.assertArrayEquals(expected, first);
+    Assert.assertTrue(ECRecover.isMemoized(input));
+
+    // what a caller does with the result doesn't reach the memo
+    first[31] ^= 1;
+    Assert.assertArrayEquals(expected, ecRecover.execute(input.clone()).getRight());
+
+    // a different v recovers a different key, or none
+    input[63] ^= 1;
+    Assert.assertFalse(Arrays.equals(expected, ecRecover.execute(input).getRight()));
+  }
+
+  @Test
+  public void testShortInput() {
+    Assert.assertTrue(ecRecover.execute(new byte[64]).getLeft());
+    Assert.assertEquals(0, ecRecover.execute(new byte[64]).getRight().length);
+    Assert.assertEquals(0, ecRecover.execute(null).getRight().length);
+  }
+
+  @Test
+  public void testUnrecoverableKeyIsNotMemoized() {
+    // r in range, but no point of the curve has it as x
+    BigInteger p = new BigInteger(
+        "fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16);
+    BigInteger r = BigInteger.valueOf(1);
+    while (r.pow(3).add(BigInteger.valueOf(7)).modPow(p.shiftRight(1), p).equals(BigInteger.ONE)) {
+      r = r.add(BigInteger.ONE);
+    }
+    byte[] input = new byte[128];
+    input[63] = 27;
+    copyWord(r, input, 64);
+    input[127] = 1;
+
+    Assert.assertEquals(0, ecRecover.execute(input).getRight().length);
+    Assert.assertFalse(ECRecover.isMemoized(input));
+
+    // components out of range are no signature, that is kept
+    input[63] = 29;
+    Assert.assertEquals(0, ecRecover.execute(input).getRight().length);
+    Assert.assertTrue(ECRecover.isMemoized(input));
+  }
+
+  private static void copyWord(BigInteger value, byte[] to, int offset) {
+    byte[] bytes = value.toByteArray();
+    int length = Math.min(bytes.length, 32);
+    System.arraycopy(bytes, bytes.length - length, to, offset + 32 - length, length);
+  }
+}
@@ -0,0 +1,138 @@
+package org.gsc.runtime.vm;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.gsc.runtime.vm.program.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * VM memory as one doubling buffer against the linked list of 1KB chunks it replaced, on the
+ * access patterns of memory heavy contracts: ABI encoding a large array (MSTORE of every element
+ * behind the last one, then RETURN of the whole encoding) and a copy loop (MLOAD of every word of
+ * one array and MSTORE of it into another).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MemoryBenchmark {
+
+  private static final int WORD_SIZE = 32;
+
+  @Param({"1024", "16384"})
+  private int words;
+
+  @Benchmark
+  public void abiEncodeContiguous(Blackhole blackhole) {
+    Memory memory = new Memory();
+    byte[] word = new byte[WORD_SIZE];
+    for (int i = 0; i < words; i++) {
+      word[WORD_SIZE - 1] = (byte) i;
+      memory.write(i * WORD_SIZE, word, WORD_SIZE, false);
+    }
+    blackhole.consume(memory.read(0, words * WORD_SIZE));
+  }
+
+  @Benchmark
+  public void abiEncodeChunked(Blackhole blackhole) {
+    ChunkedMemory memory = new ChunkedMemory();
+    byte[] word = new byte[WORD_SIZE];
+    for (int i = 0; i < words; i++) {
+      word[WORD_SIZE - 1] = (byte) i;
+      memory.write(i * WORD_SIZE, word, WORD_SIZE);
+    }
+    blackhole.consume(memory.read(0, words * WORD_SIZE));
+  }
+
+  @Benchmark
+  public void copyLoopContiguous(Blackhole blackhole) {
+    Memory memory = new Memory();
+    int target = words * WORD_SIZE;
+    memory.extend(0, 2 * target);
+    for (int i = 0; i < words; i++) {
+      DataWord value = memory.readWord(i * WORD_SIZE);
+      memory.write(target + i * WORD_SIZE, value.getData(), WORD_SIZE, false);
+    }
+    blackhole.consume(memory);
+  }
+
+  @Benchmark
+  public void copyLoopChunked(Blackhole blackhole) {
+    ChunkedMemory memory = new ChunkedMemory();
+    int target = words * WORD_SIZE;
+    memory.extend(0, 2 * target);
+    for (int i = 0; i < words; i++) {
+      DataWord value = new DataWord(memory.read(i * WORD_SIZE, WORD_SIZE));
+      memory.write(target + i * WORD_SIZE, value.getData(), WORD_SIZE);
+    }
+    blackhole.consume(memory);
+  }
+
+  /**
+   * The reads and writes Memory had before, on a linked list of chunks.
+   */
+  private static class ChunkedMemory {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final List<byte[]> chunks = new LinkedList<>();
+
+    private byte[] read(int address, int size) {
+      extend(address, size);
+      byte[] data = new byte[size];
+      int chunkIndex = address / CHUNK_SIZE;
+      int chunkOffset = address % CHUNK_SIZE;
+      int start = 0;
+      while (start < size) {
+        byte[] chunk = chunks.get(chunkIndex++);
+        int toGrab = Math.min(size - start, CHUNK_SIZE - chunkOffset);
+        System.arraycopy(chunk, chunkOffset, data, start, toGrab);
+        chunkOffset = 0;
+        start += toGrab;
+      }
+      return data;
+    }
+
+    private void write(int address, byte[] data, int size) {
+      extend(address, size);
+      int chunkIndex = address / CHUNK_SIZE;
+      int chunkOffset = address % CHUNK_SIZE;
+      int start = 0;
+      while (start < size) {
+        byte[] chunk = chunks.get(chunkIndex++);
+        int toCapture = Math.min(size - start, CHUNK_SIZE - chunkOffset);
+        System.arraycopy(data, start, chunk, chunkOffset, toCapture);
+        chunkOffset = 0;
+        start += toCapture;
+      }
+    }
+
+    private void extend(int address, int size) {
+      while (chunks.size() * CHUNK_SIZE < address + size) {
+        chunks.add(new byte[CHUNK_SIZE]);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MemoryBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -529,6 +529,99 @@ public class MemoryTest {
         assertTrue(zero == 10);
     }
 
+    @Test
+    public void testGrowthKeepsContent() {
+        int[] boundaries = {1, WORD_SIZE - 1, WORD_SIZE, WORD_SIZE + 1, CHUNK_SIZE - 1, CHUNK_SIZE,
+            CHUNK_SIZE + 1, 2 * CHUNK_SIZE - 1, 2 * CHUNK_SIZE, 2 * CHUNK_SIZE + 1,
+            4 * CHUNK_SIZE + 1};
+        Memory memory = new Memory();
+        int written = 0;
+        for (int end : boundaries) {
+            // byte by byte, so every step of the growth happens with content in front of it
+            for (; written < end; written++) {
+                memory.write(written, new byte[]{pattern(written)}, 1, false);
+            }
+            Assert.assertEquals(memory.size(), calcSize(end, WORD_SIZE));
+            Assert.assertEquals(memory.internalSize(), calcSize(end, CHUNK_SIZE));
+            byte[] content = memory.read(0, end);
+            for (int i = 0; i < end; i++) {
+                Assert.assertEquals(content[i], pattern(i), "at " + i + " of " + end);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAcrossGrowth() {
+        Memory memory = new Memory();
+        byte[] first = new byte[CHUNK_SIZE];
+        Arrays.fill(first, (byte) 1);
+        memory.write(0, first, first.length, false);
+        Assert.assertEquals(memory.internalSize(), CHUNK_SIZE);
+
+        // straddles the end of the first chunk and makes the buffer grow
+        byte[] across = new byte[3 * WORD_SIZE];
+        Arrays.fill(across, (byte) 2);
+        memory.write(CHUNK_SIZE - WORD_SIZE, across, across.length, false);
+        Assert.assertEquals(memory.size(), CHUNK_SIZE + 2 * WORD_SIZE);
+        Assert.assertEquals(memory.internalSize(), 2 * CHUNK_SIZE);
+
+        byte[] content = memory.read(0, CHUNK_SIZE + 2 * WORD_SIZE);
+        for (int i = 0; i < content.length; i++) {
+            Assert.assertEquals(content[i], i < CHUNK_SIZE - WORD_SIZE ? 1 : 2, "at " + i);
+        }
+        Assert.assertEquals(memory.readByte(CHUNK_SIZE + 2 * WORD_SIZE), 0);
+    }
+
+    @Test
+    public void testReadExtendsToWordBoundary() {
+        Memory memory = new Memory();
+        Assert.assertEquals(memory.read(CHUNK_SIZE - 1, 2), new byte[2]);
+        Assert.assertEquals(memory.size(), CHUNK_SIZE + WORD_SIZE);
+        Assert.assertEquals(memory.internalSize(), 2 * CHUNK_SIZE);
+
+        // nothing to read extends nothing
+        Assert.assertEquals(memory.read(4 * CHUNK_SIZE, 0).length, 0);
+        Assert.assertEquals(memory.size(), CHUNK_SIZE + WORD_SIZE);
+    }
 
+    @Test
+    public void testReadWordIsCopy() {
+        Memory memory = new Memory();
+        byte[] data = new byte[WORD_SIZE];
+        Arrays.fill(data, (byte) 3);
+        memory.write(CHUNK_SIZE - 16, data, data.length, false);
+        DataWord word = memory.readWord(CHUNK_SIZE - 16);
+        assertArrayEquals(data, word.getData());
+
+        memory.write(CHUNK_SIZE - 16, new byte[WORD_SIZE], WORD_SIZE, false);
+        // growing the memory moves it to a new buffer, the word still doesn't change
+        memory.extend(0, 8 * CHUNK_SIZE);
+        assertArrayEquals(data, word.getData());
+    }
 
+    @Test
+    public void testChunksAfterGrowth() {
+        Memory memory = new Memory();
+        for (int i = 0; i < 3000; i++) {
+            memory.write(i, new byte[]{pattern(i)}, 1, false);
+        }
+        Assert.assertEquals(memory.getChunks().size(), 3);
+        for (int c = 0; c < 3; c++) {
+            byte[] chunk = memory.getChunks().get(c);
+            Assert.assertEquals(chunk.length, CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                int address = c * CHUNK_SIZE + i;
+                Assert.assertEquals(chunk[i], address < 3000 ? pattern(address) : 0);
+            }
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testExtendOverflow() {
+        new Memory().extend(Integer.MAX_VALUE, 1);
+    }
+
+    private static byte pattern(int address) {
+        return (byte) (address * 31 + 7);
+    }
 }
\ No newline at end of file
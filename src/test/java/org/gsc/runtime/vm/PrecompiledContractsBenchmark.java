@@ -0,0 +1,151 @@
+package org.gsc.runtime.vm;
+
+import ch.qos.logback.classic.Logger;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.gsc.common.utils.Sha256Hash;
+import org.gsc.crypto.ECKey;
+import org.gsc.crypto.ECKey.ECDSASignature;
+import org.gsc.runtime.vm.PrecompiledContracts.PrecompiledContract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * One call of a precompiled contract with a typical input. ecrecover cycles through more distinct
+ * signatures than its memo keeps, ecrecoverRepeated recovers the same one again and again. The
+ * pairing checks two pairs, as a zk verifier checking a proof against its key does at least.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrecompiledContractsBenchmark {
+
+  private static final String G1 =
+      "0000000000000000000000000000000000000000000000000000000000000001"
+          + "0000000000000000000000000000000000000000000000000000000000000002";
+  private static final String G1_NEG =
+      "0000000000000000000000000000000000000000000000000000000000000001"
+          + "30644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd45";
+  private static final String G1_DOUBLE =
+      "030644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd3"
+          + "15ed738c0e0a7c92e7845f96b2ae9c0a68a6a449e3538fc7ff3ebf7a5a18a2c4";
+  private static final String G2 =
+      "198e9393920d483a7260bfb731fb5d25f1aa493335a9e71297e485b7aef312c2"
+          + "1800deef121f1e76426a00665e5c4479674322d4f75edadd46debd5cd992f6ed"
+          + "090689d0585ff075ec9e99ad690c3395bc4b313370b38ef355acdadcd122975b"
+          + "12c85ea5db8c6deb4aab71808dcb408fe3d1e7690c43d37b4ce6cc0166fa7daa";
+  private static final String SCALAR =
+      "30586f85e8fcea91c0db1ed30aacf7350a2a1d5a2d4de1b9d3d2b53cbd0e9d47";
+  private static final String WORD =
+      "0000000000000000000000000000000000000000000000000000000000000020";
+  private static final int SIGNATURES = 4096;
+
+  @Param({"ecrecover", "ecrecoverRepeated", "sha256", "ripemd160", "modexp", "bn128add",
+      "bn128mul", "bn128pairing"})
+  public String precompile;
+
+  private PrecompiledContract contract;
+  private byte[][] inputs;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // the tests log at debug, a node runs at info
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+        .setLevel(ch.qos.logback.classic.Level.INFO);
+    switch (precompile) {
+      case "ecrecover":
+        contract = contract(1);
+        inputs = signatures(SIGNATURES);
+        break;
+      case "ecrecoverRepeated":
+        contract = contract(1);
+        inputs = signatures(1);
+        break;
+      case "sha256":
+        contract = contract(2);
+        inputs = new byte[][]{new byte[128]};
+        break;
+      case "ripemd160":
+        contract = contract(3);
+        inputs = new byte[][]{new byte[128]};
+        break;
+      case "modexp":
+        contract = contract(5);
+        inputs = new byte[][]{Hex.decode(WORD + WORD + WORD + SCALAR + SCALAR
+            + "30644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd47")};
+        break;
+      case "bn128add":
+        contract = contract(6);
+        inputs = new byte[][]{Hex.decode(G1 + G1_DOUBLE)};
+        break;
+      case "bn128mul":
+        contract = contract(7);
+        inputs = new byte[][]{Hex.decode(G1 + SCALAR)};
+        break;
+      case "bn128pairing":
+        contract = contract(8);
+        inputs = new byte[][]{Hex.decode(G1 + G2 + G1_NEG + G2)};
+        break;
+      default:
+        throw new IllegalArgumentException(precompile);
+    }
+  }
+
+  @Benchmark
+  public Pair<Boolean, byte[]> execute() {
+    next = next + 1 == inputs.length ? 0 : next + 1;
+    return contract.execute(inputs[next]);
+  }
+
+  private static byte[][] signatures(int count) {
+    ECKey key = ECKey.fromPrivate(BigInteger.valueOf(0x5eed));
+    byte[][] signatures = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      byte[] hash = Sha256Hash.hash(BigInteger.valueOf(i).toByteArray());
+      ECDSASignature signature = key.sign(hash);
+      byte[] input = new byte[128];
+      System.arraycopy(hash, 0, input, 0, 32);
+      input[63] = signature.v;
+      copyWord(signature.r, input, 64);
+      copyWord(signature.s, input, 96);
+      signatures[i] = input;
+    }
+    return signatures;
+  }
+
+  private static void copyWord(BigInteger value, byte[] to, int offset) {
+    byte[] bytes = value.toByteArray();
+    int length = Math.min(bytes.length, 32);
+    System.arraycopy(bytes, bytes.length - length, to, offset + 32 - length, length);
+  }
+
+  private static PrecompiledContract contract(int address) {
+    return PrecompiledContracts.getContractForAddress(new DataWord(address));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(PrecompiledContractsBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,41 @@
+package org.gsc.runtime.vm;
+
+import org.gsc.runtime.vm.program.ProgramPrecompile;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+public class ProgramPrecompileTest {
+
+  // PUSH2 0x5b5b, JUMPDEST, PUSH1 0x03, JUMP, an undefined code
+  private static final String CODE = "615b5b5b600356fe";
+
+  @Test
+  public void testJumpDestOutsidePushData() {
+    ProgramPrecompile precompile = ProgramPrecompile.compile(Hex.decode(CODE));
+    Assert.assertFalse(precompile.hasJumpDest(1));
+    Assert.assertFalse(precompile.hasJumpDest(2));
+    Assert.assertTrue(precompile.hasJumpDest(3));
+    Assert.assertFalse(precompile.hasJumpDest(-1));
+    Assert.assertFalse(precompile.hasJumpDest(100));
+
+    Assert.assertEquals(OpCode.PUSH2, precompile.getInstruction(0));
+    Assert.assertNull(precompile.getInstruction(1));
+    Assert.assertEquals(OpCode.JUMPDEST, precompile.getInstruction(3));
+    Assert.assertEquals(OpCode.JUMP, precompile.getInstruction(6));
+    Assert.assertNull(precompile.getInstruction(7));
+    Assert.assertNull(precompile.getInstruction(8));
+  }
+
+  @Test
+  public void testSameCodeIsAnalyzedOnce() {
+    byte[] code = Hex.decode(CODE + "00");
+    ProgramPrecompile first = ProgramPrecompile.of(code);
+    Assert.assertSame(first, ProgramPrecompile.of(code.clone()));
+
+    // the cached analysis doesn't depend on the array it was built from
+    code[3] = 0;
+    Assert.assertTrue(ProgramPrecompile.of(Hex.decode(CODE + "00")).hasJumpDest(3));
+    Assert.assertFalse(ProgramPrecompile.of(code).hasJumpDest(3));
+  }
+}
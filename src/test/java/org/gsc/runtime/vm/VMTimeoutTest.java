@@ -0,0 +1,121 @@
+/*
+ * gsc-core is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gsc-core is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gsc.runtime.vm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gsc.protos.Protocol.Transaction;
+import org.gsc.runtime.vm.program.InternalTransaction;
+import org.gsc.runtime.vm.program.Program;
+import org.gsc.runtime.vm.program.Program.OutOfResourceException;
+import org.gsc.runtime.vm.program.ProgramResult;
+import org.gsc.runtime.vm.program.invoke.ProgramInvokeMockImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * The clock is read once per basic block. A run past its deadline must still end the way it did
+ * when the clock was read before every instruction: out of time with all its energy spent, however
+ * its last block ends.
+ */
+@Slf4j
+public class VMTimeoutTest {
+
+  private static final long ENERGY_LIMIT = 1_000_000;
+
+  @Test
+  public void testTimeoutInLoop() {
+    // JUMPDEST, PUSH1 0, JUMP
+    assertOutOfTime("5b600056");
+  }
+
+  @Test
+  public void testTimeoutBeforeHalting() {
+    // PUSH1 1, PUSH1 2, ADD, then STOP, RETURN and REVERT
+    assertOutOfTime("600160020100");
+    assertOutOfTime("600160020160206000f3");
+    assertOutOfTime("600160020160206000fd");
+    // past a JUMPDEST, the block that halts is checked again
+    assertOutOfTime("5b600160020100");
+  }
+
+  @Test
+  public void testTimeoutRunningOffTheCode() {
+    // PUSH1 1, PUSH1 2, ADD
+    assertOutOfTime("6001600201");
+    // PUSH1 1, PUSH2 0x0203
+    assertOutOfTime("6001610203");
+  }
+
+  @Test
+  public void testFinishedRunKeepsItsResult() {
+    // PUSH1 0x2a, PUSH1 0, MSTORE, PUSH1 32, PUSH1 0, RETURN: the deadline passes after the
+    // RETURN started, a clock read after the run must not turn it into a timeout
+    Program program = play("602a60005260206000f3", new DeadlineInvoke(1));
+    Assert.assertNull(program.getResult().getException());
+    Assert.assertEquals(0x2a, new DataWord(program.getResult().getHReturn()).intValue());
+
+    // the same with REVERT
+    program = play("602a60005260206000fd", new DeadlineInvoke(1));
+    Assert.assertNull(program.getResult().getException());
+    Assert.assertTrue(program.getResult().isRevert());
+  }
+
+  @Test
+  public void testNoTimeoutInTime() {
+    Program program = play("600160020160206000f3", new DeadlineInvoke(Integer.MAX_VALUE));
+    Assert.assertNull(program.getResult().getException());
+    Assert.assertEquals(32, program.getResult().getHReturn().length);
+  }
+
+  private static void assertOutOfTime(String code) {
+    Program program = play(code, new DeadlineInvoke(0));
+    ProgramResult result = program.getResult();
+    Assert.assertTrue(code, result.getException() instanceof OutOfResourceException);
+    Assert.assertEquals(code, ENERGY_LIMIT, result.getEnergyUsed());
+    Assert.assertTrue(code, program.isStopped());
+  }
+
+  private static Program play(String code, DeadlineInvoke invoke) {
+    Program program = new Program(Hex.decode(code), invoke,
+        new InternalTransaction(Transaction.getDefaultInstance()));
+    new VM().play(program);
+    return program;
+  }
+
+  /**
+   * The mock invoke with energy, whose deadline passes after the clock was read a number of
+   * times.
+   */
+  private static class DeadlineInvoke extends ProgramInvokeMockImpl {
+
+    private int readsInTime;
+
+    DeadlineInvoke(int readsInTime) {
+      this.readsInTime = readsInTime;
+    }
+
+    @Override
+    public long getEnergyLimit() {
+      return ENERGY_LIMIT;
+    }
+
+    @Override
+    public long getVmShouldEndInUs() {
+      return readsInTime-- > 0 ? Long.MAX_VALUE : 0;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package org.gsc.runtime.vm.program;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.gsc.config.args.Args;
+import org.gsc.core.wrapper.StorageRowWrapper;
+import org.gsc.crypto.Hash;
+import org.gsc.db.StorageRowStore;
+import org.gsc.db.common.WrappedByteArray;
+import org.gsc.runtime.vm.DataWord;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class StoragePrefetchTest {
+
+  private int prefetchSlots;
+  private FakeStore store;
+
+  @Before
+  public void init() {
+    prefetchSlots = Args.getInstance().getStoragePrefetchSlots();
+    store = new FakeStore();
+  }
+
+  @After
+  public void destroy() {
+    Args.getInstance().setStoragePrefetchSlots(prefetchSlots);
+  }
+
+  @Test
+  public void testPredictRecentSlots() {
+    Args.getInstance().setStoragePrefetchSlots(2);
+    byte[] addrHash = "predict".getBytes();
+    Assert.assertTrue(StoragePrefetcher.predict(addrHash).isEmpty());
+
+    StoragePrefetcher.record(addrHash, Arrays.asList(new DataWord(1), new DataWord(2)), 0, 0);
+    Assert.assertEquals(Arrays.asList(new DataWord(1), new DataWord(2)),
+        StoragePrefetcher.predict(addrHash));
+
+    // used again it is the most recent one, the least recent falls out
+    StoragePrefetcher.record(addrHash, Arrays.asList(new DataWord(1), new DataWord(3)), 2, 1);
+    Assert.assertEquals(Arrays.asList(new DataWord(1), new DataWord(3)),
+        StoragePrefetcher.predict(addrHash));
+
+    Args.getInstance().setStoragePrefetchSlots(0);
+    Assert.assertTrue(StoragePrefetcher.predict(addrHash).isEmpty());
+  }
+
+  @Test
+  public void testPrefetchedReadsMatchDirectReads() {
+    byte[] address = "prefetched".getBytes();
+    store.put(address, new DataWord(1), new DataWord(100));
+    store.put(address, new DataWord(2), new DataWord(200));
+
+    // the first run reads on demand, slot 3 is absent
+    Storage first = new Storage(address, store.mock);
+    Assert.assertTrue(store.batches.isEmpty());
+    Assert.assertEquals(new DataWord(100), first.getValue(new DataWord(1)));
+    Assert.assertEquals(new DataWord(200), first.getValue(new DataWord(2)));
+    Assert.assertNull(first.getValue(new DataWord(3)));
+    first.commit();
+    Assert.assertEquals(3, store.reads.size());
+
+    // the next run reads the three slots ahead in one batch and serves them from it
+    store.reads.clear();
+    long hits = StoragePrefetcher.getPrefetchHits();
+    Storage second = new Storage(address, store.mock);
+    Assert.assertEquals(1, store.batches.size());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(new DataWord(1), new DataWord(2), new DataWord(3))),
+        store.batches.get(0).stream().map(store::slotOf).collect(Collectors.toSet()));
+    Assert.assertEquals(new DataWord(100), second.getValue(new DataWord(1)));
+    Assert.assertEquals(new DataWord(200), second.getValue(new DataWord(2)));
+    Assert.assertNull(second.getValue(new DataWord(3)));
+    Assert.assertTrue(store.reads.isEmpty());
+    Assert.assertEquals(first.getBeforeUseSize(), second.getBeforeUseSize());
+    second.commit();
+    Assert.assertEquals(hits + 3, StoragePrefetcher.getPrefetchHits());
+
+    // a slot that wasn't predicted is still read on its own
+    Storage third = new Storage(address, store.mock);
+    Assert.assertNull(third.getValue(new DataWord(4)));
+    Assert.assertEquals(1, store.reads.size());
+  }
+
+  @Test
+  public void testPutOnPrefetchedRow() {
+    byte[] address = "put".getBytes();
+    store.put(address, new DataWord(1), new DataWord(100));
+
+    // slot 1 is stored, slot 2 is new
+    Storage direct = new Storage(address, store.mock);
+    direct.put(new DataWord(1), new DataWord(101));
+    direct.put(new DataWord(2), new DataWord(201));
+    Assert.assertEquals(32, direct.getBeforeUseSize());
+    direct.commit();
+    Assert.assertEquals(2, store.reads.size());
+    Assert.assertEquals(new DataWord(101), store.get(address, new DataWord(1)));
+    Assert.assertEquals(new DataWord(201), store.get(address, new DataWord(2)));
+
+    // both rows are read ahead now, the size before is counted from what was stored
+    store.reads.clear();
+    Storage prefetched = new Storage(address, store.mock);
+    prefetched.put(new DataWord(1), new DataWord(102));
+    prefetched.put(new DataWord(2), new DataWord(202));
+    Assert.assertEquals(64, prefetched.getBeforeUseSize());
+    Assert.assertEquals(new DataWord(102), prefetched.getValue(new DataWord(1)));
+    prefetched.commit();
+    Assert.assertTrue(store.reads.isEmpty());
+    Assert.assertEquals(new DataWord(102), store.get(address, new DataWord(1)));
+    Assert.assertEquals(new DataWord(202), store.get(address, new DataWord(2)));
+  }
+
+  /**
+   * The rows of a storage row store in a map, counting the reads one by one and in batches.
+   */
+  private static class FakeStore {
+
+    private final StorageRowStore mock = Mockito.mock(StorageRowStore.class);
+    private final Map<WrappedByteArray, byte[]> rows = new HashMap<>();
+    private final List<byte[]> reads = new ArrayList<>();
+    private final List<List<byte[]>> batches = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    FakeStore() {
+      Mockito.when(mock.get(Mockito.any(byte[].class))).thenAnswer(invocation -> {
+        byte[] key = invocation.getArgument(0);
+        reads.add(key);
+        return read(key);
+      });
+      Mockito.when(mock.get(Mockito.anyList())).thenAnswer(invocation -> {
+        List<byte[]> keys = invocation.getArgument(0);
+        batches.add(keys);
+        return keys.stream().map(this::read).collect(Collectors.toList());
+      });
+      Mockito.doAnswer(invocation -> {
+        byte[] key = invocation.getArgument(0);
+        StorageRowWrapper row = invocation.getArgument(1);
+        rows.put(WrappedByteArray.of(key), row.getData().clone());
+        return null;
+      }).when(mock).put(Mockito.any(byte[].class), Mockito.any(StorageRowWrapper.class));
+    }
+
+    private StorageRowWrapper read(byte[] key) {
+      StorageRowWrapper row = new StorageRowWrapper(rows.get(WrappedByteArray.of(key)));
+      row.setRowKey(key);
+      return row;
+    }
+
+    // the key of a row as a storage composes it: the address hash, then the low half of the slot
+    private static byte[] rowKey(byte[] address, DataWord slot) {
+      byte[] key = slot.getData().clone();
+      System.arraycopy(Hash.sha3(address), 0, key, 0, 16);
+      return key;
+    }
+
+    void put(byte[] address, DataWord slot, DataWord value) {
+      rows.put(WrappedByteArray.of(rowKey(address, slot)), value.getData().clone());
+    }
+
+    DataWord get(byte[] address, DataWord slot) {
+      byte[] value = rows.get(WrappedByteArray.of(rowKey(address, slot)));
+      return value == null ? null : new DataWord(value);
+    }
+
+    DataWord slotOf(byte[] key) {
+      return new DataWord(Arrays.copyOfRange(key, 16, 32));
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.gsc.runtime.vm.trace;
+
+import java.util.Arrays;
+import org.gsc.config.args.Args;
+import org.gsc.protos.Protocol.Transaction;
+import org.gsc.runtime.vm.VM;
+import org.gsc.runtime.vm.program.InternalTransaction;
+import org.gsc.runtime.vm.program.Program;
+import org.gsc.runtime.vm.program.invoke.ProgramInvokeMockImpl;
+import org.gsc.runtime.vm.trace.VMProfiler.OpReport;
+import org.gsc.runtime.vm.trace.VMProfiler.Report;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+public class VMProfilerTest {
+
+  // PUSH1 1, PUSH1 2, ADD, PUSH1 3, ADD, STOP
+  private static final byte[] CODE = Hex.decode("600160020160030100");
+
+  @After
+  public void destroy() {
+    Args.getInstance().setVmProfileSampleRate(0);
+  }
+
+  @Test
+  public void testSampledRunsAreProfiled() {
+    Args.getInstance().setVmProfileSampleRate(2);
+    VMProfiler.roll();
+    for (int i = 0; i < 4; i++) {
+      play();
+    }
+    Report report = VMProfiler.roll();
+
+    Assert.assertEquals(2, report.sampledRuns);
+    OpReport add = report.ops.stream().filter(op -> op.op.equals("ADD")).findFirst().get();
+    Assert.assertEquals(4, add.count);
+    Assert.assertEquals(4, Arrays.stream(add.histogram).sum());
+    Assert.assertEquals(1, report.contracts.size());
+    Assert.assertEquals(2, report.contracts.get(0).calls);
+    Assert.assertTrue(report.contracts.get(0).energy > 0);
+  }
+
+  @Test
+  public void testNothingSampledWhenOff() {
+    VMProfiler.roll();
+    play();
+    Report report = VMProfiler.roll();
+    Assert.assertEquals(0, report.sampledRuns);
+    Assert.assertTrue(report.ops.isEmpty());
+  }
+
+  private static void play() {
+    Program program = new Program(CODE, new ProfiledInvoke(),
+        new InternalTransaction(Transaction.getDefaultInstance()));
+    new VM().play(program);
+  }
+
+  private static class ProfiledInvoke extends ProgramInvokeMockImpl {
+
+    @Override
+    public long getEnergyLimit() {
+      return 1_000_000;
+    }
+
+    @Override
+    public long getVmShouldEndInUs() {
+      return Long.MAX_VALUE;
+    }
+  }
+}